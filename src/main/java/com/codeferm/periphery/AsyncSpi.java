@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous SPI transfers from many threads on one handle.
+ *
+ * A single I/O thread owns the handle and takes requests from a bounded queue, so callers never hold a lock while the bus is busy.
+ * Requests that are waiting when the bus frees up are coalesced into one SpiBatch and sent with one SPI_IOC_MESSAGE ioctl. Chip
+ * select is deasserted between requests (cs_change on every segment but the last), so each request is still its own transaction.
+ * When the queue is full transfer blocks the caller (backpressure) and tryTransfer fails fast. A failed batch fails the futures of
+ * its requests and the I/O thread keeps serving the queue. Futures complete on the I/O thread, so use the async variants of
+ * CompletableFuture for heavy follow up work.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class AsyncSpi implements AutoCloseable {
+
+    /**
+     * Sends a batch and returns bytes transferred or a negative error.
+     */
+    interface BatchTransfer {
+
+        /**
+         * Transfer batch.
+         *
+         * @param batch Batch.
+         * @return Bytes transferred or negative error.
+         */
+        int transfer(SpiBatch batch);
+    }
+
+    /**
+     * Queued transfer.
+     */
+    private static final class Request {
+
+        /**
+         * Bytes to send.
+         */
+        private final byte[] tx;
+        /**
+         * Bytes received.
+         */
+        private final byte[] rx;
+        /**
+         * Length.
+         */
+        private final int len;
+        /**
+         * Speed or 0 for device speed.
+         */
+        private final int speedHz;
+        /**
+         * Result.
+         */
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        /**
+         * Create request.
+         *
+         * @param tx Bytes to send.
+         * @param rx Bytes received.
+         * @param len Length.
+         * @param speedHz Speed or 0 for device speed.
+         */
+        private Request(final byte[] tx, final byte[] rx, final int len, final int speedHz) {
+            this.tx = tx;
+            this.rx = rx;
+            this.len = len;
+            this.speedHz = speedHz;
+        }
+    }
+
+    /**
+     * Request queue.
+     */
+    private final BlockingQueue<Request> queue;
+    /**
+     * Batch buffers owned by the I/O thread.
+     */
+    private final SpiBatch batch;
+    /**
+     * Requests in current batch.
+     */
+    private final Request[] inFlight;
+    /**
+     * Sends batches.
+     */
+    private final BatchTransfer transfer;
+    /**
+     * I/O thread.
+     */
+    private final Thread thread;
+    /**
+     * Thread running.
+     */
+    private volatile boolean running = true;
+    /**
+     * Request that did not fit in the last batch.
+     */
+    private Request carry;
+    /**
+     * Batches sent.
+     */
+    private volatile long batches;
+    /**
+     * Requests completed.
+     */
+    private volatile long requests;
+
+    /**
+     * Create queue on SPI handle. The handle must not be used by other threads until close.
+     *
+     * @param spi SPI handle.
+     * @param queueSize Maximum queued requests.
+     * @param batchBytes Maximum bytes in one ioctl, limited to the spidev bufsiz.
+     * @param batchSegments Maximum requests in one ioctl.
+     */
+    public AsyncSpi(final long spi, final int queueSize, final int batchBytes, final int batchSegments) {
+        this(b -> b.transfer(spi), queueSize, Math.min(batchBytes, Spi.getBufSiz()), batchSegments);
+    }
+
+    /**
+     * Create queue with batch transfer function.
+     *
+     * @param transfer Sends batches.
+     * @param queueSize Maximum queued requests.
+     * @param batchBytes Maximum bytes in one ioctl.
+     * @param batchSegments Maximum requests in one ioctl.
+     */
+    AsyncSpi(final BatchTransfer transfer, final int queueSize, final int batchBytes, final int batchSegments) {
+        this.transfer = transfer;
+        queue = new ArrayBlockingQueue<>(queueSize);
+        batch = new SpiBatch(batchBytes, batchSegments);
+        inFlight = new Request[batchSegments];
+        thread = new Thread(this::run, AsyncSpi.class.getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop I/O thread. Requests not sent yet complete with CancellationException.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (carry != null) {
+            carry.future.completeExceptionally(new CancellationException("AsyncSpi closed"));
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new CancellationException("AsyncSpi closed"));
+        }
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Requests waiting to be sent.
+     *
+     * @return Queue size.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Create request and check it fits in a batch.
+     *
+     * @param tx Bytes to send.
+     * @param rx Bytes received.
+     * @param len Length.
+     * @param speedHz Speed or 0 for device speed.
+     * @return Request.
+     */
+    private Request request(final byte[] tx, final byte[] rx, final int len, final int speedHz) {
+        if (len < 0 || tx.length < len || rx.length < len) {
+            throw new RuntimeException(String.format("Transfer of %d bytes needs tx and rx of at least %d bytes, not %d and %d", len,
+                    len, tx.length, rx.length));
+        }
+        if (len > batch.getTx().length) {
+            throw new RuntimeException(String.format("Transfer of %d bytes is larger than batch size %d", len, batch.getTx().length));
+        }
+        return new Request(tx, rx, len, speedHz);
+    }
+
+    /**
+     * Queue transfer, waiting while the queue is full.
+     *
+     * @param tx Bytes to send.
+     * @param rx Receive buffer of at least len bytes.
+     * @param len Length.
+     * @param speedHz Speed or 0 for device speed.
+     * @return Future completed with rx.
+     */
+    public CompletableFuture<byte[]> transfer(final byte[] tx, final byte[] rx, final int len, final int speedHz) {
+        final var request = request(tx, rx, len, speedHz);
+        if (!running) {
+            request.future.completeExceptionally(new RejectedExecutionException("AsyncSpi closed"));
+            return request.future;
+        }
+        try {
+            queue.put(request);
+            // Closed while waiting for space
+            if (!running && queue.remove(request)) {
+                request.future.completeExceptionally(new RejectedExecutionException("AsyncSpi closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(e);
+        }
+        return request.future;
+    }
+
+    /**
+     * Queue transfer at device speed, waiting while the queue is full.
+     *
+     * @param tx Bytes to send.
+     * @return Future completed with received bytes.
+     */
+    public CompletableFuture<byte[]> transfer(final byte[] tx) {
+        return transfer(tx, new byte[tx.length], tx.length, 0);
+    }
+
+    /**
+     * Queue transfer, waiting up to timeout while the queue is full.
+     *
+     * @param tx Bytes to send.
+     * @param rx Receive buffer of at least len bytes.
+     * @param len Length.
+     * @param speedHz Speed or 0 for device speed.
+     * @param timeoutMs Time to wait in milliseconds or 0 to fail at once.
+     * @return Future completed with rx or with RejectedExecutionException if the queue stayed full.
+     */
+    public CompletableFuture<byte[]> tryTransfer(final byte[] tx, final byte[] rx, final int len, final int speedHz,
+            final long timeoutMs) {
+        final var request = request(tx, rx, len, speedHz);
+        if (!running) {
+            request.future.completeExceptionally(new RejectedExecutionException("AsyncSpi closed"));
+            return request.future;
+        }
+        try {
+            if (!queue.offer(request, timeoutMs, TimeUnit.MILLISECONDS)) {
+                request.future.completeExceptionally(new RejectedExecutionException("AsyncSpi queue full"));
+            } else if (!running && queue.remove(request)) {
+                // Closed while waiting for space
+                request.future.completeExceptionally(new RejectedExecutionException("AsyncSpi closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(e);
+        }
+        return request.future;
+    }
+
+    /**
+     * Add request to batch.
+     *
+     * @param request Request.
+     */
+    private void add(final Request request) {
+        inFlight[batch.size()] = request;
+        // Deassert chip select between requests, send clears it on the last one
+        batch.add(request.tx, 0, request.len, request.speedHz, 0, true, 0);
+    }
+
+    /**
+     * Fail every request in the current batch.
+     *
+     * @param e Cause.
+     */
+    private void fail(final RuntimeException e) {
+        for (var i = 0; i < inFlight.length; i++) {
+            if (inFlight[i] != null) {
+                inFlight[i].future.completeExceptionally(e);
+                inFlight[i] = null;
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Send batch and complete futures.
+     */
+    private void send() {
+        final var count = batch.size();
+        final var rx = batch.getRx();
+        // cs_change on the last segment would keep chip select asserted after the message
+        batch.getSegments()[(count - 1) * SpiBatch.FIELDS + SpiBatch.CS_CHANGE] = 0;
+        try {
+            final var ret = transfer.transfer(batch);
+            if (ret < 0) {
+                throw new RuntimeException(String.format("SPI batch of %d transfers failed with errno %d", count, -ret));
+            }
+            var offset = 0;
+            for (var i = 0; i < count; i++) {
+                final var request = inFlight[i];
+                System.arraycopy(rx, offset, request.rx, 0, request.len);
+                offset += request.len;
+            }
+            batches++;
+            requests += count;
+            for (var i = 0; i < count; i++) {
+                inFlight[i].future.complete(inFlight[i].rx);
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            for (var i = 0; i < count; i++) {
+                inFlight[i] = null;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Take requests, coalesce what is waiting and send. A request that cannot be added fails with the rest of its batch.
+     */
+    private void run() {
+        while (running) {
+            try {
+                final var request = carry != null ? carry : queue.take();
+                carry = null;
+                add(request);
+                // Coalesce requests already waiting
+                Request next;
+                while ((next = queue.poll()) != null) {
+                    if (batch.fits(next.len)) {
+                        add(next);
+                    } else {
+                        carry = next;
+                        break;
+                    }
+                }
+                send();
+            } catch (InterruptedException e) {
+                // Closed while waiting for a request
+                break;
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+    }
+}
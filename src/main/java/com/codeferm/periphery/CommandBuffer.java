@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
+import org.fusesource.hawtjni.runtime.JniArg;
+import org.fusesource.hawtjni.runtime.JniClass;
+import org.fusesource.hawtjni.runtime.JniMethod;
+import org.fusesource.hawtjni.runtime.Library;
+
+/**
+ * Batch of GPIO, SPI, I2C, MMIO, Serial and delay commands executed in one JNI call.
+ *
+ * Commands are encoded as a compact byte stream that references existing handles. The stream is copied off heap (cmdbuf.c) the
+ * first time execute is called after a change, so a sequence that is built once and executed many times costs one JNI transition
+ * per execution. Delays spin in native code, so the time between steps does not depend on JNI overhead or the JVM. Read commands
+ * return their offset in the output buffer. Handles must stay open while the buffer is used.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@JniClass
+public class CommandBuffer implements AutoCloseable {
+
+    /**
+     * Opcodes from cmdbuf.h.
+     */
+    private static final int GPIO_WRITE = 1;
+    private static final int GPIO_READ = 2;
+    private static final int MMIO_WRITE32 = 3;
+    private static final int MMIO_READ32 = 4;
+    private static final int MMIO_MODIFY32 = 5;
+    private static final int MMIO_WAIT32 = 6;
+    private static final int SPI_TRANSFER = 7;
+    private static final int I2C_WRITE = 8;
+    private static final int I2C_READ = 9;
+    private static final int SERIAL_WRITE = 10;
+    private static final int SERIAL_READ = 11;
+    private static final int DELAY_NS = 12;
+    /**
+     * Error codes from cmdbuf.h.
+     */
+    private static final int CMDBUF_ERROR_ARG = -1;
+    /**
+     * java-periphery library.
+     */
+    private static final Library LIBRARY = new Library("java-periphery", CommandBuffer.class);
+    /**
+     * Command buffer handle.
+     */
+    final private long handle;
+    /**
+     * Command stream.
+     */
+    private final ByteBuffer cmds;
+    /**
+     * Output bytes required.
+     */
+    private int outLen;
+    /**
+     * Number of commands.
+     */
+    private int count;
+    /**
+     * Stream changed since it was copied off heap.
+     */
+    private boolean dirty;
+
+    /**
+     * Load library.
+     */
+    static {
+        LIBRARY.load();
+    }
+
+    /**
+     * Allocate command buffer.
+     *
+     * @param capacity Maximum size of command stream in bytes.
+     */
+    public CommandBuffer(final int capacity) {
+        handle = cmdbufNew(capacity);
+        if (handle == 0) {
+            throw new RuntimeException("Handle cannot be NULL");
+        }
+        cmds = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Free handle.
+     */
+    @Override
+    public void close() {
+        cmdbufFree(handle);
+    }
+
+    /**
+     * Handle accessor.
+     *
+     * @return Handle.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    /**
+     * Output buffer size needed by execute.
+     *
+     * @return Output length.
+     */
+    public int getOutLen() {
+        return outLen;
+    }
+
+    /**
+     * Number of commands.
+     *
+     * @return Commands.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Remove all commands.
+     */
+    public void clear() {
+        cmds.clear();
+        outLen = 0;
+        count = 0;
+        dirty = true;
+    }
+
+    /**
+     * Start command and check it fits. Arguments must be checked first, so a rejected command never leaves a partial command in
+     * the stream.
+     *
+     * @param opcode Opcode.
+     * @param len Length of fields.
+     */
+    private void begin(final int opcode, final long len) {
+        if (cmds.remaining() < len + 1) {
+            throw new RuntimeException(String.format("Command buffer full at command %d", count));
+        }
+        cmds.put((byte) opcode);
+        count++;
+        dirty = true;
+    }
+
+    /**
+     * Reserve output bytes.
+     *
+     * @param len Number of bytes.
+     * @return Offset in output buffer.
+     */
+    private int output(final int len) {
+        final var offset = outLen;
+        outLen += len;
+        return offset;
+    }
+
+    /**
+     * Check read length is not negative.
+     *
+     * @param len Number of bytes.
+     */
+    private static void checkLen(final int len) {
+        if (len < 0) {
+            throw new RuntimeException(String.format("Length %d is negative", len));
+        }
+    }
+
+    /**
+     * Check write length is not negative and fits in buffer.
+     *
+     * @param buf Buffer.
+     * @param len Number of bytes.
+     */
+    private static void checkLen(final byte[] buf, final int len) {
+        checkLen(len);
+        if (len > buf.length) {
+            throw new RuntimeException(String.format("Length %d is larger than buffer length %d", len, buf.length));
+        }
+    }
+
+    /**
+     * Check I2C message length fits the 16 bit length of struct i2c_msg.
+     *
+     * @param len Number of bytes.
+     */
+    private static void checkI2cLen(final int len) {
+        if (len < 0 || len > 0xffff) {
+            throw new RuntimeException(String.format("I2C message length %d must be 0 to 65535", len));
+        }
+    }
+
+    /**
+     * Write GPIO.
+     *
+     * @param gpio GPIO handle.
+     * @param value Value.
+     * @return This buffer.
+     */
+    public CommandBuffer gpioWrite(final long gpio, final boolean value) {
+        begin(GPIO_WRITE, 9);
+        cmds.putLong(gpio).put((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    /**
+     * Read GPIO into one output byte (0 or 1).
+     *
+     * @param gpio GPIO handle.
+     * @return Offset in output buffer.
+     */
+    public int gpioRead(final long gpio) {
+        begin(GPIO_READ, 8);
+        cmds.putLong(gpio);
+        return output(1);
+    }
+
+    /**
+     * Write 32 bit MMIO register.
+     *
+     * @param mmio MMIO handle.
+     * @param offset Register offset.
+     * @param value Value.
+     * @return This buffer.
+     */
+    public CommandBuffer mmioWrite32(final long mmio, final long offset, final int value) {
+        begin(MMIO_WRITE32, 16);
+        cmds.putLong(mmio).putInt((int) offset).putInt(value);
+        return this;
+    }
+
+    /**
+     * Read 32 bit MMIO register into four little endian output bytes.
+     *
+     * @param mmio MMIO handle.
+     * @param offset Register offset.
+     * @return Offset in output buffer.
+     */
+    public int mmioRead32(final long mmio, final long offset) {
+        begin(MMIO_READ32, 12);
+        cmds.putLong(mmio).putInt((int) offset);
+        return output(4);
+    }
+
+    /**
+     * Read-modify-write 32 bit MMIO register.
+     *
+     * @param mmio MMIO handle.
+     * @param offset Register offset.
+     * @param clear Bits to clear.
+     * @param set Bits to set.
+     * @return This buffer.
+     */
+    public CommandBuffer mmioModify32(final long mmio, final long offset, final int clear, final int set) {
+        begin(MMIO_MODIFY32, 20);
+        cmds.putLong(mmio).putInt((int) offset).putInt(clear).putInt(set);
+        return this;
+    }
+
+    /**
+     * Spin until masked 32 bit MMIO register equals value. Execution fails on timeout.
+     *
+     * @param mmio MMIO handle.
+     * @param offset Register offset.
+     * @param mask Bits to compare.
+     * @param value Expected value of masked bits.
+     * @param timeoutNs Timeout in nanoseconds.
+     * @return This buffer.
+     */
+    public CommandBuffer mmioWait32(final long mmio, final long offset, final int mask, final int value, final int timeoutNs) {
+        begin(MMIO_WAIT32, 24);
+        cmds.putLong(mmio).putInt((int) offset).putInt(mask).putInt(value).putInt(timeoutNs);
+        return this;
+    }
+
+    /**
+     * Full duplex SPI transfer. Received bytes go to the output buffer.
+     *
+     * @param spi SPI handle.
+     * @param txBuf Bytes to send.
+     * @param len Number of bytes.
+     * @return Offset in output buffer.
+     */
+    public int spiTransfer(final long spi, final byte[] txBuf, final int len) {
+        checkLen(txBuf, len);
+        begin(SPI_TRANSFER, 12L + len);
+        cmds.putLong(spi).putInt(len).put(txBuf, 0, len);
+        return output(len);
+    }
+
+    /**
+     * I2C write message.
+     *
+     * @param i2c I2C handle.
+     * @param addr Device address.
+     * @param buf Bytes to write.
+     * @param len Number of bytes, at most 65535.
+     * @return This buffer.
+     */
+    public CommandBuffer i2cWrite(final long i2c, final int addr, final byte[] buf, final int len) {
+        checkI2cLen(len);
+        checkLen(buf, len);
+        begin(I2C_WRITE, 14L + len);
+        cmds.putLong(i2c).putShort((short) addr).putInt(len).put(buf, 0, len);
+        return this;
+    }
+
+    /**
+     * I2C read message.
+     *
+     * @param i2c I2C handle.
+     * @param addr Device address.
+     * @param len Number of bytes, at most 65535.
+     * @return Offset in output buffer.
+     */
+    public int i2cRead(final long i2c, final int addr, final int len) {
+        checkI2cLen(len);
+        begin(I2C_READ, 14);
+        cmds.putLong(i2c).putShort((short) addr).putInt(len);
+        return output(len);
+    }
+
+    /**
+     * Serial write. Execution fails if not all bytes are written.
+     *
+     * @param serial Serial handle.
+     * @param buf Bytes to write.
+     * @param len Number of bytes.
+     * @return This buffer.
+     */
+    public CommandBuffer serialWrite(final long serial, final byte[] buf, final int len) {
+        checkLen(buf, len);
+        begin(SERIAL_WRITE, 12L + len);
+        cmds.putLong(serial).putInt(len).put(buf, 0, len);
+        return this;
+    }
+
+    /**
+     * Serial read. Execution fails if fewer bytes arrive before the timeout.
+     *
+     * @param serial Serial handle.
+     * @param len Number of bytes.
+     * @param timeoutMs Timeout in milliseconds or negative to block.
+     * @return Offset in output buffer.
+     */
+    public int serialRead(final long serial, final int len, final int timeoutMs) {
+        checkLen(len);
+        begin(SERIAL_READ, 16);
+        cmds.putLong(serial).putInt(len).putInt(timeoutMs);
+        return output(len);
+    }
+
+    /**
+     * Busy wait.
+     *
+     * @param ns Nanoseconds.
+     * @return This buffer.
+     */
+    public CommandBuffer delayNs(final int ns) {
+        begin(DELAY_NS, 4);
+        cmds.putInt(ns);
+        return this;
+    }
+
+    /**
+     * Execute all commands in one native call. Commands run in order and stop at the first failure.
+     *
+     * @param out Output buffer of at least getOutLen bytes.
+     * @return Number of output bytes.
+     */
+    public int execute(final byte[] out) {
+        if (out.length < outLen) {
+            throw new RuntimeException(String.format("Output buffer must be at least %d bytes", outLen));
+        }
+        if (dirty) {
+            if (cmdbufLoad(handle, cmds.array(), cmds.position()) != 0) {
+                throw new RuntimeException("Command stream larger than capacity");
+            }
+            dirty = false;
+        }
+        final var ret = cmdbufExecute(handle, out, out.length);
+        if (ret < 0) {
+            if (cmdbufError(handle) == CMDBUF_ERROR_ARG) {
+                throw new RuntimeException(String.format("Command %d is malformed", -ret - 1));
+            }
+            throw new RuntimeException(String.format("Command %d failed", -ret - 1));
+        }
+        return ret;
+    }
+
+    /**
+     * Get 32 bit little endian value from output buffer.
+     *
+     * @param out Output buffer.
+     * @param offset Offset returned by read command.
+     * @return Value.
+     */
+    public static int getInt(final byte[] out, final int offset) {
+        return (out[offset] & 0xff) | (out[offset + 1] & 0xff) << 8 | (out[offset + 2] & 0xff) << 16 | (out[offset + 3] & 0xff)
+                << 24;
+    }
+
+    /**
+     * Allocate command buffer handle.
+     *
+     * @param capacity Maximum size of command stream in bytes.
+     * @return A valid handle on success, or NULL on failure.
+     */
+    @JniMethod(cast = "cmdbuf_t *", accessor = "cmdbuf_new")
+    public static final native long cmdbufNew(@JniArg(cast = "size_t") long capacity);
+
+    /**
+     * Copy command stream off heap.
+     *
+     * @param cb Valid pointer to an allocated command buffer handle structure.
+     * @param cmds Command stream.
+     * @param len Length of command stream.
+     * @return 0 on success or -1 if the stream is larger than the capacity.
+     */
+    @JniMethod(accessor = "cmdbuf_load")
+    public static native int cmdbufLoad(@JniArg(cast = "cmdbuf_t *") long cb, @JniArg(cast = "const uint8_t *", flags = {NO_OUT})
+            byte[] cmds, @JniArg(cast = "size_t") long len);
+
+    /**
+     * Execute command stream.
+     *
+     * @param cb Valid pointer to an allocated command buffer handle structure.
+     * @param out Output buffer.
+     * @param outLen Length of output buffer.
+     * @return Number of output bytes on success or -(command index + 1) of the first command that failed.
+     */
+    @JniMethod(accessor = "cmdbuf_execute")
+    public static native int cmdbufExecute(@JniArg(cast = "cmdbuf_t *") long cb, @JniArg(cast = "uint8_t *", flags = {NO_IN})
+            byte[] out, @JniArg(cast = "size_t") long outLen);
+
+    /**
+     * Error of the command that failed in the last execute.
+     *
+     * @param cb Valid pointer to an allocated command buffer handle structure.
+     * @return 0, CMDBUF_ERROR_ARG for a malformed command or CMDBUF_ERROR_EXECUTE for a peripheral failure.
+     */
+    @JniMethod(accessor = "cmdbuf_error")
+    public static native int cmdbufError(@JniArg(cast = "cmdbuf_t *") long cb);
+
+    /**
+     * Free command buffer handle.
+     *
+     * @param cb Valid pointer to an allocated command buffer handle structure.
+     */
+    @JniMethod(accessor = "cmdbuf_free")
+    public static native void cmdbufFree(@JniArg(cast = "cmdbuf_t *") long cb);
+}
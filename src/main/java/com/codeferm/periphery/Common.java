@@ -3,6 +3,7 @@
  */
 package com.codeferm.periphery;
 
+import java.nio.ByteBuffer;
 import static org.fusesource.hawtjni.runtime.ArgFlag.CRITICAL;
 import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
 import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
@@ -10,6 +11,7 @@ import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniMethod;
 import org.fusesource.hawtjni.runtime.Library;
+import static org.fusesource.hawtjni.runtime.MethodFlag.JNI;
 
 /**
  * Java Periphery common code.
@@ -76,6 +78,42 @@ public class Common {
             @JniArg(cast = "void *") long dest, @JniArg(cast = "const void *", flags = {NO_OUT, CRITICAL}) byte[] src, @JniArg(cast
                     = "size_t") long size);
 
+    /**
+     * Native address of direct buffer (JNI GetDirectBufferAddress).
+     *
+     * @param buf Direct buffer.
+     * @return Address of first element or NULL if the buffer is not direct.
+     */
+    @JniMethod(cast = "void *", flags = {JNI})
+    public static final native long GetDirectBufferAddress(Object buf);
+
+    /**
+     * Native address of direct buffer at its position. No data is copied, so the buffer must stay reachable while native code uses
+     * the address.
+     *
+     * @param buf Direct buffer.
+     * @return Address of element at position.
+     */
+    public static long address(final ByteBuffer buf) {
+        if (!buf.isDirect()) {
+            throw new RuntimeException("ByteBuffer must be direct");
+        }
+        return GetDirectBufferAddress(buf) + buf.position();
+    }
+
+    /**
+     * Native address of direct buffer at its position for native code to write to.
+     *
+     * @param buf Direct buffer that is not read only.
+     * @return Address of element at position.
+     */
+    public static long writeAddress(final ByteBuffer buf) {
+        if (buf.isReadOnly()) {
+            throw new RuntimeException("ByteBuffer must not be read only");
+        }
+        return address(buf);
+    }
+
     /**
      * Convert C style string to Java String.
      *
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+/**
+ * Fixed rate control loop. Each tick calls read, compute and write of the Task from a dedicated thread paced by PeriodicTimer.
+ *
+ * The Task owns its buffers and handles, so they are allocated once before the loop starts and nothing is allocated per tick by the
+ * runtime. Every tick records release jitter (wake up time minus release time) in a power of two histogram, the time spent in each
+ * phase and a deadline miss when write finishes after the deadline. Timer overruns (whole periods skipped) are counted separately.
+ * Statistics are written by the loop thread only and can be read from any thread while the loop runs.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ControlLoop {
+
+    /**
+     * Loop body. Implementations should not allocate or block.
+     */
+    public interface Task {
+
+        /**
+         * Read inputs.
+         */
+        void read();
+
+        /**
+         * Compute outputs from inputs.
+         */
+        void compute();
+
+        /**
+         * Write outputs.
+         */
+        void write();
+    }
+
+    /**
+     * Read phase.
+     */
+    public static final int PHASE_READ = 0;
+    /**
+     * Compute phase.
+     */
+    public static final int PHASE_COMPUTE = 1;
+    /**
+     * Write phase.
+     */
+    public static final int PHASE_WRITE = 2;
+    /**
+     * Jitter histogram buckets. Bucket 0 is below 1 µs and bucket n is 2^(n-1) µs up to 2^n µs. The last bucket also holds
+     * everything larger.
+     */
+    public static final int HISTOGRAM_BUCKETS = 24;
+    /**
+     * Loop name.
+     */
+    private final String name;
+    /**
+     * Period in nanoseconds.
+     */
+    private final long periodNs;
+    /**
+     * Deadline relative to release in nanoseconds.
+     */
+    private final long deadlineNs;
+    /**
+     * Loop body.
+     */
+    private final Task task;
+    /**
+     * Jitter histogram.
+     */
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    /**
+     * Last time of each phase.
+     */
+    private final long[] phaseLastNs = new long[3];
+    /**
+     * Maximum time of each phase.
+     */
+    private final long[] phaseMaxNs = new long[3];
+    /**
+     * Total time of each phase.
+     */
+    private final long[] phaseTotalNs = new long[3];
+    /**
+     * Loop thread.
+     */
+    private Thread thread;
+    /**
+     * Thread running.
+     */
+    private volatile boolean running;
+    /**
+     * Ticks run.
+     */
+    private volatile long ticks;
+    /**
+     * Ticks that finished after the deadline.
+     */
+    private volatile long deadlineMisses;
+    /**
+     * Periods skipped because a tick ran over.
+     */
+    private volatile long overruns;
+    /**
+     * Maximum release jitter.
+     */
+    private volatile long maxJitterNs;
+    /**
+     * Total release jitter.
+     */
+    private volatile long totalJitterNs;
+    /**
+     * Exception that stopped the loop.
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * Create loop with deadline equal to period.
+     *
+     * @param name Thread name.
+     * @param periodNs Period in nanoseconds.
+     * @param task Loop body.
+     */
+    public ControlLoop(final String name, final long periodNs, final Task task) {
+        this(name, periodNs, periodNs, task);
+    }
+
+    /**
+     * Create loop.
+     *
+     * @param name Thread name.
+     * @param periodNs Period in nanoseconds.
+     * @param deadlineNs Deadline relative to release in nanoseconds.
+     * @param task Loop body.
+     */
+    public ControlLoop(final String name, final long periodNs, final long deadlineNs, final Task task) {
+        if (periodNs <= 0 || deadlineNs <= 0) {
+            throw new RuntimeException("Period and deadline must be greater than 0");
+        }
+        this.name = name;
+        this.periodNs = periodNs;
+        this.deadlineNs = deadlineNs;
+        this.task = task;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPeriodNs() {
+        return periodNs;
+    }
+
+    public long getDeadlineNs() {
+        return deadlineNs;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getDeadlineMisses() {
+        return deadlineMisses;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getMaxJitterNs() {
+        return maxJitterNs;
+    }
+
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Average release jitter.
+     *
+     * @return Jitter in nanoseconds.
+     */
+    public long getAverageJitterNs() {
+        final var count = ticks;
+        if (count == 0) {
+            return 0;
+        }
+        return totalJitterNs / count;
+    }
+
+    /**
+     * Last time spent in phase.
+     *
+     * @param phase PHASE_READ, PHASE_COMPUTE or PHASE_WRITE.
+     * @return Time in nanoseconds.
+     */
+    public long getPhaseLastNs(final int phase) {
+        return phaseLastNs[phase];
+    }
+
+    /**
+     * Maximum time spent in phase.
+     *
+     * @param phase PHASE_READ, PHASE_COMPUTE or PHASE_WRITE.
+     * @return Time in nanoseconds.
+     */
+    public long getPhaseMaxNs(final int phase) {
+        return phaseMaxNs[phase];
+    }
+
+    /**
+     * Average time spent in phase.
+     *
+     * @param phase PHASE_READ, PHASE_COMPUTE or PHASE_WRITE.
+     * @return Time in nanoseconds.
+     */
+    public long getPhaseAverageNs(final int phase) {
+        final var count = ticks;
+        if (count == 0) {
+            return 0;
+        }
+        return phaseTotalNs[phase] / count;
+    }
+
+    /**
+     * Copy jitter histogram.
+     *
+     * @param counts Array of HISTOGRAM_BUCKETS counts.
+     */
+    public void getHistogram(final long[] counts) {
+        System.arraycopy(histogram, 0, counts, 0, HISTOGRAM_BUCKETS);
+    }
+
+    /**
+     * Histogram bucket of jitter.
+     *
+     * @param jitterNs Jitter in nanoseconds.
+     * @return Bucket.
+     */
+    public static int bucket(final long jitterNs) {
+        final var us = jitterNs / 1000;
+        if (us <= 0) {
+            return 0;
+        }
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(us));
+    }
+
+    /**
+     * Record one tick.
+     *
+     * @param release Release time.
+     * @param start Wake up time.
+     * @param readEnd End of read phase.
+     * @param computeEnd End of compute phase.
+     * @param writeEnd End of write phase.
+     */
+    void record(final long release, final long start, final long readEnd, final long computeEnd, final long writeEnd) {
+        final var jitter = Math.max(0, start - release);
+        histogram[bucket(jitter)]++;
+        maxJitterNs = Math.max(maxJitterNs, jitter);
+        totalJitterNs += jitter;
+        phase(PHASE_READ, readEnd - start);
+        phase(PHASE_COMPUTE, computeEnd - readEnd);
+        phase(PHASE_WRITE, writeEnd - computeEnd);
+        if (writeEnd - release > deadlineNs) {
+            deadlineMisses++;
+        }
+        ticks++;
+    }
+
+    /**
+     * Record phase time.
+     *
+     * @param phase Phase.
+     * @param ns Time in nanoseconds.
+     */
+    private void phase(final int phase, final long ns) {
+        phaseLastNs[phase] = ns;
+        phaseMaxNs[phase] = Math.max(phaseMaxNs[phase], ns);
+        phaseTotalNs[phase] += ns;
+    }
+
+    /**
+     * Reset statistics. Only call while the loop is stopped.
+     */
+    public void resetStats() {
+        ticks = 0;
+        deadlineMisses = 0;
+        overruns = 0;
+        maxJitterNs = 0;
+        totalJitterNs = 0;
+        for (var i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = 0;
+        }
+        for (var i = 0; i < 3; i++) {
+            phaseLastNs[i] = 0;
+            phaseMaxNs[i] = 0;
+            phaseTotalNs[i] = 0;
+        }
+    }
+
+    /**
+     * Loop until stopped or the task throws.
+     */
+    private void run() {
+        try (final var timer = new PeriodicTimer(periodNs)) {
+            var release = System.nanoTime() + periodNs;
+            timer.start();
+            while (running) {
+                // System.nanoTime and the timer both use CLOCK_MONOTONIC
+                final var missed = timer.waitNext();
+                final var start = System.nanoTime();
+                release += missed * periodNs;
+                overruns += missed;
+                task.read();
+                final var readEnd = System.nanoTime();
+                task.compute();
+                final var computeEnd = System.nanoTime();
+                task.write();
+                record(release, start, readEnd, computeEnd, System.nanoTime());
+                release += periodNs;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Start loop thread with normal scheduling.
+     */
+    public void start() {
+        start(0);
+    }
+
+    /**
+     * Start loop thread. SCHED_FIFO and affinity are applied by RealTime.start before the first tick, Java thread priorities have
+     * no effect under the default Linux scheduler.
+     *
+     * @param fifoPriority SCHED_FIFO priority 1 to 99 or 0 for normal scheduling.
+     * @param cpus CPUs to pin loop thread to or none.
+     */
+    public synchronized void start(final int fifoPriority, final int... cpus) {
+        if (running) {
+            throw new RuntimeException(String.format("Loop %s already running", name));
+        }
+        failure = null;
+        running = true;
+        try {
+            thread = RealTime.start(name, this::run, fifoPriority, cpus);
+        } catch (RuntimeException e) {
+            running = false;
+            throw e;
+        }
+    }
+
+    /**
+     * Stop loop and wait for the current tick to finish.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+}
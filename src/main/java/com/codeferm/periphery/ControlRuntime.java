@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs several ControlLoops at different rates. Priorities are assigned rate monotonic, so the loop with the shortest period gets
+ * the highest SCHED_FIFO priority and loops with the same period share a priority. Java thread priorities are ignored by the
+ * default Linux scheduler, so without setRealTime all loops run with normal scheduling and rate monotonic order is not enforced.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ControlRuntime implements AutoCloseable {
+
+    /**
+     * Loops.
+     */
+    private final List<ControlLoop> loops = new ArrayList<>();
+    /**
+     * SCHED_FIFO priority of fastest loop or 0 for normal scheduling.
+     */
+    private int maxPriority;
+    /**
+     * CPUs to pin loops to.
+     */
+    private int[] cpus = new int[0];
+    /**
+     * Loops started.
+     */
+    private boolean started;
+
+    /**
+     * Throw if loops are running.
+     *
+     * @param operation Operation not allowed while running.
+     */
+    private void checkStopped(final String operation) {
+        if (started) {
+            throw new RuntimeException(String.format("Cannot %s while runtime is started", operation));
+        }
+    }
+
+    /**
+     * Add loop. Loops cannot be added while running.
+     *
+     * @param loop Control loop.
+     * @return This runtime.
+     */
+    public synchronized ControlRuntime add(final ControlLoop loop) {
+        checkStopped("add loop");
+        loops.add(loop);
+        return this;
+    }
+
+    /**
+     * Run loops with SCHED_FIFO. The fastest loop gets maxPriority and each slower period one less, down to 1. Requires the
+     * privileges listed in RealTime.
+     *
+     * @param maxPriority SCHED_FIFO priority 1 to 99 of the fastest loop or 0 for normal scheduling.
+     * @param cpus CPUs to pin loops to or none, for example RealTime.getIsolatedCpus.
+     * @return This runtime.
+     */
+    public synchronized ControlRuntime setRealTime(final int maxPriority, final int... cpus) {
+        checkStopped("change scheduling");
+        this.maxPriority = maxPriority;
+        this.cpus = cpus.clone();
+        return this;
+    }
+
+    /**
+     * Loops in priority order after start.
+     *
+     * @return Loops.
+     */
+    public synchronized List<ControlLoop> getLoops() {
+        return List.copyOf(loops);
+    }
+
+    /**
+     * Rate monotonic SCHED_FIFO priority of each loop. Priority drops by one for each longer period and stops at 1. A maxPriority
+     * of 0 gives every loop 0 (normal scheduling).
+     *
+     * @param periods Loop periods sorted shortest first.
+     * @param priorities Priorities.
+     * @param maxPriority Priority of shortest period.
+     */
+    public static void assignPriorities(final long[] periods, final int[] priorities, final int maxPriority) {
+        var priority = maxPriority;
+        for (var i = 0; i < periods.length; i++) {
+            if (i > 0 && periods[i] != periods[i - 1] && priority > 1) {
+                priority--;
+            }
+            priorities[i] = priority;
+        }
+    }
+
+    /**
+     * Start all loops, lowest priority first so higher rate loops are never held up by start up of the others. If a loop cannot
+     * get its scheduling the loops already started are stopped.
+     */
+    public synchronized void start() {
+        checkStopped("start");
+        loops.sort(Comparator.comparingLong(ControlLoop::getPeriodNs));
+        final var periods = new long[loops.size()];
+        final var priorities = new int[loops.size()];
+        for (var i = 0; i < periods.length; i++) {
+            periods[i] = loops.get(i).getPeriodNs();
+        }
+        assignPriorities(periods, priorities, maxPriority);
+        started = true;
+        try {
+            for (var i = periods.length - 1; i >= 0; i--) {
+                loops.get(i).start(priorities[i], cpus);
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop all loops, highest rate first.
+     */
+    @Override
+    public synchronized void close() {
+        for (final var loop : loops) {
+            loop.stop();
+        }
+        started = false;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hybrid wait for sub-millisecond deadlines. PeriodicTimer sleeps until a deadline in the kernel, which is drift free but still wakes
+ * up tens of µs late. Here the thread parks until just before the deadline and spins the rest, so it wakes up within a few µs at
+ * the cost of one busy CPU for SPIN_NS per wait. Deadlines are in System.nanoTime units.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Deadline {
+
+    /**
+     * Remaining time below which the thread spins instead of parking.
+     */
+    public static final long SPIN_NS = 100000;
+
+    /**
+     * Utility class.
+     */
+    private Deadline() {
+    }
+
+    /**
+     * Wait until deadline. Park while far away and spin the rest.
+     *
+     * @param deadline Deadline in System.nanoTime units.
+     * @return Actual time.
+     */
+    public static long waitUntil(final long deadline) {
+        var now = System.nanoTime();
+        while (deadline - now > SPIN_NS) {
+            LockSupport.parkNanos(deadline - now - SPIN_NS);
+            now = System.nanoTime();
+        }
+        while (deadline - now > 0) {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    /**
+     * Busy wait for bit banging and short pulses. Sleep cannot be used for microsecond timing, so we spin on System.nanoTime.
+     *
+     * @param ns Nanoseconds to wait. Nothing is done for 0 or less.
+     */
+    public static void delayNs(final long ns) {
+        if (ns > 0) {
+            final var deadline = System.nanoTime() + ns;
+            while (System.nanoTime() - deadline < 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -4,12 +4,17 @@
 package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
+import static com.codeferm.periphery.Common.address;
 import static com.codeferm.periphery.Common.free;
 import static com.codeferm.periphery.Common.jString;
 import static com.codeferm.periphery.Common.malloc;
 import static com.codeferm.periphery.Common.memMove;
+import static com.codeferm.periphery.Common.writeAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.fusesource.hawtjni.runtime.ClassFlag;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -258,6 +263,102 @@ public class I2c implements AutoCloseable {
         return err;
     }
 
+    /**
+     * Per thread native i2c_msg array of two messages followed by a register byte, so direct buffer transfers do not malloc.
+     */
+    private static final ThreadLocal<ByteBuffer> MSGS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(2 * I2cMsg.SIZEOF
+            + 8).order(ByteOrder.nativeOrder()));
+
+    /**
+     * Fill i2c_msg in a buffer laid out as struct i2c_msg array. The buf pointer follows addr, flags and len at offset 8 and is 8
+     * bytes when the struct is 16 bytes (64 bit ABI) or 4 bytes when it is 12 bytes (32 bit ABI).
+     *
+     * @param msgs Message array in native byte order.
+     * @param sizeof Size of struct i2c_msg.
+     * @param index Message index.
+     * @param addr Address.
+     * @param flags Flags.
+     * @param len Length 0 to 65535.
+     * @param buf Address of data.
+     */
+    static void putMsg(final ByteBuffer msgs, final int sizeof, final int index, final short addr, final short flags,
+            final int len, final long buf) {
+        if (len < 0 || len > 0xffff) {
+            throw new RuntimeException(String.format("I2C message length %d must be 0 to 65535", len));
+        }
+        final var base = index * sizeof;
+        msgs.putShort(base, addr);
+        msgs.putShort(base + 2, flags);
+        msgs.putShort(base + 4, (short) len);
+        if (sizeof == 16) {
+            msgs.putLong(base + 8, buf);
+        } else {
+            msgs.putInt(base + 8, (int) buf);
+        }
+    }
+
+    /**
+     * Read register into the remaining bytes of a direct buffer. The register write and the read are one i2c_transfer with a
+     * repeated start and nothing is copied or allocated. Position advances by the bytes read on success.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Register.
+     * @param buf Direct buffer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public static int i2cReadReg(final long i2c, final short addr, final short reg, final ByteBuffer buf) {
+        final var msgs = MSGS.get();
+        final var regOffset = 2 * I2cMsg.SIZEOF;
+        msgs.put(regOffset, (byte) reg);
+        final var len = buf.remaining();
+        putMsg(msgs, I2cMsg.SIZEOF, 0, addr, (short) 0, 1, address(msgs) + regOffset);
+        putMsg(msgs, I2cMsg.SIZEOF, 1, addr, I2C_M_RD, len, writeAddress(buf));
+        final var error = i2cTransferPtr(i2c, address(msgs), 2);
+        if (error == I2C_SUCCESS) {
+            buf.position(buf.position() + len);
+        }
+        return error;
+    }
+
+    /**
+     * Read the remaining bytes of a direct buffer. Position advances by the bytes read on success.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param buf Direct buffer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public static int i2cRead(final long i2c, final short addr, final ByteBuffer buf) {
+        final var msgs = MSGS.get();
+        final var len = buf.remaining();
+        putMsg(msgs, I2cMsg.SIZEOF, 0, addr, I2C_M_RD, len, writeAddress(buf));
+        final var error = i2cTransferPtr(i2c, address(msgs), 1);
+        if (error == I2C_SUCCESS) {
+            buf.position(buf.position() + len);
+        }
+        return error;
+    }
+
+    /**
+     * Write the remaining bytes of a direct buffer. Position advances by the bytes written on success.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param buf Direct buffer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public static int i2cWrite(final long i2c, final short addr, final ByteBuffer buf) {
+        final var msgs = MSGS.get();
+        final var len = buf.remaining();
+        putMsg(msgs, I2cMsg.SIZEOF, 0, addr, (short) 0, len, address(buf));
+        final var error = i2cTransferPtr(i2c, address(msgs), 1);
+        if (error == I2C_SUCCESS) {
+            buf.position(buf.position() + len);
+        }
+        return error;
+    }
+
     /**
      * Allocate an I2C handle.
      *
@@ -296,6 +397,18 @@ public class I2c implements AutoCloseable {
     @JniMethod(accessor = "i2c_transfer")
     public static native int i2cTransfer(long i2c, I2cMsg msgs, long count);
 
+    /**
+     * Transfer count number of struct i2c_msg I2C messages from an array in native memory.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param msgs Address of struct i2c_msg array.
+     * @param count Number of messages to transfer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    @JniMethod(accessor = "i2c_transfer")
+    public static native int i2cTransferPtr(long i2c, @JniArg(cast = "struct i2c_msg *") long msgs, @JniArg(cast = "size_t")
+            long count);
+
     /**
      * Close the I2C.
      *
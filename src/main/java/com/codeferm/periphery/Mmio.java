@@ -4,8 +4,12 @@
 package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
+import static com.codeferm.periphery.Common.address;
 import static com.codeferm.periphery.Common.jString;
 import static com.codeferm.periphery.Common.memMove;
+import static com.codeferm.periphery.Common.writeAddress;
+import java.nio.ByteBuffer;
+import org.fusesource.hawtjni.runtime.JniArg;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
@@ -208,6 +212,36 @@ public class Mmio implements AutoCloseable {
     @JniMethod(accessor = "mmio_read")
     public static final native int mmioRead(long mmio, long offset, byte[] buf, long len);
 
+    /**
+     * Read array of bytes from mapped physical memory into native memory.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset.
+     * @param buf Address of destination.
+     * @param len Amount to read.
+     * @return 0 on success, or a negative MMIO error code on failure.
+     */
+    @JniMethod(accessor = "mmio_read")
+    public static final native int mmioReadPtr(long mmio, long offset, @JniArg(cast = "uint8_t *") long buf, long len);
+
+    /**
+     * Read the remaining bytes of a direct buffer from mapped physical memory without copying through the Java heap. Position
+     * advances by the bytes read on success.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset.
+     * @param buf Direct buffer.
+     * @return 0 on success, or a negative MMIO error code on failure.
+     */
+    public static int mmioRead(final long mmio, final long offset, final ByteBuffer buf) {
+        final var len = buf.remaining();
+        final var ret = mmioReadPtr(mmio, offset, writeAddress(buf), len);
+        if (ret == MMIO_SUCCESS) {
+            buf.position(buf.position() + len);
+        }
+        return ret;
+    }
+
     /**
      * Write 32-bits to mapped physical memory, starting at the specified byte offset, relative to the base address the MMIO handle
      * was opened with.
@@ -257,6 +291,36 @@ public class Mmio implements AutoCloseable {
     @JniMethod(accessor = "mmio_write")
     public static final native int mmioWrite(long mmio, long offset, byte[] buf, long len);
 
+    /**
+     * Write array of bytes from native memory to mapped physical memory.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset.
+     * @param buf Address of source.
+     * @param len Amount to write.
+     * @return 0 on success, or a negative MMIO error code on failure.
+     */
+    @JniMethod(accessor = "mmio_write")
+    public static final native int mmioWritePtr(long mmio, long offset, @JniArg(cast = "const uint8_t *") long buf, long len);
+
+    /**
+     * Write the remaining bytes of a direct buffer to mapped physical memory without copying through the Java heap. Position
+     * advances by the bytes written on success.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset.
+     * @param buf Direct buffer.
+     * @return 0 on success, or a negative MMIO error code on failure.
+     */
+    public static int mmioWrite(final long mmio, final long offset, final ByteBuffer buf) {
+        final var len = buf.remaining();
+        final var ret = mmioWritePtr(mmio, offset, address(buf), len);
+        if (ret == MMIO_SUCCESS) {
+            buf.position(buf.position() + len);
+        }
+        return ret;
+    }
+
     /**
      * Unmap mapped physical memory.
      *
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import org.fusesource.hawtjni.runtime.JniArg;
+import org.fusesource.hawtjni.runtime.JniClass;
+import org.fusesource.hawtjni.runtime.JniMethod;
+import org.fusesource.hawtjni.runtime.Library;
+
+/**
+ * Drift free periodic timer using absolute clock_nanosleep on CLOCK_MONOTONIC (periodic.c).
+ *
+ * TimeUnit.sleep is relative, so every period adds the time spent working plus the wake up latency and a loop slowly drifts. Here
+ * each deadline is exactly one period after the previous one. When a wake up is more than a period late the missed deadlines are
+ * counted as overruns and skipped. Lateness of every wake up is recorded. A waiting thread cannot be interrupted, so keep periods
+ * short compared to how fast the loop must stop.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@JniClass
+public class PeriodicTimer implements AutoCloseable {
+
+    /**
+     * Statistics indexes from periodic.h.
+     */
+    private static final int TICKS = 0;
+    private static final int OVERRUNS = 1;
+    private static final int LAST_LATE = 2;
+    private static final int MAX_LATE = 3;
+    private static final int TOTAL_LATE = 4;
+    /**
+     * java-periphery library.
+     */
+    private static final Library LIBRARY = new Library("java-periphery", PeriodicTimer.class);
+    /**
+     * Timer handle.
+     */
+    final private long handle;
+    /**
+     * Period in nanoseconds.
+     */
+    private final long periodNs;
+    /**
+     * Statistics buffer.
+     */
+    private final long[] stats = new long[5];
+
+    /**
+     * Load library.
+     */
+    static {
+        LIBRARY.load();
+    }
+
+    /**
+     * Create timer. First deadline is one period from now.
+     *
+     * @param periodNs Period in nanoseconds.
+     */
+    public PeriodicTimer(final long periodNs) {
+        handle = periodicNew(periodNs);
+        if (handle == 0) {
+            throw new RuntimeException("Handle cannot be NULL");
+        }
+        this.periodNs = periodNs;
+    }
+
+    /**
+     * Free handle.
+     */
+    @Override
+    public void close() {
+        periodicFree(handle);
+    }
+
+    /**
+     * Handle accessor.
+     *
+     * @return Handle.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    public long getPeriodNs() {
+        return periodNs;
+    }
+
+    /**
+     * Restart so the next deadline is one period from now. Use after a pause to avoid counting it as overruns.
+     */
+    public void start() {
+        periodicStart(handle);
+    }
+
+    /**
+     * Sleep until next deadline.
+     *
+     * @return Deadlines missed since the last call, 0 if on time.
+     */
+    public long waitNext() {
+        return periodicWait(handle);
+    }
+
+    /**
+     * Number of waits.
+     *
+     * @return Ticks.
+     */
+    public long getTicks() {
+        periodicStats(handle, stats);
+        return stats[TICKS];
+    }
+
+    /**
+     * Total deadlines missed.
+     *
+     * @return Overruns.
+     */
+    public long getOverruns() {
+        periodicStats(handle, stats);
+        return stats[OVERRUNS];
+    }
+
+    /**
+     * Lateness of last wake up.
+     *
+     * @return Lateness in nanoseconds.
+     */
+    public long getLastLateNs() {
+        periodicStats(handle, stats);
+        return stats[LAST_LATE];
+    }
+
+    /**
+     * Maximum lateness.
+     *
+     * @return Lateness in nanoseconds.
+     */
+    public long getMaxLateNs() {
+        periodicStats(handle, stats);
+        return stats[MAX_LATE];
+    }
+
+    /**
+     * Average lateness.
+     *
+     * @return Lateness in nanoseconds.
+     */
+    public long getAverageLateNs() {
+        periodicStats(handle, stats);
+        if (stats[TICKS] == 0) {
+            return 0;
+        }
+        return stats[TOTAL_LATE] / stats[TICKS];
+    }
+
+    /**
+     * Reset statistics.
+     */
+    public void resetStats() {
+        periodicResetStats(handle);
+    }
+
+    /**
+     * Allocate timer handle.
+     *
+     * @param periodNs Period in nanoseconds.
+     * @return A valid handle on success, or NULL on failure.
+     */
+    @JniMethod(cast = "periodic_t *", accessor = "periodic_new")
+    public static final native long periodicNew(@JniArg(cast = "int64_t") long periodNs);
+
+    /**
+     * Set next deadline to one period from now.
+     *
+     * @param timer Valid pointer to an allocated timer handle structure.
+     */
+    @JniMethod(accessor = "periodic_start")
+    public static native void periodicStart(@JniArg(cast = "periodic_t *") long timer);
+
+    /**
+     * Sleep until next deadline.
+     *
+     * @param timer Valid pointer to an allocated timer handle structure.
+     * @return Number of deadlines missed since the last call.
+     */
+    @JniMethod(cast = "int64_t", accessor = "periodic_wait")
+    public static native long periodicWait(@JniArg(cast = "periodic_t *") long timer);
+
+    /**
+     * Copy statistics (ticks, overruns, last late, max late and total late).
+     *
+     * @param timer Valid pointer to an allocated timer handle structure.
+     * @param stats Five statistics.
+     */
+    @JniMethod(accessor = "periodic_stats")
+    public static native void periodicStats(@JniArg(cast = "periodic_t *") long timer, @JniArg(cast = "int64_t *", flags = {NO_IN})
+            long[] stats);
+
+    /**
+     * Reset statistics.
+     *
+     * @param timer Valid pointer to an allocated timer handle structure.
+     */
+    @JniMethod(accessor = "periodic_reset_stats")
+    public static native void periodicResetStats(@JniArg(cast = "periodic_t *") long timer);
+
+    /**
+     * Free timer handle.
+     *
+     * @param timer Valid pointer to an allocated timer handle structure.
+     */
+    @JniMethod(accessor = "periodic_free")
+    public static native void periodicFree(@JniArg(cast = "periodic_t *") long timer);
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static com.codeferm.periphery.Common.jString;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
+import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
+import org.fusesource.hawtjni.runtime.JniClass;
+import org.fusesource.hawtjni.runtime.JniField;
+import org.fusesource.hawtjni.runtime.JniMethod;
+import org.fusesource.hawtjni.runtime.Library;
+import static org.fusesource.hawtjni.runtime.MethodFlag.CONSTANT_INITIALIZER;
+
+/**
+ * Real-time helpers for the calling thread (realtime.c). The JVM cannot set a real-time scheduling policy, pin a thread to a CPU
+ * or lock memory, so GPIO poll threads and MMIO loops get preempted by housekeeping threads and page faults.
+ *
+ * Call setFifo and setAffinity from the thread to change, for example at the start of a ControlLoop.Task or a poll thread. CPUs
+ * isolated with the isolcpus kernel parameter are returned by getIsolatedCpus. Missing privileges throw a RuntimeException that
+ * says what is needed. Thread.setPriority has no effect under the default Linux scheduler, so drivers that own a timing thread
+ * create it with start instead.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@JniClass
+public class RealTime {
+
+    /**
+     * Isolated CPUs list.
+     */
+    public static final Path ISOLATED_PATH = Paths.get("/sys/devices/system/cpu/isolated");
+    /**
+     * java-periphery library.
+     */
+    private static final Library LIBRARY = new Library("java-periphery", RealTime.class);
+
+    /**
+     * Load library.
+     */
+    static {
+        LIBRARY.load();
+        init();
+    }
+
+    /**
+     * Load constants.
+     */
+    @JniMethod(flags = {CONSTANT_INITIALIZER})
+    private static native void init();
+    /**
+     * Scheduling policy constants.
+     */
+    @JniField(flags = {CONSTANT})
+    public static int SCHED_OTHER;
+    @JniField(flags = {CONSTANT})
+    public static int SCHED_FIFO;
+    @JniField(flags = {CONSTANT})
+    public static int SCHED_RR;
+    /**
+     * mlockall constants.
+     */
+    @JniField(flags = {CONSTANT})
+    public static int MCL_CURRENT;
+    @JniField(flags = {CONSTANT})
+    public static int MCL_FUTURE;
+    /**
+     * Error constants.
+     */
+    @JniField(flags = {CONSTANT})
+    public static int EPERM;
+    @JniField(flags = {CONSTANT})
+    public static int ENOMEM;
+    @JniField(flags = {CONSTANT})
+    public static int EINVAL;
+
+    /**
+     * Utility class.
+     */
+    private RealTime() {
+    }
+
+    /**
+     * Build readable error message.
+     *
+     * @param operation Operation that failed.
+     * @param ret Negative errno.
+     * @param hint What is needed when privileges are missing.
+     * @return Message.
+     */
+    private static String message(final String operation, final int ret, final String hint) {
+        final var str = new byte[128];
+        rtStrError(-ret, str, str.length);
+        if (!hint.isEmpty() && (-ret == EPERM || -ret == ENOMEM)) {
+            return String.format("%s failed: %s (%s)", operation, jString(str), hint);
+        }
+        return String.format("%s failed: %s", operation, jString(str));
+    }
+
+    /**
+     * Set scheduling policy and priority of calling thread.
+     *
+     * @param policy SCHED_OTHER, SCHED_FIFO or SCHED_RR.
+     * @param priority 1 to 99 for SCHED_FIFO and SCHED_RR or 0 for SCHED_OTHER.
+     */
+    public static void setScheduler(final int policy, final int priority) {
+        final var ret = rtSetScheduler(policy, priority);
+        if (ret < 0) {
+            throw new RuntimeException(message(String.format("Set policy %d priority %d", policy, priority), ret,
+                    "requires root, CAP_SYS_NICE or an rtprio limit in /etc/security/limits.conf"));
+        }
+    }
+
+    /**
+     * Set calling thread to SCHED_FIFO.
+     *
+     * @param priority 1 to 99.
+     */
+    public static void setFifo(final int priority) {
+        setScheduler(SCHED_FIFO, priority);
+    }
+
+    /**
+     * Scheduling policy of calling thread.
+     *
+     * @return Policy.
+     */
+    public static int getScheduler() {
+        final var ret = rtGetScheduler();
+        if (ret < 0) {
+            throw new RuntimeException(message("Get policy", ret, ""));
+        }
+        return ret;
+    }
+
+    /**
+     * Pin calling thread to CPUs.
+     *
+     * @param cpus CPUs.
+     */
+    public static void setAffinity(final int... cpus) {
+        final var ret = rtSetAffinity(cpus, cpus.length);
+        if (ret < 0) {
+            throw new RuntimeException(message("Set affinity", ret, "requires CAP_SYS_NICE"));
+        }
+    }
+
+    /**
+     * CPU calling thread is running on.
+     *
+     * @return CPU.
+     */
+    public static int getCpu() {
+        final var ret = rtGetCpu();
+        if (ret < 0) {
+            throw new RuntimeException(message("Get CPU", ret, ""));
+        }
+        return ret;
+    }
+
+    /**
+     * Start daemon thread that applies SCHED_FIFO and affinity to itself before running body. Start waits until the settings are
+     * applied and throws the RuntimeException of setFifo or setAffinity if they fail, in which case body never runs.
+     *
+     * @param name Thread name.
+     * @param body Thread body.
+     * @param fifoPriority SCHED_FIFO priority 1 to 99 or 0 to keep normal scheduling.
+     * @param cpus CPUs to pin thread to or none to keep affinity.
+     * @return Started thread.
+     */
+    public static Thread start(final String name, final Runnable body, final int fifoPriority, final int... cpus) {
+        final var ready = new CountDownLatch(1);
+        final var failure = new RuntimeException[1];
+        final var thread = new Thread(() -> {
+            try {
+                if (fifoPriority > 0) {
+                    setFifo(fifoPriority);
+                }
+                if (cpus.length > 0) {
+                    setAffinity(cpus);
+                }
+            } catch (RuntimeException e) {
+                failure[0] = e;
+            } finally {
+                ready.countDown();
+            }
+            if (failure[0] == null) {
+                body.run();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        var interrupted = false;
+        while (ready.getCount() > 0) {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return thread;
+    }
+
+    /**
+     * Lock current and future pages of the process in memory.
+     */
+    public static void lockMemory() {
+        final var ret = rtLockMemory(MCL_CURRENT | MCL_FUTURE);
+        if (ret < 0) {
+            throw new RuntimeException(message("Lock memory", ret,
+                    "requires root, CAP_IPC_LOCK or a large enough MEMLOCK limit in /etc/security/limits.conf"));
+        }
+    }
+
+    /**
+     * Unlock all pages of the process.
+     */
+    public static void unlockMemory() {
+        final var ret = rtUnlockMemory();
+        if (ret < 0) {
+            throw new RuntimeException(message("Unlock memory", ret, ""));
+        }
+    }
+
+    /**
+     * Parse kernel CPU list such as "2-3,6".
+     *
+     * @param list CPU list.
+     * @return CPUs.
+     */
+    public static int[] parseCpuList(final String list) {
+        final var trimmed = list.trim();
+        if (trimmed.isEmpty()) {
+            return new int[0];
+        }
+        var count = 0;
+        final var ranges = trimmed.split(",");
+        for (final var range : ranges) {
+            final var ends = range.split("-");
+            count += ends.length == 1 ? 1 : Integer.parseInt(ends[1]) - Integer.parseInt(ends[0]) + 1;
+        }
+        final var cpus = new int[count];
+        var i = 0;
+        for (final var range : ranges) {
+            final var ends = range.split("-");
+            final var first = Integer.parseInt(ends[0]);
+            final var last = ends.length == 1 ? first : Integer.parseInt(ends[1]);
+            for (var cpu = first; cpu <= last; cpu++) {
+                cpus[i++] = cpu;
+            }
+        }
+        return cpus;
+    }
+
+    /**
+     * CPUs isolated from the scheduler with isolcpus.
+     *
+     * @return CPUs or empty array if none are isolated.
+     */
+    public static int[] getIsolatedCpus() {
+        try {
+            return parseCpuList(Files.readString(ISOLATED_PATH));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Cannot read %s", ISOLATED_PATH), e);
+        }
+    }
+
+    /**
+     * Set scheduling policy and priority of calling thread.
+     *
+     * @param policy Policy.
+     * @param priority Priority.
+     * @return 0 on success or negative errno.
+     */
+    @JniMethod(accessor = "rt_set_scheduler")
+    public static native int rtSetScheduler(int policy, int priority);
+
+    /**
+     * Scheduling policy of calling thread.
+     *
+     * @return Policy or negative errno.
+     */
+    @JniMethod(accessor = "rt_get_scheduler")
+    public static native int rtGetScheduler();
+
+    /**
+     * Maximum priority of policy.
+     *
+     * @param policy Policy.
+     * @return Priority or negative errno.
+     */
+    @JniMethod(accessor = "rt_max_priority")
+    public static native int rtMaxPriority(int policy);
+
+    /**
+     * Pin calling thread to CPUs.
+     *
+     * @param cpus CPUs.
+     * @param count Number of CPUs.
+     * @return 0 on success or negative errno.
+     */
+    @JniMethod(accessor = "rt_set_affinity")
+    public static native int rtSetAffinity(@JniArg(cast = "const int *", flags = {NO_OUT}) int[] cpus, int count);
+
+    /**
+     * CPU calling thread is running on.
+     *
+     * @return CPU or negative errno.
+     */
+    @JniMethod(accessor = "rt_get_cpu")
+    public static native int rtGetCpu();
+
+    /**
+     * Lock pages in memory.
+     *
+     * @param flags MCL_CURRENT and/or MCL_FUTURE.
+     * @return 0 on success or negative errno.
+     */
+    @JniMethod(accessor = "rt_lock_memory")
+    public static native int rtLockMemory(int flags);
+
+    /**
+     * Unlock all pages.
+     *
+     * @return 0 on success or negative errno.
+     */
+    @JniMethod(accessor = "rt_unlock_memory")
+    public static native int rtUnlockMemory();
+
+    /**
+     * Error message of errno.
+     *
+     * @param errnum Error number.
+     * @param str Message buffer.
+     * @param len Buffer length.
+     */
+    @JniMethod(accessor = "rt_strerror")
+    public static native void rtStrError(int errnum, @JniArg(cast = "char *", flags = {NO_IN}) byte[] str, @JniArg(cast = "size_t")
+            long len);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single producer single consumer ring of fixed size sample frames.
+ *
+ * An acquisition thread puts one frame (for example one sample per channel in a scan list) and a consumer thread takes frames in
+ * bulk. Neither side locks or allocates. When the ring is full the new frame is dropped and counted as an overrun, so the consumer
+ * never sees a frame that is being overwritten and the overrun count says exactly how many frames were lost.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SampleRing {
+
+    /**
+     * Samples.
+     */
+    private final int[] buffer;
+    /**
+     * Samples per frame.
+     */
+    private final int frameSize;
+    /**
+     * Capacity in frames.
+     */
+    private final int capacity;
+    /**
+     * Capacity - 1 to wrap frame indexes.
+     */
+    private final int mask;
+    /**
+     * Frames written. Only the producer writes it.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Frames read. Only the consumer writes it.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Frames dropped because the ring was full.
+     */
+    private volatile long overruns;
+
+    /**
+     * Create ring.
+     *
+     * @param capacity Capacity in frames, a power of 2.
+     * @param frameSize Samples per frame.
+     */
+    public SampleRing(final int capacity, final int frameSize) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new RuntimeException("Capacity must be a power of 2");
+        }
+        if (frameSize < 1) {
+            throw new RuntimeException("Frame size must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.frameSize = frameSize;
+        mask = capacity - 1;
+        buffer = new int[capacity * frameSize];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Total frames put since created.
+     *
+     * @return Frames.
+     */
+    public long getWritten() {
+        return head.get();
+    }
+
+    /**
+     * Frames waiting to be taken.
+     *
+     * @return Frames.
+     */
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Put frame. Producer thread only.
+     *
+     * @param frame Samples.
+     * @param offset Offset of frame in samples.
+     * @return False if the ring was full and the frame was dropped.
+     */
+    public boolean put(final int[] frame, final int offset) {
+        final var h = head.get();
+        if (h - tail.get() == capacity) {
+            overruns++;
+            return false;
+        }
+        System.arraycopy(frame, offset, buffer, (int) (h & mask) * frameSize, frameSize);
+        // Publish frame after it is copied
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Take frames. Consumer thread only.
+     *
+     * @param frames Destination with room for maxFrames frames.
+     * @param offset Offset in destination.
+     * @param maxFrames Maximum frames to take.
+     * @return Frames taken.
+     */
+    public int take(final int[] frames, final int offset, final int maxFrames) {
+        final var t = tail.get();
+        final var count = (int) Math.min(head.get() - t, maxFrames);
+        // Copy up to the end of the buffer then wrap
+        final var first = (int) (t & mask);
+        final var part = Math.min(count, capacity - first);
+        System.arraycopy(buffer, first * frameSize, frames, offset, part * frameSize);
+        System.arraycopy(buffer, 0, frames, offset + part * frameSize, (count - part) * frameSize);
+        // Release slots after they are copied
+        tail.lazySet(t + count);
+        return count;
+    }
+}
@@ -4,9 +4,19 @@
 package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
+import static com.codeferm.periphery.Common.address;
 import static com.codeferm.periphery.Common.jString;
 import static com.codeferm.periphery.Common.memMove;
+import static com.codeferm.periphery.Common.writeAddress;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -27,6 +37,14 @@ public class Spi implements AutoCloseable {
      * Function was successful.
      */
     public static final int SPI_SUCCESS = 0;
+    /**
+     * spidev maximum bytes per ioctl.
+     */
+    public static final Path BUFSIZ_PATH = Paths.get("/sys/module/spidev/parameters/bufsiz");
+    /**
+     * spidev bufsiz default.
+     */
+    public static final int DEFAULT_BUFSIZ = 4096;
     /**
      * java-periphery library.
      */
@@ -44,6 +62,17 @@ public class Spi implements AutoCloseable {
         init();
     }
 
+    /**
+     * spidev bufsiz read on first use.
+     */
+    private static final class BufSiz {
+
+        /**
+         * Maximum bytes per ioctl.
+         */
+        private static final int VALUE = readBufSiz(BUFSIZ_PATH);
+    }
+
     /**
      * Load constants.
      */
@@ -216,6 +245,186 @@ public class Spi implements AutoCloseable {
     @JniMethod(accessor = "spi_transfer")
     public static native int spiTransfer(long spi, byte[] txBuf, byte[] rxBuf, long len);
 
+    /**
+     * Shift out len word counts from native memory, while shifting in len word counts to native memory.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Address of transmit buffer.
+     * @param rxBuf Address of receive buffer or NULL to discard.
+     * @param len Word count.
+     * @return 0 on success, or a negative SPI error code on failure.
+     */
+    @JniMethod(accessor = "spi_transfer")
+    public static native int spiTransferPtr(long spi, @JniArg(cast = "const uint8_t *") long txBuf, @JniArg(cast = "uint8_t *")
+            long rxBuf, @JniArg(cast = "size_t") long len);
+
+    /**
+     * Transfer the remaining bytes of a direct buffer without copying. Both positions advance by the bytes transferred on success.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Direct transmit buffer.
+     * @param rxBuf Direct receive buffer, not read only, with at least as many bytes remaining or null to discard.
+     * @return 0 on success, or a negative SPI error code on failure.
+     */
+    public static int spiTransfer(final long spi, final ByteBuffer txBuf, final ByteBuffer rxBuf) {
+        final var len = txBuf.remaining();
+        if (rxBuf != null && rxBuf.remaining() < len) {
+            throw new RuntimeException(String.format("Receive buffer has %d bytes remaining, %d required", rxBuf.remaining(), len));
+        }
+        final var ret = spiTransferPtr(spi, address(txBuf), rxBuf == null ? 0 : writeAddress(rxBuf), len);
+        if (ret == SPI_SUCCESS) {
+            txBuf.position(txBuf.position() + len);
+            if (rxBuf != null) {
+                rxBuf.position(rxBuf.position() + len);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Read spidev bufsiz module parameter.
+     *
+     * @param path Parameter path.
+     * @return Maximum bytes per ioctl or DEFAULT_BUFSIZ if it cannot be read.
+     */
+    static int readBufSiz(final Path path) {
+        try {
+            final var value = Integer.parseInt(Files.readString(path).trim());
+            return value > 0 ? value : DEFAULT_BUFSIZ;
+        } catch (IOException | NumberFormatException e) {
+            return DEFAULT_BUFSIZ;
+        }
+    }
+
+    /**
+     * spidev maximum bytes per ioctl, read once from BUFSIZ_PATH.
+     *
+     * @return Bytes.
+     */
+    public static int getBufSiz() {
+        return BufSiz.VALUE;
+    }
+
+    /**
+     * Transfer any number of bytes. Transfers larger than the spidev bufsiz are split into bufsiz chunks, one ioctl each, with chip
+     * select held from the first chunk to the last. The buffers are passed to native code once, so a large frame costs one JNI call
+     * and the only gaps on the bus are the syscalls between chunks.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Transmit buffer of at least len bytes or null to send zeros.
+     * @param rxBuf Receive buffer of at least len bytes or null to discard.
+     * @param len Number of bytes.
+     * @return Number of bytes transferred on success, or a negative errno on failure.
+     */
+    public static int spiTransferChunked(final long spi, final byte[] txBuf, final byte[] rxBuf, final int len) {
+        checkLength(txBuf, rxBuf, len);
+        return spiTransferChunked0(spi, txBuf, rxBuf, len, getBufSiz());
+    }
+
+    /**
+     * Check len fits in both buffers, so native code never reads or writes past the arrays.
+     *
+     * @param txBuf Transmit buffer or null.
+     * @param rxBuf Receive buffer or null.
+     * @param len Number of bytes.
+     */
+    static void checkLength(final byte[] txBuf, final byte[] rxBuf, final int len) {
+        if (len < 0) {
+            throw new RuntimeException(String.format("Transfer length %d is negative", len));
+        }
+        if ((txBuf != null && len > txBuf.length) || (rxBuf != null && len > rxBuf.length)) {
+            throw new RuntimeException(String.format("Transfer of %d bytes is larger than transmit or receive buffer", len));
+        }
+    }
+
+    /**
+     * Transfer the remaining bytes of a direct buffer in bufsiz chunks without copying. Both positions advance by the bytes
+     * transferred on success.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Direct transmit buffer.
+     * @param rxBuf Direct receive buffer, not read only, with at least as many bytes remaining or null to discard.
+     * @return Number of bytes transferred on success, or a negative errno on failure.
+     */
+    public static int spiTransferChunked(final long spi, final ByteBuffer txBuf, final ByteBuffer rxBuf) {
+        final var len = txBuf.remaining();
+        if (rxBuf != null && rxBuf.remaining() < len) {
+            throw new RuntimeException(String.format("Receive buffer has %d bytes remaining, %d required", rxBuf.remaining(), len));
+        }
+        final var ret = spiTransferChunkedPtr(spi, address(txBuf), rxBuf == null ? 0 : writeAddress(rxBuf), len, getBufSiz());
+        if (ret >= 0) {
+            txBuf.position(txBuf.position() + len);
+            if (rxBuf != null) {
+                rxBuf.position(rxBuf.position() + len);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Transfer len bytes as one ioctl per chunk with chip select held between chunks without checking len. Use
+     * spiTransferChunked.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Transmit buffer or null to send zeros.
+     * @param rxBuf Receive buffer or null to discard.
+     * @param len Number of bytes.
+     * @param chunk Maximum bytes per ioctl.
+     * @return Number of bytes transferred on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_transfer_chunked")
+    static native int spiTransferChunked0(long spi, @JniArg(cast = "const uint8_t *", flags = {NO_OUT}) byte[] txBuf,
+            @JniArg(cast = "uint8_t *", flags = {NO_IN}) byte[] rxBuf, @JniArg(cast = "size_t") long len, @JniArg(cast = "size_t")
+            long chunk);
+
+    /**
+     * Transfer len bytes of native memory as one ioctl per chunk with chip select held between chunks.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Address of transmit buffer.
+     * @param rxBuf Address of receive buffer or NULL to discard.
+     * @param len Number of bytes.
+     * @param chunk Maximum bytes per ioctl.
+     * @return Number of bytes transferred on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_transfer_chunked")
+    public static native int spiTransferChunkedPtr(long spi, @JniArg(cast = "const uint8_t *") long txBuf,
+            @JniArg(cast = "uint8_t *") long rxBuf, @JniArg(cast = "size_t") long len, @JniArg(cast = "size_t") long chunk);
+
+    /**
+     * Submit several transfer segments as one SPI_IOC_MESSAGE(count) ioctl. Segment data is packed back to back in txBuf and rxBuf
+     * and chip select stays asserted between segments unless cs_change is set. The total length must not exceed getBufSiz or the
+     * kernel fails the ioctl with EMSGSIZE. See SpiBatch for building segments.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Transmit buffer or null to send zeros.
+     * @param rxBuf Receive buffer or null to discard.
+     * @param segments Length, speed in Hz, delay in µs, cs_change and bits per word of each segment. 0 speed and bits use the
+     * device settings.
+     * @param count Number of segments.
+     * @return Number of bytes transferred on success, or a negative errno on failure.
+     */
+    public static int spiTransferBatch(final long spi, final byte[] txBuf, final byte[] rxBuf, final int[] segments,
+            final int count) {
+        SpiBatch.check(txBuf, rxBuf, segments, count);
+        return spiTransferBatch0(spi, txBuf, rxBuf, segments, count);
+    }
+
+    /**
+     * Submit segments without checking them. Use spiTransferBatch.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Transmit buffer or null to send zeros.
+     * @param rxBuf Receive buffer or null to discard.
+     * @param segments Segment fields.
+     * @param count Number of segments.
+     * @return Number of bytes transferred on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_transfer_batch")
+    static native int spiTransferBatch0(long spi, @JniArg(cast = "const uint8_t *", flags = {NO_OUT}) byte[] txBuf,
+            @JniArg(cast = "uint8_t *", flags = {NO_IN}) byte[] rxBuf, @JniArg(cast = "const int32_t *", flags = {NO_OUT})
+            int[] segments, int count);
+
     /**
      * Close the spidev device.
      *
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.Arrays;
+
+/**
+ * Builder for Spi.spiTransferBatch. Segments are appended to preallocated transmit, receive and segment buffers and submitted as
+ * one SPI_IOC_MESSAGE ioctl, so a command phase followed by a read phase is one syscall and one JNI call with chip select held
+ * between them. The batch can be cleared and reused without allocating. spidev limits the total bytes of one ioctl to its bufsiz
+ * module parameter (Spi.getBufSiz, 4096 by default), so transfer rejects a larger batch instead of letting the kernel fail it.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SpiBatch {
+
+    /**
+     * Segment fields from spibatch.h.
+     */
+    public static final int LEN = 0;
+    public static final int SPEED = 1;
+    public static final int DELAY = 2;
+    public static final int CS_CHANGE = 3;
+    public static final int BITS = 4;
+    public static final int FIELDS = 5;
+    /**
+     * Maximum segments in one ioctl.
+     */
+    public static final int MAX_SEGMENTS = 256;
+    /**
+     * Transmit buffer.
+     */
+    private final byte[] tx;
+    /**
+     * Receive buffer.
+     */
+    private final byte[] rx;
+    /**
+     * Segment fields.
+     */
+    private final int[] segments;
+    /**
+     * Number of segments.
+     */
+    private int count;
+    /**
+     * Total bytes of all segments.
+     */
+    private int length;
+
+    /**
+     * Create batch.
+     *
+     * @param capacity Maximum total bytes of all segments, should not exceed Spi.getBufSiz.
+     * @param maxSegments Maximum segments up to MAX_SEGMENTS.
+     */
+    public SpiBatch(final int capacity, final int maxSegments) {
+        if (maxSegments < 1 || maxSegments > MAX_SEGMENTS) {
+            throw new RuntimeException(String.format("Segments must be 1 to %d", MAX_SEGMENTS));
+        }
+        tx = new byte[capacity];
+        rx = new byte[capacity];
+        segments = new int[maxSegments * FIELDS];
+    }
+
+    /**
+     * Received bytes. Each segment's data starts at the offset returned when it was added.
+     *
+     * @return Receive buffer.
+     */
+    public byte[] getRx() {
+        return rx;
+    }
+
+    /**
+     * Transmit buffer.
+     *
+     * @return Transmit buffer.
+     */
+    public byte[] getTx() {
+        return tx;
+    }
+
+    /**
+     * Segment fields for Spi.spiTransferBatch.
+     *
+     * @return Segments.
+     */
+    public int[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * Number of segments.
+     *
+     * @return Segments.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Total bytes of all segments.
+     *
+     * @return Bytes.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Bytes that can still be added.
+     *
+     * @return Bytes.
+     */
+    public int remaining() {
+        return tx.length - length;
+    }
+
+    /**
+     * True if another segment of len bytes fits.
+     *
+     * @param len Segment length.
+     * @return True if segment fits.
+     */
+    public boolean fits(final int len) {
+        return count * FIELDS < segments.length && len <= remaining();
+    }
+
+    /**
+     * Remove all segments.
+     */
+    public void clear() {
+        count = 0;
+        length = 0;
+    }
+
+    /**
+     * Add segment.
+     *
+     * @param data Bytes to send or null to send zeros.
+     * @param offset Offset in data.
+     * @param len Number of bytes.
+     * @param speedHz Speed or 0 for device speed.
+     * @param delayUs Delay after segment in µs.
+     * @param csChange Deassert chip select after segment.
+     * @param bitsPerWord Bits per word or 0 for device setting.
+     * @return Offset of segment in receive buffer.
+     */
+    public int add(final byte[] data, final int offset, final int len, final int speedHz, final int delayUs,
+            final boolean csChange, final int bitsPerWord) {
+        if (len < 0) {
+            throw new RuntimeException(String.format("Segment length %d is negative", len));
+        }
+        if (!fits(len)) {
+            throw new RuntimeException(String.format("Batch full at segment %d", count));
+        }
+        if (data == null) {
+            Arrays.fill(tx, length, length + len, (byte) 0);
+        } else {
+            System.arraycopy(data, offset, tx, length, len);
+        }
+        final var seg = count * FIELDS;
+        segments[seg + LEN] = len;
+        segments[seg + SPEED] = speedHz;
+        segments[seg + DELAY] = delayUs;
+        segments[seg + CS_CHANGE] = csChange ? 1 : 0;
+        segments[seg + BITS] = bitsPerWord;
+        final var rxOffset = length;
+        length += len;
+        count++;
+        return rxOffset;
+    }
+
+    /**
+     * Add segment using device speed and bits per word.
+     *
+     * @param data Bytes to send.
+     * @param offset Offset in data.
+     * @param len Number of bytes.
+     * @return Offset of segment in receive buffer.
+     */
+    public int add(final byte[] data, final int offset, final int len) {
+        return add(data, offset, len, 0, 0, false, 0);
+    }
+
+    /**
+     * Add read segment that sends zeros.
+     *
+     * @param len Number of bytes.
+     * @return Offset of segment in receive buffer.
+     */
+    public int read(final int len) {
+        return add(null, 0, len, 0, 0, false, 0);
+    }
+
+    /**
+     * Check segments are in bounds, so native code never reads or writes past the arrays.
+     *
+     * @param txBuf Transmit buffer or null.
+     * @param rxBuf Receive buffer or null.
+     * @param segments Segment fields.
+     * @param count Number of segments.
+     */
+    static void check(final byte[] txBuf, final byte[] rxBuf, final int[] segments, final int count) {
+        if (count < 1 || count > MAX_SEGMENTS) {
+            throw new RuntimeException(String.format("Segment count %d must be 1 to %d", count, MAX_SEGMENTS));
+        }
+        if (count * FIELDS > segments.length) {
+            throw new RuntimeException(String.format("%d segments need %d fields, array has %d", count, count * FIELDS,
+                    segments.length));
+        }
+        var total = 0L;
+        for (var i = 0; i < count; i++) {
+            final var len = segments[i * FIELDS + LEN];
+            if (len < 0) {
+                throw new RuntimeException(String.format("Segment %d length %d is negative", i, len));
+            }
+            total += len;
+        }
+        if ((txBuf != null && total > txBuf.length) || (rxBuf != null && total > rxBuf.length)) {
+            throw new RuntimeException(String.format("Segments total %d bytes, larger than transmit or receive buffer", total));
+        }
+    }
+
+    /**
+     * Submit all segments as one ioctl. The batch is kept, so it can be sent again or cleared.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @return Number of bytes transferred.
+     */
+    public int transfer(final long spi) {
+        if (count == 0) {
+            return 0;
+        }
+        if (length > Spi.getBufSiz()) {
+            throw new RuntimeException(String.format("Batch of %d bytes is larger than spidev bufsiz %d", length, Spi.getBufSiz()));
+        }
+        final var ret = Spi.spiTransferBatch(spi, tx, rx, segments, count);
+        if (ret < 0) {
+            throw new RuntimeException(String.format("SPI_IOC_MESSAGE(%d) failed with errno %d", count, -ret));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static com.codeferm.periphery.Spi.SPI_SUCCESS;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Arbiter for several devices sharing one SPI controller and one Spi handle.
+ *
+ * Each Device has its own mode, speed, priority and optional GPIO chip select. Before a transaction the bus only calls spiSetMode
+ * and spiSetMaxSpeed when the device's settings differ from the cached settings of the last device, so back to back transactions
+ * to the same device cost no extra ioctls. GPIO chip selects are asserted for the whole transaction. Open the handle with the
+ * SPI_NO_CS (0x40) extra flag when every device uses a GPIO chip select.
+ *
+ * Threads waiting for the bus are granted it highest priority first and in arrival order for equal priorities. A transaction is
+ * never preempted, so keep long transfers (frame buffers, flash pages) at low priority and short latency sensitive ones (ADC scans)
+ * at high priority.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SpiBus {
+
+    /**
+     * Device on the bus.
+     */
+    public static final class Device {
+
+        /**
+         * Device name.
+         */
+        private final String name;
+        /**
+         * SPI mode.
+         */
+        private final int mode;
+        /**
+         * Speed in Hz.
+         */
+        private final int speedHz;
+        /**
+         * Priority, higher is granted first.
+         */
+        private final int priority;
+        /**
+         * GPIO chip select handle or 0 for the controller chip select.
+         */
+        private final long cs;
+        /**
+         * Chip select is active low.
+         */
+        private final boolean activeLow;
+
+        /**
+         * Create device using the controller chip select.
+         *
+         * @param name Device name.
+         * @param mode SPI mode 0 to 3.
+         * @param speedHz Speed in Hz.
+         * @param priority Priority, higher is granted first.
+         */
+        public Device(final String name, final int mode, final int speedHz, final int priority) {
+            this(name, mode, speedHz, priority, 0, true);
+        }
+
+        /**
+         * Create device.
+         *
+         * @param name Device name.
+         * @param mode SPI mode 0 to 3.
+         * @param speedHz Speed in Hz.
+         * @param priority Priority, higher is granted first.
+         * @param cs GPIO output handle used as chip select or 0 for the controller chip select.
+         * @param activeLow Chip select is active low.
+         */
+        public Device(final String name, final int mode, final int speedHz, final int priority, final long cs,
+                final boolean activeLow) {
+            this.name = name;
+            this.mode = mode;
+            this.speedHz = speedHz;
+            this.priority = priority;
+            this.cs = cs;
+            this.activeLow = activeLow;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public int getSpeedHz() {
+            return speedHz;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getCs() {
+            return cs;
+        }
+
+        public boolean isActiveLow() {
+            return activeLow;
+        }
+    }
+
+    /**
+     * Work done while a device owns the bus.
+     */
+    @FunctionalInterface
+    public interface Transaction {
+
+        /**
+         * Run transaction.
+         *
+         * @param spi SPI handle.
+         */
+        void run(long spi);
+    }
+
+    /**
+     * Settings and chip select access.
+     */
+    interface Port {
+
+        /**
+         * Set SPI mode.
+         *
+         * @param mode Mode.
+         * @return 0 on success or negative error.
+         */
+        int setMode(int mode);
+
+        /**
+         * Set SPI speed.
+         *
+         * @param speedHz Speed in Hz.
+         * @return 0 on success or negative error.
+         */
+        int setMaxSpeed(int speedHz);
+
+        /**
+         * Drive GPIO chip select.
+         *
+         * @param cs GPIO handle.
+         * @param value Output value.
+         * @return 0 on success or negative error.
+         */
+        int writeCs(long cs, boolean value);
+    }
+
+    /**
+     * Thread waiting for the bus.
+     */
+    private static final class Waiter implements Comparable<Waiter> {
+
+        /**
+         * Priority.
+         */
+        private final int priority;
+        /**
+         * Arrival order.
+         */
+        private final long sequence;
+        /**
+         * Signalled when the waiter may own the bus.
+         */
+        private final Condition turn;
+
+        /**
+         * Create waiter.
+         *
+         * @param priority Priority.
+         * @param sequence Arrival order.
+         * @param turn Signalled when the waiter may own the bus.
+         */
+        private Waiter(final int priority, final long sequence, final Condition turn) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.turn = turn;
+        }
+
+        @Override
+        public int compareTo(final Waiter other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * SPI handle.
+     */
+    private final long spi;
+    /**
+     * Settings and chip select access.
+     */
+    private final Port port;
+    /**
+     * Protects the fields below.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Threads waiting for the bus.
+     */
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    /**
+     * Bus owned by a transaction.
+     */
+    private boolean busy;
+    /**
+     * Arrival counter.
+     */
+    private long sequence;
+    /**
+     * Mode set on the handle or -1 if unknown.
+     */
+    private int mode;
+    /**
+     * Speed set on the handle or -1 if unknown.
+     */
+    private int speedHz;
+    /**
+     * Mode and speed set calls made.
+     */
+    private volatile long setCalls;
+    /**
+     * Mode and speed set calls skipped because the setting was cached.
+     */
+    private volatile long setSkips;
+
+    /**
+     * Create bus on SPI handle. The handle must only be used through this bus.
+     *
+     * @param spi SPI handle.
+     */
+    public SpiBus(final long spi) {
+        this(spi, new Port() {
+            @Override
+            public int setMode(final int mode) {
+                return Spi.spiSetMode(spi, mode);
+            }
+
+            @Override
+            public int setMaxSpeed(final int speedHz) {
+                return Spi.spiSetMaxSpeed(spi, speedHz);
+            }
+
+            @Override
+            public int writeCs(final long cs, final boolean value) {
+                return Gpio.gpioWrite(cs, value);
+            }
+        });
+    }
+
+    /**
+     * Create bus with port.
+     *
+     * @param spi SPI handle.
+     * @param port Settings and chip select access.
+     */
+    SpiBus(final long spi, final Port port) {
+        this.spi = spi;
+        this.port = port;
+        mode = -1;
+        speedHz = -1;
+    }
+
+    public long getSetCalls() {
+        return setCalls;
+    }
+
+    public long getSetSkips() {
+        return setSkips;
+    }
+
+    /**
+     * Threads waiting for the bus.
+     *
+     * @return Waiting threads.
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the bus is granted to this thread.
+     *
+     * @param priority Priority.
+     */
+    private void acquire(final int priority) {
+        lock.lock();
+        try {
+            if (!busy && waiters.isEmpty()) {
+                busy = true;
+                return;
+            }
+            final var waiter = new Waiter(priority, sequence++, lock.newCondition());
+            waiters.add(waiter);
+            while (busy || waiters.peek() != waiter) {
+                waiter.turn.awaitUninterruptibly();
+            }
+            waiters.poll();
+            busy = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the bus to the highest priority waiter.
+     */
+    private void release() {
+        lock.lock();
+        try {
+            busy = false;
+            final var next = waiters.peek();
+            if (next != null) {
+                next.turn.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply device settings that differ from the cached settings. Called while owning the bus.
+     *
+     * @param device Device.
+     */
+    private void configure(final Device device) {
+        if (device.mode != mode) {
+            final var ret = port.setMode(device.mode);
+            if (ret != SPI_SUCCESS) {
+                mode = -1;
+                throw new RuntimeException(String.format("Set mode %d for %s failed with error %d", device.mode, device.name, ret));
+            }
+            mode = device.mode;
+            setCalls++;
+        } else {
+            setSkips++;
+        }
+        if (device.speedHz != speedHz) {
+            final var ret = port.setMaxSpeed(device.speedHz);
+            if (ret != SPI_SUCCESS) {
+                speedHz = -1;
+                throw new RuntimeException(String.format("Set speed %d for %s failed with error %d", device.speedHz, device.name,
+                        ret));
+            }
+            speedHz = device.speedHz;
+            setCalls++;
+        } else {
+            setSkips++;
+        }
+    }
+
+    /**
+     * Drive device chip select.
+     *
+     * @param device Device.
+     * @param active Assert chip select.
+     */
+    private void select(final Device device, final boolean active) {
+        if (device.cs != 0) {
+            final var ret = port.writeCs(device.cs, active != device.activeLow);
+            if (ret != 0) {
+                throw new RuntimeException(String.format("Chip select of %s failed with error %d", device.name, ret));
+            }
+        }
+    }
+
+    /**
+     * Run transaction with the bus configured for device and its chip select asserted.
+     *
+     * @param device Device.
+     * @param transaction Work to do.
+     */
+    public void transaction(final Device device, final Transaction transaction) {
+        acquire(device.priority);
+        try {
+            configure(device);
+            select(device, true);
+            try {
+                transaction.run(spi);
+            } finally {
+                select(device, false);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Transfer to device.
+     *
+     * @param device Device.
+     * @param txBuf Bytes to send.
+     * @param rxBuf Bytes received.
+     * @param len Length.
+     */
+    public void transfer(final Device device, final byte[] txBuf, final byte[] rxBuf, final int len) {
+        transaction(device, handle -> {
+            final var ret = Spi.spiTransfer(handle, txBuf, rxBuf, len);
+            if (ret != SPI_SUCCESS) {
+                throw new RuntimeException(String.format("Transfer to %s failed with error %d", device.name, ret));
+            }
+        });
+    }
+
+    /**
+     * Transfer batch to device as one ioctl.
+     *
+     * @param device Device.
+     * @param batch Batch.
+     * @return Number of bytes transferred.
+     */
+    public int transfer(final Device device, final SpiBatch batch) {
+        final var ret = new int[1];
+        transaction(device, handle -> ret[0] = batch.transfer(handle));
+        return ret[0];
+    }
+}
@@ -4,10 +4,10 @@
 package com.codeferm.periphery.demo;
 
 import com.codeferm.periphery.I2c;
+import com.codeferm.periphery.PeriodicTimer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -258,12 +258,12 @@ public class Adxl345 implements Callable<Integer> {
      * Main program.
      *
      * @return Exit code.
-     * @throws InterruptedException Possible exception.
      */
     @Override
-    public Integer call() throws InterruptedException {
+    public Integer call() {
         var exitCode = 0;
-        try (final var i2c = new I2c(device)) {
+        // Sample every 500 ms
+        try (final var i2c = new I2c(device); final var timer = new PeriodicTimer(500000000)) {
             // Check device ID
             final var buf = new short[1];
             I2c.i2cReadReg(i2c.getHandle(), address, (short) 0x00, buf);
@@ -279,12 +279,15 @@ public class Adxl345 implements Callable<Integer> {
                 final var dataRate = getDataRate(i2c.getHandle(), address);
                 final var scalingFactor = getScalingFactor(range, getFullResolution(i2c.getHandle(), address));
                 logger.info(String.format("Range = %d, data rate = %d, scaling factor = %f", range, dataRate, scalingFactor));
+                timer.start();
                 for (var i = 0; i < 100; i++) {
                     final var data = read(i2c.getHandle(), address);
                     logger.info(String.format("x: %+5.2f, y: %+5.2f, z: %+5.2f", scaling(data.get("x"), scalingFactor), scaling(
                             data.get("y"), scalingFactor), scaling(data.get("z"), scalingFactor)));
-                    TimeUnit.MILLISECONDS.sleep(500);
+                    timer.waitNext();
                 }
+                logger.info(String.format("Overruns = %d, average late = %d ns, max late = %d ns", timer.getOverruns(), timer.
+                        getAverageLateNs(), timer.getMaxLateNs()));
             } else {
                 logger.error("Not ADXL345?");
             }
@@ -3,9 +3,9 @@
  */
 package com.codeferm.periphery.demo;
 
+import com.codeferm.periphery.PeriodicTimer;
 import com.codeferm.periphery.Pwm;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -41,42 +41,63 @@ public class LedFlash implements Callable<Integer> {
      * Gradually increase and decrease LED brightness.
      *
      * @param handle Valid pointer to an allocated LED handle structure.
+     * @param timer Timer with step period.
      * @param period Set the period in seconds of the PWM.
      * @param startDc Starting duty cycle in nanoseconds.
      * @param dcInc Duty cycle increment in nanoseconds.
      * @param count Number of times to loop.
-     * @param sleepTime Sleep time in microseconds.
-     * @throws InterruptedException Possible exception.
      */
-    public void changeBrightness(final long handle, final int period, final int startDc, final int dcInc, final int count,
-            final int sleepTime) throws InterruptedException {
+    public void changeBrightness(final long handle, final PeriodicTimer timer, final int period, final int startDc,
+            final int dcInc, final int count) {
         Pwm.pwmSetPeriodNs(handle, period);
         var dutyCycle = startDc;
         var i = 0;
         while (i < count) {
             Pwm.pwmSetDutyCycleNs(handle, dutyCycle);
-            TimeUnit.MICROSECONDS.sleep(sleepTime);
+            timer.waitNext();
             dutyCycle += dcInc;
             i += 1;
         }
     }
 
+    /**
+     * Gradually increase and decrease LED brightness stepping every sleepTime µs. The steps are paced by a PeriodicTimer, so they
+     * do not drift like relative sleeps.
+     *
+     * @param handle Valid pointer to an allocated LED handle structure.
+     * @param period Set the period in seconds of the PWM.
+     * @param startDc Starting duty cycle in nanoseconds.
+     * @param dcInc Duty cycle increment in nanoseconds.
+     * @param count Number of times to loop.
+     * @param sleepTime Sleep time in microseconds.
+     * @throws InterruptedException Possible exception.
+     */
+    public void changeBrightness(final long handle, final int period, final int startDc, final int dcInc, final int count,
+            final int sleepTime) throws InterruptedException {
+        try (final var timer = new PeriodicTimer(sleepTime * 1000L)) {
+            changeBrightness(handle, timer, period, startDc, dcInc, count);
+        }
+    }
+
     /**
      * Flash LED.
      *
      * @return Exit code.
-     * @throws InterruptedException Possible exception.
      */
     @Override
-    public Integer call() throws InterruptedException {
+    public Integer call() {
         var exitCode = 0;
-        try (final var pwm = new Pwm(chip, channel)) {
+        // 5 ms steps
+        try (final var pwm = new Pwm(chip, channel); final var timer = new PeriodicTimer(5000000)) {
             logger.info("Flash LED");
             Pwm.pwmEnable(pwm.getHandle());
+            timer.start();
             for (var i = 0; i < 10; i++) {
-                changeBrightness(pwm.getHandle(), 1000, 0, 10, 100, 5000);
-                changeBrightness(pwm.getHandle(), 1000, 1000, -10, 100, 5000);
+                changeBrightness(pwm.getHandle(), timer, 1000, 0, 10, 100);
+                changeBrightness(pwm.getHandle(), timer, 1000, 1000, -10, 100);
             }
+            logger.info(String.format("Overruns = %d, average late = %d ns, max late = %d ns", timer.getOverruns(), timer.
+                    getAverageLateNs(), timer.getMaxLateNs()));
             Pwm.pwmSetDutyCycleNs(pwm.getHandle(), 0);
             Pwm.pwmSetPeriod(pwm.getHandle(), 0);
             Pwm.pwmDisable(pwm.getHandle());
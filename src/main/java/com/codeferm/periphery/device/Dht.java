@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Gpio;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_IN;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_OUT_LOW;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_BOTH;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_NONE;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import static com.codeferm.periphery.Gpio.GPIO_POLL_EVENT;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DHT11 and DHT22 (AM2302) temperature and humidity sensor using GPIO device edge events.
+ *
+ * Bits are encoded as 26-28 µs (0) or 70 µs (1) high pulses which Java cannot time. Instead the line is switched to both edge
+ * detection after the start pulse and all edge events are drained in one burst. The kernel timestamps each edge, so pulse widths are
+ * accurate even if the JVM is busy. Only the last 40 high pulses are used, so edges missed while the line is reconfigured do not
+ * matter. Do not read more than once every second (DHT11) or two seconds (DHT22).
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Dht implements AutoCloseable {
+
+    /**
+     * DHT11 sensor type.
+     */
+    public static final int DHT11 = 11;
+    /**
+     * DHT22 sensor type.
+     */
+    public static final int DHT22 = 22;
+    /**
+     * Function was successful.
+     */
+    public static final int DHT_SUCCESS = 0;
+    /**
+     * Not enough edges to decode 40 bits.
+     */
+    public static final int DHT_ERROR_EDGES = -1;
+    /**
+     * Checksum did not match.
+     */
+    public static final int DHT_ERROR_CHECKSUM = -2;
+    /**
+     * High pulse width in nanoseconds above which bit is 1.
+     */
+    public static final long BIT_THRESHOLD_NS = 50000;
+    /**
+     * Maximum edges to drain. A frame is about 84 edges.
+     */
+    public static final int MAX_EDGES = 100;
+    /**
+     * Sensor type.
+     */
+    private final int type;
+    /**
+     * GPIO.
+     */
+    private final Gpio gpio;
+    /**
+     * Edge buffer.
+     */
+    private final int[] edges = new int[MAX_EDGES];
+    /**
+     * Timestamp buffer.
+     */
+    private final long[] timestamps = new long[MAX_EDGES];
+    /**
+     * Edge read buffer.
+     */
+    private final int[] edge = new int[1];
+    /**
+     * Timestamp read buffer.
+     */
+    private final long[] timestamp = new long[1];
+    /**
+     * Decoded data.
+     */
+    private final byte[] data = new byte[5];
+    /**
+     * Last humidity in percent.
+     */
+    private float humidity;
+    /**
+     * Last temperature in Celsius.
+     */
+    private float temperature;
+
+    /**
+     * Open sensor on GPIO line.
+     *
+     * @param path GPIO chip character device path.
+     * @param line GPIO line number.
+     * @param type DHT11 or DHT22.
+     */
+    public Dht(final String path, final int line, final int type) {
+        if (type != DHT11 && type != DHT22) {
+            throw new RuntimeException(String.format("Invalid type %d", type));
+        }
+        this.type = type;
+        gpio = new Gpio(path, line, GPIO_DIR_IN);
+    }
+
+    /**
+     * Close GPIO.
+     */
+    @Override
+    public void close() {
+        gpio.close();
+    }
+
+    public float getHumidity() {
+        return humidity;
+    }
+
+    public float getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Decode 40 bits from edge events. Pure function, so it can be tested with recorded edges.
+     *
+     * @param edges Edge types.
+     * @param timestamps Edge timestamps in nanoseconds.
+     * @param count Number of edges.
+     * @param data Five decoded bytes.
+     * @return DHT_SUCCESS, DHT_ERROR_EDGES or DHT_ERROR_CHECKSUM.
+     */
+    public static int decode(final int[] edges, final long[] timestamps, final int count, final byte[] data) {
+        for (var i = 0; i < data.length; i++) {
+            data[i] = 0;
+        }
+        // Work backwards from the end, so the response pulse and missed edges at the start are ignored
+        var bit = 39;
+        for (var i = count - 1; i > 0 && bit >= 0; i--) {
+            if (edges[i] == GPIO_EDGE_FALLING && edges[i - 1] == GPIO_EDGE_RISING) {
+                if (timestamps[i] - timestamps[i - 1] > BIT_THRESHOLD_NS) {
+                    data[bit / 8] |= 0x80 >> (bit % 8);
+                }
+                bit--;
+                i--;
+            }
+        }
+        if (bit >= 0) {
+            return DHT_ERROR_EDGES;
+        }
+        if (((data[0] + data[1] + data[2] + data[3]) & 0xff) != (data[4] & 0xff)) {
+            return DHT_ERROR_CHECKSUM;
+        }
+        return DHT_SUCCESS;
+    }
+
+    /**
+     * Humidity from decoded data.
+     *
+     * @param data Five decoded bytes.
+     * @param type DHT11 or DHT22.
+     * @return Humidity in percent.
+     */
+    public static float toHumidity(final byte[] data, final int type) {
+        if (type == DHT11) {
+            return (data[0] & 0xff) + (data[1] & 0xff) / 10f;
+        }
+        return (((data[0] & 0xff) << 8) | (data[1] & 0xff)) / 10f;
+    }
+
+    /**
+     * Temperature from decoded data. Bit 7 of byte 2 is the sign.
+     *
+     * @param data Five decoded bytes.
+     * @param type DHT11 or DHT22.
+     * @return Temperature in Celsius.
+     */
+    public static float toTemperature(final byte[] data, final int type) {
+        float value;
+        if (type == DHT11) {
+            value = (data[2] & 0x7f) + (data[3] & 0xff) / 10f;
+        } else {
+            value = (((data[2] & 0x7f) << 8) | (data[3] & 0xff)) / 10f;
+        }
+        if ((data[2] & 0x80) != 0) {
+            value = -value;
+        }
+        return value;
+    }
+
+    /**
+     * Throw if GPIO call failed.
+     *
+     * @param handle GPIO handle.
+     * @param ret Return value.
+     * @return Return value if not an error.
+     */
+    private static int check(final long handle, final int ret) {
+        if (ret < 0) {
+            throw new RuntimeException(Gpio.gpioErrMessage(handle));
+        }
+        return ret;
+    }
+
+    /**
+     * Send start pulse, drain edge events and decode. Humidity and temperature are updated on success.
+     *
+     * @return DHT_SUCCESS, DHT_ERROR_EDGES or DHT_ERROR_CHECKSUM.
+     * @throws InterruptedException Possible exception.
+     */
+    public int read() throws InterruptedException {
+        final var handle = gpio.getHandle();
+        // Edge detection must be off to drive line
+        check(handle, Gpio.gpioSetEdge(handle, GPIO_EDGE_NONE));
+        check(handle, Gpio.gpioSetDirection(handle, GPIO_DIR_OUT_LOW));
+        if (type == DHT11) {
+            TimeUnit.MILLISECONDS.sleep(18);
+        } else {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        // Release line and capture both edges
+        check(handle, Gpio.gpioSetDirection(handle, GPIO_DIR_IN));
+        check(handle, Gpio.gpioSetEdge(handle, GPIO_EDGE_BOTH));
+        var count = 0;
+        // Frame takes about 5 ms, so a 10 ms poll timeout means it is done
+        while (count < MAX_EDGES && check(handle, Gpio.gpioPoll(handle, 10)) == GPIO_POLL_EVENT) {
+            check(handle, Gpio.gpioReadEvent(handle, edge, timestamp));
+            edges[count] = edge[0];
+            timestamps[count] = timestamp[0];
+            count++;
+        }
+        final var ret = decode(edges, timestamps, count, data);
+        if (ret == DHT_SUCCESS) {
+            humidity = toHumidity(data, type);
+            temperature = toTemperature(data, type);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+/**
+ * Dirty rectangles of a frame buffer.
+ *
+ * Rectangles are clipped to the frame and merged when sending their bounding box costs no more than sending them separately. Each
+ * separate window costs mergeCost pixels of overhead for its address commands. When maxRects is reached the pair that wastes the
+ * fewest pixels is merged, so the list never grows and nothing is allocated after construction.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class DirtyRegion {
+
+    /**
+     * Frame width.
+     */
+    private final int width;
+    /**
+     * Frame height.
+     */
+    private final int height;
+    /**
+     * Overhead of one window in pixels.
+     */
+    private final int mergeCost;
+    /**
+     * Maximum rectangles.
+     */
+    private final int maxRects;
+    /**
+     * Left edges, one spare slot for the rectangle being added.
+     */
+    private final int[] x0;
+    /**
+     * Top edges.
+     */
+    private final int[] y0;
+    /**
+     * Right edges, exclusive.
+     */
+    private final int[] x1;
+    /**
+     * Bottom edges, exclusive.
+     */
+    private final int[] y1;
+    /**
+     * Number of rectangles.
+     */
+    private int count;
+
+    /**
+     * Create region.
+     *
+     * @param width Frame width.
+     * @param height Frame height.
+     * @param maxRects Maximum rectangles.
+     * @param mergeCost Overhead of one window in pixels.
+     */
+    public DirtyRegion(final int width, final int height, final int maxRects, final int mergeCost) {
+        if (maxRects < 1) {
+            throw new RuntimeException("Maximum rectangles must be greater than 0");
+        }
+        this.width = width;
+        this.height = height;
+        this.mergeCost = mergeCost;
+        this.maxRects = maxRects;
+        x0 = new int[maxRects + 1];
+        y0 = new int[maxRects + 1];
+        x1 = new int[maxRects + 1];
+        y1 = new int[maxRects + 1];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getX(final int i) {
+        return x0[i];
+    }
+
+    public int getY(final int i) {
+        return y0[i];
+    }
+
+    public int getWidth(final int i) {
+        return x1[i] - x0[i];
+    }
+
+    public int getHeight(final int i) {
+        return y1[i] - y0[i];
+    }
+
+    /**
+     * True if nothing is dirty.
+     *
+     * @return True if empty.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Remove all rectangles.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Total dirty pixels.
+     *
+     * @return Pixels.
+     */
+    public int area() {
+        var area = 0;
+        for (var i = 0; i < count; i++) {
+            area += (x1[i] - x0[i]) * (y1[i] - y0[i]);
+        }
+        return area;
+    }
+
+    /**
+     * Mark whole frame dirty.
+     */
+    public void addAll() {
+        count = 0;
+        add(0, 0, width, height);
+    }
+
+    /**
+     * Mark rectangle dirty.
+     *
+     * @param x Left edge.
+     * @param y Top edge.
+     * @param w Width.
+     * @param h Height.
+     */
+    public void add(final int x, final int y, final int w, final int h) {
+        var ax0 = Math.max(0, x);
+        var ay0 = Math.max(0, y);
+        var ax1 = Math.min(width, x + w);
+        var ay1 = Math.min(height, y + h);
+        if (ax0 >= ax1 || ay0 >= ay1) {
+            return;
+        }
+        // Absorb existing rectangles while the bounding box is no more expensive
+        var i = 0;
+        while (i < count) {
+            final var ux0 = Math.min(ax0, x0[i]);
+            final var uy0 = Math.min(ay0, y0[i]);
+            final var ux1 = Math.max(ax1, x1[i]);
+            final var uy1 = Math.max(ay1, y1[i]);
+            final var union = (ux1 - ux0) * (uy1 - uy0);
+            if (union <= (ax1 - ax0) * (ay1 - ay0) + (x1[i] - x0[i]) * (y1[i] - y0[i]) + mergeCost) {
+                ax0 = ux0;
+                ay0 = uy0;
+                ax1 = ux1;
+                ay1 = uy1;
+                remove(i);
+                // Bounding box grew, so check everything again
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+        x0[count] = ax0;
+        y0[count] = ay0;
+        x1[count] = ax1;
+        y1[count] = ay1;
+        count++;
+        if (count > maxRects) {
+            mergeCheapest();
+        }
+    }
+
+    /**
+     * Remove rectangle by moving the last one into its place.
+     *
+     * @param i Index.
+     */
+    private void remove(final int i) {
+        count--;
+        x0[i] = x0[count];
+        y0[i] = y0[count];
+        x1[i] = x1[count];
+        y1[i] = y1[count];
+    }
+
+    /**
+     * Merge the pair of rectangles whose bounding box wastes the fewest pixels.
+     */
+    private void mergeCheapest() {
+        var bestI = 0;
+        var bestJ = 1;
+        var bestWaste = Integer.MAX_VALUE;
+        for (var i = 0; i < count; i++) {
+            for (var j = i + 1; j < count; j++) {
+                final var union = (Math.max(x1[i], x1[j]) - Math.min(x0[i], x0[j])) * (Math.max(y1[i], y1[j]) - Math.min(y0[i],
+                        y0[j]));
+                final var waste = union - (x1[i] - x0[i]) * (y1[i] - y0[i]) - (x1[j] - x0[j]) * (y1[j] - y0[j]);
+                if (waste < bestWaste) {
+                    bestWaste = waste;
+                    bestI = i;
+                    bestJ = j;
+                }
+            }
+        }
+        x0[bestI] = Math.min(x0[bestI], x0[bestJ]);
+        y0[bestI] = Math.min(y0[bestI], y0[bestJ]);
+        x1[bestI] = Math.max(x1[bestI], x1[bestJ]);
+        y1[bestI] = Math.max(y1[bestI], y1[bestJ]);
+        remove(bestJ);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.mmio.OneWire;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * DS18B20 programmable resolution 1-Wire digital thermometer.
+ *
+ * Rather than polling each probe (750 ms each at 12 bits) a single convert T is broadcast to all probes and then each scratchpad is
+ * read. N probes take one conversion time instead of N. Probes must be externally powered, since parasite power requires a strong
+ * pull up during conversion.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Ds18b20 {
+
+    /**
+     * DS18B20 family code.
+     */
+    public static final int FAMILY_CODE = 0x28;
+    /**
+     * Convert T command.
+     */
+    public static final int CONVERT_T = 0x44;
+    /**
+     * Write scratchpad command.
+     */
+    public static final int WRITE_SCRATCHPAD = 0x4e;
+    /**
+     * Read scratchpad command.
+     */
+    public static final int READ_SCRATCHPAD = 0xbe;
+    /**
+     * Scratchpad size including CRC.
+     */
+    public static final int SCRATCHPAD_LEN = 9;
+    /**
+     * 1-Wire bus.
+     */
+    private final OneWire oneWire;
+    /**
+     * Scratchpad buffer.
+     */
+    private final byte[] scratchpad = new byte[SCRATCHPAD_LEN];
+    /**
+     * Resolution in bits.
+     */
+    private int resolution = 12;
+
+    /**
+     * 1-Wire bus constructor.
+     *
+     * @param oneWire 1-Wire bus.
+     */
+    public Ds18b20(final OneWire oneWire) {
+        this.oneWire = oneWire;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Convert scratchpad temperature register to Celsius. Value is a 16 bit two's complement in 1/16 degree units.
+     *
+     * @param lsb Temperature LSB.
+     * @param msb Temperature MSB.
+     * @return Temperature in Celsius.
+     */
+    public static double toCelsius(final byte lsb, final byte msb) {
+        return (short) (((msb & 0xff) << 8) | (lsb & 0xff)) / 16.0;
+    }
+
+    /**
+     * Maximum conversion time for resolution.
+     *
+     * @param resolution Resolution 9 to 12 bits.
+     * @return Conversion time in milliseconds.
+     */
+    public static long conversionTimeMs(final int resolution) {
+        // 93.75 ms at 9 bits doubling for each extra bit
+        return (750L >> (12 - resolution)) + 1;
+    }
+
+    /**
+     * Find all DS18B20 probes on bus.
+     *
+     * @return List of ROM codes.
+     */
+    public List<Long> search() {
+        return oneWire.search().stream().filter(rom -> (rom & 0xff) == FAMILY_CODE).collect(Collectors.toList());
+    }
+
+    /**
+     * Set resolution of all probes. Alarm registers are set to defaults.
+     *
+     * @param resolution Resolution 9 to 12 bits.
+     */
+    public void setResolution(final int resolution) {
+        if (resolution < 9 || resolution > 12) {
+            throw new RuntimeException(String.format("Invalid resolution %d", resolution));
+        }
+        if (!oneWire.skip()) {
+            throw new RuntimeException("No 1-Wire devices present");
+        }
+        final byte[] buf = {(byte) WRITE_SCRATCHPAD, (byte) 0x4b, (byte) 0x46, (byte) (((resolution - 9) << 5) | 0x1f)};
+        oneWire.write(buf, buf.length);
+        this.resolution = resolution;
+    }
+
+    /**
+     * Broadcast convert T to all probes. Wait conversionTimeMs before reading.
+     */
+    public void convertAll() {
+        if (!oneWire.skip()) {
+            throw new RuntimeException("No 1-Wire devices present");
+        }
+        oneWire.writeByte(CONVERT_T);
+    }
+
+    /**
+     * Read scratchpad of a probe and check CRC.
+     *
+     * @param rom ROM code.
+     * @param buf Scratchpad buffer of at least SCRATCHPAD_LEN bytes.
+     * @return True if probe present and CRC is valid.
+     */
+    public boolean readScratchpad(final long rom, final byte[] buf) {
+        if (!oneWire.select(rom)) {
+            return false;
+        }
+        oneWire.writeByte(READ_SCRATCHPAD);
+        oneWire.read(buf, SCRATCHPAD_LEN);
+        return OneWire.crc8(buf, SCRATCHPAD_LEN) == 0;
+    }
+
+    /**
+     * Read last converted temperature of a probe.
+     *
+     * @param rom ROM code.
+     * @return Temperature in Celsius or NaN if probe missing or CRC error.
+     */
+    public double readTemperature(final long rom) {
+        if (readScratchpad(rom, scratchpad)) {
+            return toCelsius(scratchpad[0], scratchpad[1]);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Convert all probes at once, wait one conversion time and read each probe.
+     *
+     * @param roms ROM codes.
+     * @param temps Temperatures in Celsius or NaN on error.
+     * @return Number of probes that failed.
+     * @throws InterruptedException Possible exception.
+     */
+    public int readAll(final long[] roms, final double[] temps) throws InterruptedException {
+        convertAll();
+        TimeUnit.MILLISECONDS.sleep(conversionTimeMs(resolution));
+        var errors = 0;
+        for (var i = 0; i < roms.length; i++) {
+            temps[i] = readTemperature(roms[i]);
+            if (Double.isNaN(temps[i])) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.cString;
+import com.codeferm.periphery.Deadline;
+import com.codeferm.periphery.Gpio;
+import static com.codeferm.periphery.Gpio.GPIO_BIAS_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_IN;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_OUT_LOW;
+import static com.codeferm.periphery.Gpio.GPIO_DRIVE_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_BOTH;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import static com.codeferm.periphery.Gpio.GPIO_POLL_EVENT;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HC-SR04 ultrasonic ranging sensor using GPIO device edge events.
+ *
+ * Echo width is measured from the kernel timestamps of the rising and falling edge instead of busy polling gpioRead, so the result
+ * is accurate to a few µs and the thread sleeps in poll while waiting. Each sensor keeps the last readings for a median filter.
+ * Several sensors can be ranged round robin with rangeAll, so one echo never triggers another sensor. Echo pin should be level
+ * shifted to 3.3V.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class HcSr04 implements AutoCloseable {
+
+    /**
+     * Trigger pulse width in nanoseconds.
+     */
+    public static final long TRIGGER_NS = 10000;
+    /**
+     * Echo timeout. Sensor holds echo about 38 ms if nothing is in range.
+     */
+    public static final int TIMEOUT_MS = 40;
+    /**
+     * Minimum time between triggers in milliseconds.
+     */
+    public static final long INTERVAL_MS = 60;
+    /**
+     * Nanoseconds per centimeter of echo width (round trip at 343 m/s).
+     */
+    public static final double NS_PER_CM = 58309.0;
+    /**
+     * Maximum edges to collect for one measurement.
+     */
+    private static final int MAX_EDGES = 4;
+    /**
+     * Trigger GPIO.
+     */
+    private final Gpio trigger;
+    /**
+     * Echo GPIO.
+     */
+    private final Gpio echo;
+    /**
+     * Edge buffer.
+     */
+    private final int[] edges = new int[MAX_EDGES];
+    /**
+     * Timestamp buffer.
+     */
+    private final long[] timestamps = new long[MAX_EDGES];
+    /**
+     * Edge read buffer.
+     */
+    private final int[] edge = new int[1];
+    /**
+     * Timestamp read buffer.
+     */
+    private final long[] timestamp = new long[1];
+    /**
+     * Last readings in centimeters.
+     */
+    private final double[] samples;
+    /**
+     * Sort buffer for median.
+     */
+    private final double[] sorted;
+    /**
+     * Next sample index.
+     */
+    private int sampleIndex;
+    /**
+     * Number of valid samples.
+     */
+    private int sampleCount;
+    /**
+     * Number of timeouts.
+     */
+    private long timeouts;
+
+    /**
+     * Open trigger and echo lines.
+     *
+     * @param path GPIO chip character device path.
+     * @param triggerLine Trigger GPIO line.
+     * @param echoLine Echo GPIO line.
+     * @param filterSize Number of readings in median filter.
+     */
+    public HcSr04(final String path, final int triggerLine, final int echoLine, final int filterSize) {
+        if (filterSize < 1) {
+            throw new RuntimeException(String.format("Invalid filter size %d", filterSize));
+        }
+        samples = new double[filterSize];
+        sorted = new double[filterSize];
+        trigger = new Gpio(path, triggerLine, GPIO_DIR_OUT_LOW);
+        echo = new Gpio(path, echoLine, new Gpio.GpioConfig().setBias(GPIO_BIAS_DEFAULT).setDirection(GPIO_DIR_IN).setDrive(
+                GPIO_DRIVE_DEFAULT).setEdge(GPIO_EDGE_BOTH).setInverted(false).setLabel(cString(HcSr04.class.getSimpleName())));
+    }
+
+    /**
+     * Open trigger and echo lines with a five reading median filter.
+     *
+     * @param path GPIO chip character device path.
+     * @param triggerLine Trigger GPIO line.
+     * @param echoLine Echo GPIO line.
+     */
+    public HcSr04(final String path, final int triggerLine, final int echoLine) {
+        this(path, triggerLine, echoLine, 5);
+    }
+
+    /**
+     * Close GPIOs.
+     */
+    @Override
+    public void close() {
+        trigger.close();
+        echo.close();
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Echo width from edge events. The first rising edge followed by a falling edge is used.
+     *
+     * @param edges Edge types.
+     * @param timestamps Edge timestamps in nanoseconds.
+     * @param count Number of edges.
+     * @return Width in nanoseconds or -1 if no complete pulse.
+     */
+    public static long echoWidth(final int[] edges, final long[] timestamps, final int count) {
+        for (var i = 0; i < count - 1; i++) {
+            if (edges[i] == GPIO_EDGE_RISING && edges[i + 1] == GPIO_EDGE_FALLING) {
+                return timestamps[i + 1] - timestamps[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Convert echo width to distance.
+     *
+     * @param widthNs Echo width in nanoseconds.
+     * @return Distance in centimeters.
+     */
+    public static double toCm(final long widthNs) {
+        return widthNs / NS_PER_CM;
+    }
+
+    /**
+     * Median of values. Insertion sort into sorted buffer, so nothing is allocated.
+     *
+     * @param values Values.
+     * @param count Number of values.
+     * @param sorted Sort buffer of at least count values.
+     * @return Median or NaN if count is 0.
+     */
+    public static double median(final double[] values, final int count, final double[] sorted) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        for (var i = 0; i < count; i++) {
+            final var value = values[i];
+            var j = i - 1;
+            while (j >= 0 && sorted[j] > value) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = value;
+        }
+        if ((count & 1) == 1) {
+            return sorted[count / 2];
+        }
+        return (sorted[count / 2 - 1] + sorted[count / 2]) / 2.0;
+    }
+
+    /**
+     * Throw on GPIO error.
+     *
+     * @param handle GPIO handle.
+     * @param ret Return value.
+     * @return Return value.
+     */
+    private static int check(final long handle, final int ret) {
+        if (ret < 0) {
+            throw new RuntimeException(Gpio.gpioErrMessage(handle));
+        }
+        return ret;
+    }
+
+    /**
+     * Trigger sensor and measure echo width. GPIO errors throw, so a failed event read never reuses the last edge.
+     *
+     * @param timeoutMs Echo timeout in milliseconds.
+     * @return Width in nanoseconds or -1 on timeout.
+     */
+    public long measure(final int timeoutMs) {
+        final var echoHandle = echo.getHandle();
+        final var triggerHandle = trigger.getHandle();
+        // Discard stale events
+        while (check(echoHandle, Gpio.gpioPoll(echoHandle, 0)) == GPIO_POLL_EVENT) {
+            check(echoHandle, Gpio.gpioReadEvent(echoHandle, edge, timestamp));
+        }
+        check(triggerHandle, Gpio.gpioWrite(triggerHandle, true));
+        Deadline.delayNs(TRIGGER_NS);
+        check(triggerHandle, Gpio.gpioWrite(triggerHandle, false));
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        var count = 0;
+        var width = -1L;
+        while (width < 0 && count < MAX_EDGES) {
+            final var remainingMs = (int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs < 0 || check(echoHandle, Gpio.gpioPoll(echoHandle, Math.max(remainingMs, 1))) != GPIO_POLL_EVENT) {
+                break;
+            }
+            check(echoHandle, Gpio.gpioReadEvent(echoHandle, edge, timestamp));
+            edges[count] = edge[0];
+            timestamps[count] = timestamp[0];
+            count++;
+            width = echoWidth(edges, timestamps, count);
+        }
+        return width;
+    }
+
+    /**
+     * Measure distance and add it to the median filter. Timeouts are counted and not added.
+     *
+     * @param timeoutMs Echo timeout in milliseconds.
+     * @return Distance in centimeters or NaN on timeout.
+     */
+    public double range(final int timeoutMs) {
+        final var width = measure(timeoutMs);
+        if (width < 0) {
+            timeouts++;
+            return Double.NaN;
+        }
+        final var cm = toCm(width);
+        samples[sampleIndex] = cm;
+        sampleIndex = (sampleIndex + 1) % samples.length;
+        if (sampleCount < samples.length) {
+            sampleCount++;
+        }
+        return cm;
+    }
+
+    /**
+     * Median of last readings.
+     *
+     * @return Distance in centimeters or NaN if no readings.
+     */
+    public double getDistance() {
+        return median(samples, sampleCount, sorted);
+    }
+
+    /**
+     * Range each sensor in turn waiting at least intervalMs between triggers, so echoes do not cross talk.
+     *
+     * @param sensors Sensors.
+     * @param timeoutMs Echo timeout in milliseconds.
+     * @param intervalMs Minimum time between triggers in milliseconds.
+     * @return Number of sensors that timed out.
+     * @throws InterruptedException Possible exception.
+     */
+    public static int rangeAll(final HcSr04[] sensors, final int timeoutMs, final long intervalMs) throws InterruptedException {
+        var errors = 0;
+        for (final var sensor : sensors) {
+            final var start = System.nanoTime();
+            if (Double.isNaN(sensor.range(timeoutMs))) {
+                errors++;
+            }
+            final var remaining = TimeUnit.MILLISECONDS.toNanos(intervalMs) - (System.nanoTime() - start);
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Range each sensor in turn using default timeout and interval.
+     *
+     * @param sensors Sensors.
+     * @return Number of sensors that timed out.
+     * @throws InterruptedException Possible exception.
+     */
+    public static int rangeAll(final HcSr04[] sensors) throws InterruptedException {
+        return rangeAll(sensors, TIMEOUT_MS, INTERVAL_MS);
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+
+/**
+ * NEC and RC5 infrared remote decoder fed by edge events.
+ *
+ * Both protocols are decoded by state machines running side by side on the same mark/space durations, so nothing is allocated per
+ * edge. The receiver output is assumed to be active low (TSOP38238 and similar), so a falling edge starts a mark. The decoder is not
+ * tied to a GPIO, so it can be fed from captured timestamp traces.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IrDecoder {
+
+    /**
+     * NEC protocol.
+     */
+    public static final int PROTOCOL_NEC = 1;
+    /**
+     * RC5 protocol.
+     */
+    public static final int PROTOCOL_RC5 = 2;
+    /**
+     * Duration tolerance in percent.
+     */
+    public static final int TOLERANCE = 30;
+    /**
+     * NEC leader mark.
+     */
+    public static final long NEC_LEADER_MARK_NS = 9000000;
+    /**
+     * NEC leader space.
+     */
+    public static final long NEC_LEADER_SPACE_NS = 4500000;
+    /**
+     * NEC repeat space.
+     */
+    public static final long NEC_REPEAT_SPACE_NS = 2250000;
+    /**
+     * NEC bit mark and 0 space.
+     */
+    public static final long NEC_UNIT_NS = 562500;
+    /**
+     * NEC 1 space.
+     */
+    public static final long NEC_ONE_SPACE_NS = 1687500;
+    /**
+     * Maximum time from last NEC frame or repeat to a valid repeat.
+     */
+    public static final long NEC_REPEAT_WINDOW_NS = 150000000;
+    /**
+     * RC5 half bit.
+     */
+    public static final long RC5_HALF_NS = 889000;
+    /**
+     * RC5 minimum idle space before a frame.
+     */
+    public static final long RC5_GAP_NS = 2 * 889000 * 2;
+    /**
+     * NEC states.
+     */
+    private static final int NEC_IDLE = 0;
+    private static final int NEC_LEADER_SPACE = 1;
+    private static final int NEC_BIT_MARK = 2;
+    private static final int NEC_BIT_SPACE = 3;
+    private static final int NEC_REPEAT_MARK = 4;
+    /**
+     * RC5 states. MID states are in the middle of a bit, START states are in the first half of a bit.
+     */
+    private static final int RC5_IDLE = 0;
+    private static final int RC5_MID1 = 1;
+    private static final int RC5_MID0 = 2;
+    private static final int RC5_START1 = 3;
+    private static final int RC5_START0 = 4;
+    /**
+     * Last edge timestamp.
+     */
+    private long lastTimestamp;
+    /**
+     * True after first edge.
+     */
+    private boolean hasLast;
+    /**
+     * NEC state.
+     */
+    private int necState = NEC_IDLE;
+    /**
+     * NEC bits received LSB first.
+     */
+    private int necBits;
+    /**
+     * NEC bit count.
+     */
+    private int necCount;
+    /**
+     * Timestamp of last NEC frame or repeat.
+     */
+    private long necLastFrame;
+    /**
+     * True if a NEC frame has been received, so repeats are valid.
+     */
+    private boolean necValid;
+    /**
+     * RC5 state.
+     */
+    private int rc5State = RC5_IDLE;
+    /**
+     * RC5 bits received MSB first.
+     */
+    private int rc5Bits;
+    /**
+     * RC5 bit count.
+     */
+    private int rc5Count;
+    /**
+     * Last decoded protocol.
+     */
+    private int protocol;
+    /**
+     * Last decoded address.
+     */
+    private int address;
+    /**
+     * Last decoded command.
+     */
+    private int command;
+    /**
+     * True if last code was a NEC repeat.
+     */
+    private boolean repeat;
+    /**
+     * RC5 toggle bit of last code.
+     */
+    private int toggle;
+    /**
+     * Number of frames rejected.
+     */
+    private long errors;
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public int getCommand() {
+        return command;
+    }
+
+    public boolean isRepeat() {
+        return repeat;
+    }
+
+    public int getToggle() {
+        return toggle;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Reset state machines.
+     */
+    public void reset() {
+        hasLast = false;
+        necState = NEC_IDLE;
+        necValid = false;
+        rc5State = RC5_IDLE;
+    }
+
+    /**
+     * Check duration is within tolerance of nominal.
+     *
+     * @param duration Duration in nanoseconds.
+     * @param nominal Nominal duration in nanoseconds.
+     * @return True if matched.
+     */
+    private static boolean match(final long duration, final long nominal) {
+        return Math.abs(duration - nominal) <= nominal * TOLERANCE / 100;
+    }
+
+    /**
+     * Feed edge event.
+     *
+     * @param edge GPIO_EDGE_FALLING (mark start) or GPIO_EDGE_RISING (mark end).
+     * @param timestamp Edge timestamp in nanoseconds.
+     * @return True if a code or NEC repeat was decoded.
+     */
+    public boolean edge(final int edge, final long timestamp) {
+        final long duration;
+        if (hasLast) {
+            duration = timestamp - lastTimestamp;
+        } else {
+            duration = Long.MAX_VALUE;
+            hasLast = true;
+        }
+        lastTimestamp = timestamp;
+        if (edge == GPIO_EDGE_RISING) {
+            return duration(true, duration, timestamp);
+        } else if (edge == GPIO_EDGE_FALLING) {
+            return duration(false, duration, timestamp);
+        }
+        return false;
+    }
+
+    /**
+     * Feed mark or space duration to both state machines.
+     *
+     * @param mark True if duration was a mark.
+     * @param duration Duration in nanoseconds.
+     * @param timestamp Timestamp at end of duration.
+     * @return True if a code or NEC repeat was decoded.
+     */
+    public boolean duration(final boolean mark, final long duration, final long timestamp) {
+        final var nec = nec(mark, duration, timestamp);
+        final var rc5 = rc5(mark, duration);
+        return nec || rc5;
+    }
+
+    /**
+     * NEC state machine.
+     *
+     * @param mark True if duration was a mark.
+     * @param duration Duration in nanoseconds.
+     * @param timestamp Timestamp at end of duration.
+     * @return True if a code or repeat was decoded.
+     */
+    private boolean nec(final boolean mark, final long duration, final long timestamp) {
+        switch (necState) {
+            case NEC_LEADER_SPACE:
+                if (!mark && match(duration, NEC_LEADER_SPACE_NS)) {
+                    necBits = 0;
+                    necCount = 0;
+                    necState = NEC_BIT_MARK;
+                } else if (!mark && match(duration, NEC_REPEAT_SPACE_NS)) {
+                    necState = NEC_REPEAT_MARK;
+                } else {
+                    necState = NEC_IDLE;
+                }
+                return false;
+            case NEC_BIT_MARK:
+                if (mark && match(duration, NEC_UNIT_NS)) {
+                    if (necCount == 32) {
+                        necState = NEC_IDLE;
+                        return necFrame(timestamp);
+                    }
+                    necState = NEC_BIT_SPACE;
+                } else {
+                    necAbort(mark, duration);
+                }
+                return false;
+            case NEC_BIT_SPACE:
+                if (!mark && match(duration, NEC_UNIT_NS)) {
+                    necCount++;
+                    necState = NEC_BIT_MARK;
+                } else if (!mark && match(duration, NEC_ONE_SPACE_NS)) {
+                    necBits |= 1 << necCount;
+                    necCount++;
+                    necState = NEC_BIT_MARK;
+                } else {
+                    necAbort(mark, duration);
+                }
+                return false;
+            case NEC_REPEAT_MARK:
+                necState = NEC_IDLE;
+                if (mark && match(duration, NEC_UNIT_NS) && necValid && timestamp - necLastFrame < NEC_REPEAT_WINDOW_NS) {
+                    necLastFrame = timestamp;
+                    protocol = PROTOCOL_NEC;
+                    repeat = true;
+                    return true;
+                }
+                return false;
+            default:
+                if (mark && match(duration, NEC_LEADER_MARK_NS)) {
+                    necState = NEC_LEADER_SPACE;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Abort NEC frame. Mark may be the leader of a new frame.
+     *
+     * @param mark True if duration was a mark.
+     * @param duration Duration in nanoseconds.
+     */
+    private void necAbort(final boolean mark, final long duration) {
+        errors++;
+        if (mark && match(duration, NEC_LEADER_MARK_NS)) {
+            necState = NEC_LEADER_SPACE;
+        } else {
+            necState = NEC_IDLE;
+        }
+    }
+
+    /**
+     * Validate NEC frame. Command must have its inverse. Address is 8 bits with inverse or 16 bits (extended NEC).
+     *
+     * @param timestamp Timestamp of frame end.
+     * @return True if valid.
+     */
+    private boolean necFrame(final long timestamp) {
+        final var cmd = (necBits >>> 16) & 0xff;
+        if ((cmd ^ (necBits >>> 24)) != 0xff) {
+            errors++;
+            necValid = false;
+            return false;
+        }
+        final var addr = necBits & 0xff;
+        if ((addr ^ ((necBits >>> 8) & 0xff)) == 0xff) {
+            address = addr;
+        } else {
+            address = necBits & 0xffff;
+        }
+        command = cmd;
+        protocol = PROTOCOL_NEC;
+        repeat = false;
+        necValid = true;
+        necLastFrame = timestamp;
+        return true;
+    }
+
+    /**
+     * RC5 state machine. Manchester bits are emitted at mid bit, where a 1 is a space to mark transition.
+     *
+     * @param mark True if duration was a mark.
+     * @param duration Duration in nanoseconds.
+     * @return True if a code was decoded.
+     */
+    private boolean rc5(final boolean mark, final long duration) {
+        if (rc5State == RC5_IDLE) {
+            // Mark after idle is the middle of start bit S1
+            if (!mark && duration >= RC5_GAP_NS) {
+                rc5Bits = 1;
+                rc5Count = 1;
+                rc5State = RC5_MID1;
+            }
+            return false;
+        }
+        final var isShort = match(duration, RC5_HALF_NS);
+        final var isLong = match(duration, RC5_HALF_NS * 2);
+        var bit = -1;
+        switch (rc5State) {
+            case RC5_MID1:
+                if (mark && isShort) {
+                    rc5State = RC5_START1;
+                } else if (mark && isLong) {
+                    rc5State = RC5_MID0;
+                    bit = 0;
+                } else {
+                    return rc5Abort(mark, duration);
+                }
+                break;
+            case RC5_MID0:
+                if (!mark && isShort) {
+                    rc5State = RC5_START0;
+                } else if (!mark && isLong) {
+                    rc5State = RC5_MID1;
+                    bit = 1;
+                } else {
+                    return rc5Abort(mark, duration);
+                }
+                break;
+            case RC5_START1:
+                if (!mark && isShort) {
+                    rc5State = RC5_MID1;
+                    bit = 1;
+                } else {
+                    return rc5Abort(mark, duration);
+                }
+                break;
+            default:
+                if (mark && isShort) {
+                    rc5State = RC5_MID0;
+                    bit = 0;
+                } else {
+                    return rc5Abort(mark, duration);
+                }
+                break;
+        }
+        if (bit >= 0) {
+            rc5Bits = (rc5Bits << 1) | bit;
+            rc5Count++;
+            if (rc5Count == 14) {
+                rc5State = RC5_IDLE;
+                // Inverted field bit S2 is command bit 6 (RC5X)
+                command = (rc5Bits & 0x3f) | ((~rc5Bits >> 6) & 0x40);
+                address = (rc5Bits >> 6) & 0x1f;
+                toggle = (rc5Bits >> 11) & 0x01;
+                protocol = PROTOCOL_RC5;
+                repeat = false;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Abort RC5 frame. A long space may be the gap before a new frame.
+     *
+     * @param mark True if duration was a mark.
+     * @param duration Duration in nanoseconds.
+     * @return Always false.
+     */
+    private boolean rc5Abort(final boolean mark, final long duration) {
+        rc5State = RC5_IDLE;
+        return rc5(mark, duration);
+    }
+}
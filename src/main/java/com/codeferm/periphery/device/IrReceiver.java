@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.cString;
+import com.codeferm.periphery.Gpio;
+import static com.codeferm.periphery.Gpio.GPIO_BIAS_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_IN;
+import static com.codeferm.periphery.Gpio.GPIO_DRIVE_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_BOTH;
+import static com.codeferm.periphery.Gpio.GPIO_POLL_EVENT;
+
+/**
+ * Infrared receiver module on a GPIO line. The thread sleeps in poll between key presses and edge timestamps come from the kernel,
+ * so decoding does not depend on JVM timing.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IrReceiver implements AutoCloseable {
+
+    /**
+     * GPIO.
+     */
+    private final Gpio gpio;
+    /**
+     * Decoder.
+     */
+    private final IrDecoder decoder = new IrDecoder();
+    /**
+     * Edge read buffer.
+     */
+    private final int[] edge = new int[1];
+    /**
+     * Timestamp read buffer.
+     */
+    private final long[] timestamp = new long[1];
+
+    /**
+     * Open receiver line with both edge detection.
+     *
+     * @param path GPIO chip character device path.
+     * @param line GPIO line number.
+     */
+    public IrReceiver(final String path, final int line) {
+        gpio = new Gpio(path, line, new Gpio.GpioConfig().setBias(GPIO_BIAS_DEFAULT).setDirection(GPIO_DIR_IN).setDrive(
+                GPIO_DRIVE_DEFAULT).setEdge(GPIO_EDGE_BOTH).setInverted(false).setLabel(cString(IrReceiver.class.getSimpleName())));
+    }
+
+    /**
+     * Close GPIO.
+     */
+    @Override
+    public void close() {
+        gpio.close();
+    }
+
+    public IrDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Throw on GPIO error.
+     *
+     * @param handle GPIO handle.
+     * @param ret Return value.
+     * @return Return value.
+     */
+    private static int check(final long handle, final int ret) {
+        if (ret < 0) {
+            throw new RuntimeException(Gpio.gpioErrMessage(handle));
+        }
+        return ret;
+    }
+
+    /**
+     * Feed edge events to decoder until a code is decoded or timeout. GPIO errors throw, so a failed event read never feeds the
+     * last pulse width to the decoder again.
+     *
+     * @param timeoutMs Timeout in milliseconds waiting for each edge, negative for no timeout.
+     * @return True if a code or NEC repeat was decoded. Use getDecoder to get the code.
+     */
+    public boolean read(final int timeoutMs) {
+        final var handle = gpio.getHandle();
+        while (check(handle, Gpio.gpioPoll(handle, timeoutMs)) == GPIO_POLL_EVENT) {
+            check(handle, Gpio.gpioReadEvent(handle, edge, timestamp));
+            if (decoder.edge(edge[0], timestamp[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
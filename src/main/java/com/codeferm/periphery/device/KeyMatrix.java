@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+/**
+ * Key matrix debouncer. Each scan passes the pressed column bits of every row and keys that stay changed for the debounce count
+ * of scans generate key down or key up events. Each key has an integrating counter, so a bouncing contact only delays the event
+ * and never generates extra events. Keys are numbered row * columns + column. No objects are allocated after construction.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class KeyMatrix {
+
+    /**
+     * Key event listener. Called from the scanning thread, so it should return quickly.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Key changed.
+         *
+         * @param key Key number.
+         * @param down True for key down and false for key up.
+         * @param timestamp Scan time in nanoseconds.
+         */
+        void keyEvent(int key, boolean down, long timestamp);
+    }
+
+    /**
+     * Rows.
+     */
+    private final int rows;
+    /**
+     * Columns.
+     */
+    private final int cols;
+    /**
+     * Scans a key must stay changed before an event.
+     */
+    private final int debounce;
+    /**
+     * Event listener.
+     */
+    private final Listener listener;
+    /**
+     * Integrating counter of each key.
+     */
+    private final int[] counts;
+    /**
+     * Debounced state of each key.
+     */
+    private final boolean[] pressed;
+    /**
+     * Number of keys pressed.
+     */
+    private int down;
+
+    /**
+     * Create matrix.
+     *
+     * @param rows Rows.
+     * @param cols Columns (32 maximum).
+     * @param debounce Scans a key must stay changed before an event.
+     * @param listener Event listener.
+     */
+    public KeyMatrix(final int rows, final int cols, final int debounce, final Listener listener) {
+        if (cols > 32) {
+            throw new RuntimeException("Matrix is limited to 32 columns");
+        }
+        if (debounce < 1) {
+            throw new RuntimeException("Debounce must be at least 1 scan");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.debounce = debounce;
+        this.listener = listener;
+        counts = new int[rows * cols];
+        pressed = new boolean[rows * cols];
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Number of keys currently down.
+     *
+     * @return Keys down.
+     */
+    public int getDown() {
+        return down;
+    }
+
+    /**
+     * Debounced key state.
+     *
+     * @param key Key number.
+     * @return True if key is down.
+     */
+    public boolean isPressed(final int key) {
+        return pressed[key];
+    }
+
+    /**
+     * Update one row.
+     *
+     * @param row Row.
+     * @param bits Pressed column bits with bit 0 for the first column.
+     * @param timestamp Scan time in nanoseconds.
+     */
+    public void update(final int row, final int bits, final long timestamp) {
+        final var base = row * cols;
+        for (var col = 0; col < cols; col++) {
+            final var key = base + col;
+            if ((bits & (1 << col)) != 0) {
+                if (counts[key] < debounce) {
+                    counts[key]++;
+                }
+                if (counts[key] == debounce && !pressed[key]) {
+                    pressed[key] = true;
+                    down++;
+                    listener.keyEvent(key, true, timestamp);
+                }
+            } else {
+                if (counts[key] > 0) {
+                    counts[key]--;
+                }
+                if (counts[key] == 0 && pressed[key]) {
+                    pressed[key] = false;
+                    down--;
+                    listener.keyEvent(key, false, timestamp);
+                }
+            }
+        }
+    }
+}
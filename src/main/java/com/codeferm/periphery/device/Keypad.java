@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.mmio.MmioBus;
+import com.codeferm.periphery.mmio.MmioPin;
+import com.codeferm.periphery.mmio.Pin;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key matrix scanner using MMIO. Rows are driven open drain one at a time and columns are inputs with pull ups read with one data
+ * in register read per bank. A full 4x4 scan is a few µs instead of 16 or more gpioRead JNI calls, so scanning at 1 kHz from a
+ * thread shared with other periodic work is cheap.
+ *
+ * Only the scanned row is an output and it is driven low, every other row is left as an input. Driving idle rows high instead
+ * would short a high output to a low one through two pressed keys in the same column of a matrix without diodes. Row pins need
+ * mode registers for this, the same open drain emulation SoftI2c uses. Column pins must already be inputs with pull up bias, for
+ * example by opening them with Gpio first. Without diodes in the matrix three keys pressed on the corners of a rectangle will
+ * ghost a fourth.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Keypad implements Runnable {
+
+    /**
+     * Default scan period in microseconds.
+     */
+    public static final long SCAN_PERIOD_US = 1000;
+    /**
+     * Default debounce in scans.
+     */
+    public static final int DEBOUNCE_SCANS = 5;
+    /**
+     * Time for column lines to settle after changing row in nanoseconds.
+     */
+    public static final long SETTLE_NS = 2000;
+    /**
+     * Row pins.
+     */
+    private final MmioPin[] rowPins;
+    /**
+     * Column bus.
+     */
+    private final MmioBus colBus;
+    /**
+     * All column bits.
+     */
+    private final int colMask;
+    /**
+     * Debouncer.
+     */
+    private final KeyMatrix matrix;
+    /**
+     * Number of scans.
+     */
+    private volatile long scans;
+
+    /**
+     * Create keypad and release all rows.
+     *
+     * @param rows Row pins with mode registers.
+     * @param cols Column pins.
+     * @param debounce Scans a key must stay changed before an event.
+     * @param listener Event listener.
+     */
+    public Keypad(final Pin[] rows, final Pin[] cols, final int debounce, final KeyMatrix.Listener listener) {
+        this(pins(rows), new MmioBus(cols), debounce, listener);
+    }
+
+    /**
+     * Create keypad on MMIO pins and release all rows.
+     *
+     * @param rowPins Row pins with mode registers.
+     * @param colBus Column bus.
+     * @param debounce Scans a key must stay changed before an event.
+     * @param listener Event listener.
+     */
+    Keypad(final MmioPin[] rowPins, final MmioBus colBus, final int debounce, final KeyMatrix.Listener listener) {
+        for (final var pin : rowPins) {
+            if (!pin.isHasMode()) {
+                throw new RuntimeException(String.format("Row pin %s requires mode registers for open drain emulation", pin.
+                        getPin().getKey()));
+            }
+        }
+        this.rowPins = rowPins;
+        this.colBus = colBus;
+        colMask = (int) ((1L << colBus.size()) - 1);
+        matrix = new KeyMatrix(rowPins.length, colBus.size(), debounce, listener);
+        for (final var pin : rowPins) {
+            // Preset data out low, so output mode always drives low
+            pin.low();
+            pin.input();
+        }
+    }
+
+    /**
+     * Create keypad with default debounce.
+     *
+     * @param rows Row pins.
+     * @param cols Column pins.
+     * @param listener Event listener.
+     */
+    public Keypad(final Pin[] rows, final Pin[] cols, final KeyMatrix.Listener listener) {
+        this(rows, cols, DEBOUNCE_SCANS, listener);
+    }
+
+    /**
+     * Create MMIO pins.
+     *
+     * @param pins Pins.
+     * @return MMIO pins.
+     */
+    private static MmioPin[] pins(final Pin[] pins) {
+        final var mmioPins = new MmioPin[pins.length];
+        for (var i = 0; i < pins.length; i++) {
+            mmioPins[i] = new MmioPin(pins[i]);
+        }
+        return mmioPins;
+    }
+
+    public KeyMatrix getMatrix() {
+        return matrix;
+    }
+
+    public long getScans() {
+        return scans;
+    }
+
+    /**
+     * Scan all rows once and publish debounced events.
+     *
+     * @param timestamp Scan time in nanoseconds.
+     */
+    public void scan(final long timestamp) {
+        for (var row = 0; row < rowPins.length; row++) {
+            // Only the scanned row is an output and it drives low
+            rowPins[row].output();
+            MmioPin.delayNs(SETTLE_NS);
+            // Pressed keys pull columns low
+            matrix.update(row, ~colBus.read() & colMask, timestamp);
+            rowPins[row].input();
+        }
+        scans++;
+    }
+
+    /**
+     * Scan using current time.
+     */
+    @Override
+    public void run() {
+        scan(System.nanoTime());
+    }
+
+    /**
+     * Scan periodically on a shared executor. Cancel the returned future to stop scanning.
+     *
+     * @param executor Executor shared with other periodic tasks.
+     * @param periodUs Scan period in microseconds.
+     * @return Scheduled task.
+     */
+    public ScheduledFuture<?> start(final ScheduledExecutorService executor, final long periodUs) {
+        return executor.scheduleAtFixedRate(this, 0, periodUs, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Scan at 1 kHz on a shared executor.
+     *
+     * @param executor Executor shared with other periodic tasks.
+     * @return Scheduled task.
+     */
+    public ScheduledFuture<?> start(final ScheduledExecutorService executor) {
+        return start(executor, SCAN_PERIOD_US);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.PeriodicTimer;
+import com.codeferm.periphery.RealTime;
+import com.codeferm.periphery.SampleRing;
+import com.codeferm.periphery.Spi;
+import static com.codeferm.periphery.Spi.SPI_SUCCESS;
+import com.codeferm.periphery.SpiBatch;
+
+/**
+ * MCP3008 10 bit and MCP3208 12 bit 8 channel SPI ADC.
+ *
+ * read does one conversion. For streaming the conversion of every channel in a scan list is built once as an SpiBatch with chip
+ * select released between channels, so a whole scan is one ioctl. A thread paced by PeriodicTimer runs one scan per sample period
+ * and puts the decoded samples as one frame into a SampleRing. Scans skipped because the thread was late are counted as missed and
+ * frames dropped because the consumer fell behind are counted as ring overruns.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Mcp3x08 implements AutoCloseable {
+
+    /**
+     * MCP3008 resolution.
+     */
+    public static final int MCP3008 = 10;
+    /**
+     * MCP3208 resolution.
+     */
+    public static final int MCP3208 = 12;
+    /**
+     * Number of channels.
+     */
+    public static final int CHANNELS = 8;
+    /**
+     * Bytes per conversion.
+     */
+    public static final int CONVERSION_LEN = 3;
+    /**
+     * SPI handle.
+     */
+    private final long spi;
+    /**
+     * Resolution in bits.
+     */
+    private final int bits;
+    /**
+     * Single conversion transmit buffer.
+     */
+    private final byte[] tx = new byte[CONVERSION_LEN];
+    /**
+     * Single conversion receive buffer.
+     */
+    private final byte[] rx = new byte[CONVERSION_LEN];
+    /**
+     * Streaming thread.
+     */
+    private Thread thread;
+    /**
+     * Thread running.
+     */
+    private volatile boolean running;
+    /**
+     * Scans completed.
+     */
+    private volatile long scans;
+    /**
+     * Scans skipped because the thread was late.
+     */
+    private volatile long missed;
+    /**
+     * Exception that stopped streaming.
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * SPI handle constructor. SPI mode 0 or 3, up to 1 MHz at 2.7V and 3.6 MHz (MCP3008) or 2 MHz (MCP3208) at 5V.
+     *
+     * @param spi SPI handle.
+     * @param bits MCP3008 or MCP3208.
+     */
+    public Mcp3x08(final long spi, final int bits) {
+        if (bits != MCP3008 && bits != MCP3208) {
+            throw new RuntimeException(String.format("Resolution %d must be %d or %d", bits, MCP3008, MCP3208));
+        }
+        this.spi = spi;
+        this.bits = bits;
+    }
+
+    /**
+     * Stop streaming.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getScans() {
+        return scans;
+    }
+
+    public long getMissed() {
+        return missed;
+    }
+
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Encode single ended conversion command.
+     *
+     * @param bits MCP3008 or MCP3208.
+     * @param channel Channel 0 to 7.
+     * @param buf Transmit buffer.
+     * @param offset Offset of CONVERSION_LEN bytes in buffer.
+     */
+    public static void encode(final int bits, final int channel, final byte[] buf, final int offset) {
+        if (channel < 0 || channel >= CHANNELS) {
+            throw new RuntimeException(String.format("Channel %d must be 0 to %d", channel, CHANNELS - 1));
+        }
+        if (bits == MCP3008) {
+            // Start bit, then single ended and channel in the high nibble, result in the last 10 bits
+            buf[offset] = 0x01;
+            buf[offset + 1] = (byte) (0x80 | channel << 4);
+        } else {
+            // Start bit, single ended and channel bit 2, then channel bits 1 and 0, result in the last 12 bits
+            buf[offset] = (byte) (0x06 | channel >> 2);
+            buf[offset + 1] = (byte) ((channel & 0x03) << 6);
+        }
+        buf[offset + 2] = 0x00;
+    }
+
+    /**
+     * Decode conversion result.
+     *
+     * @param bits MCP3008 or MCP3208.
+     * @param buf Receive buffer.
+     * @param offset Offset of CONVERSION_LEN bytes in buffer.
+     * @return Sample.
+     */
+    public static int decode(final int bits, final byte[] buf, final int offset) {
+        final var mask = bits == MCP3008 ? 0x03 : 0x0f;
+        return (buf[offset + 1] & mask) << 8 | buf[offset + 2] & 0xff;
+    }
+
+    /**
+     * Single conversion.
+     *
+     * @param channel Channel 0 to 7.
+     * @return Sample.
+     */
+    public int read(final int channel) {
+        encode(bits, channel, tx, 0);
+        final var ret = Spi.spiTransfer(spi, tx, rx, CONVERSION_LEN);
+        if (ret != SPI_SUCCESS) {
+            throw new RuntimeException(String.format("Read channel %d failed with error %d", channel, ret));
+        }
+        return decode(bits, rx, 0);
+    }
+
+    /**
+     * Build scan of channels.
+     *
+     * @param bits MCP3008 or MCP3208.
+     * @param channels Scan list.
+     * @return Batch with one segment per channel.
+     */
+    public static SpiBatch scan(final int bits, final int[] channels) {
+        final var batch = new SpiBatch(channels.length * CONVERSION_LEN, channels.length);
+        final var cmd = new byte[CONVERSION_LEN];
+        for (var i = 0; i < channels.length; i++) {
+            encode(bits, channels[i], cmd, 0);
+            // Chip select must go high between conversions, cs_change on the last one would hold it low after the scan
+            batch.add(cmd, 0, CONVERSION_LEN, 0, 0, i < channels.length - 1, 0);
+        }
+        return batch;
+    }
+
+    /**
+     * Decode scan into a frame.
+     *
+     * @param bits MCP3008 or MCP3208.
+     * @param batch Scan.
+     * @param frame One sample per channel in scan order.
+     */
+    public static void decode(final int bits, final SpiBatch batch, final int[] frame) {
+        final var buf = batch.getRx();
+        for (var i = 0; i < batch.size(); i++) {
+            frame[i] = decode(bits, buf, i * CONVERSION_LEN);
+        }
+    }
+
+    /**
+     * Scan until stopped.
+     *
+     * @param batch Scan.
+     * @param periodNs Scan period in nanoseconds.
+     * @param ring Sample ring.
+     */
+    private void run(final SpiBatch batch, final long periodNs, final SampleRing ring) {
+        final var frame = new int[batch.size()];
+        try (final var timer = new PeriodicTimer(periodNs)) {
+            timer.start();
+            while (running) {
+                missed += timer.waitNext();
+                batch.transfer(spi);
+                decode(bits, batch, frame);
+                ring.put(frame, 0);
+                scans++;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Start streaming scans of channels into ring with normal scheduling.
+     *
+     * @param channels Scan list.
+     * @param sampleRateHz Scans per second.
+     * @param ring Sample ring with frame size equal to the number of channels.
+     */
+    public void start(final int[] channels, final int sampleRateHz, final SampleRing ring) {
+        start(channels, sampleRateHz, ring, 0);
+    }
+
+    /**
+     * Start streaming scans of channels into ring. A SCHED_FIFO priority keeps other threads from delaying scans, see
+     * RealTime.start.
+     *
+     * @param channels Scan list.
+     * @param sampleRateHz Scans per second, 1 to 1000000000.
+     * @param ring Sample ring with frame size equal to the number of channels.
+     * @param fifoPriority SCHED_FIFO priority of streaming thread or 0 for normal scheduling.
+     * @param cpus CPUs to pin streaming thread to or none.
+     */
+    public synchronized void start(final int[] channels, final int sampleRateHz, final SampleRing ring, final int fifoPriority,
+            final int... cpus) {
+        if (running) {
+            throw new RuntimeException("Streaming already running");
+        }
+        if (sampleRateHz <= 0 || sampleRateHz > 1_000_000_000) {
+            throw new RuntimeException(String.format("Sample rate %d Hz must be 1 to 1000000000", sampleRateHz));
+        }
+        if (ring.getFrameSize() != channels.length) {
+            throw new RuntimeException(String.format("Ring frame size %d must be %d", ring.getFrameSize(), channels.length));
+        }
+        final var batch = scan(bits, channels);
+        final var periodNs = 1_000_000_000L / sampleRateHz;
+        failure = null;
+        scans = 0;
+        missed = 0;
+        running = true;
+        try {
+            thread = RealTime.start(Mcp3x08.class.getSimpleName(), () -> run(batch, periodNs, ring), fifoPriority, cpus);
+        } catch (RuntimeException e) {
+            running = false;
+            throw e;
+        }
+    }
+
+    /**
+     * Stop streaming and wait for the current scan to finish.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Deadline;
+import com.codeferm.periphery.RealTime;
+import com.codeferm.periphery.mmio.MmioBus;
+import com.codeferm.periphery.mmio.Pin;
+import java.util.Arrays;
+
+/**
+ * Refresh engine for multiplexed 7-segment displays and LED matrices. Each digit (or matrix row) is lit in turn for a time slot of
+ * 1 / (refresh rate * digits). Segment (or column) and digit pins are on one MmioBus, so the pattern and digit select change with
+ * one register store per bank and there is no ghosting from switching them separately.
+ *
+ * The refresh thread parks until just before each deadline and then spins (Deadline.waitUntil). Give it a SCHED_FIFO priority to
+ * keep other threads from stretching slots, Java thread priorities have no effect on Linux. Brightness is set per digit as
+ * the part of the slot the digit is on. A slot that starts later than half its length is counted as missed and when the thread
+ * falls more than a frame behind it skips ahead instead of trying to catch up. Patterns are written to a back buffer and show swaps
+ * it in at the next frame, so nothing is allocated while refreshing.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MultiplexDisplay implements AutoCloseable {
+
+    /**
+     * Segment patterns for hex digits 0 to F with bit 0 as segment a and bit 6 as segment g.
+     */
+    public static final int[] HEX_SEGMENTS = {0x3f, 0x06, 0x5b, 0x4f, 0x66, 0x6d, 0x7d, 0x07, 0x7f, 0x6f, 0x77, 0x7c, 0x39, 0x5e,
+        0x79, 0x71};
+    /**
+     * Maximum brightness.
+     */
+    public static final int MAX_BRIGHTNESS = 255;
+    /**
+     * Segment and digit bus. Digit pins follow segment pins.
+     */
+    private final MmioBus bus;
+    /**
+     * Number of segments.
+     */
+    private final int segments;
+    /**
+     * Number of digits.
+     */
+    private final int digits;
+    /**
+     * Bits to invert for active low segments and digits.
+     */
+    private final int invert;
+    /**
+     * Slot length in nanoseconds.
+     */
+    private final long slotNs;
+    /**
+     * Front and back frame buffers.
+     */
+    private final int[][] frames;
+    /**
+     * Brightness per digit.
+     */
+    private final int[] brightness;
+    /**
+     * Index of front frame buffer.
+     */
+    private volatile int front;
+    /**
+     * Back buffer is ready to swap.
+     */
+    private volatile boolean pending;
+    /**
+     * Refresh thread.
+     */
+    private final Thread thread;
+    /**
+     * Thread running.
+     */
+    private volatile boolean running = true;
+    /**
+     * Frames refreshed.
+     */
+    private volatile long frameCount;
+    /**
+     * Missed slots.
+     */
+    private volatile long missed;
+    /**
+     * Maximum slot start lateness in nanoseconds.
+     */
+    private volatile long maxLateNs;
+
+    /**
+     * Create display and start refresh thread with normal scheduling.
+     *
+     * @param segmentPins Segment (or column) pins with segment a first.
+     * @param digitPins Digit (or row) select pins.
+     * @param segmentActiveHigh True if segments are on when high (common cathode).
+     * @param digitActiveHigh True if digits are selected when high (common anode).
+     * @param refreshHz Frames per second.
+     */
+    public MultiplexDisplay(final Pin[] segmentPins, final Pin[] digitPins, final boolean segmentActiveHigh,
+            final boolean digitActiveHigh, final int refreshHz) {
+        this(segmentPins, digitPins, segmentActiveHigh, digitActiveHigh, refreshHz, 0);
+    }
+
+    /**
+     * Create display and start refresh thread.
+     *
+     * @param segmentPins Segment (or column) pins with segment a first.
+     * @param digitPins Digit (or row) select pins.
+     * @param segmentActiveHigh True if segments are on when high (common cathode).
+     * @param digitActiveHigh True if digits are selected when high (common anode).
+     * @param refreshHz Frames per second.
+     * @param fifoPriority SCHED_FIFO priority of refresh thread or 0 for normal scheduling.
+     * @param cpus CPUs to pin refresh thread to or none.
+     */
+    public MultiplexDisplay(final Pin[] segmentPins, final Pin[] digitPins, final boolean segmentActiveHigh,
+            final boolean digitActiveHigh, final int refreshHz, final int fifoPriority, final int... cpus) {
+        this(new MmioBus(concat(segmentPins, digitPins)), segmentPins.length, segmentActiveHigh, digitActiveHigh, refreshHz,
+                fifoPriority, cpus);
+    }
+
+    /**
+     * Create display on segment and digit bus and start refresh thread.
+     *
+     * @param bus Segment pins followed by digit pins.
+     * @param segments Number of segment pins.
+     * @param segmentActiveHigh True if segments are on when high (common cathode).
+     * @param digitActiveHigh True if digits are selected when high (common anode).
+     * @param refreshHz Frames per second.
+     * @param fifoPriority SCHED_FIFO priority of refresh thread or 0 for normal scheduling.
+     * @param cpus CPUs to pin refresh thread to or none.
+     */
+    MultiplexDisplay(final MmioBus bus, final int segments, final boolean segmentActiveHigh, final boolean digitActiveHigh,
+            final int refreshHz, final int fifoPriority, final int... cpus) {
+        if (refreshHz <= 0) {
+            throw new RuntimeException(String.format("Refresh rate must be positive, not %d", refreshHz));
+        }
+        this.bus = bus;
+        this.segments = segments;
+        digits = bus.size() - segments;
+        final var segmentMask = (1 << segments) - 1;
+        final var digitMask = ((1 << digits) - 1) << segments;
+        invert = (segmentActiveHigh ? 0 : segmentMask) | (digitActiveHigh ? 0 : digitMask);
+        slotNs = 1000000000L / ((long) refreshHz * digits);
+        frames = new int[2][digits];
+        brightness = new int[digits];
+        Arrays.fill(brightness, MAX_BRIGHTNESS);
+        bus.write(invert);
+        thread = RealTime.start(MultiplexDisplay.class.getSimpleName(), this::run, fifoPriority, cpus);
+    }
+
+    /**
+     * Segment pins followed by digit pins.
+     *
+     * @param segmentPins Segment pins.
+     * @param digitPins Digit pins.
+     * @return Pins.
+     */
+    private static Pin[] concat(final Pin[] segmentPins, final Pin[] digitPins) {
+        final var pins = Arrays.copyOf(segmentPins, segmentPins.length + digitPins.length);
+        System.arraycopy(digitPins, 0, pins, segmentPins.length, digitPins.length);
+        return pins;
+    }
+
+    /**
+     * Stop refresh thread and blank display.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bus.write(invert);
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    public long getSlotNs() {
+        return slotNs;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getMissed() {
+        return missed;
+    }
+
+    public long getMaxLateNs() {
+        return maxLateNs;
+    }
+
+    /**
+     * Set segment pattern of digit in back buffer.
+     *
+     * @param digit Digit.
+     * @param pattern Segment bits with bit 0 for the first segment pin.
+     */
+    public void setSegments(final int digit, final int pattern) {
+        frames[front ^ 1][digit] = pattern & ((1 << segments) - 1);
+    }
+
+    /**
+     * Set hex digit in back buffer.
+     *
+     * @param digit Digit.
+     * @param value Value 0 to 15.
+     * @param point Turn on decimal point (segment 7).
+     */
+    public void setHex(final int digit, final int value, final boolean point) {
+        setSegments(digit, HEX_SEGMENTS[value & 0x0f] | (point ? 0x80 : 0));
+    }
+
+    /**
+     * Set brightness of one digit.
+     *
+     * @param digit Digit.
+     * @param value Brightness 0 to MAX_BRIGHTNESS.
+     */
+    public void setBrightness(final int digit, final int value) {
+        brightness[digit] = Math.max(0, Math.min(MAX_BRIGHTNESS, value));
+    }
+
+    /**
+     * Set brightness of all digits.
+     *
+     * @param value Brightness 0 to MAX_BRIGHTNESS.
+     */
+    public void setBrightness(final int value) {
+        for (var i = 0; i < digits; i++) {
+            setBrightness(i, value);
+        }
+    }
+
+    /**
+     * Show back buffer at the start of the next frame. The new back buffer starts as a copy of the shown frame.
+     */
+    public synchronized void show() {
+        pending = true;
+        while (pending && running) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        System.arraycopy(frames[front], 0, frames[front ^ 1], 0, digits);
+    }
+
+    /**
+     * Swap buffers if show is waiting.
+     */
+    private void swap() {
+        if (pending) {
+            synchronized (this) {
+                front ^= 1;
+                pending = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Refresh loop.
+     */
+    private void run() {
+        var deadline = System.nanoTime();
+        var late = 0L;
+        try {
+            while (running) {
+                swap();
+                final var frame = frames[front];
+                for (var digit = 0; digit < digits && running; digit++) {
+                    final var start = Deadline.waitUntil(deadline) - deadline;
+                    if (start > slotNs / 2) {
+                        missed++;
+                    }
+                    late = Math.max(late, start);
+                    final var onNs = slotNs * brightness[digit] / MAX_BRIGHTNESS;
+                    if (onNs > 0) {
+                        bus.write((frame[digit] | (1 << (segments + digit))) ^ invert);
+                        if (onNs < slotNs) {
+                            Deadline.waitUntil(deadline + onNs);
+                            bus.write(invert);
+                        }
+                    } else {
+                        bus.write(invert);
+                    }
+                    deadline += slotNs;
+                }
+                // Skip ahead when more than a frame behind
+                final var now = System.nanoTime();
+                if (now - deadline > slotNs * digits) {
+                    deadline = now;
+                }
+                frameCount++;
+                maxLateNs = late;
+            }
+        } finally {
+            synchronized (this) {
+                pending = false;
+                notifyAll();
+            }
+        }
+    }
+}
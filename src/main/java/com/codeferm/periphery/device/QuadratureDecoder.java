@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Quadrature decoder using a 4x state table. Every edge of A and B is counted.
+ *
+ * Edge events are queued per line, then process merges both queues by timestamp. Events newer than the last event ever queued for
+ * the other line are held back for the next batch, so an edge that was still in the other line's kernel buffer is never counted
+ * out of order. This holds even when the other line's queue is empty, since that line may have an older edge that arrived after
+ * it was drained. Held back events are counted once the other line moves past them, on flush or when a queue fills up. Each event
+ * changes one line, so an edge that leaves the state unchanged means edges were lost and it is counted as illegal. Position,
+ * velocity and illegal count are published with a sequence lock, so sample is consistent without locking the decoding thread. One
+ * thread calls add and process, any thread can call sample.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class QuadratureDecoder {
+
+    /**
+     * Line A.
+     */
+    public static final int LINE_A = 0;
+    /**
+     * Line B.
+     */
+    public static final int LINE_B = 1;
+    /**
+     * Maximum queued events per line.
+     */
+    public static final int BATCH = 256;
+    /**
+     * Illegal transition table value.
+     */
+    private static final int ILLEGAL = 2;
+    /**
+     * Indexed by old state << 2 | new state where state is A << 1 | B.
+     */
+    private static final int[] TABLE = {
+        ILLEGAL, 1, -1, ILLEGAL,
+        -1, ILLEGAL, ILLEGAL, 1,
+        1, ILLEGAL, ILLEGAL, -1,
+        ILLEGAL, -1, 1, ILLEGAL
+    };
+    /**
+     * Queued timestamps per line.
+     */
+    private final long[][] timestamps = new long[2][BATCH];
+    /**
+     * Queued rising flags per line.
+     */
+    private final boolean[][] rising = new boolean[2][BATCH];
+    /**
+     * Queued event count per line.
+     */
+    private final int[] count = new int[2];
+    /**
+     * Timestamp of last event queued per line, kept after the event is counted.
+     */
+    private final long[] last = {Long.MIN_VALUE, Long.MIN_VALUE};
+    /**
+     * Velocity window in nanoseconds.
+     */
+    private final long windowNs;
+    /**
+     * Current state A << 1 | B.
+     */
+    private int state;
+    /**
+     * Sequence lock. Odd while publishing.
+     */
+    private volatile int seq;
+    /**
+     * Position in counts.
+     */
+    private long position;
+    /**
+     * Illegal transitions.
+     */
+    private long illegal;
+    /**
+     * Last edge timestamp.
+     */
+    private long timestamp;
+    /**
+     * Velocity in counts per second.
+     */
+    private double velocity;
+    /**
+     * Position at start of velocity window.
+     */
+    private long windowPosition;
+    /**
+     * Timestamp at start of velocity window, 0 if not started.
+     */
+    private long windowTimestamp;
+
+    /**
+     * Consistent snapshot of decoder state. Allocate once and reuse.
+     */
+    public static class Sample {
+
+        /**
+         * Position in counts.
+         */
+        private long position;
+        /**
+         * Illegal transitions.
+         */
+        private long illegal;
+        /**
+         * Last edge timestamp.
+         */
+        private long timestamp;
+        /**
+         * Velocity in counts per second.
+         */
+        private double velocity;
+
+        public long getPosition() {
+            return position;
+        }
+
+        public Sample setPosition(final long position) {
+            this.position = position;
+            return this;
+        }
+
+        public long getIllegal() {
+            return illegal;
+        }
+
+        public Sample setIllegal(final long illegal) {
+            this.illegal = illegal;
+            return this;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Sample setTimestamp(final long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        public double getVelocity() {
+            return velocity;
+        }
+
+        public Sample setVelocity(final double velocity) {
+            this.velocity = velocity;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "Sample{" + "position=" + position + ", illegal=" + illegal + ", timestamp=" + timestamp + ", velocity=" + velocity
+                    + '}';
+        }
+    }
+
+    /**
+     * Create decoder with initial line levels.
+     *
+     * @param a Line A level.
+     * @param b Line B level.
+     * @param windowNs Minimum time between velocity updates in nanoseconds.
+     */
+    public QuadratureDecoder(final boolean a, final boolean b, final long windowNs) {
+        state = (a ? 2 : 0) | (b ? 1 : 0);
+        this.windowNs = windowNs;
+    }
+
+    /**
+     * Check if line queue has room.
+     *
+     * @param line LINE_A or LINE_B.
+     * @return True if an event can be added.
+     */
+    public boolean canAdd(final int line) {
+        return count[line] < BATCH;
+    }
+
+    /**
+     * Queue edge event. Events for a line must be added in timestamp order.
+     *
+     * @param line LINE_A or LINE_B.
+     * @param edge GPIO_EDGE_RISING or GPIO_EDGE_FALLING.
+     * @param timestamp Edge timestamp in nanoseconds.
+     */
+    public void add(final int line, final int edge, final long timestamp) {
+        final var n = count[line];
+        timestamps[line][n] = timestamp;
+        rising[line][n] = edge == GPIO_EDGE_RISING;
+        count[line] = n + 1;
+        last[line] = timestamp;
+    }
+
+    /**
+     * Apply one edge to the state table.
+     *
+     * @param line LINE_A or LINE_B.
+     * @param isRising True if line went high.
+     * @param edgeTimestamp Edge timestamp in nanoseconds.
+     */
+    private void edge(final int line, final boolean isRising, final long edgeTimestamp) {
+        final var bit = line == LINE_A ? 2 : 1;
+        final var next = isRising ? state | bit : state & ~bit;
+        final var delta = TABLE[(state << 2) | next];
+        if (delta == ILLEGAL) {
+            illegal++;
+        } else {
+            position += delta;
+        }
+        state = next;
+        timestamp = edgeTimestamp;
+        if (windowTimestamp == 0) {
+            windowTimestamp = edgeTimestamp;
+            windowPosition = position;
+        } else if (edgeTimestamp - windowTimestamp >= windowNs) {
+            velocity = (position - windowPosition) * 1000000000.0 / (edgeTimestamp - windowTimestamp);
+            windowTimestamp = edgeTimestamp;
+            windowPosition = position;
+        }
+    }
+
+    /**
+     * Merge queued events by timestamp, count them and publish.
+     *
+     * @param flush True to count held back events. Use only when no events are pending in the kernel, e.g. after a poll timeout.
+     * @return Number of events processed.
+     */
+    private int merge(final boolean flush) {
+        final var na = count[LINE_A];
+        final var nb = count[LINE_B];
+        final var tsA = timestamps[LINE_A];
+        final var tsB = timestamps[LINE_B];
+        var horizon = Long.MAX_VALUE;
+        // A full queue cannot take more events, so it is counted rather than stall on a line that is not moving
+        if (!flush && na < BATCH && nb < BATCH) {
+            horizon = Math.min(last[LINE_A], last[LINE_B]);
+        }
+        var i = 0;
+        var j = 0;
+        seq++;
+        VarHandle.storeStoreFence();
+        while (i < na || j < nb) {
+            if (j >= nb || (i < na && tsA[i] <= tsB[j])) {
+                if (tsA[i] > horizon) {
+                    break;
+                }
+                edge(LINE_A, rising[LINE_A][i], tsA[i]);
+                i++;
+            } else {
+                if (tsB[j] > horizon) {
+                    break;
+                }
+                edge(LINE_B, rising[LINE_B][j], tsB[j]);
+                j++;
+            }
+        }
+        seq++;
+        // Keep held back events
+        System.arraycopy(tsA, i, tsA, 0, na - i);
+        System.arraycopy(rising[LINE_A], i, rising[LINE_A], 0, na - i);
+        count[LINE_A] = na - i;
+        System.arraycopy(tsB, j, tsB, 0, nb - j);
+        System.arraycopy(rising[LINE_B], j, rising[LINE_B], 0, nb - j);
+        count[LINE_B] = nb - j;
+        return i + j;
+    }
+
+    /**
+     * Merge queued events by timestamp, count them and publish. Events newer than the last event queued for the other line are
+     * held back.
+     *
+     * @return Number of events processed.
+     */
+    public int process() {
+        return merge(false);
+    }
+
+    /**
+     * Count all queued events including held back events.
+     *
+     * @return Number of events processed.
+     */
+    public int flush() {
+        return merge(true);
+    }
+
+    /**
+     * No edges for a while, so encoder stopped. Velocity is set to 0.
+     */
+    public void idle() {
+        seq++;
+        VarHandle.storeStoreFence();
+        velocity = 0.0;
+        windowTimestamp = 0;
+        seq++;
+    }
+
+    /**
+     * Get consistent snapshot of position, illegal count, last edge timestamp and velocity.
+     *
+     * @param sample Sample to fill.
+     */
+    public void sample(final Sample sample) {
+        int before;
+        do {
+            before = seq;
+            sample.setPosition(position).setIllegal(illegal).setTimestamp(timestamp).setVelocity(velocity);
+            VarHandle.loadLoadFence();
+        } while ((before & 1) != 0 || before != seq);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.cString;
+import com.codeferm.periphery.Gpio;
+import static com.codeferm.periphery.Gpio.GPIO_BIAS_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_IN;
+import static com.codeferm.periphery.Gpio.GPIO_DRIVE_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_BOTH;
+import static com.codeferm.periphery.Gpio.GPIO_POLL_EVENT;
+import static com.codeferm.periphery.Gpio.GPIO_SUCCESS;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import org.fusesource.hawtjni.runtime.JniArg;
+import org.fusesource.hawtjni.runtime.JniClass;
+import org.fusesource.hawtjni.runtime.JniMethod;
+import org.fusesource.hawtjni.runtime.Library;
+
+/**
+ * Quadrature rotary encoder on two GPIO lines.
+ *
+ * In Java mode call poll from one thread. Events from both lines are drained in batches and counted by QuadratureDecoder. For the
+ * highest edge rates call runNative from a dedicated thread instead. It drains, merges and counts events in native code
+ * (quadrature.c) until stop is called, so no JNI call is made per edge. In both modes sample returns a consistent position and
+ * velocity from any thread.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@JniClass
+public class QuadratureEncoder implements AutoCloseable {
+
+    /**
+     * Default velocity window in nanoseconds.
+     */
+    public static final long WINDOW_NS = 10000000;
+    /**
+     * java-periphery library.
+     */
+    private static final Library LIBRARY = new Library("java-periphery", QuadratureEncoder.class);
+    /**
+     * Line A GPIO.
+     */
+    private final Gpio gpioA;
+    /**
+     * Line B GPIO.
+     */
+    private final Gpio gpioB;
+    /**
+     * Java mode decoder.
+     */
+    private final QuadratureDecoder decoder;
+    /**
+     * Native accumulator handle.
+     */
+    final private long handle;
+    /**
+     * GPIO handles for poll multiple.
+     */
+    private final long[] gpios;
+    /**
+     * Lines with events.
+     */
+    private final boolean[] ready = new boolean[2];
+    /**
+     * Edge read buffer.
+     */
+    private final int[] edge = new int[1];
+    /**
+     * Timestamp read buffer.
+     */
+    private final long[] timestamp = new long[1];
+    /**
+     * Native sample counts.
+     */
+    private final long[] counts = new long[3];
+    /**
+     * Native sample velocity.
+     */
+    private final double[] velocity = new double[1];
+    /**
+     * True while native accumulation is running.
+     */
+    private volatile boolean nativeMode;
+
+    /**
+     * Load library.
+     */
+    static {
+        LIBRARY.load();
+    }
+
+    /**
+     * Open both lines with both edge detection.
+     *
+     * @param path GPIO chip character device path.
+     * @param lineA Line A.
+     * @param lineB Line B.
+     * @param windowNs Minimum time between velocity updates in nanoseconds.
+     */
+    public QuadratureEncoder(final String path, final int lineA, final int lineB, final long windowNs) {
+        gpioA = new Gpio(path, lineA, new Gpio.GpioConfig().setBias(GPIO_BIAS_DEFAULT).setDirection(GPIO_DIR_IN).setDrive(
+                GPIO_DRIVE_DEFAULT).setEdge(GPIO_EDGE_BOTH).setInverted(false).setLabel(cString(QuadratureEncoder.class.
+                getSimpleName())));
+        gpioB = new Gpio(path, lineB, new Gpio.GpioConfig().setBias(GPIO_BIAS_DEFAULT).setDirection(GPIO_DIR_IN).setDrive(
+                GPIO_DRIVE_DEFAULT).setEdge(GPIO_EDGE_BOTH).setInverted(false).setLabel(cString(QuadratureEncoder.class.
+                getSimpleName())));
+        gpios = new long[]{gpioA.getHandle(), gpioB.getHandle()};
+        final var value = new boolean[1];
+        Gpio.gpioRead(gpioA.getHandle(), value);
+        final var a = value[0];
+        Gpio.gpioRead(gpioB.getHandle(), value);
+        decoder = new QuadratureDecoder(a, value[0], windowNs);
+        handle = quadratureNew(gpioA.getHandle(), gpioB.getHandle(), a, value[0], windowNs);
+        if (handle == 0) {
+            throw new RuntimeException("Handle cannot be NULL");
+        }
+    }
+
+    /**
+     * Open both lines using default velocity window.
+     *
+     * @param path GPIO chip character device path.
+     * @param lineA Line A.
+     * @param lineB Line B.
+     */
+    public QuadratureEncoder(final String path, final int lineA, final int lineB) {
+        this(path, lineA, lineB, WINDOW_NS);
+    }
+
+    /**
+     * Free handle and close GPIOs. Stop native accumulation first.
+     */
+    @Override
+    public void close() {
+        quadratureFree(handle);
+        gpioA.close();
+        gpioB.close();
+    }
+
+    /**
+     * Handle accessor.
+     *
+     * @return Handle.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    /**
+     * Allocate native accumulator.
+     *
+     * @param gpioA Line A GPIO handle.
+     * @param gpioB Line B GPIO handle.
+     * @param a Line A level.
+     * @param b Line B level.
+     * @param windowNs Minimum time between velocity updates in nanoseconds.
+     * @return A valid handle on success, or NULL on failure.
+     */
+    @JniMethod(cast = "quadrature_t *", accessor = "quadrature_new")
+    public static final native long quadratureNew(@JniArg(cast = "gpio_t *") long gpioA, @JniArg(cast = "gpio_t *") long gpioB,
+            boolean a, boolean b, @JniArg(cast = "uint64_t") long windowNs);
+
+    /**
+     * Drain, merge and count events until stopped.
+     *
+     * @param quad Valid pointer to an allocated quadrature handle structure.
+     * @param timeoutMs Poll timeout. Velocity is set to 0 and stop is checked after each timeout.
+     * @return 0 on success, or a negative GPIO error code on failure.
+     */
+    @JniMethod(accessor = "quadrature_run")
+    public static native int quadratureRun(@JniArg(cast = "quadrature_t *") long quad, int timeoutMs);
+
+    /**
+     * Stop quadratureRun after the current poll.
+     *
+     * @param quad Valid pointer to an allocated quadrature handle structure.
+     */
+    @JniMethod(accessor = "quadrature_stop")
+    public static native void quadratureStop(@JniArg(cast = "quadrature_t *") long quad);
+
+    /**
+     * Consistent snapshot of position, illegal count, last edge timestamp and velocity.
+     *
+     * @param quad Valid pointer to an allocated quadrature handle structure.
+     * @param counts Position, illegal count and timestamp.
+     * @param velocity Velocity in counts per second.
+     */
+    @JniMethod(accessor = "quadrature_sample")
+    public static native void quadratureSample(@JniArg(cast = "quadrature_t *") long quad, @JniArg(cast = "int64_t *", flags = {
+        NO_IN}) long[] counts, @JniArg(flags = {NO_IN}) double[] velocity);
+
+    /**
+     * Free native accumulator.
+     *
+     * @param quad Valid pointer to an allocated quadrature handle structure.
+     */
+    @JniMethod(accessor = "quadrature_free")
+    public static native void quadratureFree(@JniArg(cast = "quadrature_t *") long quad);
+
+    /**
+     * Throw on GPIO error.
+     *
+     * @param gpio GPIO handle.
+     * @param ret Return value.
+     * @return Return value.
+     */
+    private static int check(final long gpio, final int ret) {
+        if (ret < 0) {
+            throw new RuntimeException(Gpio.gpioErrMessage(gpio));
+        }
+        return ret;
+    }
+
+    /**
+     * Wait for edges, drain both lines and count events in Java.
+     *
+     * @param timeoutMs Poll timeout in milliseconds. Velocity is set to 0 on timeout.
+     * @return Number of events counted.
+     */
+    public int poll(final int timeoutMs) {
+        final var ret = Gpio.gpioPollMultiple(gpios, 2, timeoutMs, ready);
+        if (ret < 0) {
+            throw new RuntimeException(String.format("Poll error %d", ret));
+        }
+        if (ret == 0) {
+            // Nothing pending in the kernel, so held back events can be counted
+            final var flushed = decoder.flush();
+            decoder.idle();
+            return flushed;
+        }
+        for (var line = QuadratureDecoder.LINE_A; line <= QuadratureDecoder.LINE_B; line++) {
+            while (decoder.canAdd(line) && check(gpios[line], Gpio.gpioPoll(gpios[line], 0)) == GPIO_POLL_EVENT) {
+                check(gpios[line], Gpio.gpioReadEvent(gpios[line], edge, timestamp));
+                decoder.add(line, edge[0], timestamp[0]);
+            }
+        }
+        return decoder.process();
+    }
+
+    /**
+     * Count events in native code until stop is called. Blocks the calling thread. sample reads the native counters until this
+     * returns.
+     *
+     * @param timeoutMs Poll timeout in milliseconds.
+     */
+    public void runNative(final int timeoutMs) {
+        nativeMode = true;
+        try {
+            final var ret = quadratureRun(handle, timeoutMs);
+            if (ret != GPIO_SUCCESS) {
+                throw new RuntimeException(String.format("Native accumulation error %d", ret));
+            }
+        } finally {
+            nativeMode = false;
+        }
+    }
+
+    /**
+     * Stop native accumulation.
+     */
+    public void stop() {
+        quadratureStop(handle);
+    }
+
+    /**
+     * Get consistent snapshot from the active mode.
+     *
+     * @param sample Sample to fill.
+     */
+    public void sample(final QuadratureDecoder.Sample sample) {
+        if (nativeMode) {
+            synchronized (counts) {
+                quadratureSample(handle, counts, velocity);
+                sample.setPosition(counts[0]).setIllegal(counts[1]).setTimestamp(counts[2]).setVelocity(velocity[0]);
+            }
+        } else {
+            decoder.sample(sample);
+        }
+    }
+}
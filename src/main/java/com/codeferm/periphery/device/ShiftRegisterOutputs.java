@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Gpio;
+import com.codeferm.periphery.Spi;
+import static com.codeferm.periphery.Spi.SPI_SUCCESS;
+
+/**
+ * Daisy chained 74HC595 shift registers as N x 8 output pins. SER is MOSI, SRCLK is SCLK and RCLK (latch) is a GPIO output. SPI
+ * mode 0, MSB first.
+ *
+ * Pin writes only change a shadow buffer kept in shift order, so flush sends every register in one SPI transfer followed by one
+ * latch pulse no matter how many pins changed, and nothing when none changed. With auto flush on each write is sent at once like
+ * Gpio.gpioWrite. Pin 0 is Q0 of the register nearest the SPI controller.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ShiftRegisterOutputs {
+
+    /**
+     * SPI handle.
+     */
+    private final long spi;
+    /**
+     * Latch GPIO handle.
+     */
+    private final long latch;
+    /**
+     * Number of registers.
+     */
+    private final int chips;
+    /**
+     * Output state in shift order, the last register's byte first.
+     */
+    private final byte[] shadow;
+    /**
+     * Shadow changed since the last flush.
+     */
+    private boolean dirty = true;
+    /**
+     * Flush after every write.
+     */
+    private boolean autoFlush;
+    /**
+     * Transfers sent.
+     */
+    private long flushes;
+
+    /**
+     * Create outputs. All outputs are low until the first flush.
+     *
+     * @param spi SPI handle.
+     * @param latch RCLK GPIO output handle.
+     * @param chips Number of registers in the chain.
+     */
+    public ShiftRegisterOutputs(final long spi, final long latch, final int chips) {
+        if (chips < 1) {
+            throw new RuntimeException("Chips must be greater than 0");
+        }
+        this.spi = spi;
+        this.latch = latch;
+        this.chips = chips;
+        shadow = new byte[chips];
+    }
+
+    public int getChips() {
+        return chips;
+    }
+
+    /**
+     * Number of output pins.
+     *
+     * @return Pins.
+     */
+    public int getPins() {
+        return chips * 8;
+    }
+
+    public synchronized boolean isAutoFlush() {
+        return autoFlush;
+    }
+
+    /**
+     * Flush after every write, like Gpio.gpioWrite.
+     *
+     * @param autoFlush True to flush after every write.
+     */
+    public synchronized void setAutoFlush(final boolean autoFlush) {
+        this.autoFlush = autoFlush;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    public synchronized long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Copy of shadow buffer in shift order.
+     *
+     * @return Bytes as they are sent.
+     */
+    public synchronized byte[] getShadow() {
+        return shadow.clone();
+    }
+
+    /**
+     * Shadow byte of pin's register.
+     *
+     * @param chips Number of registers.
+     * @param pin Pin.
+     * @return Index in shift order.
+     */
+    public static int index(final int chips, final int pin) {
+        // The first byte shifted out ends up in the last register
+        return chips - 1 - pin / 8;
+    }
+
+    /**
+     * Check pin.
+     *
+     * @param pin Pin.
+     */
+    private void check(final int pin) {
+        if (pin < 0 || pin >= chips * 8) {
+            throw new RuntimeException(String.format("Pin %d must be 0 to %d", pin, chips * 8 - 1));
+        }
+    }
+
+    /**
+     * Check chip.
+     *
+     * @param chip Register.
+     */
+    private void checkChip(final int chip) {
+        if (chip < 0 || chip >= chips) {
+            throw new RuntimeException(String.format("Chip %d must be 0 to %d", chip, chips - 1));
+        }
+    }
+
+    /**
+     * Set pin in shadow.
+     *
+     * @param pin Pin.
+     * @param value Value.
+     */
+    private void set(final int pin, final boolean value) {
+        final var i = index(chips, pin);
+        final var old = shadow[i];
+        final var mask = 1 << (pin & 7);
+        shadow[i] = (byte) (value ? old | mask : old & ~mask);
+        if (shadow[i] != old) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write pin.
+     *
+     * @param pin Pin.
+     * @param value Value.
+     */
+    public synchronized void write(final int pin, final boolean value) {
+        check(pin);
+        set(pin, value);
+        if (autoFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Read pin from shadow.
+     *
+     * @param pin Pin.
+     * @return Value last written.
+     */
+    public synchronized boolean read(final int pin) {
+        check(pin);
+        return (shadow[index(chips, pin)] & 1 << (pin & 7)) != 0;
+    }
+
+    /**
+     * Toggle pin.
+     *
+     * @param pin Pin.
+     */
+    public synchronized void toggle(final int pin) {
+        write(pin, !read(pin));
+    }
+
+    /**
+     * Write up to 64 pins starting at pin 0 in one update.
+     *
+     * @param mask Pins to change, bit n is pin n.
+     * @param values New values, bit n is pin n.
+     */
+    public synchronized void write(final long mask, final long values) {
+        for (var pin = 0; pin < Math.min(64, chips * 8); pin++) {
+            if ((mask >>> pin & 1) != 0) {
+                set(pin, (values >>> pin & 1) != 0);
+            }
+        }
+        if (autoFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Write all pins of one register.
+     *
+     * @param chip Register, 0 is nearest the SPI controller.
+     * @param value Q7 to Q0.
+     */
+    public synchronized void writeChip(final int chip, final int value) {
+        checkChip(chip);
+        final var i = index(chips, chip * 8);
+        if (shadow[i] != (byte) value) {
+            shadow[i] = (byte) value;
+            dirty = true;
+        }
+        if (autoFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Send shadow and pulse latch if anything changed.
+     *
+     * @return True if sent.
+     */
+    public synchronized boolean flush() {
+        if (!dirty) {
+            return false;
+        }
+        final var ret = Spi.spiTransfer(spi, shadow, null, chips);
+        if (ret != SPI_SUCCESS) {
+            throw new RuntimeException(String.format("Shift register write failed with error %d", ret));
+        }
+        // Outputs change on the rising edge of RCLK
+        if (Gpio.gpioWrite(latch, true) != 0 || Gpio.gpioWrite(latch, false) != 0) {
+            throw new RuntimeException("Latch write failed");
+        }
+        dirty = false;
+        flushes++;
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+/**
+ * Stepper motor acceleration profiles. Step intervals are written to a caller supplied array, so nothing is allocated and profiles
+ * can be computed before a move starts.
+ *
+ * intervals[i] is the delay in nanoseconds before step i. Trapezoidal uses the AVR446 recurrence (Atmel application note "Linear
+ * speed control of stepper motor"). S-curve ramps velocity with a smoothstep, so acceleration starts and ends at 0 and jerk is
+ * limited. If the move is too short to reach maximum speed both profiles lower the peak speed.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class StepProfile {
+
+    /**
+     * AVR446 first step correction factor.
+     */
+    public static final double AVR446_C0 = 0.676;
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NS = 1000000000.0;
+    /**
+     * Bisection iterations when inverting S-curve ramp.
+     */
+    private static final int ITERATIONS = 48;
+
+    /**
+     * Utility class.
+     */
+    private StepProfile() {
+    }
+
+    /**
+     * Check arguments.
+     *
+     * @param intervals Step intervals.
+     * @param steps Number of steps.
+     * @param maxSpeed Maximum speed in steps per second.
+     * @param accel Acceleration in steps per second squared.
+     * @param decel Deceleration in steps per second squared.
+     */
+    private static void check(final long[] intervals, final int steps, final double maxSpeed, final double accel,
+            final double decel) {
+        if (steps < 0 || steps > intervals.length) {
+            throw new RuntimeException(String.format("Steps %d must be 0 to %d", steps, intervals.length));
+        }
+        if (maxSpeed <= 0 || accel <= 0 || decel <= 0) {
+            throw new RuntimeException("Speed, acceleration and deceleration must be greater than 0");
+        }
+    }
+
+    /**
+     * AVR446 trapezoidal profile.
+     *
+     * @param intervals Step intervals in nanoseconds.
+     * @param steps Number of steps.
+     * @param maxSpeed Maximum speed in steps per second.
+     * @param accel Acceleration in steps per second squared.
+     * @param decel Deceleration in steps per second squared.
+     * @return Number of steps.
+     */
+    public static int trapezoidal(final long[] intervals, final int steps, final double maxSpeed, final double accel,
+            final double decel) {
+        check(intervals, steps, maxSpeed, accel, decel);
+        if (steps == 0) {
+            return 0;
+        }
+        // Steps to reach maximum speed and to stop from it
+        var accelSteps = Math.max(1, (int) (maxSpeed * maxSpeed / (2.0 * accel)));
+        var decelSteps = Math.max(1, (int) (maxSpeed * maxSpeed / (2.0 * decel)));
+        if (accelSteps + decelSteps > steps) {
+            // Triangle, so meet where acceleration and deceleration cross
+            accelSteps = Math.max(1, (int) ((long) steps * decel / (accel + decel)));
+            decelSteps = steps - accelSteps;
+        }
+        final var cruise = Math.round(NS / maxSpeed);
+        // Acceleration ramp c(n) = c(n-1) - 2c(n-1) / (4n + 1)
+        var c = AVR446_C0 * Math.sqrt(2.0 / accel) * NS;
+        for (var n = 0; n < accelSteps; n++) {
+            if (n > 0) {
+                c -= 2.0 * c / (4.0 * n + 1.0);
+            }
+            intervals[n] = Math.max(Math.round(c), cruise);
+        }
+        for (var n = accelSteps; n < steps - decelSteps; n++) {
+            intervals[n] = cruise;
+        }
+        // Deceleration ramp is the same recurrence filled from the end
+        c = AVR446_C0 * Math.sqrt(2.0 / decel) * NS;
+        for (var n = 0; n < decelSteps; n++) {
+            if (n > 0) {
+                c -= 2.0 * c / (4.0 * n + 1.0);
+            }
+            intervals[steps - 1 - n] = Math.max(Math.round(c), cruise);
+        }
+        return steps;
+    }
+
+    /**
+     * Time to travel distance from rest on smoothstep ramp. Velocity is v(3u² - 2u³) and position is vT(u³ - u⁴ / 2) where u = t / T.
+     *
+     * @param distance Distance in steps.
+     * @param speed Speed at end of ramp.
+     * @param rampTime Ramp time in seconds.
+     * @return Time in seconds.
+     */
+    private static double sCurveTime(final double distance, final double speed, final double rampTime) {
+        final var target = distance / (speed * rampTime);
+        var lo = 0.0;
+        var hi = 1.0;
+        for (var i = 0; i < ITERATIONS; i++) {
+            final var u = (lo + hi) / 2.0;
+            if (u * u * u - u * u * u * u / 2.0 < target) {
+                lo = u;
+            } else {
+                hi = u;
+            }
+        }
+        return (lo + hi) / 2.0 * rampTime;
+    }
+
+    /**
+     * S-curve profile. Peak acceleration is accel and peak deceleration is decel.
+     *
+     * @param intervals Step intervals in nanoseconds.
+     * @param steps Number of steps.
+     * @param maxSpeed Maximum speed in steps per second.
+     * @param accel Peak acceleration in steps per second squared.
+     * @param decel Peak deceleration in steps per second squared.
+     * @return Number of steps.
+     */
+    public static int sCurve(final long[] intervals, final int steps, final double maxSpeed, final double accel, final double decel) {
+        check(intervals, steps, maxSpeed, accel, decel);
+        if (steps == 0) {
+            return 0;
+        }
+        // Smoothstep peak acceleration is 1.5 v / T and ramp distance is vT / 2
+        var speed = maxSpeed;
+        if (0.75 * speed * speed * (1.0 / accel + 1.0 / decel) > steps) {
+            speed = Math.sqrt(steps / (0.75 * (1.0 / accel + 1.0 / decel)));
+        }
+        final var accelTime = 1.5 * speed / accel;
+        final var decelTime = 1.5 * speed / decel;
+        final var accelDist = speed * accelTime / 2.0;
+        final var decelDist = speed * decelTime / 2.0;
+        final var decelStart = Math.max(accelDist, steps - decelDist);
+        final var total = accelTime + (decelStart - accelDist) / speed + decelTime;
+        var last = 0.0;
+        for (var n = 1; n <= steps; n++) {
+            final double time;
+            if (n <= accelDist) {
+                time = sCurveTime(n, speed, accelTime);
+            } else if (n <= decelStart) {
+                time = accelTime + (n - accelDist) / speed;
+            } else {
+                // Deceleration is the acceleration ramp mirrored from the end
+                time = total - sCurveTime(Math.max(0.0, steps - n), speed, decelTime);
+            }
+            intervals[n - 1] = Math.round((time - last) * NS);
+            last = time;
+        }
+        return steps;
+    }
+
+    /**
+     * Total time of profile.
+     *
+     * @param intervals Step intervals in nanoseconds.
+     * @param steps Number of steps.
+     * @return Time in nanoseconds.
+     */
+    public static long duration(final long[] intervals, final int steps) {
+        var sum = 0L;
+        for (var i = 0; i < steps; i++) {
+            sum += intervals[i];
+        }
+        return sum;
+    }
+}
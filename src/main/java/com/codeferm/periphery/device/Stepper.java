@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Deadline;
+import com.codeferm.periphery.RealTime;
+import com.codeferm.periphery.mmio.MmioPin;
+import com.codeferm.periphery.mmio.Pin;
+
+/**
+ * Step/dir stepper motor service for one or more axes.
+ *
+ * Step intervals are computed by StepProfile before the move starts and pulses are emitted through MMIO pins from a dedicated
+ * thread. The thread parks until just before each deadline and then spins, so pulses land within a few µs. Axes move together
+ * using Bresenham line stepping, so the axis with the most steps follows the profile and the others are spread evenly along it.
+ * The difference between each deadline and the actual pulse time is recorded as jitter.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Stepper implements AutoCloseable {
+
+    /**
+     * AVR446 trapezoidal profile.
+     */
+    public static final int PROFILE_TRAPEZOIDAL = 0;
+    /**
+     * S-curve profile.
+     */
+    public static final int PROFILE_S_CURVE = 1;
+    /**
+     * Step pins.
+     */
+    private final MmioPin[] stepPins;
+    /**
+     * Direction pins.
+     */
+    private final MmioPin[] dirPins;
+    /**
+     * Step pulse width in nanoseconds.
+     */
+    private final long pulseNs;
+    /**
+     * Step intervals of master axis.
+     */
+    private final long[] intervals;
+    /**
+     * Steps per axis of current move.
+     */
+    private final int[] deltas;
+    /**
+     * Bresenham error per axis.
+     */
+    private final long[] errors;
+    /**
+     * Steps taken per axis in current move.
+     */
+    private final long[] taken;
+    /**
+     * Position per axis.
+     */
+    private final long[] positions;
+    /**
+     * Pulse thread.
+     */
+    private final Thread thread;
+    /**
+     * Master axis steps of current move.
+     */
+    private int moveSteps;
+    /**
+     * Move waiting or running.
+     */
+    private boolean busy;
+    /**
+     * Thread running.
+     */
+    private volatile boolean running = true;
+    /**
+     * Number of pulses timed.
+     */
+    private long pulses;
+    /**
+     * Total jitter in nanoseconds.
+     */
+    private long totalJitterNs;
+    /**
+     * Maximum jitter in nanoseconds.
+     */
+    private long maxJitterNs;
+
+    /**
+     * Create axes and start pulse thread with normal scheduling.
+     *
+     * @param stepPins Step pin per axis.
+     * @param dirPins Direction pin per axis.
+     * @param pulseNs Step pulse width in nanoseconds.
+     * @param maxSteps Maximum steps in one move.
+     */
+    public Stepper(final Pin[] stepPins, final Pin[] dirPins, final long pulseNs, final int maxSteps) {
+        this(stepPins, dirPins, pulseNs, maxSteps, 0);
+    }
+
+    /**
+     * Create axes and start pulse thread. A SCHED_FIFO priority keeps other threads from delaying pulses, see RealTime.start.
+     *
+     * @param stepPins Step pin per axis.
+     * @param dirPins Direction pin per axis.
+     * @param pulseNs Step pulse width in nanoseconds.
+     * @param maxSteps Maximum steps in one move.
+     * @param fifoPriority SCHED_FIFO priority of pulse thread or 0 for normal scheduling.
+     * @param cpus CPUs to pin pulse thread to or none.
+     */
+    public Stepper(final Pin[] stepPins, final Pin[] dirPins, final long pulseNs, final int maxSteps, final int fifoPriority,
+            final int... cpus) {
+        if (stepPins.length != dirPins.length) {
+            throw new RuntimeException("Each axis requires a step and direction pin");
+        }
+        this.stepPins = new MmioPin[stepPins.length];
+        this.dirPins = new MmioPin[dirPins.length];
+        for (var i = 0; i < stepPins.length; i++) {
+            this.stepPins[i] = new MmioPin(stepPins[i]);
+            this.stepPins[i].low();
+            this.dirPins[i] = new MmioPin(dirPins[i]);
+        }
+        this.pulseNs = pulseNs;
+        intervals = new long[maxSteps];
+        deltas = new int[stepPins.length];
+        errors = new long[stepPins.length];
+        taken = new long[stepPins.length];
+        positions = new long[stepPins.length];
+        thread = RealTime.start(Stepper.class.getSimpleName(), this::run, fifoPriority, cpus);
+    }
+
+    /**
+     * Stop pulse thread. Current move is abandoned.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Position of axis in steps.
+     *
+     * @param axis Axis.
+     * @return Position.
+     */
+    public synchronized long getPosition(final int axis) {
+        return positions[axis];
+    }
+
+    public synchronized long getPulses() {
+        return pulses;
+    }
+
+    public synchronized long getMaxJitterNs() {
+        return maxJitterNs;
+    }
+
+    /**
+     * Average jitter.
+     *
+     * @return Average jitter in nanoseconds.
+     */
+    public synchronized long getAverageJitterNs() {
+        if (pulses == 0) {
+            return 0;
+        }
+        return totalJitterNs / pulses;
+    }
+
+    /**
+     * Reset jitter statistics.
+     */
+    public synchronized void resetJitter() {
+        pulses = 0;
+        totalJitterNs = 0;
+        maxJitterNs = 0;
+    }
+
+    /**
+     * Start coordinated move. The profile is computed in the calling thread and nothing is allocated.
+     *
+     * @param steps Relative steps per axis. Sign is direction.
+     * @param profile PROFILE_TRAPEZOIDAL or PROFILE_S_CURVE.
+     * @param maxSpeed Maximum speed of axis with most steps in steps per second.
+     * @param accel Acceleration in steps per second squared.
+     * @param decel Deceleration in steps per second squared.
+     */
+    public synchronized void move(final int[] steps, final int profile, final double maxSpeed, final double accel,
+            final double decel) {
+        if (busy) {
+            throw new RuntimeException("Move already running");
+        }
+        if (steps.length != deltas.length) {
+            throw new RuntimeException(String.format("Move requires %d axes", deltas.length));
+        }
+        var master = 0;
+        for (var i = 0; i < steps.length; i++) {
+            master = Math.max(master, Math.abs(steps[i]));
+        }
+        if (profile == PROFILE_S_CURVE) {
+            StepProfile.sCurve(intervals, master, maxSpeed, accel, decel);
+        } else {
+            StepProfile.trapezoidal(intervals, master, maxSpeed, accel, decel);
+        }
+        System.arraycopy(steps, 0, deltas, 0, steps.length);
+        moveSteps = master;
+        busy = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait for current move to finish.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    public synchronized void await() throws InterruptedException {
+        while (busy) {
+            wait();
+        }
+    }
+
+    /**
+     * Emit pulses of current move.
+     */
+    private void emit() {
+        final var axes = deltas.length;
+        for (var i = 0; i < axes; i++) {
+            dirPins[i].write(deltas[i] >= 0);
+            errors[i] = moveSteps / 2;
+            taken[i] = 0;
+        }
+        // Direction setup time
+        MmioPin.delayNs(pulseNs);
+        var deadline = System.nanoTime();
+        var jitterSum = 0L;
+        var jitterMax = 0L;
+        var step = 0;
+        while (step < moveSteps && running) {
+            deadline += intervals[step];
+            final var jitter = Deadline.waitUntil(deadline) - deadline;
+            jitterSum += jitter;
+            jitterMax = Math.max(jitterMax, jitter);
+            for (var i = 0; i < axes; i++) {
+                errors[i] -= Math.abs(deltas[i]);
+                if (errors[i] < 0) {
+                    errors[i] += moveSteps;
+                    stepPins[i].high();
+                    taken[i]++;
+                }
+            }
+            MmioPin.delayNs(pulseNs);
+            for (var i = 0; i < axes; i++) {
+                stepPins[i].low();
+            }
+            step++;
+        }
+        synchronized (this) {
+            for (var i = 0; i < axes; i++) {
+                positions[i] += deltas[i] >= 0 ? taken[i] : -taken[i];
+            }
+            pulses += step;
+            totalJitterNs += jitterSum;
+            maxJitterNs = Math.max(maxJitterNs, jitterMax);
+        }
+    }
+
+    /**
+     * Pulse thread waits for a move, emits it and signals completion.
+     */
+    private void run() {
+        try {
+            while (running) {
+                synchronized (this) {
+                    while (!busy && running) {
+                        wait();
+                    }
+                }
+                if (running) {
+                    emit();
+                }
+                synchronized (this) {
+                    busy = false;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed while waiting for a move
+        } finally {
+            synchronized (this) {
+                busy = false;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Spi;
+import static com.codeferm.periphery.Spi.SPI_SUCCESS;
+import com.codeferm.periphery.SpiBatch;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * W25Qxx SPI NOR flash with 24 bit addresses (up to 128 Mbit).
+ *
+ * Reads use fast read (0x0B) with the command, address, dummy byte and data in one transfer of up to READ_CHUNK bytes in a direct
+ * buffer, received in place and sent with Spi.spiTransferChunked so chip select stays asserted past the spidev bufsiz. Writes are
+ * split at page boundaries. Write enable and page program are one SpiBatch (one ioctl with chip select released between them), and
+ * two batches alternate so the next page is copied into its batch while the current page programs and the busy bit is polled.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class W25q {
+
+    /**
+     * Write enable command.
+     */
+    public static final int WRITE_ENABLE = 0x06;
+    /**
+     * Read status register 1 command.
+     */
+    public static final int READ_STATUS1 = 0x05;
+    /**
+     * Page program command.
+     */
+    public static final int PAGE_PROGRAM = 0x02;
+    /**
+     * Fast read command.
+     */
+    public static final int FAST_READ = 0x0b;
+    /**
+     * 4 KB sector erase command.
+     */
+    public static final int SECTOR_ERASE = 0x20;
+    /**
+     * 64 KB block erase command.
+     */
+    public static final int BLOCK_ERASE = 0xd8;
+    /**
+     * Chip erase command.
+     */
+    public static final int CHIP_ERASE = 0xc7;
+    /**
+     * JEDEC ID command.
+     */
+    public static final int JEDEC_ID = 0x9f;
+    /**
+     * Status busy bit.
+     */
+    public static final int STATUS_BUSY = 0x01;
+    /**
+     * Status write enable latch bit.
+     */
+    public static final int STATUS_WEL = 0x02;
+    /**
+     * Page size.
+     */
+    public static final int PAGE_SIZE = 256;
+    /**
+     * Sector size.
+     */
+    public static final int SECTOR_SIZE = 4096;
+    /**
+     * Block size.
+     */
+    public static final int BLOCK_SIZE = 65536;
+    /**
+     * Command, address and dummy byte of fast read.
+     */
+    public static final int FAST_READ_HEADER = 5;
+    /**
+     * Command and address of program and erase.
+     */
+    public static final int HEADER = 4;
+    /**
+     * Maximum data bytes per read transfer.
+     */
+    public static final int READ_CHUNK = 65536;
+    /**
+     * Maximum page program time in milliseconds.
+     */
+    public static final long PAGE_TIMEOUT_MS = 5;
+    /**
+     * Maximum sector erase time in milliseconds.
+     */
+    public static final long SECTOR_TIMEOUT_MS = 400;
+    /**
+     * Maximum block erase time in milliseconds.
+     */
+    public static final long BLOCK_TIMEOUT_MS = 2000;
+    /**
+     * Maximum chip erase time in milliseconds.
+     */
+    public static final long CHIP_TIMEOUT_MS = 200000;
+    /**
+     * SPI handle.
+     */
+    private final long spi;
+    /**
+     * Read transfer buffer, received in place.
+     */
+    private final ByteBuffer io = ByteBuffer.allocateDirect(FAST_READ_HEADER + READ_CHUNK);
+    /**
+     * Receive view of read transfer buffer.
+     */
+    private final ByteBuffer ioRx = io.duplicate();
+    /**
+     * Two program batches used in turn.
+     */
+    private final SpiBatch[] batches = {new SpiBatch(1 + HEADER + PAGE_SIZE, 2), new SpiBatch(1 + HEADER + PAGE_SIZE, 2)};
+    /**
+     * Command buffer.
+     */
+    private final byte[] cmd = new byte[HEADER + PAGE_SIZE];
+    /**
+     * Status transmit buffer.
+     */
+    private final byte[] statusTx = {READ_STATUS1, 0};
+    /**
+     * Status receive buffer.
+     */
+    private final byte[] statusRx = new byte[2];
+
+    /**
+     * SPI handle constructor. SPI mode 0 or 3.
+     *
+     * @param spi SPI handle.
+     */
+    public W25q(final long spi) {
+        this.spi = spi;
+    }
+
+    /**
+     * Put command and 24 bit address.
+     *
+     * @param command Command.
+     * @param address Address.
+     * @param buf Buffer.
+     * @param offset Offset in buffer.
+     */
+    public static void header(final int command, final int address, final byte[] buf, final int offset) {
+        buf[offset] = (byte) command;
+        buf[offset + 1] = (byte) (address >> 16);
+        buf[offset + 2] = (byte) (address >> 8);
+        buf[offset + 3] = (byte) address;
+    }
+
+    /**
+     * Bytes that can be programmed at address without wrapping inside the page.
+     *
+     * @param address Address.
+     * @param len Bytes left to write.
+     * @return Bytes for this page.
+     */
+    public static int pageLength(final int address, final int len) {
+        return Math.min(len, PAGE_SIZE - (address & (PAGE_SIZE - 1)));
+    }
+
+    /**
+     * Transfer bytes.
+     *
+     * @param tx Bytes to send.
+     * @param rx Bytes received.
+     * @param len Length.
+     */
+    private void transfer(final byte[] tx, final byte[] rx, final int len) {
+        final var ret = Spi.spiTransfer(spi, tx, rx, len);
+        if (ret != SPI_SUCCESS) {
+            throw new RuntimeException(String.format("SPI transfer failed with error %d", ret));
+        }
+    }
+
+    /**
+     * JEDEC manufacturer, memory type and capacity.
+     *
+     * @return ID as 0xMMTTCC.
+     */
+    public int readJedecId() {
+        final var buf = new byte[]{(byte) JEDEC_ID, 0, 0, 0};
+        transfer(buf, buf, buf.length);
+        return (buf[1] & 0xff) << 16 | (buf[2] & 0xff) << 8 | buf[3] & 0xff;
+    }
+
+    /**
+     * Capacity from JEDEC ID.
+     *
+     * @param jedecId JEDEC ID.
+     * @return Bytes.
+     */
+    public static int capacity(final int jedecId) {
+        return 1 << (jedecId & 0xff);
+    }
+
+    /**
+     * Status register 1.
+     *
+     * @return Status.
+     */
+    public int readStatus() {
+        transfer(statusTx, statusRx, 2);
+        return statusRx[1] & 0xff;
+    }
+
+    /**
+     * Poll busy bit until clear.
+     *
+     * @param timeoutMs Timeout in milliseconds.
+     * @param sleep Sleep 1 ms between polls, for erases.
+     */
+    public void waitReady(final long timeoutMs, final boolean sleep) {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while ((readStatus() & STATUS_BUSY) != 0) {
+            if (System.nanoTime() > deadline) {
+                throw new RuntimeException(String.format("Flash busy after %d ms", timeoutMs));
+            }
+            if (sleep) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read into direct buffer. Data starts at FAST_READ_HEADER in io.
+     *
+     * @param address Address.
+     * @param len Length up to READ_CHUNK.
+     */
+    private void readChunk(final int address, final int len) {
+        header(FAST_READ, address, cmd, 0);
+        io.clear();
+        io.put(cmd, 0, HEADER).put((byte) 0).clear().limit(FAST_READ_HEADER + len);
+        ioRx.clear();
+        final var ret = Spi.spiTransferChunked(spi, io, ioRx);
+        if (ret < 0) {
+            throw new RuntimeException(String.format("Fast read at 0x%06x failed with errno %d", address, -ret));
+        }
+    }
+
+    /**
+     * Read bytes.
+     *
+     * @param address Address.
+     * @param dst Destination.
+     * @param offset Offset in destination.
+     * @param len Length.
+     */
+    public void read(final int address, final byte[] dst, final int offset, final int len) {
+        var done = 0;
+        while (done < len) {
+            final var n = Math.min(len - done, READ_CHUNK);
+            readChunk(address + done, n);
+            ioRx.clear().position(FAST_READ_HEADER);
+            ioRx.get(dst, offset + done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Read bytes into buffer from its position to its limit. The position advances to the limit.
+     *
+     * @param address Address.
+     * @param dst Destination.
+     */
+    public void read(final int address, final ByteBuffer dst) {
+        final var len = dst.remaining();
+        var done = 0;
+        while (done < len) {
+            final var n = Math.min(len - done, READ_CHUNK);
+            readChunk(address + done, n);
+            ioRx.clear().position(FAST_READ_HEADER).limit(FAST_READ_HEADER + n);
+            dst.put(ioRx);
+            done += n;
+        }
+    }
+
+    /**
+     * Build write enable and page program as one batch.
+     *
+     * @param batch Batch.
+     * @param address Address.
+     * @param data Data.
+     * @param offset Offset in data.
+     * @param len Length inside one page.
+     */
+    private void prepare(final SpiBatch batch, final int address, final byte[] data, final int offset, final int len) {
+        batch.clear();
+        cmd[0] = WRITE_ENABLE;
+        batch.add(cmd, 0, 1, 0, 0, true, 0);
+        header(PAGE_PROGRAM, address, cmd, 0);
+        System.arraycopy(data, offset, cmd, HEADER, len);
+        batch.add(cmd, 0, HEADER + len);
+    }
+
+    /**
+     * Program bytes into erased flash. Pages are programmed in turn, each one prepared while the previous one programs.
+     *
+     * @param address Address.
+     * @param data Data.
+     * @param offset Offset in data.
+     * @param len Length.
+     */
+    public void write(final int address, final byte[] data, final int offset, final int len) {
+        var done = 0;
+        var current = 0;
+        if (len > 0) {
+            prepare(batches[current], address, data, offset, pageLength(address, len));
+        }
+        while (done < len) {
+            final var n = pageLength(address + done, len - done);
+            batches[current].transfer(spi);
+            done += n;
+            // Prepare next page while this one programs
+            final var next = current ^ 1;
+            if (done < len) {
+                prepare(batches[next], address + done, data, offset + done, pageLength(address + done, len - done));
+            }
+            waitReady(PAGE_TIMEOUT_MS, false);
+            current = next;
+        }
+    }
+
+    /**
+     * Send write enable and erase command as one batch and wait for it to finish.
+     *
+     * @param command Erase command.
+     * @param address Address.
+     * @param headerLen 1 for chip erase, HEADER for sector and block erase.
+     * @param timeoutMs Timeout in milliseconds.
+     */
+    private void erase(final int command, final int address, final int headerLen, final long timeoutMs) {
+        final var batch = batches[0];
+        batch.clear();
+        cmd[0] = WRITE_ENABLE;
+        batch.add(cmd, 0, 1, 0, 0, true, 0);
+        header(command, address, cmd, 0);
+        batch.add(cmd, 0, headerLen);
+        batch.transfer(spi);
+        waitReady(timeoutMs, true);
+    }
+
+    /**
+     * Erase 4 KB sector.
+     *
+     * @param address Address inside sector.
+     */
+    public void eraseSector(final int address) {
+        erase(SECTOR_ERASE, address & ~(SECTOR_SIZE - 1), HEADER, SECTOR_TIMEOUT_MS);
+    }
+
+    /**
+     * Erase 64 KB block.
+     *
+     * @param address Address inside block.
+     */
+    public void eraseBlock(final int address) {
+        erase(BLOCK_ERASE, address & ~(BLOCK_SIZE - 1), HEADER, BLOCK_TIMEOUT_MS);
+    }
+
+    /**
+     * Erase whole chip.
+     */
+    public void eraseChip() {
+        erase(CHIP_ERASE, 0, 1, CHIP_TIMEOUT_MS);
+    }
+
+    /**
+     * Random access read view with a one sector cache.
+     *
+     * @param size Flash size in bytes.
+     * @return View.
+     */
+    public View view(final int size) {
+        return new View(size);
+    }
+
+    /**
+     * ByteBuffer like read view. Relative gets advance the position and reads go through a one sector cache, so small sequential
+     * reads cost one fast read per sector. Call invalidate after writing or erasing.
+     */
+    public final class View {
+
+        /**
+         * Flash size.
+         */
+        private final int size;
+        /**
+         * Cached sector.
+         */
+        private final byte[] cache = new byte[SECTOR_SIZE];
+        /**
+         * Address of cached sector or -1.
+         */
+        private int cached = -1;
+        /**
+         * Current position.
+         */
+        private int position;
+
+        /**
+         * Create view.
+         *
+         * @param size Flash size in bytes.
+         */
+        private View(final int size) {
+            this.size = size;
+        }
+
+        public int capacity() {
+            return size;
+        }
+
+        public int position() {
+            return position;
+        }
+
+        /**
+         * Set position.
+         *
+         * @param newPosition Position.
+         * @return This view.
+         */
+        public View position(final int newPosition) {
+            if (newPosition < 0 || newPosition > size) {
+                throw new IndexOutOfBoundsException(String.format("Position %d outside 0 to %d", newPosition, size));
+            }
+            position = newPosition;
+            return this;
+        }
+
+        /**
+         * Bytes from position to end.
+         *
+         * @return Bytes.
+         */
+        public int remaining() {
+            return size - position;
+        }
+
+        /**
+         * Drop cached sector.
+         */
+        public void invalidate() {
+            cached = -1;
+        }
+
+        /**
+         * Byte at address.
+         *
+         * @param address Address.
+         * @return Byte.
+         */
+        public byte get(final int address) {
+            if (address < 0 || address >= size) {
+                throw new IndexOutOfBoundsException(String.format("Address %d outside 0 to %d", address, size - 1));
+            }
+            final var sector = address & ~(SECTOR_SIZE - 1);
+            if (sector != cached) {
+                read(sector, cache, 0, SECTOR_SIZE);
+                cached = sector;
+            }
+            return cache[address - sector];
+        }
+
+        /**
+         * Byte at position.
+         *
+         * @return Byte.
+         */
+        public byte get() {
+            return get(position++);
+        }
+
+        /**
+         * Little endian int at address.
+         *
+         * @param address Address.
+         * @return Int.
+         */
+        public int getInt(final int address) {
+            return get(address) & 0xff | (get(address + 1) & 0xff) << 8 | (get(address + 2) & 0xff) << 16 | get(address + 3) << 24;
+        }
+
+        /**
+         * Little endian int at position.
+         *
+         * @return Int.
+         */
+        public int getInt() {
+            final var value = getInt(position);
+            position += 4;
+            return value;
+        }
+
+        /**
+         * Bytes at position. Large reads bypass the cache.
+         *
+         * @param dst Destination.
+         * @param offset Offset in destination.
+         * @param len Length.
+         * @return This view.
+         */
+        public View get(final byte[] dst, final int offset, final int len) {
+            if (len > remaining()) {
+                throw new IndexOutOfBoundsException(String.format("Read of %d bytes past end", len));
+            }
+            if (len >= SECTOR_SIZE) {
+                read(position, dst, offset, len);
+            } else {
+                for (var i = 0; i < len; i++) {
+                    dst[offset + i] = get(position + i);
+                }
+            }
+            position += len;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Spi;
+import java.nio.ByteBuffer;
+
+/**
+ * WS2812 (NeoPixel) LED strip driven from SPI MOSI.
+ *
+ * Each WS2812 bit is sent as 3 or 4 SPI bits (100/110 or 1000/1110) at 3 or 4 times 800 kHz. Every color byte is encoded with a
+ * precomputed 256 entry lookup table into a reusable direct transmit buffer, so a frame is one table lookup per byte and nothing is
+ * allocated. Color values first pass through a 256 entry level table that combines gamma and brightness. show does nothing when no
+ * pixel changed since the last frame.
+ *
+ * The strip itself runs at 800 kbit/s, 30 µs per LED, so one strip of 1000 LEDs takes 30 ms per frame whatever the encoding costs.
+ * For 60 fps keep strips under about 500 LEDs per SPI controller. Frames larger than the spidev bufsiz are sent in chunks and the
+ * gap between chunks must stay under the 50 µs reset time, so load spidev with a larger bufsiz (spidev.bufsiz=65536) for long
+ * strips.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Ws2812 {
+
+    /**
+     * WS2812 bit rate.
+     */
+    public static final int BIT_RATE = 800000;
+    /**
+     * Zero bytes sent before the frame so MOSI starts low.
+     */
+    public static final int LEAD_BYTES = 1;
+    /**
+     * Low time after the frame that latches it, 300 µs covers newer WS2812B parts.
+     */
+    public static final int RESET_US = 300;
+    /**
+     * 3 bit encoding of every byte, 24 bits.
+     */
+    private static final int[] LUT3 = new int[256];
+    /**
+     * 4 bit encoding of every byte, 32 bits.
+     */
+    private static final int[] LUT4 = new int[256];
+
+    /**
+     * Build lookup tables.
+     */
+    static {
+        for (var value = 0; value < 256; value++) {
+            var code3 = 0;
+            var code4 = 0;
+            for (var bit = 7; bit >= 0; bit--) {
+                final var one = (value >> bit & 1) != 0;
+                code3 = code3 << 3 | (one ? 0b110 : 0b100);
+                code4 = code4 << 4 | (one ? 0b1110 : 0b1000);
+            }
+            LUT3[value] = code3;
+            LUT4[value] = code4;
+        }
+    }
+
+    /**
+     * SPI handle.
+     */
+    private final long spi;
+    /**
+     * Number of LEDs.
+     */
+    private final int leds;
+    /**
+     * SPI bits per WS2812 bit.
+     */
+    private final int bitsPerBit;
+    /**
+     * RGB color of each LED.
+     */
+    private final int[] pixels;
+    /**
+     * Gamma and brightness applied to each color byte.
+     */
+    private final byte[] levels = new byte[256];
+    /**
+     * Encoded frame.
+     */
+    private final ByteBuffer tx;
+    /**
+     * Offset of first LED in transmit buffer.
+     */
+    private final int frameOffset;
+    /**
+     * Gamma.
+     */
+    private double gamma = 1.0;
+    /**
+     * Brightness 0 to 255.
+     */
+    private int brightness = 255;
+    /**
+     * Pixels or levels changed since the last frame.
+     */
+    private boolean dirty = true;
+    /**
+     * Frames sent.
+     */
+    private long frames;
+    /**
+     * Frames skipped because nothing changed.
+     */
+    private long skipped;
+
+    /**
+     * Create strip. Open the SPI handle in mode 0 at speedHz(bitsPerBit).
+     *
+     * @param spi SPI handle.
+     * @param leds Number of LEDs.
+     * @param bitsPerBit SPI bits per WS2812 bit, 3 or 4.
+     */
+    public Ws2812(final long spi, final int leds, final int bitsPerBit) {
+        if (bitsPerBit != 3 && bitsPerBit != 4) {
+            throw new RuntimeException("Bits per bit must be 3 or 4");
+        }
+        this.spi = spi;
+        this.leds = leds;
+        this.bitsPerBit = bitsPerBit;
+        pixels = new int[leds];
+        frameOffset = LEAD_BYTES;
+        final var resetBytes = (int) ((long) speedHz(bitsPerBit) * RESET_US / 8000000L) + 1;
+        // Direct buffers start zeroed, so the lead and reset bytes never change
+        tx = ByteBuffer.allocateDirect(LEAD_BYTES + leds * 3 * bitsPerBit + resetBytes);
+        buildLevels();
+    }
+
+    public int getLeds() {
+        return leds;
+    }
+
+    public double getGamma() {
+        return gamma;
+    }
+
+    public int getBrightness() {
+        return brightness;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Encoded frame including lead and reset bytes.
+     *
+     * @return Transmit buffer.
+     */
+    public ByteBuffer getTx() {
+        return tx;
+    }
+
+    /**
+     * SPI speed for encoding.
+     *
+     * @param bitsPerBit SPI bits per WS2812 bit.
+     * @return Speed in Hz.
+     */
+    public static int speedHz(final int bitsPerBit) {
+        return BIT_RATE * bitsPerBit;
+    }
+
+    /**
+     * SPI bits of a color byte.
+     *
+     * @param bitsPerBit SPI bits per WS2812 bit.
+     * @param value Color byte.
+     * @return 24 or 32 SPI bits, first bit sent in the most significant position.
+     */
+    public static int encode(final int bitsPerBit, final int value) {
+        return bitsPerBit == 3 ? LUT3[value & 0xff] : LUT4[value & 0xff];
+    }
+
+    /**
+     * Gamma corrected and scaled level.
+     *
+     * @param value Color byte.
+     * @param gamma Gamma, 1.0 for none.
+     * @param brightness Brightness 0 to 255.
+     * @return Level.
+     */
+    public static int level(final int value, final double gamma, final int brightness) {
+        return (int) Math.round(Math.pow(value / 255.0, gamma) * brightness);
+    }
+
+    /**
+     * Rebuild level table.
+     */
+    private void buildLevels() {
+        for (var value = 0; value < 256; value++) {
+            levels[value] = (byte) level(value, gamma, brightness);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Set gamma, for example 2.8 for perceptually even fades.
+     *
+     * @param gamma Gamma, 1.0 for none.
+     */
+    public void setGamma(final double gamma) {
+        this.gamma = gamma;
+        buildLevels();
+    }
+
+    /**
+     * Set global brightness.
+     *
+     * @param brightness Brightness 0 to 255.
+     */
+    public void setBrightness(final int brightness) {
+        this.brightness = Math.max(0, Math.min(255, brightness));
+        buildLevels();
+    }
+
+    /**
+     * Set LED color.
+     *
+     * @param led LED index.
+     * @param rgb Color as 0xRRGGBB.
+     */
+    public void setPixel(final int led, final int rgb) {
+        if (pixels[led] != rgb) {
+            pixels[led] = rgb;
+            dirty = true;
+        }
+    }
+
+    /**
+     * LED color.
+     *
+     * @param led LED index.
+     * @return Color as 0xRRGGBB.
+     */
+    public int getPixel(final int led) {
+        return pixels[led];
+    }
+
+    /**
+     * Set all LEDs to one color.
+     *
+     * @param rgb Color as 0xRRGGBB.
+     */
+    public void fill(final int rgb) {
+        for (var led = 0; led < leds; led++) {
+            setPixel(led, rgb);
+        }
+    }
+
+    /**
+     * Put encoded color byte.
+     *
+     * @param offset Buffer offset.
+     * @param value Color byte.
+     * @return Next offset.
+     */
+    private int put(final int offset, final int value) {
+        final var level = levels[value] & 0xff;
+        if (bitsPerBit == 3) {
+            final var code = LUT3[level];
+            tx.put(offset, (byte) (code >> 16));
+            tx.put(offset + 1, (byte) (code >> 8));
+            tx.put(offset + 2, (byte) code);
+            return offset + 3;
+        }
+        tx.putInt(offset, LUT4[level]);
+        return offset + 4;
+    }
+
+    /**
+     * Encode frame into the transmit buffer if anything changed.
+     *
+     * @return True if the frame was encoded, false if it is unchanged.
+     */
+    public boolean render() {
+        if (!dirty) {
+            return false;
+        }
+        var offset = frameOffset;
+        for (var led = 0; led < leds; led++) {
+            final var rgb = pixels[led];
+            // WS2812 expects green, red then blue
+            offset = put(offset, rgb >> 8 & 0xff);
+            offset = put(offset, rgb >> 16 & 0xff);
+            offset = put(offset, rgb & 0xff);
+        }
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Send frame if anything changed. A frame that fails to send is sent again by the next show.
+     *
+     * @return True if a frame was sent.
+     */
+    public boolean show() {
+        if (!render()) {
+            skipped++;
+            return false;
+        }
+        tx.clear();
+        try {
+            final var ret = Spi.spiTransferChunked(spi, tx, null);
+            if (ret < 0) {
+                throw new RuntimeException(String.format("Frame write failed with errno %d", -ret));
+            }
+        } catch (RuntimeException e) {
+            // Frame was not sent, so the next show must not skip it
+            dirty = true;
+            throw e;
+        }
+        frames++;
+        return true;
+    }
+}
@@ -402,7 +402,8 @@ public class File {
     }
 
     /**
-     * Parse property file into Map.
+     * Parse property file into Map. Pins may have six optional trailing values for mode in name, mode in offset, mode in mask,
+     * mode out name, mode out offset and mode out mask.
      *
      * @param inFileName Property file name.
      * @return Pin Map.
@@ -426,6 +427,11 @@ public class File {
                 final var dataOutOn = new Register(strToStr(value[8]), hexToInt(value[9]), hexToInt(value[10]));
                 final var dataOutOff = new Register(strToStr(value[11]), hexToInt(value[12]), hexToInt(value[13]));
                 final var pin = new Pin(pinKey, strToStr(value[0]), strToStr(value[1]), dataInOn, dataInOff, dataOutOn, dataOutOff);
+                // Mode registers are optional and only required for switching direction with MMIO
+                if (value.length >= 20) {
+                    pin.setModeIn(new Register(strToStr(value[14]), hexToInt(value[15]), hexToInt(value[16]))).setModeOut(
+                            new Register(strToStr(value[17]), hexToInt(value[18]), hexToInt(value[19])));
+                }
                 pinMap.put(pinKey, pin);
             }
         });
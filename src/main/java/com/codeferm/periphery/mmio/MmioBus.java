@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+
+/**
+ * Group of MMIO pins written or read as one value. Bit 0 of the value is the first pin. Pins that share data out registers are
+ * grouped, so a write is one read-modify-write per register (Allwinner, Amlogic, etc.) or one set and one clear write per register
+ * (Raspberry Pi) instead of one per pin. All pins on the same bank change at the same time. Likewise a read is one data in register
+ * read per bank. Instances are not thread safe.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioBus {
+
+    /**
+     * Pins.
+     */
+    private final MmioPin[] pins;
+    /**
+     * Register group of each pin.
+     */
+    private final int[] pinGroup;
+    /**
+     * Set bit of each pin.
+     */
+    private final int[] pinMask;
+    /**
+     * Clear bit of each pin.
+     */
+    private final int[] pinClearMask;
+    /**
+     * Number of register groups.
+     */
+    private final int groups;
+    /**
+     * MMIO handle of each group.
+     */
+    private final long[] groupHandle;
+    /**
+     * Data out on register offset of each group.
+     */
+    private final long[] groupOnOffset;
+    /**
+     * Data out off register offset of each group.
+     */
+    private final long[] groupOffOffset;
+    /**
+     * On and off use the same register for each group.
+     */
+    private final boolean[] groupSameReg;
+    /**
+     * Data in register group of each pin.
+     */
+    private final int[] pinInGroup;
+    /**
+     * Data in bit of each pin.
+     */
+    private final int[] pinInMask;
+    /**
+     * Number of data in register groups.
+     */
+    private final int inGroups;
+    /**
+     * MMIO handle of each data in group.
+     */
+    private final long[] inGroupHandle;
+    /**
+     * Data in register offset of each data in group.
+     */
+    private final long[] inGroupOffset;
+    /**
+     * Data in register values.
+     */
+    private final int[] inValues;
+    /**
+     * Bits to set for each group.
+     */
+    private final int[] setBits;
+    /**
+     * Bits to clear for each group.
+     */
+    private final int[] clearBits;
+    /**
+     * Register read buffer.
+     */
+    private final int[] reg = new int[1];
+
+    /**
+     * Create bus from pins. MMIO handle must already be set in each Pin.
+     *
+     * @param pins Pins with bit 0 first.
+     */
+    public MmioBus(final Pin... pins) {
+        if (pins.length > 32) {
+            throw new RuntimeException("Bus is limited to 32 pins");
+        }
+        this.pins = new MmioPin[pins.length];
+        pinGroup = new int[pins.length];
+        pinMask = new int[pins.length];
+        pinClearMask = new int[pins.length];
+        groupHandle = new long[pins.length];
+        groupOnOffset = new long[pins.length];
+        groupOffOffset = new long[pins.length];
+        groupSameReg = new boolean[pins.length];
+        pinInGroup = new int[pins.length];
+        pinInMask = new int[pins.length];
+        inGroupHandle = new long[pins.length];
+        inGroupOffset = new long[pins.length];
+        var count = 0;
+        var inCount = 0;
+        for (var i = 0; i < pins.length; i++) {
+            final var mmioPin = new MmioPin(pins[i]);
+            this.pins[i] = mmioPin;
+            pinMask[i] = mmioPin.getDataOutOnMask();
+            // Off mask is an AND mask when on and off share the same register
+            if (mmioPin.isSameReg()) {
+                pinClearMask[i] = ~mmioPin.getDataOutOffMask();
+            } else {
+                pinClearMask[i] = mmioPin.getDataOutOffMask();
+            }
+            // Find group with same registers
+            var group = 0;
+            while (group < count && !(groupHandle[group] == mmioPin.getHandle() && groupOnOffset[group] == mmioPin.
+                    getDataOutOnOffset() && groupOffOffset[group] == mmioPin.getDataOutOffOffset())) {
+                group++;
+            }
+            if (group == count) {
+                groupHandle[count] = mmioPin.getHandle();
+                groupOnOffset[count] = mmioPin.getDataOutOnOffset();
+                groupOffOffset[count] = mmioPin.getDataOutOffOffset();
+                groupSameReg[count] = mmioPin.isSameReg();
+                count++;
+            }
+            pinGroup[i] = group;
+            pinInMask[i] = mmioPin.getDataInMask();
+            var inGroup = 0;
+            while (inGroup < inCount && !(inGroupHandle[inGroup] == mmioPin.getHandle() && inGroupOffset[inGroup] == mmioPin.
+                    getDataInOffset())) {
+                inGroup++;
+            }
+            if (inGroup == inCount) {
+                inGroupHandle[inCount] = mmioPin.getHandle();
+                inGroupOffset[inCount] = mmioPin.getDataInOffset();
+                inCount++;
+            }
+            pinInGroup[i] = inGroup;
+        }
+        groups = count;
+        inGroups = inCount;
+        inValues = new int[inGroups];
+        setBits = new int[groups];
+        clearBits = new int[groups];
+    }
+
+    /**
+     * Pin accessor.
+     *
+     * @param index Pin index.
+     * @return Pin.
+     */
+    public MmioPin getPin(final int index) {
+        return pins[index];
+    }
+
+    /**
+     * Number of pins.
+     *
+     * @return Number of pins.
+     */
+    public int size() {
+        return pins.length;
+    }
+
+    /**
+     * Number of register groups. 1 means every write is a single register update.
+     *
+     * @return Number of groups.
+     */
+    public int getGroups() {
+        return groups;
+    }
+
+    /**
+     * Number of data in register groups. 1 means every read is a single register read.
+     *
+     * @return Number of groups.
+     */
+    public int getInGroups() {
+        return inGroups;
+    }
+
+    /**
+     * Read pins.
+     *
+     * @return Value with bit 0 for the first pin.
+     */
+    public int read() {
+        for (var g = 0; g < inGroups; g++) {
+            Mmio.mmioRead32(inGroupHandle[g], inGroupOffset[g], reg);
+            inValues[g] = reg[0];
+        }
+        var value = 0;
+        for (var i = 0; i < pins.length; i++) {
+            if ((inValues[pinInGroup[i]] & pinInMask[i]) != 0) {
+                value |= 1 << i;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Write value to pins.
+     *
+     * @param value Value with bit 0 for the first pin.
+     */
+    public void write(final int value) {
+        for (var g = 0; g < groups; g++) {
+            setBits[g] = 0;
+            clearBits[g] = 0;
+        }
+        for (var i = 0; i < pins.length; i++) {
+            if ((value & (1 << i)) != 0) {
+                setBits[pinGroup[i]] |= pinMask[i];
+            } else {
+                clearBits[pinGroup[i]] |= pinClearMask[i];
+            }
+        }
+        for (var g = 0; g < groups; g++) {
+            if (groupSameReg[g]) {
+                Mmio.mmioRead32(groupHandle[g], groupOnOffset[g], reg);
+                Mmio.mmioWrite32(groupHandle[g], groupOnOffset[g], (reg[0] & ~clearBits[g]) | setBits[g]);
+            } else {
+                // Set and clear registers only need masks
+                if (setBits[g] != 0) {
+                    Mmio.mmioWrite32(groupHandle[g], groupOnOffset[g], setBits[g]);
+                }
+                if (clearBits[g] != 0) {
+                    Mmio.mmioWrite32(groupHandle[g], groupOffOffset[g], clearBits[g]);
+                }
+            }
+        }
+    }
+}
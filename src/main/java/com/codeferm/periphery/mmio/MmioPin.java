@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Deadline;
+import com.codeferm.periphery.Mmio;
+
+/**
+ * Fast MMIO pin access. Register offsets and masks are pulled out of the Pin DTO once, so reads and writes are just raw MMIO calls.
+ * This is the same technique used in Perf.perfBest, but usable for bit banging protocols.
+ *
+ * Boards that use the same register for on and off (Allwinner, Amlogic, etc.) require a read-modify-write. Boards with separate
+ * set and clear registers (Raspberry Pi) only require a single write of the mask. Instances are not thread safe.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioPin {
+
+    /**
+     * Pin DTO.
+     */
+    private final Pin pin;
+    /**
+     * MMIO handle.
+     */
+    private final long handle;
+    /**
+     * Data in register offset.
+     */
+    private final long dataInOffset;
+    /**
+     * Data in register mask.
+     */
+    private final int dataInMask;
+    /**
+     * Data out on register offset.
+     */
+    private final long dataOutOnOffset;
+    /**
+     * Data out on register mask.
+     */
+    private final int dataOutOnMask;
+    /**
+     * Data out off register offset.
+     */
+    private final long dataOutOffOffset;
+    /**
+     * Data out off register mask.
+     */
+    private final int dataOutOffMask;
+    /**
+     * On and off use the same register, so read-modify-write is required.
+     */
+    private final boolean sameReg;
+    /**
+     * Mode registers are available.
+     */
+    private final boolean hasMode;
+    /**
+     * Mode register offset.
+     */
+    private final long modeOffset;
+    /**
+     * Mode bits that change between input and output.
+     */
+    private final int modeField;
+    /**
+     * Mode input bits.
+     */
+    private final int modeInMask;
+    /**
+     * Mode output bits.
+     */
+    private final int modeOutMask;
+    /**
+     * Register read buffer.
+     */
+    private final int[] reg = new int[1];
+
+    /**
+     * Pin constructor. MMIO handle must already be set in Pin.
+     *
+     * @param pin Pin.
+     */
+    public MmioPin(final Pin pin) {
+        if (pin.getMmioHadle() == 0) {
+            throw new RuntimeException(String.format("Pin %s MMIO handle not set", pin.getKey()));
+        }
+        this.pin = pin;
+        handle = pin.getMmioHadle();
+        dataInOffset = pin.getDataInOn().getOffset();
+        dataInMask = pin.getDataInOn().getMask();
+        dataOutOnOffset = pin.getDataOutOn().getOffset();
+        dataOutOnMask = pin.getDataOutOn().getMask();
+        dataOutOffOffset = pin.getDataOutOff().getOffset();
+        dataOutOffMask = pin.getDataOutOff().getMask();
+        sameReg = dataOutOnOffset == dataOutOffOffset;
+        hasMode = pin.getModeIn() != null && pin.getModeOut() != null && pin.getModeIn().getOffset() >= 0;
+        if (hasMode) {
+            modeOffset = pin.getModeIn().getOffset();
+            modeInMask = pin.getModeIn().getMask();
+            modeOutMask = pin.getModeOut().getMask();
+            modeField = modeInMask | modeOutMask;
+        } else {
+            modeOffset = -1;
+            modeInMask = 0;
+            modeOutMask = 0;
+            modeField = 0;
+        }
+    }
+
+    public Pin getPin() {
+        return pin;
+    }
+
+    public long getHandle() {
+        return handle;
+    }
+
+    public long getDataInOffset() {
+        return dataInOffset;
+    }
+
+    public int getDataInMask() {
+        return dataInMask;
+    }
+
+    public long getDataOutOnOffset() {
+        return dataOutOnOffset;
+    }
+
+    public int getDataOutOnMask() {
+        return dataOutOnMask;
+    }
+
+    public long getDataOutOffOffset() {
+        return dataOutOffOffset;
+    }
+
+    public int getDataOutOffMask() {
+        return dataOutOffMask;
+    }
+
+    public boolean isSameReg() {
+        return sameReg;
+    }
+
+    public boolean isHasMode() {
+        return hasMode;
+    }
+
+    public long getModeOffset() {
+        return modeOffset;
+    }
+
+    public int getModeInMask() {
+        return modeInMask;
+    }
+
+    public int getModeOutMask() {
+        return modeOutMask;
+    }
+
+    /**
+     * Busy wait for bit banging, see Deadline.delayNs.
+     *
+     * @param ns Nanoseconds to wait. Nothing is done for 0 or less.
+     */
+    public static void delayNs(final long ns) {
+        Deadline.delayNs(ns);
+    }
+
+    /**
+     * Read pin value from data in register.
+     *
+     * @return True = on, false = off.
+     */
+    public boolean read() {
+        Mmio.mmioRead32(handle, dataInOffset, reg);
+        return (reg[0] & dataInMask) != 0;
+    }
+
+    /**
+     * Set pin high.
+     */
+    public void high() {
+        if (sameReg) {
+            Mmio.mmioRead32(handle, dataOutOnOffset, reg);
+            Mmio.mmioWrite32(handle, dataOutOnOffset, reg[0] | dataOutOnMask);
+        } else {
+            // Set register only needs mask
+            Mmio.mmioWrite32(handle, dataOutOnOffset, dataOutOnMask);
+        }
+    }
+
+    /**
+     * Set pin low.
+     */
+    public void low() {
+        if (sameReg) {
+            // Off mask is an AND mask when on and off share the same register
+            Mmio.mmioRead32(handle, dataOutOffOffset, reg);
+            Mmio.mmioWrite32(handle, dataOutOffOffset, reg[0] & dataOutOffMask);
+        } else {
+            // Clear register only needs mask
+            Mmio.mmioWrite32(handle, dataOutOffOffset, dataOutOffMask);
+        }
+    }
+
+    /**
+     * Write pin value.
+     *
+     * @param value True = on, false = off.
+     */
+    public void write(final boolean value) {
+        if (value) {
+            high();
+        } else {
+            low();
+        }
+    }
+
+    /**
+     * Set mode register bits. The bits that differ between input and output are cleared and the target bits are set.
+     *
+     * @param mask Target mode bits.
+     */
+    private void setMode(final int mask) {
+        if (!hasMode) {
+            throw new RuntimeException(String.format("Pin %s mode registers not set", pin.getKey()));
+        }
+        Mmio.mmioRead32(handle, modeOffset, reg);
+        Mmio.mmioWrite32(handle, modeOffset, (reg[0] & ~modeField) | mask);
+    }
+
+    /**
+     * Switch pin to input using mode register.
+     */
+    public void input() {
+        setMode(modeInMask);
+    }
+
+    /**
+     * Switch pin to output using mode register.
+     */
+    public void output() {
+        setMode(modeOutMask);
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.util.ArrayList;
+import java.util.List;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
+import org.fusesource.hawtjni.runtime.JniArg;
+import org.fusesource.hawtjni.runtime.JniClass;
+import org.fusesource.hawtjni.runtime.JniMethod;
+import org.fusesource.hawtjni.runtime.Library;
+
+/**
+ * 1-Wire bus master using MMIO. The 1 to 15 µs time slots are too short for Java, so they run in native code (onewire.c) against
+ * the mapped registers. ROM search, CRC8 and device selection are done in Java.
+ *
+ * Open drain is emulated by presetting data out low and switching the pin between input and output, so the pin must have mode
+ * registers in the pin map. An external 4.7K pull up resistor is required.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@JniClass
+public class OneWire implements AutoCloseable {
+
+    /**
+     * Search ROM command.
+     */
+    public static final int SEARCH_ROM = 0xf0;
+    /**
+     * Read ROM command (single device only).
+     */
+    public static final int READ_ROM = 0x33;
+    /**
+     * Match ROM command.
+     */
+    public static final int MATCH_ROM = 0x55;
+    /**
+     * Skip ROM command (broadcast).
+     */
+    public static final int SKIP_ROM = 0xcc;
+    /**
+     * Alarm search command.
+     */
+    public static final int ALARM_SEARCH = 0xec;
+    /**
+     * java-periphery library.
+     */
+    private static final Library LIBRARY = new Library("java-periphery", OneWire.class);
+    /**
+     * 1-Wire handle.
+     */
+    final private long handle;
+    /**
+     * Command buffer.
+     */
+    private final byte[] cmd = new byte[9];
+
+    /**
+     * Load library.
+     */
+    static {
+        LIBRARY.load();
+    }
+
+    /**
+     * Create 1-Wire bus on pin. Pin must have MMIO handle and mode registers set.
+     *
+     * @param pin Bus pin.
+     */
+    public OneWire(final Pin pin) {
+        final var mmioPin = new MmioPin(pin);
+        if (!mmioPin.isHasMode()) {
+            throw new RuntimeException("1-Wire pin requires mode registers for open drain emulation");
+        }
+        // Preset data out low, so output mode always drives low
+        mmioPin.low();
+        final var ptr = Mmio.mmioPtr(mmioPin.getHandle());
+        handle = onewireNew(ptr + mmioPin.getDataInOffset(), mmioPin.getDataInMask(), ptr + mmioPin.getModeOffset(), mmioPin.
+                getModeInMask(), mmioPin.getModeOutMask());
+        if (handle == 0) {
+            throw new RuntimeException("Handle cannot be NULL");
+        }
+    }
+
+    /**
+     * Free handle.
+     */
+    @Override
+    public void close() {
+        onewireFree(handle);
+    }
+
+    /**
+     * Handle accessor.
+     *
+     * @return Handle.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    /**
+     * Allocate 1-Wire handle using raw register addresses.
+     *
+     * @param inAddr Address of data in register.
+     * @param inMask Data in mask.
+     * @param modeAddr Address of mode register.
+     * @param modeIn Mode input bits.
+     * @param modeOut Mode output bits.
+     * @return A valid handle on success, or NULL on failure.
+     */
+    @JniMethod(cast = "onewire_t *", accessor = "onewire_new")
+    public static final native long onewireNew(@JniArg(cast = "uintptr_t") long inAddr, @JniArg(cast = "uint32_t") int inMask,
+            @JniArg(cast = "uintptr_t") long modeAddr, @JniArg(cast = "uint32_t") int modeIn, @JniArg(cast = "uint32_t") int modeOut);
+
+    /**
+     * Reset pulse.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     * @return 1 if presence pulse detected, 0 if no device responded or -1 if the bus is held low.
+     */
+    @JniMethod(accessor = "onewire_reset")
+    public static native int onewireReset(@JniArg(cast = "onewire_t *") long ow);
+
+    /**
+     * Write one bit time slot.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     * @param value Bit value.
+     */
+    @JniMethod(accessor = "onewire_write_bit")
+    public static native void onewireWriteBit(@JniArg(cast = "onewire_t *") long ow, boolean value);
+
+    /**
+     * Read one bit time slot.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     * @return Bit value.
+     */
+    @JniMethod(accessor = "onewire_read_bit")
+    public static native boolean onewireReadBit(@JniArg(cast = "onewire_t *") long ow);
+
+    /**
+     * Write bytes LSB first.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     * @param buf Bytes to write.
+     * @param len Number of bytes.
+     */
+    @JniMethod(accessor = "onewire_write")
+    public static native void onewireWrite(@JniArg(cast = "onewire_t *") long ow, @JniArg(cast = "const uint8_t *", flags = {
+        NO_OUT}) byte[] buf, @JniArg(cast = "size_t") long len);
+
+    /**
+     * Read bytes LSB first.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     * @param buf Bytes read.
+     * @param len Number of bytes.
+     */
+    @JniMethod(accessor = "onewire_read")
+    public static native void onewireRead(@JniArg(cast = "onewire_t *") long ow, @JniArg(cast = "uint8_t *", flags = {NO_IN})
+            byte[] buf, @JniArg(cast = "size_t") long len);
+
+    /**
+     * ROM search triplet. Read bit and complement, then write direction.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     * @param direction Direction to take if both bits are 0.
+     * @return Bit 0 = id bit, bit 1 = complement bit and bit 2 = direction taken.
+     */
+    @JniMethod(accessor = "onewire_triplet")
+    public static native int onewireTriplet(@JniArg(cast = "onewire_t *") long ow, boolean direction);
+
+    /**
+     * Free 1-Wire handle.
+     *
+     * @param ow Valid pointer to an allocated 1-Wire handle structure.
+     */
+    @JniMethod(accessor = "onewire_free")
+    public static native void onewireFree(@JniArg(cast = "onewire_t *") long ow);
+
+    /**
+     * Dallas/Maxim CRC8 (polynomial x^8 + x^5 + x^4 + 1). A buffer that includes its CRC byte returns 0.
+     *
+     * @param buf Buffer.
+     * @param len Number of bytes.
+     * @return CRC8.
+     */
+    public static int crc8(final byte[] buf, final int len) {
+        var crc = 0;
+        for (var i = 0; i < len; i++) {
+            var value = buf[i] & 0xff;
+            for (var bit = 0; bit < 8; bit++) {
+                final var mix = (crc ^ value) & 0x01;
+                crc >>= 1;
+                if (mix != 0) {
+                    crc ^= 0x8c;
+                }
+                value >>= 1;
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * Reset bus.
+     *
+     * @return True if presence pulse detected.
+     */
+    public boolean reset() {
+        final var ret = onewireReset(handle);
+        if (ret < 0) {
+            throw new RuntimeException("1-Wire bus held low");
+        }
+        return ret == 1;
+    }
+
+    /**
+     * Write byte.
+     *
+     * @param value Byte to write.
+     */
+    public void writeByte(final int value) {
+        cmd[0] = (byte) value;
+        onewireWrite(handle, cmd, 1);
+    }
+
+    /**
+     * Read byte.
+     *
+     * @return Byte read.
+     */
+    public int readByte() {
+        onewireRead(handle, cmd, 1);
+        return cmd[0] & 0xff;
+    }
+
+    /**
+     * Write bytes.
+     *
+     * @param buf Bytes to write.
+     * @param len Number of bytes.
+     */
+    public void write(final byte[] buf, final int len) {
+        onewireWrite(handle, buf, len);
+    }
+
+    /**
+     * Read bytes.
+     *
+     * @param buf Bytes read.
+     * @param len Number of bytes.
+     */
+    public void read(final byte[] buf, final int len) {
+        onewireRead(handle, buf, len);
+    }
+
+    /**
+     * Reset and address all devices.
+     *
+     * @return True if presence pulse detected.
+     */
+    public boolean skip() {
+        if (!reset()) {
+            return false;
+        }
+        writeByte(SKIP_ROM);
+        return true;
+    }
+
+    /**
+     * Reset and address a single device. Match ROM and the ROM code are sent in one native call.
+     *
+     * @param rom ROM code with family code in the low byte.
+     * @return True if presence pulse detected.
+     */
+    public boolean select(final long rom) {
+        if (!reset()) {
+            return false;
+        }
+        cmd[0] = (byte) MATCH_ROM;
+        for (var i = 0; i < 8; i++) {
+            cmd[i + 1] = (byte) (rom >>> (i * 8));
+        }
+        onewireWrite(handle, cmd, cmd.length);
+        return true;
+    }
+
+    /**
+     * Find ROM codes of all devices on bus using the Maxim search algorithm (application note 187).
+     *
+     * @param command SEARCH_ROM or ALARM_SEARCH.
+     * @return List of ROM codes with family code in the low byte.
+     */
+    public List<Long> search(final int command) {
+        final List<Long> roms = new ArrayList<>();
+        final var rom = new byte[8];
+        var lastDiscrepancy = 0;
+        var done = false;
+        while (!done && reset()) {
+            writeByte(command);
+            var lastZero = 0;
+            for (var bitNumber = 1; bitNumber <= 64; bitNumber++) {
+                final var index = (bitNumber - 1) / 8;
+                final var mask = 1 << ((bitNumber - 1) % 8);
+                final boolean direction;
+                if (bitNumber < lastDiscrepancy) {
+                    direction = (rom[index] & mask) != 0;
+                } else {
+                    direction = bitNumber == lastDiscrepancy;
+                }
+                final var ret = onewireTriplet(handle, direction);
+                // Both bits set means no device responded
+                if ((ret & 0x03) == 0x03) {
+                    return roms;
+                }
+                final var taken = (ret & 0x04) != 0;
+                if ((ret & 0x03) == 0 && !taken) {
+                    lastZero = bitNumber;
+                }
+                if (taken) {
+                    rom[index] |= mask;
+                } else {
+                    rom[index] &= ~mask;
+                }
+            }
+            if (crc8(rom, rom.length) != 0) {
+                throw new RuntimeException("1-Wire ROM CRC error during search");
+            }
+            var code = 0L;
+            for (var i = 7; i >= 0; i--) {
+                code = (code << 8) | (rom[i] & 0xff);
+            }
+            roms.add(code);
+            lastDiscrepancy = lastZero;
+            done = lastDiscrepancy == 0;
+        }
+        return roms;
+    }
+
+    /**
+     * Find ROM codes of all devices on bus.
+     *
+     * @return List of ROM codes with family code in the low byte.
+     */
+    public List<Long> search() {
+        return search(SEARCH_ROM);
+    }
+}
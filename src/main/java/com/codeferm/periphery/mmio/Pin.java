@@ -42,6 +42,14 @@ public class Pin {
      * Pin data output off register.
      */
     private Register dataOutOff;
+    /**
+     * Pin mode input register (optional).
+     */
+    private Register modeIn;
+    /**
+     * Pin mode output register (optional).
+     */
+    private Register modeOut;
     /**
      * MMIO handle.
      */
@@ -158,6 +166,24 @@ public class Pin {
         return this;
     }
 
+    public Register getModeIn() {
+        return modeIn;
+    }
+
+    public Pin setModeIn(Register modeIn) {
+        this.modeIn = modeIn;
+        return this;
+    }
+
+    public Register getModeOut() {
+        return modeOut;
+    }
+
+    public Pin setModeOut(Register modeOut) {
+        this.modeOut = modeOut;
+        return this;
+    }
+
     public long getMmioHadle() {
         return mmioHadle;
     }
@@ -182,6 +208,8 @@ public class Pin {
         hash = 83 * hash + Objects.hashCode(this.dataInOff);
         hash = 83 * hash + Objects.hashCode(this.dataOutOn);
         hash = 83 * hash + Objects.hashCode(this.dataOutOff);
+        hash = 83 * hash + Objects.hashCode(this.modeIn);
+        hash = 83 * hash + Objects.hashCode(this.modeOut);
         hash = 83 * hash + (int) (this.mmioHadle ^ (this.mmioHadle >>> 32));
         return hash;
     }
@@ -228,6 +256,12 @@ public class Pin {
         if (!Objects.equals(this.dataOutOff, other.dataOutOff)) {
             return false;
         }
+        if (!Objects.equals(this.modeIn, other.modeIn)) {
+            return false;
+        }
+        if (!Objects.equals(this.modeOut, other.modeOut)) {
+            return false;
+        }
         return true;
     }
 
@@ -239,6 +273,7 @@ public class Pin {
     @Override
     public String toString() {
         return "Pin{" + "key=" + key + ", groupName=" + groupName + ", name=" + name + ", dataInOn=" + dataInOn + ", dataInOff="
-                + dataInOff + ", dataOutOn=" + dataOutOn + ", dataOutOff=" + dataOutOff + ", mmioHadle=" + mmioHadle + '}';
+                + dataInOff + ", dataOutOn=" + dataOutOn + ", dataOutOff=" + dataOutOff + ", modeIn=" + modeIn + ", modeOut=" + modeOut
+                + ", mmioHadle=" + mmioHadle + '}';
     }
 }
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import static com.codeferm.periphery.Common.memMove;
+import com.codeferm.periphery.I2c;
+import static com.codeferm.periphery.I2c.I2C_M_IGNORE_NAK;
+import static com.codeferm.periphery.I2c.I2C_M_NOSTART;
+import static com.codeferm.periphery.I2c.I2C_M_NO_RD_ACK;
+import static com.codeferm.periphery.I2c.I2C_M_RD;
+import static com.codeferm.periphery.I2c.I2C_M_RECV_LEN;
+import static com.codeferm.periphery.I2c.I2C_M_REV_DIR_ADDR;
+import static com.codeferm.periphery.I2c.I2C_M_STOP;
+import static com.codeferm.periphery.I2c.I2C_M_TEN;
+import static com.codeferm.periphery.I2c.I2C_SUCCESS;
+import com.codeferm.periphery.I2c.I2cMsg;
+
+/**
+ * Bit banged I2C master using MMIO pins. Use this when sensors are on pins not wired to a hardware I2C adapter and i2c-gpio overlay
+ * is not available.
+ *
+ * Open drain is emulated by presetting data out low and switching between input (line released and pulled high) and output (line
+ * driven low) with the mode registers, so pins must have mode registers in the pin map. External pull up resistors are required.
+ * Repeated start and clock stretching are supported. Messages are the same I2cMsg used by I2c.i2cTransfer, so drivers can switch
+ * transports. Instances are not thread safe.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SoftI2c {
+
+    /**
+     * Standard mode 100 KHz.
+     */
+    public static final int I2C_SPEED_STANDARD = 100000;
+    /**
+     * Fast mode 400 KHz.
+     */
+    public static final int I2C_SPEED_FAST = 400000;
+    /**
+     * Default clock stretch timeout in nanoseconds.
+     */
+    public static final long STRETCH_TIMEOUT_NS = 25000000L;
+    /**
+     * Clock pin.
+     */
+    private final MmioPin scl;
+    /**
+     * Data pin.
+     */
+    private final MmioPin sda;
+    /**
+     * Clock low time in nanoseconds.
+     */
+    private final long lowNs;
+    /**
+     * Clock high time in nanoseconds. Also used for start and stop setup and hold times.
+     */
+    private final long highNs;
+    /**
+     * Bus free time between stop and start in nanoseconds.
+     */
+    private final long bufNs;
+    /**
+     * Clock stretch timeout in nanoseconds.
+     */
+    private final long stretchTimeoutNs;
+    /**
+     * Message data buffer reused between transfers.
+     */
+    private byte[] data = new byte[32];
+    /**
+     * Bit read buffer.
+     */
+    private final boolean[] bitBuf = new boolean[1];
+    /**
+     * ACK read buffer.
+     */
+    private final boolean[] ackBuf = new boolean[1];
+    /**
+     * Byte read buffer.
+     */
+    private final int[] valueBuf = new int[1];
+    /**
+     * Last error message.
+     */
+    private String errMessage = "";
+
+    /**
+     * Open bit banged I2C. Pins must have MMIO handles and mode registers set.
+     *
+     * @param scl Clock pin.
+     * @param sda Data pin.
+     * @param speed Clock speed in hertz, I2C_SPEED_STANDARD or I2C_SPEED_FAST.
+     * @param stretchTimeoutNs Maximum time slave can hold clock low.
+     */
+    public SoftI2c(final Pin scl, final Pin sda, final int speed, final long stretchTimeoutNs) {
+        this(new MmioPin(scl), new MmioPin(sda), speed, stretchTimeoutNs);
+    }
+
+    /**
+     * Open bit banged I2C on MMIO pins.
+     *
+     * @param scl Clock pin.
+     * @param sda Data pin.
+     * @param speed Clock speed in hertz, I2C_SPEED_STANDARD or I2C_SPEED_FAST.
+     * @param stretchTimeoutNs Maximum time slave can hold clock low.
+     */
+    SoftI2c(final MmioPin scl, final MmioPin sda, final int speed, final long stretchTimeoutNs) {
+        if (speed <= 0 || speed > I2C_SPEED_FAST) {
+            throw new RuntimeException(String.format("Invalid speed %d", speed));
+        }
+        this.scl = scl;
+        this.sda = sda;
+        if (!this.scl.isHasMode() || !this.sda.isHasMode()) {
+            throw new RuntimeException("SCL and SDA pins require mode registers for open drain emulation");
+        }
+        this.stretchTimeoutNs = stretchTimeoutNs;
+        final var periodNs = 1000000000L / speed;
+        // Minimum tLOW, tHIGH and tBUF from the I2C specification
+        final long minLow;
+        final long minHigh;
+        if (speed > I2C_SPEED_STANDARD) {
+            minLow = 1300;
+            minHigh = 600;
+            bufNs = 1300;
+        } else {
+            minLow = 4700;
+            minHigh = 4000;
+            bufNs = 4700;
+        }
+        lowNs = Math.max(periodNs / 2, minLow);
+        highNs = Math.max(periodNs - lowNs, minHigh);
+        // Preset data out low, so output mode always drives low
+        this.scl.low();
+        this.sda.low();
+        // Release bus
+        this.sda.input();
+        this.scl.input();
+    }
+
+    /**
+     * Open bit banged I2C with default clock stretch timeout.
+     *
+     * @param scl Clock pin.
+     * @param sda Data pin.
+     * @param speed Clock speed in hertz, I2C_SPEED_STANDARD or I2C_SPEED_FAST.
+     */
+    public SoftI2c(final Pin scl, final Pin sda, final int speed) {
+        this(scl, sda, speed, STRETCH_TIMEOUT_NS);
+    }
+
+    /**
+     * Return a human readable error message of the last failure that occurred.
+     *
+     * @return Error message.
+     */
+    public String getErrMessage() {
+        return errMessage;
+    }
+
+    /**
+     * Release SCL and wait for slave to release it (clock stretching).
+     *
+     * @return True if SCL went high before timeout.
+     */
+    private boolean sclRelease() {
+        scl.input();
+        if (!scl.read()) {
+            final var deadline = System.nanoTime() + stretchTimeoutNs;
+            while (!scl.read()) {
+                if (System.nanoTime() > deadline) {
+                    errMessage = "Clock stretch timeout";
+                    return false;
+                }
+                Thread.onSpinWait();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generate start or repeated start condition. SCL is left low.
+     *
+     * @return True on success.
+     */
+    private boolean start() {
+        sda.input();
+        MmioPin.delayNs(lowNs);
+        if (!sclRelease()) {
+            return false;
+        }
+        if (!sda.read()) {
+            errMessage = "Bus arbitration lost";
+            return false;
+        }
+        // tSU;STA
+        MmioPin.delayNs(highNs);
+        sda.output();
+        // tHD;STA
+        MmioPin.delayNs(highNs);
+        scl.output();
+        return true;
+    }
+
+    /**
+     * Generate stop condition. Bus is left released.
+     *
+     * @return True on success.
+     */
+    private boolean stop() {
+        sda.output();
+        MmioPin.delayNs(lowNs);
+        final var ret = sclRelease();
+        // tSU;STO
+        MmioPin.delayNs(highNs);
+        sda.input();
+        // tBUF
+        MmioPin.delayNs(bufNs);
+        return ret;
+    }
+
+    /**
+     * Clock one bit out. SCL is low on entry and exit.
+     *
+     * @param value Bit value.
+     * @return True on success.
+     */
+    private boolean writeBit(final boolean value) {
+        if (value) {
+            sda.input();
+        } else {
+            sda.output();
+        }
+        MmioPin.delayNs(lowNs);
+        if (!sclRelease()) {
+            return false;
+        }
+        MmioPin.delayNs(highNs);
+        scl.output();
+        return true;
+    }
+
+    /**
+     * Clock one bit in. SCL is low on entry and exit.
+     *
+     * @param value Bit read.
+     * @return True on success.
+     */
+    private boolean readBit(final boolean[] value) {
+        sda.input();
+        MmioPin.delayNs(lowNs);
+        if (!sclRelease()) {
+            return false;
+        }
+        MmioPin.delayNs(highNs);
+        value[0] = sda.read();
+        scl.output();
+        return true;
+    }
+
+    /**
+     * Write byte MSB first and read ACK.
+     *
+     * @param value Byte to write.
+     * @param ack True if slave ACKed.
+     * @return True on success.
+     */
+    private boolean writeByte(final int value, final boolean[] ack) {
+        for (var i = 7; i >= 0; i--) {
+            if (!writeBit(((value >> i) & 0x01) != 0)) {
+                return false;
+            }
+        }
+        if (!readBit(ack)) {
+            return false;
+        }
+        // ACK is SDA low
+        ack[0] = !ack[0];
+        return true;
+    }
+
+    /**
+     * Read byte MSB first and send ACK or NAK.
+     *
+     * @param value Byte read.
+     * @param sendAck Send ACK if true or NAK if false.
+     * @param ackClock Clock the ACK/NAK bit, false for I2C_M_NO_RD_ACK.
+     * @return True on success.
+     */
+    private boolean readByte(final int[] value, final boolean sendAck, final boolean ackClock) {
+        var in = 0;
+        for (var i = 0; i < 8; i++) {
+            if (!readBit(bitBuf)) {
+                return false;
+            }
+            in = (in << 1) | (bitBuf[0] ? 1 : 0);
+        }
+        value[0] = in;
+        if (!ackClock) {
+            return true;
+        }
+        return writeBit(!sendAck);
+    }
+
+    /**
+     * Write address bytes for a message. Handles 7 and 10 bit addresses.
+     *
+     * @param addr Slave address.
+     * @param flags Message flags.
+     * @return True on success.
+     */
+    private boolean writeAddress(final int addr, final int flags) {
+        var read = (flags & I2C_M_RD) != 0;
+        if ((flags & I2C_M_REV_DIR_ADDR) != 0) {
+            read = !read;
+        }
+        if ((flags & I2C_M_TEN) != 0) {
+            final var high = 0xf0 | ((addr >> 7) & 0x06);
+            // 10 bit address is always written first
+            if (!writeByte(high, ackBuf) || !checkAck(ackBuf[0], addr, flags) || !writeByte(addr & 0xff, ackBuf) || !checkAck(ackBuf[0], addr,
+                    flags)) {
+                return false;
+            }
+            if (read) {
+                // Repeated start with high address byte and read bit
+                if (!start() || !writeByte(high | 0x01, ackBuf) || !checkAck(ackBuf[0], addr, flags)) {
+                    return false;
+                }
+            }
+        } else {
+            if (!writeByte(((addr & 0x7f) << 1) | (read ? 1 : 0), ackBuf) || !checkAck(ackBuf[0], addr, flags)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check ACK honoring I2C_M_IGNORE_NAK.
+     *
+     * @param ack True if ACK received.
+     * @param addr Slave address.
+     * @param flags Message flags.
+     * @return True if transfer can continue.
+     */
+    private boolean checkAck(final boolean ack, final int addr, final int flags) {
+        if (!ack && (flags & I2C_M_IGNORE_NAK) == 0) {
+            errMessage = String.format("NAK from address 0x%02x", addr);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Transfer one message. Start (or repeated start) is generated unless I2C_M_NOSTART is set.
+     *
+     * @param addr Slave address.
+     * @param flags Message flags.
+     * @param buf Data buffer.
+     * @param len Data length.
+     * @return True on success.
+     */
+    private boolean transferMsg(final int addr, final int flags, final byte[] buf, final int len) {
+        if ((flags & I2C_M_NOSTART) == 0) {
+            if (!start() || !writeAddress(addr, flags)) {
+                return false;
+            }
+        }
+        if ((flags & I2C_M_RD) != 0) {
+            // I2C_M_NO_RD_ACK skips the ACK/NAK clock entirely
+            final var ackClock = (flags & I2C_M_NO_RD_ACK) == 0;
+            for (var i = 0; i < len; i++) {
+                // NAK last byte
+                if (!readByte(valueBuf, i < len - 1, ackClock)) {
+                    return false;
+                }
+                buf[i] = (byte) valueBuf[0];
+            }
+        } else {
+            for (var i = 0; i < len; i++) {
+                if (!writeByte(buf[i] & 0xff, ackBuf) || !checkAck(ackBuf[0], addr, flags)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make sure data buffer is large enough.
+     *
+     * @param len Required length.
+     */
+    private void ensureData(final int len) {
+        if (data.length < len) {
+            data = new byte[len];
+        }
+    }
+
+    /**
+     * Transfer count number of I2cMsg messages. Message buffers are native memory like I2c.i2cTransfer. A stop is generated after
+     * the last message or any message with I2C_M_STOP set. A repeated start is generated between other messages.
+     *
+     * @param msgs Array of I2cMsg.
+     * @param count Number of messages to transfer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public int i2cTransfer(final I2cMsg[] msgs, final long count) {
+        if (count < 1 || count > msgs.length) {
+            errMessage = "Invalid message count";
+            return I2c.I2C_ERROR_ARG;
+        }
+        for (var i = 0; i < count; i++) {
+            if ((msgs[i].flags & I2C_M_RECV_LEN) != 0) {
+                errMessage = "I2C_M_RECV_LEN not supported";
+                return I2c.I2C_ERROR_NOT_SUPPORTED;
+            }
+        }
+        for (var i = 0; i < count; i++) {
+            final var msg = msgs[i];
+            final var len = msg.len & 0xffff;
+            ensureData(len);
+            // Copy write data from native memory
+            if ((msg.flags & I2C_M_RD) == 0 && len > 0) {
+                memMove(data, msg.buf, len);
+            }
+            if (!transferMsg(msg.addr & 0x3ff, msg.flags, data, len)) {
+                stop();
+                return I2c.I2C_ERROR_TRANSFER;
+            }
+            // Copy read data to native memory
+            if ((msg.flags & I2C_M_RD) != 0 && len > 0) {
+                memMove(msg.buf, data, len);
+            }
+            if (i == count - 1 || (msg.flags & I2C_M_STOP) != 0) {
+                if (!stop()) {
+                    return I2c.I2C_ERROR_TRANSFER;
+                }
+            }
+        }
+        return I2C_SUCCESS;
+    }
+
+    /**
+     * Transfer single I2cMsg message.
+     *
+     * @param msg I2cMsg.
+     * @param count Must be 1.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public int i2cTransfer(final I2cMsg msg, final long count) {
+        return i2cTransfer(new I2cMsg[]{msg}, count);
+    }
+
+    /**
+     * Read array from i2c register. Unlike I2c.i2cReadReg the register write and read use a repeated start in one transaction and
+     * no native memory is required.
+     *
+     * @param addr Address.
+     * @param reg Register.
+     * @param buf Read buffer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public int i2cReadReg(final short addr, final short reg, final byte[] buf) {
+        final byte[] regBuf = {(byte) reg};
+        if (!transferMsg(addr, 0, regBuf, regBuf.length) || !transferMsg(addr, I2C_M_RD, buf, buf.length)) {
+            stop();
+            return I2c.I2C_ERROR_TRANSFER;
+        }
+        return stop() ? I2C_SUCCESS : I2c.I2C_ERROR_TRANSFER;
+    }
+
+    /**
+     * Read i2c register.
+     *
+     * @param addr Address.
+     * @param reg Register.
+     * @param regVal Read buffer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public int i2cReadReg(final short addr, final short reg, final short[] regVal) {
+        final var buf = new byte[1];
+        final var error = i2cReadReg(addr, reg, buf);
+        regVal[0] = (short) (buf[0] & 0xff);
+        return error;
+    }
+
+    /**
+     * Write value to i2c register.
+     *
+     * @param addr Address.
+     * @param reg Register.
+     * @param value Value to write.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public int i2cWriteReg(final short addr, final short reg, final short value) {
+        final byte[] buf = {(byte) reg, (byte) value};
+        if (!transferMsg(addr, 0, buf, buf.length)) {
+            stop();
+            return I2c.I2C_ERROR_TRANSFER;
+        }
+        return stop() ? I2C_SUCCESS : I2c.I2C_ERROR_TRANSFER;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Spi;
+import static com.codeferm.periphery.Spi.SPI_SUCCESS;
+
+/**
+ * Bit banged SPI master using MMIO pins. Use this when you run out of hardware SPI buses. Only MMIO is fast enough to get multi-MHz
+ * clock rates, so GPIO device is not supported.
+ *
+ * SCLK and MOSI are written using precomputed masks and MISO is sampled from the data in register. Chip select is optional and
+ * active low. Like spidev, chip select is held for the entire transfer. Instances are not thread safe.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SoftSpi {
+
+    /**
+     * Clock pin.
+     */
+    private final MmioPin sclk;
+    /**
+     * Master out slave in pin.
+     */
+    private final MmioPin mosi;
+    /**
+     * Master in slave out pin.
+     */
+    private final MmioPin miso;
+    /**
+     * Chip select pin or null if not used.
+     */
+    private final MmioPin cs;
+    /**
+     * Clock polarity.
+     */
+    private final boolean cpol;
+    /**
+     * Clock phase.
+     */
+    private final boolean cpha;
+    /**
+     * Send LSB first.
+     */
+    private final boolean lsbFirst;
+    /**
+     * Half clock period in nanoseconds. 0 means as fast as possible.
+     */
+    private final long halfPeriodNs;
+    /**
+     * Current MOSI level, so we only write on change.
+     */
+    private boolean mosiLevel;
+
+    /**
+     * Open bit banged SPI with the specified SPI mode, max speed in hertz, and bit order. Pins must have MMIO handles set.
+     *
+     * @param sclk Clock pin.
+     * @param mosi MOSI pin.
+     * @param miso MISO pin.
+     * @param cs Chip select pin or null if not used.
+     * @param mode Mode can be 0, 1, 2, or 3.
+     * @param maxSpeed Max speed in hertz. 0 or less runs as fast as MMIO allows.
+     * @param bitOrder Bit order can be MSB_FIRST or LSB_FIRST.
+     */
+    public SoftSpi(final Pin sclk, final Pin mosi, final Pin miso, final Pin cs, final int mode, final int maxSpeed,
+            final int bitOrder) {
+        if (mode < 0 || mode > 3) {
+            throw new RuntimeException(String.format("Invalid mode %d", mode));
+        }
+        this.sclk = new MmioPin(sclk);
+        this.mosi = new MmioPin(mosi);
+        this.miso = new MmioPin(miso);
+        if (cs != null) {
+            this.cs = new MmioPin(cs);
+        } else {
+            this.cs = null;
+        }
+        cpol = (mode & 0x02) != 0;
+        cpha = (mode & 0x01) != 0;
+        lsbFirst = bitOrder == Spi.LSB_FIRST;
+        if (maxSpeed > 0) {
+            halfPeriodNs = 500000000L / maxSpeed;
+        } else {
+            halfPeriodNs = 0;
+        }
+        // Idle state
+        if (this.cs != null) {
+            this.cs.high();
+        }
+        this.sclk.write(cpol);
+        this.mosi.low();
+        mosiLevel = false;
+    }
+
+    /**
+     * Open bit banged SPI with the specified SPI mode, max speed in hertz and the default of MSB_FIRST bit order.
+     *
+     * @param sclk Clock pin.
+     * @param mosi MOSI pin.
+     * @param miso MISO pin.
+     * @param cs Chip select pin or null if not used.
+     * @param mode Mode can be 0, 1, 2, or 3.
+     * @param maxSpeed Max speed in hertz. 0 or less runs as fast as MMIO allows.
+     */
+    public SoftSpi(final Pin sclk, final Pin mosi, final Pin miso, final Pin cs, final int mode, final int maxSpeed) {
+        this(sclk, mosi, miso, cs, mode, maxSpeed, Spi.MSB_FIRST);
+    }
+
+    /**
+     * Write MOSI only if level changed.
+     *
+     * @param value Bit value.
+     */
+    private void setMosi(final boolean value) {
+        if (value != mosiLevel) {
+            mosi.write(value);
+            mosiLevel = value;
+        }
+    }
+
+    /**
+     * Shift one byte out and in.
+     *
+     * @param out Byte to send.
+     * @return Byte received.
+     */
+    public int transferByte(final int out) {
+        var in = 0;
+        for (var i = 0; i < 8; i++) {
+            final int bit;
+            if (lsbFirst) {
+                bit = i;
+            } else {
+                bit = 7 - i;
+            }
+            final var value = ((out >> bit) & 0x01) != 0;
+            final boolean sample;
+            if (cpha) {
+                // Data changes on leading edge and is sampled on trailing edge
+                sclk.write(!cpol);
+                setMosi(value);
+                MmioPin.delayNs(halfPeriodNs);
+                sclk.write(cpol);
+                sample = miso.read();
+                MmioPin.delayNs(halfPeriodNs);
+            } else {
+                // Data is set up before leading edge and sampled on leading edge
+                setMosi(value);
+                MmioPin.delayNs(halfPeriodNs);
+                sclk.write(!cpol);
+                sample = miso.read();
+                MmioPin.delayNs(halfPeriodNs);
+                sclk.write(cpol);
+            }
+            if (sample) {
+                in |= 1 << bit;
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Shift out len word counts of the txbuf buffer, while shifting in len word counts to the rxbuf buffer. This matches
+     * Spi.spiTransfer less the handle.
+     *
+     * @param txBuf Transmit buffer.
+     * @param rxBuf Receive buffer.
+     * @param len Word count.
+     * @return 0 on success, or a negative SPI error code on failure.
+     */
+    public int spiTransfer(final byte[] txBuf, final byte[] rxBuf, final long len) {
+        if (len < 0 || len > txBuf.length || len > rxBuf.length) {
+            return Spi.SPI_ERROR_ARG;
+        }
+        if (cs != null) {
+            cs.low();
+        }
+        for (var i = 0; i < len; i++) {
+            rxBuf[i] = (byte) transferByte(txBuf[i] & 0xff);
+        }
+        if (cs != null) {
+            cs.high();
+        }
+        return SPI_SUCCESS;
+    }
+}
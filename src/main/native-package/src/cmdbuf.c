@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Command buffer executor. Commands run in order until the end of the stream or the first failure. Delays spin on
+ * CLOCK_MONOTONIC, so timing does not depend on the scheduler waking the thread up.
+ */
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+
+#include "cmdbuf.h"
+
+struct cmdbuf_handle {
+    uint8_t *cmds;
+    size_t len;
+    size_t capacity;
+    int error;
+};
+
+/* Length of fields after the opcode byte, 0 for unknown opcodes. Payload bytes of writes follow the fields. */
+static const size_t field_len[] = {
+    [CMDBUF_GPIO_WRITE] = 9,
+    [CMDBUF_GPIO_READ] = 8,
+    [CMDBUF_MMIO_WRITE32] = 16,
+    [CMDBUF_MMIO_READ32] = 12,
+    [CMDBUF_MMIO_MODIFY32] = 20,
+    [CMDBUF_MMIO_WAIT32] = 24,
+    [CMDBUF_SPI_TRANSFER] = 12,
+    [CMDBUF_I2C_WRITE] = 14,
+    [CMDBUF_I2C_READ] = 14,
+    [CMDBUF_SERIAL_WRITE] = 12,
+    [CMDBUF_SERIAL_READ] = 16,
+    [CMDBUF_DELAY_NS] = 4
+};
+
+static inline int64_t now_ns(void) {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t) ts.tv_sec * 1000000000L + ts.tv_nsec;
+}
+
+static inline uint16_t get_u16(const uint8_t *p) {
+    return (uint16_t) (p[0] | (p[1] << 8));
+}
+
+static inline uint32_t get_u32(const uint8_t *p) {
+    return (uint32_t) p[0] | ((uint32_t) p[1] << 8) | ((uint32_t) p[2] << 16) | ((uint32_t) p[3] << 24);
+}
+
+static inline uint64_t get_u64(const uint8_t *p) {
+    return (uint64_t) get_u32(p) | ((uint64_t) get_u32(p + 4) << 32);
+}
+
+static inline void put_u32(uint8_t *p, uint32_t value) {
+    p[0] = (uint8_t) value;
+    p[1] = (uint8_t) (value >> 8);
+    p[2] = (uint8_t) (value >> 16);
+    p[3] = (uint8_t) (value >> 24);
+}
+
+cmdbuf_t *cmdbuf_new(size_t capacity) {
+    cmdbuf_t *cb = calloc(1, sizeof(cmdbuf_t));
+    if (cb == NULL) {
+        return NULL;
+    }
+    cb->cmds = malloc(capacity);
+    if (cb->cmds == NULL) {
+        free(cb);
+        return NULL;
+    }
+    cb->capacity = capacity;
+    return cb;
+}
+
+/* Returns 0 on success or -1 if the stream is larger than the capacity */
+int cmdbuf_load(cmdbuf_t *cb, const uint8_t *cmds, size_t len) {
+    if (len > cb->capacity) {
+        return -1;
+    }
+    memcpy(cb->cmds, cmds, len);
+    cb->len = len;
+    return 0;
+}
+
+/* Record error of command and return its failure code */
+static int fail(cmdbuf_t *cb, int error, int index) {
+    cb->error = error;
+    return -(index + 1);
+}
+
+/*
+ * Returns number of output bytes on success or -(command index + 1) of the first command that failed. cmdbuf_error tells a
+ * malformed command (CMDBUF_ERROR_ARG) from a peripheral failure (CMDBUF_ERROR_EXECUTE). Every command is checked against the end
+ * of the stream and the output buffer before it runs, so a corrupt stream cannot read or write out of bounds.
+ */
+int cmdbuf_execute(cmdbuf_t *cb, uint8_t *out, size_t out_len) {
+    const uint8_t *p = cb->cmds;
+    const uint8_t *end = cb->cmds + cb->len;
+    size_t pos = 0;
+    int index = 0;
+    cb->error = 0;
+    while (p < end) {
+        uint8_t op = *p++;
+        size_t avail = (size_t) (end - p);
+        size_t fields = op < sizeof(field_len) / sizeof(field_len[0]) ? field_len[op] : 0;
+        int ret = 0;
+        if (fields == 0 || avail < fields) {
+            return fail(cb, CMDBUF_ERROR_ARG, index);
+        }
+        switch (op) {
+            case CMDBUF_GPIO_WRITE:
+                ret = gpio_write((gpio_t *) (uintptr_t) get_u64(p), p[8] != 0);
+                p += 9;
+                break;
+            case CMDBUF_GPIO_READ: {
+                bool value;
+                if (out_len - pos < 1) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = gpio_read((gpio_t *) (uintptr_t) get_u64(p), &value);
+                out[pos++] = value ? 1 : 0;
+                p += 8;
+                break;
+            }
+            case CMDBUF_MMIO_WRITE32:
+                ret = mmio_write32((mmio_t *) (uintptr_t) get_u64(p), get_u32(p + 8), get_u32(p + 12));
+                p += 16;
+                break;
+            case CMDBUF_MMIO_READ32: {
+                uint32_t value;
+                if (out_len - pos < 4) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = mmio_read32((mmio_t *) (uintptr_t) get_u64(p), get_u32(p + 8), &value);
+                put_u32(out + pos, value);
+                pos += 4;
+                p += 12;
+                break;
+            }
+            case CMDBUF_MMIO_MODIFY32: {
+                mmio_t *mmio = (mmio_t *) (uintptr_t) get_u64(p);
+                uint32_t offset = get_u32(p + 8);
+                uint32_t value;
+                ret = mmio_read32(mmio, offset, &value);
+                if (ret == 0) {
+                    ret = mmio_write32(mmio, offset, (value & ~get_u32(p + 12)) | get_u32(p + 16));
+                }
+                p += 20;
+                break;
+            }
+            case CMDBUF_MMIO_WAIT32: {
+                mmio_t *mmio = (mmio_t *) (uintptr_t) get_u64(p);
+                uint32_t offset = get_u32(p + 8);
+                uint32_t mask = get_u32(p + 12);
+                uint32_t expected = get_u32(p + 16);
+                int64_t deadline = now_ns() + get_u32(p + 20);
+                uint32_t value;
+                do {
+                    ret = mmio_read32(mmio, offset, &value);
+                } while (ret == 0 && (value & mask) != expected && now_ns() < deadline);
+                if (ret == 0 && (value & mask) != expected) {
+                    ret = -1;
+                }
+                p += 24;
+                break;
+            }
+            case CMDBUF_SPI_TRANSFER: {
+                uint32_t len = get_u32(p + 8);
+                if (len > avail - fields || len > out_len - pos) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = spi_transfer((spi_t *) (uintptr_t) get_u64(p), p + 12, out + pos, len);
+                pos += len;
+                p += 12 + len;
+                break;
+            }
+            case CMDBUF_I2C_WRITE: {
+                uint32_t len = get_u32(p + 10);
+                struct i2c_msg msg = {.addr = get_u16(p + 8), .flags = 0, .len = (uint16_t) len, .buf = (uint8_t *) (p + 14)};
+                if (len > 0xffff || len > avail - fields) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = i2c_transfer((i2c_t *) (uintptr_t) get_u64(p), &msg, 1);
+                p += 14 + len;
+                break;
+            }
+            case CMDBUF_I2C_READ: {
+                uint32_t len = get_u32(p + 10);
+                struct i2c_msg msg = {.addr = get_u16(p + 8), .flags = I2C_M_RD, .len = (uint16_t) len, .buf = out + pos};
+                if (len > 0xffff || len > out_len - pos) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = i2c_transfer((i2c_t *) (uintptr_t) get_u64(p), &msg, 1);
+                pos += len;
+                p += 14;
+                break;
+            }
+            case CMDBUF_SERIAL_WRITE: {
+                uint32_t len = get_u32(p + 8);
+                if (len > avail - fields) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = serial_write((serial_t *) (uintptr_t) get_u64(p), p + 12, len) == (int) len ? 0 : -1;
+                p += 12 + len;
+                break;
+            }
+            case CMDBUF_SERIAL_READ: {
+                uint32_t len = get_u32(p + 8);
+                if (len > out_len - pos) {
+                    return fail(cb, CMDBUF_ERROR_ARG, index);
+                }
+                ret = serial_read((serial_t *) (uintptr_t) get_u64(p), out + pos, len, (int32_t) get_u32(p + 12)) == (int) len ?
+                        0 : -1;
+                pos += len;
+                p += 16;
+                break;
+            }
+            case CMDBUF_DELAY_NS: {
+                int64_t deadline = now_ns() + get_u32(p);
+                while (now_ns() < deadline) {
+                }
+                p += 4;
+                break;
+            }
+            default:
+                return fail(cb, CMDBUF_ERROR_ARG, index);
+        }
+        if (ret < 0) {
+            return fail(cb, CMDBUF_ERROR_EXECUTE, index);
+        }
+        index++;
+    }
+    return (int) pos;
+}
+
+int cmdbuf_error(cmdbuf_t *cb) {
+    return cb->error;
+}
+
+void cmdbuf_free(cmdbuf_t *cb) {
+    free(cb->cmds);
+    free(cb);
+}
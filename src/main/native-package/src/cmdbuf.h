@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Command buffer executor. A byte stream of opcodes referencing GPIO, SPI, I2C, MMIO and Serial handles is copied off heap once and
+ * executed in a single native call. Results of read commands are appended to an output buffer.
+ */
+#ifndef _PERIPHERY_CMDBUF_H
+#define _PERIPHERY_CMDBUF_H
+
+#include <stddef.h>
+#include <stdint.h>
+
+#include "gpio.h"
+#include "spi.h"
+#include "i2c.h"
+#include "mmio.h"
+#include "serial.h"
+
+/* Opcodes. Fields follow the opcode byte in little endian order and handles are 64 bits. */
+enum cmdbuf_opcode {
+    CMDBUF_GPIO_WRITE = 1,      /* handle, u8 value */
+    CMDBUF_GPIO_READ = 2,       /* handle -> u8 */
+    CMDBUF_MMIO_WRITE32 = 3,    /* handle, u32 offset, u32 value */
+    CMDBUF_MMIO_READ32 = 4,     /* handle, u32 offset -> u32 */
+    CMDBUF_MMIO_MODIFY32 = 5,   /* handle, u32 offset, u32 clear, u32 set */
+    CMDBUF_MMIO_WAIT32 = 6,     /* handle, u32 offset, u32 mask, u32 value, u32 timeout ns */
+    CMDBUF_SPI_TRANSFER = 7,    /* handle, u32 len, tx bytes -> rx bytes */
+    CMDBUF_I2C_WRITE = 8,       /* handle, u16 addr, u32 len, bytes */
+    CMDBUF_I2C_READ = 9,        /* handle, u16 addr, u32 len -> bytes */
+    CMDBUF_SERIAL_WRITE = 10,   /* handle, u32 len, bytes */
+    CMDBUF_SERIAL_READ = 11,    /* handle, u32 len, i32 timeout ms -> bytes */
+    CMDBUF_DELAY_NS = 12        /* u32 ns */
+};
+
+/* Error of the command that failed */
+enum cmdbuf_error_code {
+    CMDBUF_ERROR_ARG = -1,      /* Truncated command, unknown opcode, length too large or output buffer too small */
+    CMDBUF_ERROR_EXECUTE = -2   /* Peripheral call failed, short serial transfer or wait timed out */
+};
+
+typedef struct cmdbuf_handle cmdbuf_t;
+
+/* Primary Functions */
+cmdbuf_t *cmdbuf_new(size_t capacity);
+int cmdbuf_load(cmdbuf_t *cb, const uint8_t *cmds, size_t len);
+int cmdbuf_execute(cmdbuf_t *cb, uint8_t *out, size_t out_len);
+int cmdbuf_error(cmdbuf_t *cb);
+void cmdbuf_free(cmdbuf_t *cb);
+
+#endif
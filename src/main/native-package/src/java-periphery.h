@@ -45,5 +45,11 @@
 #include "i2c.h"
 #include "mmio.h"
 #include "serial.h"
+#include "onewire.h"
+#include "quadrature.h"
+#include "cmdbuf.h"
+#include "periodic.h"
+#include "realtime.h"
+#include "spibatch.h"
 
 #endif /* INCLUDED_PLATFORM_H */
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * 1-Wire master time slots using MMIO. Standard speed timing from Maxim application note 126.
+ */
+#include <stdlib.h>
+#include <time.h>
+
+#include "onewire.h"
+
+struct onewire_handle {
+    volatile uint32_t *in;
+    uint32_t in_mask;
+    volatile uint32_t *mode;
+    uint32_t mode_field;
+    uint32_t mode_in;
+    uint32_t mode_out;
+};
+
+static void delay_us(uint32_t us) {
+    struct timespec now, deadline;
+    clock_gettime(CLOCK_MONOTONIC, &deadline);
+    deadline.tv_nsec += (long) us * 1000;
+    if (deadline.tv_nsec >= 1000000000L) {
+        deadline.tv_sec += deadline.tv_nsec / 1000000000L;
+        deadline.tv_nsec %= 1000000000L;
+    }
+    do {
+        clock_gettime(CLOCK_MONOTONIC, &now);
+    } while (now.tv_sec < deadline.tv_sec || (now.tv_sec == deadline.tv_sec && now.tv_nsec < deadline.tv_nsec));
+}
+
+/* Drive bus low */
+static inline void bus_low(onewire_t *ow) {
+    *ow->mode = (*ow->mode & ~ow->mode_field) | ow->mode_out;
+}
+
+/* Release bus, so pull up takes it high */
+static inline void bus_release(onewire_t *ow) {
+    *ow->mode = (*ow->mode & ~ow->mode_field) | ow->mode_in;
+}
+
+static inline bool bus_read(onewire_t *ow) {
+    return (*ow->in & ow->in_mask) != 0;
+}
+
+onewire_t *onewire_new(uintptr_t in_addr, uint32_t in_mask, uintptr_t mode_addr, uint32_t mode_in, uint32_t mode_out) {
+    onewire_t *ow = calloc(1, sizeof(onewire_t));
+    if (ow == NULL) {
+        return NULL;
+    }
+    ow->in = (volatile uint32_t *) in_addr;
+    ow->in_mask = in_mask;
+    ow->mode = (volatile uint32_t *) mode_addr;
+    ow->mode_field = mode_in | mode_out;
+    ow->mode_in = mode_in;
+    ow->mode_out = mode_out;
+    bus_release(ow);
+    return ow;
+}
+
+/* Returns 1 if a presence pulse was detected, 0 if no device responded or -1 if the bus is held low */
+int onewire_reset(onewire_t *ow) {
+    bool presence;
+    bus_release(ow);
+    if (!bus_read(ow)) {
+        return -1;
+    }
+    bus_low(ow);
+    delay_us(480);
+    bus_release(ow);
+    delay_us(70);
+    presence = !bus_read(ow);
+    delay_us(410);
+    return presence ? 1 : 0;
+}
+
+void onewire_write_bit(onewire_t *ow, bool value) {
+    if (value) {
+        bus_low(ow);
+        delay_us(6);
+        bus_release(ow);
+        delay_us(64);
+    } else {
+        bus_low(ow);
+        delay_us(60);
+        bus_release(ow);
+        delay_us(10);
+    }
+}
+
+bool onewire_read_bit(onewire_t *ow) {
+    bool value;
+    bus_low(ow);
+    delay_us(6);
+    bus_release(ow);
+    delay_us(9);
+    value = bus_read(ow);
+    delay_us(55);
+    return value;
+}
+
+void onewire_write(onewire_t *ow, const uint8_t *buf, size_t len) {
+    for (size_t i = 0; i < len; i++) {
+        for (int bit = 0; bit < 8; bit++) {
+            onewire_write_bit(ow, (buf[i] >> bit) & 0x01);
+        }
+    }
+}
+
+void onewire_read(onewire_t *ow, uint8_t *buf, size_t len) {
+    for (size_t i = 0; i < len; i++) {
+        uint8_t value = 0;
+        for (int bit = 0; bit < 8; bit++) {
+            if (onewire_read_bit(ow)) {
+                value |= 1 << bit;
+            }
+        }
+        buf[i] = value;
+    }
+}
+
+/*
+ * ROM search triplet. Read bit and complement, then write direction. Returns bit 0 = id bit, bit 1 = complement bit and bit 2 =
+ * direction taken. If id and complement differ the id bit is taken, otherwise direction is used.
+ */
+int onewire_triplet(onewire_t *ow, bool direction) {
+    bool id_bit = onewire_read_bit(ow);
+    bool cmp_bit = onewire_read_bit(ow);
+    bool taken;
+    if (id_bit != cmp_bit) {
+        taken = id_bit;
+    } else {
+        taken = direction;
+    }
+    onewire_write_bit(ow, taken);
+    return (id_bit ? 0x01 : 0) | (cmp_bit ? 0x02 : 0) | (taken ? 0x04 : 0);
+}
+
+void onewire_free(onewire_t *ow) {
+    free(ow);
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * 1-Wire master time slots using MMIO. Open drain is emulated by presetting data out low and switching the pin between input and
+ * output with the mode register.
+ */
+#ifndef _PERIPHERY_ONEWIRE_H
+#define _PERIPHERY_ONEWIRE_H
+
+#include <stdbool.h>
+#include <stddef.h>
+#include <stdint.h>
+
+typedef struct onewire_handle onewire_t;
+
+/* Primary Functions */
+onewire_t *onewire_new(uintptr_t in_addr, uint32_t in_mask, uintptr_t mode_addr, uint32_t mode_in, uint32_t mode_out);
+int onewire_reset(onewire_t *ow);
+void onewire_write_bit(onewire_t *ow, bool value);
+bool onewire_read_bit(onewire_t *ow);
+void onewire_write(onewire_t *ow, const uint8_t *buf, size_t len);
+void onewire_read(onewire_t *ow, uint8_t *buf, size_t len);
+int onewire_triplet(onewire_t *ow, bool direction);
+void onewire_free(onewire_t *ow);
+
+#endif
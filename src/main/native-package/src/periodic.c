@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Periodic timer using absolute clock_nanosleep on CLOCK_MONOTONIC. When a wake up is later than a whole period the missed
+ * deadlines are skipped and counted as overruns instead of running back to back to catch up.
+ */
+#include <errno.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+
+#include "periodic.h"
+
+#define NS_PER_SEC 1000000000L
+
+struct periodic_handle {
+    int64_t period_ns;
+    int64_t deadline;
+    int64_t stats[PERIODIC_STATS];
+};
+
+static inline int64_t now_ns(void) {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t) ts.tv_sec * NS_PER_SEC + ts.tv_nsec;
+}
+
+periodic_t *periodic_new(int64_t period_ns) {
+    periodic_t *timer;
+    if (period_ns <= 0) {
+        return NULL;
+    }
+    timer = calloc(1, sizeof(periodic_t));
+    if (timer == NULL) {
+        return NULL;
+    }
+    timer->period_ns = period_ns;
+    periodic_start(timer);
+    return timer;
+}
+
+/* First deadline is one period from now */
+void periodic_start(periodic_t *timer) {
+    timer->deadline = now_ns() + timer->period_ns;
+}
+
+/* Sleep until next deadline. Returns number of deadlines missed since the last call. */
+int64_t periodic_wait(periodic_t *timer) {
+    struct timespec ts;
+    int64_t now, late, missed = 0;
+    ts.tv_sec = timer->deadline / NS_PER_SEC;
+    ts.tv_nsec = timer->deadline % NS_PER_SEC;
+    while (clock_nanosleep(CLOCK_MONOTONIC, TIMER_ABSTIME, &ts, NULL) == EINTR) {
+    }
+    now = now_ns();
+    late = now - timer->deadline;
+    if (late >= timer->period_ns) {
+        missed = late / timer->period_ns;
+        timer->deadline += missed * timer->period_ns;
+        late -= missed * timer->period_ns;
+    }
+    timer->deadline += timer->period_ns;
+    timer->stats[PERIODIC_TICKS]++;
+    timer->stats[PERIODIC_OVERRUNS] += missed;
+    timer->stats[PERIODIC_LAST_LATE] = late;
+    if (late > timer->stats[PERIODIC_MAX_LATE]) {
+        timer->stats[PERIODIC_MAX_LATE] = late;
+    }
+    timer->stats[PERIODIC_TOTAL_LATE] += late;
+    return missed;
+}
+
+void periodic_stats(periodic_t *timer, int64_t *stats) {
+    memcpy(stats, timer->stats, sizeof(timer->stats));
+}
+
+void periodic_reset_stats(periodic_t *timer) {
+    memset(timer->stats, 0, sizeof(timer->stats));
+}
+
+void periodic_free(periodic_t *timer) {
+    free(timer);
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Periodic timer using absolute clock_nanosleep on CLOCK_MONOTONIC. Deadlines advance by exactly one period, so there is no drift
+ * and lateness of each wake up is recorded.
+ */
+#ifndef _PERIPHERY_PERIODIC_H
+#define _PERIPHERY_PERIODIC_H
+
+#include <stdint.h>
+
+/* Statistics indexes */
+enum periodic_stat {
+    PERIODIC_TICKS = 0,
+    PERIODIC_OVERRUNS = 1,
+    PERIODIC_LAST_LATE = 2,
+    PERIODIC_MAX_LATE = 3,
+    PERIODIC_TOTAL_LATE = 4,
+    PERIODIC_STATS = 5
+};
+
+typedef struct periodic_handle periodic_t;
+
+/* Primary Functions */
+periodic_t *periodic_new(int64_t period_ns);
+void periodic_start(periodic_t *timer);
+int64_t periodic_wait(periodic_t *timer);
+void periodic_stats(periodic_t *timer, int64_t *stats);
+void periodic_reset_stats(periodic_t *timer);
+void periodic_free(periodic_t *timer);
+
+#endif
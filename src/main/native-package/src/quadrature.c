@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Quadrature encoder accumulation. Same algorithm as QuadratureDecoder.java.
+ */
+#include <stdlib.h>
+#include <string.h>
+
+#include "quadrature.h"
+
+#define QUAD_BATCH 256
+#define QUAD_ILLEGAL 2
+
+/* Indexed by old state << 2 | new state where state is A << 1 | B */
+static const int8_t quad_table[16] = {
+    QUAD_ILLEGAL, 1, -1, QUAD_ILLEGAL,
+    -1, QUAD_ILLEGAL, QUAD_ILLEGAL, 1,
+    1, QUAD_ILLEGAL, QUAD_ILLEGAL, -1,
+    QUAD_ILLEGAL, -1, 1, QUAD_ILLEGAL
+};
+
+struct quadrature_handle {
+    gpio_t *gpio[2];
+    uint8_t state;
+    volatile int stop;
+    volatile uint32_t seq;
+    int64_t position;
+    int64_t illegal;
+    int64_t timestamp;
+    double velocity;
+    int64_t window_position;
+    int64_t window_timestamp;
+    int64_t window_ns;
+    uint64_t ts[2][QUAD_BATCH];
+    bool rising[2][QUAD_BATCH];
+    int count[2];
+    /* Timestamp of last event queued per line, kept after the event is counted */
+    uint64_t last[2];
+};
+
+quadrature_t *quadrature_new(gpio_t *gpio_a, gpio_t *gpio_b, bool a, bool b, uint64_t window_ns) {
+    quadrature_t *quad = calloc(1, sizeof(quadrature_t));
+    if (quad == NULL) {
+        return NULL;
+    }
+    quad->gpio[0] = gpio_a;
+    quad->gpio[1] = gpio_b;
+    quad->state = (a ? 2 : 0) | (b ? 1 : 0);
+    quad->window_ns = (int64_t) window_ns;
+    return quad;
+}
+
+static void quadrature_edge(quadrature_t *quad, int line, bool rising, int64_t timestamp) {
+    const uint8_t bit = line == 0 ? 2 : 1;
+    const uint8_t next = rising ? quad->state | bit : quad->state & ~bit;
+    const int8_t delta = quad_table[(quad->state << 2) | next];
+    if (delta == QUAD_ILLEGAL) {
+        quad->illegal++;
+    } else {
+        quad->position += delta;
+    }
+    quad->state = next;
+    quad->timestamp = timestamp;
+    if (quad->window_timestamp == 0) {
+        quad->window_timestamp = timestamp;
+        quad->window_position = quad->position;
+    } else if (timestamp - quad->window_timestamp >= quad->window_ns) {
+        quad->velocity = (quad->position - quad->window_position) * 1000000000.0 / (timestamp - quad->window_timestamp);
+        quad->window_timestamp = timestamp;
+        quad->window_position = quad->position;
+    }
+}
+
+/*
+ * Merge both lines by timestamp. Events newer than the last event ever queued for the other line are held back for the next batch
+ * unless flush is set, even when the other line's queue is empty. A full queue is counted rather than stall on a line that is not
+ * moving.
+ */
+static void quadrature_process(quadrature_t *quad, bool flush) {
+    const int na = quad->count[0];
+    const int nb = quad->count[1];
+    uint64_t horizon = UINT64_MAX;
+    if (!flush && na < QUAD_BATCH && nb < QUAD_BATCH) {
+        horizon = quad->last[0] < quad->last[1] ? quad->last[0] : quad->last[1];
+    }
+    int i = 0;
+    int j = 0;
+    __atomic_store_n(&quad->seq, quad->seq + 1, __ATOMIC_RELAXED);
+    __atomic_thread_fence(__ATOMIC_RELEASE);
+    while (i < na || j < nb) {
+        const int line = (j >= nb || (i < na && quad->ts[0][i] <= quad->ts[1][j])) ? 0 : 1;
+        const int k = line == 0 ? i : j;
+        if (quad->ts[line][k] > horizon) {
+            break;
+        }
+        quadrature_edge(quad, line, quad->rising[line][k], (int64_t) quad->ts[line][k]);
+        if (line == 0) {
+            i++;
+        } else {
+            j++;
+        }
+    }
+    __atomic_store_n(&quad->seq, quad->seq + 1, __ATOMIC_RELEASE);
+    memmove(quad->ts[0], quad->ts[0] + i, (na - i) * sizeof(uint64_t));
+    memmove(quad->rising[0], quad->rising[0] + i, (na - i) * sizeof(bool));
+    quad->count[0] = na - i;
+    memmove(quad->ts[1], quad->ts[1] + j, (nb - j) * sizeof(uint64_t));
+    memmove(quad->rising[1], quad->rising[1] + j, (nb - j) * sizeof(bool));
+    quad->count[1] = nb - j;
+}
+
+/* Drain both lines without blocking. Returns 0 or a negative GPIO error code. */
+static int quadrature_drain(quadrature_t *quad) {
+    gpio_edge_t edge;
+    uint64_t timestamp;
+    for (int line = 0; line < 2; line++) {
+        int ret = 0;
+        while (quad->count[line] < QUAD_BATCH && (ret = gpio_poll(quad->gpio[line], 0)) == 1) {
+            if ((ret = gpio_read_event(quad->gpio[line], &edge, &timestamp)) < 0) {
+                return ret;
+            }
+            quad->ts[line][quad->count[line]] = timestamp;
+            quad->rising[line][quad->count[line]] = edge == GPIO_EDGE_RISING;
+            quad->count[line]++;
+            quad->last[line] = timestamp;
+        }
+        if (ret < 0) {
+            return ret;
+        }
+    }
+    return 0;
+}
+
+int quadrature_run(quadrature_t *quad, int timeout_ms) {
+    bool ready[2];
+    int ret = 0;
+    while (ret >= 0 && !__atomic_load_n(&quad->stop, __ATOMIC_ACQUIRE)) {
+        ret = gpio_poll_multiple(quad->gpio, 2, timeout_ms, ready);
+        if (ret == 0) {
+            /* No edges for timeout, so count held back events and encoder stopped */
+            quadrature_process(quad, true);
+            __atomic_store_n(&quad->seq, quad->seq + 1, __ATOMIC_RELAXED);
+            __atomic_thread_fence(__ATOMIC_RELEASE);
+            quad->velocity = 0.0;
+            quad->window_timestamp = 0;
+            __atomic_store_n(&quad->seq, quad->seq + 1, __ATOMIC_RELEASE);
+        } else if (ret > 0 && (ret = quadrature_drain(quad)) == 0) {
+            quadrature_process(quad, false);
+        }
+    }
+    /* Allow run again, also after an error */
+    __atomic_store_n(&quad->stop, 0, __ATOMIC_RELEASE);
+    return ret < 0 ? ret : 0;
+}
+
+void quadrature_stop(quadrature_t *quad) {
+    __atomic_store_n(&quad->stop, 1, __ATOMIC_RELEASE);
+}
+
+/* Seqlock read, so position, illegal count, timestamp and velocity are consistent */
+void quadrature_sample(quadrature_t *quad, int64_t *counts, double *velocity) {
+    uint32_t seq;
+    do {
+        seq = __atomic_load_n(&quad->seq, __ATOMIC_ACQUIRE);
+        counts[0] = quad->position;
+        counts[1] = quad->illegal;
+        counts[2] = quad->timestamp;
+        velocity[0] = quad->velocity;
+        __atomic_thread_fence(__ATOMIC_ACQUIRE);
+    } while ((seq & 1) != 0 || seq != __atomic_load_n(&quad->seq, __ATOMIC_RELAXED));
+}
+
+void quadrature_free(quadrature_t *quad) {
+    free(quad);
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Quadrature encoder accumulation. Edge events from both lines are drained in batches, merged by timestamp and counted with a 4x
+ * state table in native code, so no JNI call is made per edge.
+ */
+#ifndef _PERIPHERY_QUADRATURE_H
+#define _PERIPHERY_QUADRATURE_H
+
+#include <stdbool.h>
+#include <stdint.h>
+
+#include "gpio.h"
+
+typedef struct quadrature_handle quadrature_t;
+
+/* Primary Functions */
+quadrature_t *quadrature_new(gpio_t *gpio_a, gpio_t *gpio_b, bool a, bool b, uint64_t window_ns);
+int quadrature_run(quadrature_t *quad, int timeout_ms);
+void quadrature_stop(quadrature_t *quad);
+void quadrature_sample(quadrature_t *quad, int64_t *counts, double *velocity);
+void quadrature_free(quadrature_t *quad);
+
+#endif
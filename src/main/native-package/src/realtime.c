@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Real-time helpers. SCHED_FIFO and SCHED_RR require root, CAP_SYS_NICE or an RLIMIT_RTPRIO limit and mlockall requires
+ * CAP_IPC_LOCK or a large enough RLIMIT_MEMLOCK limit.
+ */
+#define _GNU_SOURCE
+#include <pthread.h>
+#include <stdio.h>
+#include <string.h>
+
+#include "realtime.h"
+
+/* Set policy and priority of calling thread */
+int rt_set_scheduler(int policy, int priority) {
+    struct sched_param param;
+    memset(&param, 0, sizeof(param));
+    param.sched_priority = priority;
+    return -pthread_setschedparam(pthread_self(), policy, &param);
+}
+
+/* Returns policy of calling thread or negative errno */
+int rt_get_scheduler(void) {
+    struct sched_param param;
+    int policy;
+    int ret = pthread_getschedparam(pthread_self(), &policy, &param);
+    return ret == 0 ? policy : -ret;
+}
+
+int rt_max_priority(int policy) {
+    int ret = sched_get_priority_max(policy);
+    return ret < 0 ? -errno : ret;
+}
+
+/* Pin calling thread to CPUs */
+int rt_set_affinity(const int *cpus, int count) {
+    cpu_set_t set;
+    int i;
+    CPU_ZERO(&set);
+    for (i = 0; i < count; i++) {
+        if (cpus[i] < 0 || cpus[i] >= CPU_SETSIZE) {
+            return -EINVAL;
+        }
+        CPU_SET(cpus[i], &set);
+    }
+    return -pthread_setaffinity_np(pthread_self(), sizeof(set), &set);
+}
+
+int rt_get_cpu(void) {
+    int ret = sched_getcpu();
+    return ret < 0 ? -errno : ret;
+}
+
+/* Lock pages of the process, so page faults cannot stall real-time threads */
+int rt_lock_memory(int flags) {
+    return mlockall(flags) < 0 ? -errno : 0;
+}
+
+int rt_unlock_memory(void) {
+    return munlockall() < 0 ? -errno : 0;
+}
+
+void rt_strerror(int errnum, char *buf, size_t len) {
+    snprintf(buf, len, "%s", strerror(errnum));
+}
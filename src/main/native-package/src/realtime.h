@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Real-time helpers for the calling thread: scheduling policy and priority, CPU affinity and locking memory. Functions return 0 on
+ * success or a negative errno.
+ */
+#ifndef _PERIPHERY_REALTIME_H
+#define _PERIPHERY_REALTIME_H
+
+#include <errno.h>
+#include <sched.h>
+#include <stddef.h>
+#include <sys/mman.h>
+
+/* Primary Functions */
+int rt_set_scheduler(int policy, int priority);
+int rt_get_scheduler(void);
+int rt_max_priority(int policy);
+int rt_set_affinity(const int *cpus, int count);
+int rt_get_cpu(void);
+int rt_lock_memory(int flags);
+int rt_unlock_memory(void);
+void rt_strerror(int errnum, char *buf, size_t len);
+
+#endif
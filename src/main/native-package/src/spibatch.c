@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Batched SPI transfers. Segment data is packed back to back in txbuf and rxbuf.
+ */
+#include <errno.h>
+#include <string.h>
+#include <sys/ioctl.h>
+#include <linux/spi/spidev.h>
+
+#include "spibatch.h"
+
+/* Returns number of bytes transferred on success or negative errno */
+int spi_transfer_batch(spi_t *spi, const uint8_t *txbuf, uint8_t *rxbuf, const int32_t *segments, int count) {
+    struct spi_ioc_transfer xfers[SPI_BATCH_MAX];
+    size_t offset = 0;
+    int i;
+    if (count < 1 || count > SPI_BATCH_MAX) {
+        return -EINVAL;
+    }
+    memset(xfers, 0, sizeof(struct spi_ioc_transfer) * count);
+    for (i = 0; i < count; i++) {
+        const int32_t *seg = segments + i * SPI_BATCH_FIELDS;
+        if (seg[SPI_BATCH_LEN] < 0) {
+            return -EINVAL;
+        }
+        xfers[i].tx_buf = txbuf == NULL ? 0 : (uintptr_t) (txbuf + offset);
+        xfers[i].rx_buf = rxbuf == NULL ? 0 : (uintptr_t) (rxbuf + offset);
+        xfers[i].len = (uint32_t) seg[SPI_BATCH_LEN];
+        xfers[i].speed_hz = (uint32_t) seg[SPI_BATCH_SPEED];
+        xfers[i].delay_usecs = (uint16_t) seg[SPI_BATCH_DELAY];
+        xfers[i].cs_change = (uint8_t) seg[SPI_BATCH_CS_CHANGE];
+        xfers[i].bits_per_word = (uint8_t) seg[SPI_BATCH_BITS];
+        offset += (size_t) seg[SPI_BATCH_LEN];
+    }
+    if (ioctl(spi_fd(spi), SPI_IOC_MESSAGE(count), xfers) < 0) {
+        return -errno;
+    }
+    return (int) offset;
+}
+
+/* Returns number of bytes transferred on success or negative errno */
+int spi_transfer_chunked(spi_t *spi, const uint8_t *txbuf, uint8_t *rxbuf, size_t len, size_t chunk) {
+    struct spi_ioc_transfer xfer;
+    size_t offset = 0;
+    if (chunk == 0 || len > INT32_MAX) {
+        return -EINVAL;
+    }
+    while (offset < len) {
+        const size_t n = len - offset < chunk ? len - offset : chunk;
+        memset(&xfer, 0, sizeof(struct spi_ioc_transfer));
+        xfer.tx_buf = txbuf == NULL ? 0 : (uintptr_t) (txbuf + offset);
+        xfer.rx_buf = rxbuf == NULL ? 0 : (uintptr_t) (rxbuf + offset);
+        xfer.len = (uint32_t) n;
+        /* cs_change on the last transfer of a message keeps chip select asserted until the next message */
+        xfer.cs_change = offset + n < len;
+        if (ioctl(spi_fd(spi), SPI_IOC_MESSAGE(1), &xfer) < 0) {
+            return -errno;
+        }
+        offset += n;
+    }
+    return (int) offset;
+}
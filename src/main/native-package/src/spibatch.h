@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ *
+ * Batched SPI transfers. Several segments with their own length, speed, delay, chip select change and bits per word are submitted
+ * as one SPI_IOC_MESSAGE(n) ioctl, so chip select stays asserted between segments unless cs_change is set. Transfers larger than
+ * the spidev bufsiz are split into chunks with chip select held from the first chunk to the last.
+ */
+#ifndef _PERIPHERY_SPIBATCH_H
+#define _PERIPHERY_SPIBATCH_H
+
+#include <stddef.h>
+#include <stdint.h>
+
+#include "spi.h"
+
+/* Segment fields, SPI_BATCH_FIELDS int32 values per segment */
+enum spi_batch_field {
+    SPI_BATCH_LEN = 0,
+    SPI_BATCH_SPEED = 1,
+    SPI_BATCH_DELAY = 2,
+    SPI_BATCH_CS_CHANGE = 3,
+    SPI_BATCH_BITS = 4,
+    SPI_BATCH_FIELDS = 5
+};
+
+/* Maximum segments in one ioctl. The ioctl size field limits a message to 511 transfers. */
+#define SPI_BATCH_MAX 256
+
+/* Primary Functions */
+int spi_transfer_batch(spi_t *spi, const uint8_t *txbuf, uint8_t *rxbuf, const int32_t *segments, int count);
+int spi_transfer_chunked(spi_t *spi, const uint8_t *txbuf, uint8_t *rxbuf, size_t len, size_t chunk);
+
+#endif
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test asynchronous SPI queue with a loopback batch transfer that inverts every byte.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class AsyncSpiTest {
+
+    /**
+     * Loopback that inverts every byte.
+     *
+     * @param batch Batch.
+     * @return Bytes transferred.
+     */
+    private static int invert(final SpiBatch batch) {
+        for (var i = 0; i < batch.length(); i++) {
+            batch.getRx()[i] = (byte) ~batch.getTx()[i];
+        }
+        return batch.length();
+    }
+
+    /**
+     * Test single transfer.
+     *
+     * @throws Exception Possible exception.
+     */
+    @Test
+    public void transfer() throws Exception {
+        try (final var spi = new AsyncSpi(AsyncSpiTest::invert, 4, 64, 8)) {
+            assertArrayEquals(new byte[]{(byte) 0xfe, (byte) 0xfd}, spi.transfer(new byte[]{0x01, 0x02}).get(1, TimeUnit.SECONDS));
+            assertEquals(1, spi.getBatches());
+            assertEquals(1, spi.getRequests());
+        }
+    }
+
+    /**
+     * Test requests queued while the bus is busy are sent as one batch with chip select released between them and not after the
+     * last one.
+     *
+     * @throws Exception Possible exception.
+     */
+    @Test
+    public void coalesce() throws Exception {
+        final var busy = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var sizes = new int[2];
+        final var csChange = new int[4];
+        final var calls = new AtomicInteger();
+        final AsyncSpi.BatchTransfer transfer = batch -> {
+            final var call = calls.getAndIncrement();
+            sizes[call] = batch.size();
+            if (call == 0) {
+                busy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                for (var i = 0; i < batch.size(); i++) {
+                    csChange[i] = batch.getSegments()[i * SpiBatch.FIELDS + SpiBatch.CS_CHANGE];
+                }
+            }
+            return invert(batch);
+        };
+        try (final var spi = new AsyncSpi(transfer, 8, 64, 8)) {
+            final var first = spi.transfer(new byte[]{0x00});
+            assertTrue(busy.await(1, TimeUnit.SECONDS));
+            final List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+            for (var i = 0; i < 4; i++) {
+                futures.add(spi.transfer(new byte[]{(byte) i, (byte) (i + 1)}));
+            }
+            assertEquals(4, spi.getQueued());
+            release.countDown();
+            first.get(1, TimeUnit.SECONDS);
+            for (var i = 0; i < futures.size(); i++) {
+                assertArrayEquals(new byte[]{(byte) ~i, (byte) ~(i + 1)}, futures.get(i).get(1, TimeUnit.SECONDS));
+            }
+            assertEquals(2, calls.get());
+            assertEquals(1, sizes[0]);
+            assertEquals(4, sizes[1]);
+            assertArrayEquals(new int[]{1, 1, 1, 0}, csChange);
+            assertEquals(5, spi.getRequests());
+        }
+    }
+
+    /**
+     * Test full queue rejects tryTransfer.
+     *
+     * @throws Exception Possible exception.
+     */
+    @Test
+    public void backpressure() throws Exception {
+        final var busy = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final AsyncSpi.BatchTransfer transfer = batch -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return invert(batch);
+        };
+        try (final var spi = new AsyncSpi(transfer, 1, 64, 8)) {
+            spi.transfer(new byte[]{0x00});
+            assertTrue(busy.await(1, TimeUnit.SECONDS));
+            final var queued = spi.tryTransfer(new byte[]{0x01}, new byte[1], 1, 0, 0);
+            final var rejected = spi.tryTransfer(new byte[]{0x02}, new byte[1], 1, 0, 0);
+            assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+            release.countDown();
+            assertArrayEquals(new byte[]{(byte) 0xfe}, queued.get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Test failed batch fails every request in it.
+     */
+    @Test
+    public void failure() {
+        try (final var spi = new AsyncSpi(batch -> -5, 4, 64, 8)) {
+            final var future = spi.transfer(new byte[]{0x01});
+            assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Test I/O thread keeps running after a batch throws.
+     *
+     * @throws Exception Possible exception.
+     */
+    @Test
+    public void exception() throws Exception {
+        final var calls = new AtomicInteger();
+        final AsyncSpi.BatchTransfer transfer = batch -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("Bus error");
+            }
+            return invert(batch);
+        };
+        try (final var spi = new AsyncSpi(transfer, 4, 64, 8)) {
+            final var failed = spi.transfer(new byte[]{0x01});
+            final var e = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertArrayEquals(new byte[]{(byte) 0xfd}, spi.transfer(new byte[]{0x02}).get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Test transfer larger than a batch or its buffers is rejected.
+     */
+    @Test
+    public void tooLarge() {
+        try (final var spi = new AsyncSpi(AsyncSpiTest::invert, 4, 4, 8)) {
+            assertThrows(RuntimeException.class, () -> spi.transfer(new byte[8]));
+            assertThrows(RuntimeException.class, () -> spi.transfer(new byte[2], new byte[1], 2, 0));
+            assertThrows(RuntimeException.class, () -> spi.tryTransfer(new byte[1], new byte[2], 2, 0, 0));
+        }
+    }
+
+    /**
+     * Test transfers after close are rejected.
+     */
+    @Test
+    public void closed() {
+        final var spi = new AsyncSpi(AsyncSpiTest::invert, 4, 64, 8);
+        spi.close();
+        final var future = spi.tryTransfer(new byte[1], new byte[1], 1, 0, 0);
+        assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+    }
+}
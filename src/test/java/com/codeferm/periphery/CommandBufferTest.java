@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test command buffer using a file backed MMIO mapping and a pseudo terminal.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class CommandBufferTest {
+
+    /**
+     * Opens a pty pair, prints the slave path and echoes everything written to the slave back to it.
+     */
+    private static final String PTY_ECHO = "import os, pty\nm, s = pty.openpty()\nprint(os.ttyname(s), flush=True)\nwhile True:\n"
+            + "    os.write(m, os.read(m, 256))\n";
+
+    /**
+     * Start pty echo process.
+     *
+     * @return Process or null if python3 cannot be run.
+     */
+    private static Process ptyEcho() {
+        try {
+            return new ProcessBuilder("python3", "-c", PTY_ECHO).start();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Test MMIO commands and output offsets.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void mmio() throws IOException {
+        withMapping(handle -> {
+            try (final var cb = new CommandBuffer(256)) {
+                cb.mmioWrite32(handle, 0x10, 0x1234_5678).mmioModify32(handle, 0x10, 0xff, 0x01).delayNs(1000);
+                final var first = cb.mmioRead32(handle, 0x10);
+                cb.mmioWait32(handle, 0x10, 0xff, 0x01, 1000000);
+                final var second = cb.mmioRead32(handle, 0x14);
+                assertEquals(6, cb.size());
+                assertEquals(8, cb.getOutLen());
+                final var out = new byte[cb.getOutLen()];
+                assertEquals(8, cb.execute(out));
+                assertEquals(0x1234_5601, CommandBuffer.getInt(out, first));
+                assertEquals(0, CommandBuffer.getInt(out, second));
+                // Buffer is reused without being rebuilt
+                Mmio.mmioWrite32(handle, 0x14, 0xcafe);
+                assertEquals(8, cb.execute(out));
+                assertEquals(0xcafe, CommandBuffer.getInt(out, second));
+            }
+        });
+    }
+
+    /**
+     * Test failing command stops execution.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void failure() throws IOException {
+        withMapping(handle -> {
+            try (final var cb = new CommandBuffer(64)) {
+                // Bit never sets, so wait times out
+                cb.mmioWait32(handle, 0, 0x01, 0x01, 10000).mmioWrite32(handle, 4, 1);
+                final var e = assertThrows(RuntimeException.class, () -> cb.execute(new byte[0]));
+                assertEquals("Command 0 failed", e.getMessage());
+                final var value = new int[1];
+                Mmio.mmioRead32(handle, 4, value);
+                assertEquals(0, value[0]);
+                // Stream larger than capacity is rejected while building
+                assertThrows(RuntimeException.class, () -> cb.spiTransfer(0, new byte[64], 64));
+                // I2C length is 16 bits in struct i2c_msg
+                assertThrows(RuntimeException.class, () -> cb.i2cRead(0, 0x50, 0x10000));
+            }
+        });
+    }
+
+    /**
+     * Test rejected commands leave the stream unchanged.
+     */
+    @Test
+    public void arguments() {
+        try (final var cb = new CommandBuffer(64)) {
+            cb.delayNs(1);
+            assertThrows(RuntimeException.class, () -> cb.spiTransfer(0, new byte[2], 4));
+            assertThrows(RuntimeException.class, () -> cb.spiTransfer(0, new byte[2], -1));
+            assertThrows(RuntimeException.class, () -> cb.i2cWrite(0, 0x50, new byte[2], 4));
+            assertThrows(RuntimeException.class, () -> cb.serialWrite(0, new byte[2], 4));
+            assertThrows(RuntimeException.class, () -> cb.serialRead(0, -1, 0));
+            assertEquals(1, cb.size());
+            assertEquals(0, cb.getOutLen());
+            assertEquals(0, cb.execute(new byte[0]));
+        }
+    }
+
+    /**
+     * Test serial write and read over a pty that echoes what is written. Skipped without python3 to open the pty.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void serial() throws IOException, InterruptedException {
+        final var process = ptyEcho();
+        assumeTrue(process != null, "python3 is required to open a pty");
+        try {
+            final var path = new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+            assumeTrue(path != null, "pty could not be opened");
+            try (final var serial = new Serial(path, 115200); final var cb = new CommandBuffer(64)) {
+                final byte[] tx = {0x01, 0x55, (byte) 0xaa, 0x7f, 0x0a, 0x0d};
+                cb.serialWrite(serial.getHandle(), tx, tx.length);
+                final var offset = cb.serialRead(serial.getHandle(), tx.length, 1000);
+                final var out = new byte[cb.getOutLen()];
+                assertEquals(tx.length, cb.execute(out));
+                assertArrayEquals(tx, Arrays.copyOfRange(out, offset, offset + tx.length));
+                // Nothing is echoed without a write, so the read times out
+                final var rx = new CommandBuffer(64);
+                try (rx) {
+                    rx.serialRead(serial.getHandle(), 1, 10);
+                    final var e = assertThrows(RuntimeException.class, () -> rx.execute(new byte[1]));
+                    assertEquals("Command 0 failed", e.getMessage());
+                }
+            }
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+}
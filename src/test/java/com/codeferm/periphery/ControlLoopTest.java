@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static com.codeferm.periphery.ControlLoop.HISTOGRAM_BUCKETS;
+import static com.codeferm.periphery.ControlLoop.PHASE_COMPUTE;
+import static com.codeferm.periphery.ControlLoop.PHASE_READ;
+import static com.codeferm.periphery.ControlLoop.PHASE_WRITE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test control loop accounting and rate monotonic priorities.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ControlLoopTest {
+
+    /**
+     * Task that does nothing.
+     */
+    private final ControlLoop.Task task = new ControlLoop.Task() {
+        @Override
+        public void read() {
+        }
+
+        @Override
+        public void compute() {
+        }
+
+        @Override
+        public void write() {
+        }
+    };
+
+    /**
+     * Test jitter histogram buckets.
+     */
+    @Test
+    public void bucket() {
+        assertEquals(0, ControlLoop.bucket(-5));
+        assertEquals(0, ControlLoop.bucket(999));
+        assertEquals(1, ControlLoop.bucket(1000));
+        assertEquals(2, ControlLoop.bucket(3999));
+        assertEquals(7, ControlLoop.bucket(100000));
+        assertEquals(HISTOGRAM_BUCKETS - 1, ControlLoop.bucket(Long.MAX_VALUE));
+    }
+
+    /**
+     * Test tick accounting.
+     */
+    @Test
+    public void record() {
+        // 1 kHz loop with 500 µs deadline
+        final var loop = new ControlLoop("test", 1000000, 500000, task);
+        loop.record(0, 10000, 20000, 50000, 60000);
+        loop.record(1000000, 1150000, 1160000, 1700000, 1710000);
+        assertEquals(2, loop.getTicks());
+        assertEquals(1, loop.getDeadlineMisses());
+        assertEquals(150000, loop.getMaxJitterNs());
+        assertEquals(80000, loop.getAverageJitterNs());
+        assertEquals(10000, loop.getPhaseLastNs(PHASE_READ));
+        assertEquals(540000, loop.getPhaseMaxNs(PHASE_COMPUTE));
+        assertEquals(10000, loop.getPhaseAverageNs(PHASE_WRITE));
+        final var histogram = new long[HISTOGRAM_BUCKETS];
+        loop.getHistogram(histogram);
+        assertEquals(1, histogram[4]);
+        assertEquals(1, histogram[8]);
+        loop.resetStats();
+        assertEquals(0, loop.getTicks());
+        assertEquals(0, loop.getPhaseMaxNs(PHASE_COMPUTE));
+    }
+
+    /**
+     * Test shortest period gets highest priority.
+     */
+    @Test
+    public void priorities() {
+        final var priorities = new int[5];
+        final var periods = new long[]{1000000, 1000000, 2000000, 10000000, 20000000};
+        ControlRuntime.assignPriorities(periods, priorities, 80);
+        assertArrayEquals(new int[]{80, 80, 79, 78, 77}, priorities);
+        // Priority never drops below 1
+        ControlRuntime.assignPriorities(periods, priorities, 2);
+        assertArrayEquals(new int[]{2, 2, 1, 1, 1}, priorities);
+        // Normal scheduling
+        ControlRuntime.assignPriorities(periods, priorities, 0);
+        assertArrayEquals(new int[5], priorities);
+    }
+
+    /**
+     * Test loops cannot be added while the runtime is started.
+     */
+    @Test
+    public void addStarted() {
+        try (final var runtime = new ControlRuntime()) {
+            runtime.add(new ControlLoop("fast", 1000000, 1000000, task));
+            runtime.start();
+            assertThrows(RuntimeException.class, () -> runtime.add(new ControlLoop("slow", 10000000, 10000000, task)));
+            assertThrows(RuntimeException.class, () -> runtime.setRealTime(80));
+            assertEquals(1, runtime.getLoops().size());
+        }
+    }
+
+    /**
+     * Test loops can be added again once the runtime is stopped.
+     */
+    @Test
+    public void addStopped() {
+        final var runtime = new ControlRuntime();
+        try {
+            runtime.add(new ControlLoop("fast", 1000000, 1000000, task));
+            runtime.start();
+            runtime.close();
+            runtime.add(new ControlLoop("slow", 10000000, 10000000, task));
+            assertEquals(2, runtime.getLoops().size());
+        } finally {
+            runtime.close();
+        }
+    }
+}
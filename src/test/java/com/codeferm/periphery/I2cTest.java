@@ -9,11 +9,15 @@ import static com.codeferm.periphery.I2c.I2C_ERROR_NOT_SUPPORTED;
 import static com.codeferm.periphery.I2c.I2C_ERROR_OPEN;
 import static com.codeferm.periphery.I2c.I2C_ERROR_QUERY;
 import static com.codeferm.periphery.I2c.I2C_ERROR_TRANSFER;
+import static com.codeferm.periphery.I2c.I2C_M_RD;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test I2C constants.
+ * Test I2C constants and i2c_msg layout.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -34,4 +38,28 @@ public class I2cTest {
         assertEquals(-5, I2C_ERROR_TRANSFER);
         assertEquals(-6, I2C_ERROR_CLOSE);
     }
+
+    /**
+     * Test i2c_msg layout of 64 and 32 bit ABIs.
+     */
+    @Test
+    public void putMsg() {
+        final var msgs = ByteBuffer.allocate(32).order(ByteOrder.nativeOrder());
+        I2c.putMsg(msgs, 16, 1, (short) 0x50, I2C_M_RD, 0xffff, 0x1234_5678_9abc_def0L);
+        assertEquals(0x50, msgs.getShort(16));
+        assertEquals(I2C_M_RD, msgs.getShort(18));
+        assertEquals((short) 0xffff, msgs.getShort(20));
+        assertEquals(0x1234_5678_9abc_def0L, msgs.getLong(24));
+        // First message untouched
+        assertEquals(0, msgs.getLong(0));
+        msgs.clear();
+        I2c.putMsg(msgs, 12, 1, (short) 0x3c, (short) 0, 2, 0x8000_1000L);
+        assertEquals(0x3c, msgs.getShort(12));
+        assertEquals(0, msgs.getShort(14));
+        assertEquals(2, msgs.getShort(16));
+        assertEquals(0x8000_1000, msgs.getInt(20));
+        // Length is 16 bits
+        assertThrows(RuntimeException.class, () -> I2c.putMsg(msgs, 16, 0, (short) 0x50, (short) 0, 0x10000, 0));
+        assertThrows(RuntimeException.class, () -> I2c.putMsg(msgs, 16, 0, (short) 0x50, (short) 0, -1, 0));
+    }
 }
@@ -6,11 +6,16 @@ package com.codeferm.periphery;
 import static com.codeferm.periphery.Mmio.MMIO_ERROR_ARG;
 import static com.codeferm.periphery.Mmio.MMIO_ERROR_CLOSE;
 import static com.codeferm.periphery.Mmio.MMIO_ERROR_OPEN;
+import static com.codeferm.periphery.Mmio.MMIO_SUCCESS;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test MMIO constants.
+ * Test MMIO constants and bulk I/O.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -28,4 +33,37 @@ public class MmioTest {
         assertEquals(-2, MMIO_ERROR_OPEN);
         assertEquals(-3, MMIO_ERROR_CLOSE);
     }
+
+    /**
+     * Test direct buffer read and write honor position and limit.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void directBuffer() throws IOException {
+        withMapping(handle -> {
+            final var buf = ByteBuffer.allocateDirect(16);
+            for (var i = 0; i < 16; i++) {
+                buf.put((byte) i);
+            }
+            // Write bytes 4 to 7
+            buf.position(4).limit(8);
+            assertEquals(MMIO_SUCCESS, Mmio.mmioWrite(handle, 0x100, buf));
+            assertEquals(8, buf.position());
+            final var value = new byte[4];
+            Mmio.mmioRead(handle, 0x100, value, value.length);
+            assertEquals(4, value[0]);
+            assertEquals(7, value[3]);
+            // Read into bytes 12 to 15
+            buf.clear().position(12);
+            assertEquals(MMIO_SUCCESS, Mmio.mmioRead(handle, 0x100, buf));
+            assertEquals(16, buf.position());
+            assertEquals(4, buf.get(12));
+            assertEquals(7, buf.get(15));
+            // Heap buffers have no native address
+            assertThrows(RuntimeException.class, () -> Mmio.mmioRead(handle, 0, ByteBuffer.allocate(4)));
+            // Read only buffers cannot be read into
+            assertThrows(RuntimeException.class, () -> Mmio.mmioRead(handle, 0, buf.clear().asReadOnlyBuffer()));
+        });
+    }
 }
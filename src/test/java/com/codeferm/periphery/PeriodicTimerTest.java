@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test periodic timer with a short period.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class PeriodicTimerTest {
+
+    /**
+     * Period in nanoseconds.
+     */
+    private static final long PERIOD_NS = 2000000;
+
+    /**
+     * Test missed periods are returned by waitNext and counted as overruns.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void overruns() throws InterruptedException {
+        try (final var timer = new PeriodicTimer(PERIOD_NS)) {
+            assertEquals(PERIOD_NS, timer.getPeriodNs());
+            timer.start();
+            var missed = 0L;
+            for (var i = 0; i < 5; i++) {
+                missed += timer.waitNext();
+            }
+            assertEquals(5, timer.getTicks());
+            assertEquals(missed, timer.getOverruns());
+            // Next deadline is at most one period away, so sleeping five periods misses at least four
+            TimeUnit.NANOSECONDS.sleep(5 * PERIOD_NS);
+            final var late = timer.waitNext();
+            assertTrue(late >= 4);
+            assertEquals(missed + late, timer.getOverruns());
+            assertEquals(6, timer.getTicks());
+            // Missed deadlines are skipped, so lateness is less than a period
+            assertTrue(timer.getLastLateNs() < PERIOD_NS);
+            assertTrue(timer.getMaxLateNs() < PERIOD_NS);
+        }
+    }
+
+    /**
+     * Test start after a pause and reset of statistics.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void start() throws InterruptedException {
+        try (final var timer = new PeriodicTimer(PERIOD_NS)) {
+            TimeUnit.NANOSECONDS.sleep(5 * PERIOD_NS);
+            timer.resetStats();
+            assertEquals(0, timer.getTicks());
+            assertEquals(0, timer.getAverageLateNs());
+            // Pause is not counted after start
+            timer.start();
+            final var begin = System.nanoTime();
+            assertEquals(0, timer.waitNext());
+            assertTrue(System.nanoTime() - begin >= PERIOD_NS / 2);
+            assertEquals(1, timer.getTicks());
+            assertEquals(0, timer.getOverruns());
+        }
+    }
+
+    /**
+     * Test period must be positive.
+     */
+    @Test
+    public void period() {
+        assertThrows(RuntimeException.class, () -> new PeriodicTimer(0));
+    }
+}
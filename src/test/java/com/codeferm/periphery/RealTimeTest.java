@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test real-time helpers.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class RealTimeTest {
+
+    /**
+     * Test kernel CPU list parsing.
+     */
+    @Test
+    public void parseCpuList() {
+        assertArrayEquals(new int[0], RealTime.parseCpuList("\n"));
+        assertArrayEquals(new int[]{3}, RealTime.parseCpuList("3\n"));
+        assertArrayEquals(new int[]{2, 3, 6}, RealTime.parseCpuList("2-3,6"));
+        assertArrayEquals(new int[]{0, 4, 5, 6, 7}, RealTime.parseCpuList("0,4-7"));
+    }
+
+    /**
+     * Test start runs body with normal scheduling and fails without running body when the priority is invalid.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void start() throws InterruptedException {
+        final var ran = new AtomicBoolean();
+        RealTime.start("normal", () -> ran.set(true), 0).join();
+        assertTrue(ran.get());
+        ran.set(false);
+        assertThrows(RuntimeException.class, () -> RealTime.start("invalid", () -> ran.set(true), 100));
+        assertFalse(ran.get());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test sample ring.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SampleRingTest {
+
+    /**
+     * Test frames wrap around the end of the buffer in order.
+     */
+    @Test
+    public void wrap() {
+        final var ring = new SampleRing(4, 2);
+        final var frames = new int[8];
+        for (var i = 0; i < 3; i++) {
+            assertTrue(ring.put(new int[]{i, i + 100}, 0));
+        }
+        assertEquals(2, ring.take(frames, 0, 2));
+        assertArrayEquals(new int[]{0, 100, 1, 101, 0, 0, 0, 0}, frames);
+        for (var i = 3; i < 6; i++) {
+            assertTrue(ring.put(new int[]{i, i + 100}, 0));
+        }
+        assertEquals(4, ring.size());
+        assertEquals(4, ring.take(frames, 0, 8));
+        assertArrayEquals(new int[]{2, 102, 3, 103, 4, 104, 5, 105}, frames);
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.take(frames, 0, 8));
+        assertEquals(6, ring.getWritten());
+    }
+
+    /**
+     * Test full ring drops new frames and counts overruns.
+     */
+    @Test
+    public void overrun() {
+        final var ring = new SampleRing(2, 1);
+        assertTrue(ring.put(new int[]{1}, 0));
+        assertTrue(ring.put(new int[]{2}, 0));
+        assertFalse(ring.put(new int[]{3}, 0));
+        assertFalse(ring.put(new int[]{4}, 0));
+        assertEquals(2, ring.getOverruns());
+        final var frames = new int[2];
+        assertEquals(2, ring.take(frames, 0, 2));
+        assertArrayEquals(new int[]{1, 2}, frames);
+        assertTrue(ring.put(new int[]{5}, 0));
+    }
+
+    /**
+     * Test producer and consumer threads.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void threads() throws InterruptedException {
+        final var ring = new SampleRing(64, 1);
+        final var count = 100000;
+        final var producer = new Thread(() -> {
+            final var frame = new int[1];
+            for (var i = 0; i < count; i++) {
+                frame[0] = i;
+                while (!ring.put(frame, 0)) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        producer.start();
+        final var frames = new int[16];
+        var expected = 0;
+        while (expected < count) {
+            final var taken = ring.take(frames, 0, frames.length);
+            for (var i = 0; i < taken; i++) {
+                assertEquals(expected++, frames[i]);
+            }
+        }
+        producer.join();
+    }
+
+    /**
+     * Test capacity must be a power of 2.
+     */
+    @Test
+    public void capacity() {
+        assertThrows(RuntimeException.class, () -> new SampleRing(3, 1));
+    }
+}
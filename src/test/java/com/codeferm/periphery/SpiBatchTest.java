@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import static com.codeferm.periphery.SpiBatch.BITS;
+import static com.codeferm.periphery.SpiBatch.CS_CHANGE;
+import static com.codeferm.periphery.SpiBatch.DELAY;
+import static com.codeferm.periphery.SpiBatch.FIELDS;
+import static com.codeferm.periphery.SpiBatch.LEN;
+import static com.codeferm.periphery.SpiBatch.SPEED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test SPI batch building.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SpiBatchTest {
+
+    /**
+     * Test segments are packed back to back.
+     */
+    @Test
+    public void segments() {
+        final var batch = new SpiBatch(16, 4);
+        // Command phase then read phase
+        assertEquals(0, batch.add(new byte[]{0x0b, 0x00, 0x10, 0x00, 0x00}, 0, 5, 1000000, 0, false, 0));
+        assertEquals(5, batch.read(4));
+        assertEquals(9, batch.add(new byte[]{0x01, 0x02, 0x03}, 1, 2, 0, 10, true, 9));
+        assertEquals(3, batch.size());
+        assertEquals(11, batch.length());
+        assertEquals(5, batch.remaining());
+        final var seg = batch.getSegments();
+        assertEquals(5, seg[LEN]);
+        assertEquals(1000000, seg[SPEED]);
+        assertEquals(4, seg[FIELDS + LEN]);
+        assertEquals(2, seg[2 * FIELDS + LEN]);
+        assertEquals(10, seg[2 * FIELDS + DELAY]);
+        assertEquals(1, seg[2 * FIELDS + CS_CHANGE]);
+        assertEquals(9, seg[2 * FIELDS + BITS]);
+        assertEquals(0x0b, batch.getTx()[0]);
+        assertEquals(0, batch.getTx()[5]);
+        assertEquals(0x02, batch.getTx()[9]);
+        assertEquals(0x03, batch.getTx()[10]);
+    }
+
+    /**
+     * Test capacity limits.
+     */
+    @Test
+    public void full() {
+        final var batch = new SpiBatch(8, 2);
+        assertTrue(batch.fits(8));
+        assertFalse(batch.fits(9));
+        batch.read(1);
+        batch.read(1);
+        assertFalse(batch.fits(1));
+        assertThrows(RuntimeException.class, () -> batch.read(1));
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(0, batch.read(8));
+        assertThrows(RuntimeException.class, () -> new SpiBatch(8, SpiBatch.MAX_SEGMENTS + 1));
+        assertThrows(RuntimeException.class, () -> batch.add(null, 0, -1, 0, 0, false, 0));
+    }
+
+    /**
+     * Test segments passed to native code are checked against the arrays.
+     */
+    @Test
+    public void check() {
+        final var segments = new int[2 * FIELDS];
+        segments[LEN] = 4;
+        segments[FIELDS + LEN] = 4;
+        SpiBatch.check(new byte[8], new byte[8], segments, 2);
+        SpiBatch.check(null, null, segments, 2);
+        // More segments than fields
+        assertThrows(RuntimeException.class, () -> SpiBatch.check(new byte[8], new byte[8], segments, 3));
+        assertThrows(RuntimeException.class, () -> SpiBatch.check(new byte[8], new byte[8], segments, 0));
+        // Segments longer than either buffer
+        assertThrows(RuntimeException.class, () -> SpiBatch.check(new byte[7], new byte[8], segments, 2));
+        assertThrows(RuntimeException.class, () -> SpiBatch.check(new byte[8], new byte[7], segments, 2));
+        segments[FIELDS + LEN] = -4;
+        assertThrows(RuntimeException.class, () -> SpiBatch.check(new byte[8], new byte[8], segments, 2));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test SPI bus arbiter with a port that records calls.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SpiBusTest {
+
+    /**
+     * Port that records calls.
+     */
+    private static class RecordingPort implements SpiBus.Port {
+
+        /**
+         * Calls in order.
+         */
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public int setMode(final int mode) {
+            calls.add("mode " + mode);
+            return 0;
+        }
+
+        @Override
+        public int setMaxSpeed(final int speedHz) {
+            calls.add("speed " + speedHz);
+            return 0;
+        }
+
+        @Override
+        public int writeCs(final long cs, final boolean value) {
+            calls.add("cs " + cs + " " + value);
+            return 0;
+        }
+    }
+
+    /**
+     * Test settings are only set when they change and GPIO chip select wraps the transaction.
+     */
+    @Test
+    public void settings() {
+        final var port = new RecordingPort();
+        final var bus = new SpiBus(1, port);
+        final var adc = new SpiBus.Device("adc", 0, 1000000, 10, 7, true);
+        final var flash = new SpiBus.Device("flash", 0, 20000000, 1);
+        bus.transaction(adc, spi -> port.calls.add("adc"));
+        bus.transaction(adc, spi -> port.calls.add("adc"));
+        bus.transaction(flash, spi -> port.calls.add("flash"));
+        assertEquals(List.of("mode 0", "speed 1000000", "cs 7 false", "adc", "cs 7 true", "cs 7 false", "adc", "cs 7 true",
+                "speed 20000000", "flash"), port.calls);
+        assertEquals(3, bus.getSetCalls());
+        assertEquals(3, bus.getSetSkips());
+    }
+
+    /**
+     * Test chip select is released when the transaction throws.
+     */
+    @Test
+    public void failure() {
+        final var port = new RecordingPort();
+        final var bus = new SpiBus(1, port);
+        final var dev = new SpiBus.Device("dev", 3, 1000000, 0, 5, false);
+        assertThrows(RuntimeException.class, () -> bus.transaction(dev, spi -> {
+            throw new RuntimeException("Transfer failed");
+        }));
+        assertEquals("cs 5 false", port.calls.get(port.calls.size() - 1));
+        // Bus is free again
+        bus.transaction(dev, spi -> port.calls.add("dev"));
+        assertEquals("dev", port.calls.get(port.calls.size() - 2));
+    }
+
+    /**
+     * Test waiting threads are granted the bus by priority then arrival.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void priority() throws InterruptedException {
+        final var port = new RecordingPort();
+        final var bus = new SpiBus(1, port);
+        final var busy = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var order = Collections.synchronizedList(new ArrayList<String>());
+        final var holder = new Thread(() -> bus.transaction(new SpiBus.Device("holder", 0, 1000000, 0), spi -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(busy.await(1, TimeUnit.SECONDS));
+        final var threads = new ArrayList<Thread>();
+        final String[] names = {"low1", "high", "low2", "mid"};
+        final int[] priorities = {1, 10, 1, 5};
+        for (var i = 0; i < names.length; i++) {
+            final var device = new SpiBus.Device(names[i], 0, 1000000, priorities[i]);
+            final var thread = new Thread(() -> bus.transaction(device, spi -> order.add(device.getName())));
+            threads.add(thread);
+            thread.start();
+            // Wait until queued so arrival order is known
+            final var waiting = i + 1;
+            final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (bus.getWaiting() < waiting && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+        assertEquals(4, bus.getWaiting());
+        release.countDown();
+        holder.join();
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of("high", "mid", "low1", "low2"), order);
+    }
+}
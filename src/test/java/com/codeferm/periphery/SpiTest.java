@@ -11,7 +11,10 @@ import static com.codeferm.periphery.Spi.SPI_ERROR_CONFIGURE;
 import static com.codeferm.periphery.Spi.SPI_ERROR_OPEN;
 import static com.codeferm.periphery.Spi.SPI_ERROR_QUERY;
 import static com.codeferm.periphery.Spi.SPI_ERROR_TRANSFER;
+import java.io.IOException;
+import java.nio.file.Files;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -39,4 +42,35 @@ public class SpiTest {
         assertEquals(0, MSB_FIRST);
         assertEquals(1, LSB_FIRST);
     }
+
+    /**
+     * Test spidev bufsiz parameter parsing.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void bufSiz() throws IOException {
+        final var path = Files.createTempFile("bufsiz", null);
+        try {
+            Files.writeString(path, "65536\n");
+            assertEquals(65536, Spi.readBufSiz(path));
+            Files.writeString(path, "bad");
+            assertEquals(Spi.DEFAULT_BUFSIZ, Spi.readBufSiz(path));
+        } finally {
+            Files.delete(path);
+        }
+        assertEquals(Spi.DEFAULT_BUFSIZ, Spi.readBufSiz(path));
+    }
+
+    /**
+     * Test chunked transfer length must fit both buffers.
+     */
+    @Test
+    public void checkLength() {
+        Spi.checkLength(new byte[4], null, 4);
+        Spi.checkLength(null, new byte[4], 0);
+        assertThrows(RuntimeException.class, () -> Spi.checkLength(new byte[4], null, -1));
+        assertThrows(RuntimeException.class, () -> Spi.checkLength(new byte[4], null, 5));
+        assertThrows(RuntimeException.class, () -> Spi.checkLength(new byte[8], new byte[4], 8));
+    }
 }
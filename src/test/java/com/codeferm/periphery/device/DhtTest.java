@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test DHT decoder using edge traces.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class DhtTest {
+
+    /**
+     * Raw trace size.
+     */
+    private static final int MAX_RAW = 84;
+    /**
+     * Edges.
+     */
+    private final int[] edges = new int[Dht.MAX_EDGES];
+    /**
+     * Timestamps.
+     */
+    private final long[] timestamps = new long[Dht.MAX_EDGES];
+    /**
+     * Decoded data.
+     */
+    private final byte[] data = new byte[5];
+
+    /**
+     * Build edge trace like the kernel reports it. Starts with the response high pulse, then each bit is 50 µs low and 27 µs or 70 µs
+     * high with some jitter, followed by the final low and release.
+     *
+     * @param frame Five bytes to encode.
+     * @param skip Number of leading edges to drop as if missed while the line was reconfigured.
+     * @return Number of edges.
+     */
+    private int trace(final byte[] frame, final int skip) {
+        final var raw = new long[MAX_RAW];
+        final var rawEdges = new int[MAX_RAW];
+        var n = 0;
+        var t = 1000000000L;
+        // Response low 80 µs, high 80 µs
+        rawEdges[n] = GPIO_EDGE_FALLING;
+        raw[n++] = t;
+        t += 80000;
+        rawEdges[n] = GPIO_EDGE_RISING;
+        raw[n++] = t;
+        t += 80000;
+        for (var bit = 0; bit < 40; bit++) {
+            rawEdges[n] = GPIO_EDGE_FALLING;
+            raw[n++] = t;
+            t += 50000 + (bit % 3) * 2000;
+            rawEdges[n] = GPIO_EDGE_RISING;
+            raw[n++] = t;
+            if ((frame[bit / 8] & (0x80 >> (bit % 8))) != 0) {
+                t += 70000 + (bit % 4) * 1000;
+            } else {
+                t += 26000 + (bit % 4) * 1000;
+            }
+        }
+        rawEdges[n] = GPIO_EDGE_FALLING;
+        raw[n++] = t;
+        t += 50000;
+        rawEdges[n] = GPIO_EDGE_RISING;
+        raw[n++] = t;
+        final var count = n - skip;
+        System.arraycopy(rawEdges, skip, edges, 0, count);
+        System.arraycopy(raw, skip, timestamps, 0, count);
+        return count;
+    }
+
+    /**
+     * Test DHT22 frame from datasheet (65.2 %RH, 35.1 C).
+     */
+    @Test
+    public void decodeDht22() {
+        final byte[] frame = {0x02, (byte) 0x8c, 0x01, 0x5f, (byte) 0xee};
+        final var count = trace(frame, 0);
+        assertEquals(84, count);
+        assertEquals(Dht.DHT_SUCCESS, Dht.decode(edges, timestamps, count, data));
+        assertEquals(65.2f, Dht.toHumidity(data, Dht.DHT22), 0.001f);
+        assertEquals(35.1f, Dht.toTemperature(data, Dht.DHT22), 0.001f);
+    }
+
+    /**
+     * Test negative DHT22 temperature (-10.1 C).
+     */
+    @Test
+    public void decodeDht22Negative() {
+        final byte[] frame = {0x02, (byte) 0x8c, (byte) 0x80, 0x65, 0x73};
+        final var count = trace(frame, 0);
+        assertEquals(Dht.DHT_SUCCESS, Dht.decode(edges, timestamps, count, data));
+        assertEquals(-10.1f, Dht.toTemperature(data, Dht.DHT22), 0.001f);
+    }
+
+    /**
+     * Test DHT11 frame with missed response edges.
+     */
+    @Test
+    public void decodeDht11() {
+        final byte[] frame = {0x2d, 0x00, 0x17, 0x04, 0x48};
+        // Drop response pulse edges
+        final var count = trace(frame, 2);
+        assertEquals(Dht.DHT_SUCCESS, Dht.decode(edges, timestamps, count, data));
+        assertEquals(45.0f, Dht.toHumidity(data, Dht.DHT11), 0.001f);
+        assertEquals(23.4f, Dht.toTemperature(data, Dht.DHT11), 0.001f);
+    }
+
+    /**
+     * Test checksum error.
+     */
+    @Test
+    public void decodeChecksum() {
+        final byte[] frame = {0x02, (byte) 0x8c, 0x01, 0x5f, (byte) 0xef};
+        final var count = trace(frame, 0);
+        assertEquals(Dht.DHT_ERROR_CHECKSUM, Dht.decode(edges, timestamps, count, data));
+    }
+
+    /**
+     * Test too few edges.
+     */
+    @Test
+    public void decodeEdges() {
+        final byte[] frame = {0x02, (byte) 0x8c, 0x01, 0x5f, (byte) 0xee};
+        // Lose first data bits as if the event buffer overflowed
+        final var count = trace(frame, 10);
+        assertEquals(Dht.DHT_ERROR_EDGES, Dht.decode(edges, timestamps, count, data));
+    }
+}
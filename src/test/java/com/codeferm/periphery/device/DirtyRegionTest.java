@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test dirty rectangle clipping and merging.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class DirtyRegionTest {
+
+    /**
+     * Test rectangles are clipped to the frame.
+     */
+    @Test
+    public void clip() {
+        final var region = new DirtyRegion(320, 240, 4, 0);
+        region.add(-10, -10, 20, 20);
+        region.add(400, 0, 10, 10);
+        assertEquals(1, region.getCount());
+        assertEquals(0, region.getX(0));
+        assertEquals(0, region.getY(0));
+        assertEquals(10, region.getWidth(0));
+        assertEquals(10, region.getHeight(0));
+    }
+
+    /**
+     * Test overlapping and nearby rectangles merge and distant ones do not.
+     */
+    @Test
+    public void merge() {
+        final var region = new DirtyRegion(320, 240, 4, 64);
+        region.add(10, 10, 10, 10);
+        // Overlaps, bounding box 15x15 is cheaper than 100 + 100 + 64
+        region.add(15, 15, 10, 10);
+        assertEquals(1, region.getCount());
+        assertEquals(225, region.area());
+        // Far away, bounding box would send far more pixels
+        region.add(300, 200, 10, 10);
+        assertEquals(2, region.getCount());
+        // Pixel next to the first rectangle
+        region.add(25, 10, 1, 1);
+        assertEquals(2, region.getCount());
+        region.clear();
+        assertTrue(region.isEmpty());
+    }
+
+    /**
+     * Test a full list merges the cheapest pair.
+     */
+    @Test
+    public void full() {
+        final var region = new DirtyRegion(320, 240, 2, 0);
+        region.add(0, 0, 10, 10);
+        region.add(300, 0, 10, 10);
+        region.add(0, 200, 10, 10);
+        assertEquals(2, region.getCount());
+        // The two rectangles in the left column waste the fewest pixels
+        assertEquals(100 + 10 * 210, region.area());
+        final var single = new DirtyRegion(320, 240, 1, 0);
+        single.add(0, 0, 10, 10);
+        single.add(100, 100, 10, 10);
+        assertEquals(1, single.getCount());
+        assertEquals(110 * 110, single.area());
+    }
+
+    /**
+     * Test whole frame.
+     */
+    @Test
+    public void addAll() {
+        final var region = new DirtyRegion(320, 240, 4, 0);
+        region.add(5, 5, 1, 1);
+        region.addAll();
+        assertEquals(1, region.getCount());
+        assertEquals(320 * 240, region.area());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.mmio.OneWire;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test DS18B20 conversions and 1-Wire CRC8.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Ds18b20Test {
+
+    /**
+     * Test temperature conversion using values from the datasheet.
+     */
+    @Test
+    public void toCelsius() {
+        assertEquals(125.0, Ds18b20.toCelsius((byte) 0xd0, (byte) 0x07), 0.0);
+        assertEquals(85.0, Ds18b20.toCelsius((byte) 0x50, (byte) 0x05), 0.0);
+        assertEquals(25.0625, Ds18b20.toCelsius((byte) 0x91, (byte) 0x01), 0.0);
+        assertEquals(0.5, Ds18b20.toCelsius((byte) 0x08, (byte) 0x00), 0.0);
+        assertEquals(0.0, Ds18b20.toCelsius((byte) 0x00, (byte) 0x00), 0.0);
+        assertEquals(-0.5, Ds18b20.toCelsius((byte) 0xf8, (byte) 0xff), 0.0);
+        assertEquals(-10.125, Ds18b20.toCelsius((byte) 0x5e, (byte) 0xff), 0.0);
+        assertEquals(-55.0, Ds18b20.toCelsius((byte) 0x90, (byte) 0xfc), 0.0);
+    }
+
+    /**
+     * Test conversion time for each resolution.
+     */
+    @Test
+    public void conversionTime() {
+        assertEquals(94, Ds18b20.conversionTimeMs(9));
+        assertEquals(188, Ds18b20.conversionTimeMs(10));
+        assertEquals(376, Ds18b20.conversionTimeMs(11));
+        assertEquals(751, Ds18b20.conversionTimeMs(12));
+    }
+
+    /**
+     * Test CRC8 using ROM example from Maxim application note 27.
+     */
+    @Test
+    public void crc8() {
+        final byte[] rom = {0x02, 0x1c, (byte) 0xb8, 0x01, 0x00, 0x00, 0x00, (byte) 0xa2};
+        assertEquals(0xa2, OneWire.crc8(rom, 7));
+        // CRC of buffer including CRC is 0
+        assertEquals(0, OneWire.crc8(rom, rom.length));
+    }
+}
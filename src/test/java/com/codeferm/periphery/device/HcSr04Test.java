@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test HC-SR04 echo width, distance and median filter.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class HcSr04Test {
+
+    /**
+     * Test echo width from edge pairs.
+     */
+    @Test
+    public void echoWidth() {
+        final int[] edges = {GPIO_EDGE_RISING, GPIO_EDGE_FALLING};
+        final long[] timestamps = {5000000000L, 5000583090L};
+        assertEquals(583090L, HcSr04.echoWidth(edges, timestamps, 2));
+        assertEquals(10.0, HcSr04.toCm(HcSr04.echoWidth(edges, timestamps, 2)), 0.001);
+        // Stale falling edge before pulse is skipped
+        final int[] stale = {GPIO_EDGE_FALLING, GPIO_EDGE_RISING, GPIO_EDGE_FALLING};
+        final long[] staleTimestamps = {100, 1000, 59309};
+        assertEquals(58309L, HcSr04.echoWidth(stale, staleTimestamps, 3));
+        // Rising edge only is incomplete
+        assertEquals(-1L, HcSr04.echoWidth(edges, timestamps, 1));
+    }
+
+    /**
+     * Test median filter.
+     */
+    @Test
+    public void median() {
+        final var sorted = new double[5];
+        assertTrue(Double.isNaN(HcSr04.median(new double[5], 0, sorted)));
+        // Spike is rejected
+        final double[] odd = {10.2, 10.1, 250.0, 10.3, 10.0};
+        assertEquals(10.2, HcSr04.median(odd, 5, sorted), 0.0);
+        final double[] even = {20.0, 10.0, 40.0, 30.0};
+        assertEquals(25.0, HcSr04.median(even, 4, sorted), 0.0);
+        // Only count values are used
+        assertEquals(10.15, HcSr04.median(odd, 2, sorted), 0.0001);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Mmio;
+import com.codeferm.periphery.mmio.MmioBus;
+import static com.codeferm.periphery.mmio.MmioFixture.pin;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import com.codeferm.periphery.mmio.MmioPin;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test HD44780 4 bit nibble sequencing using a file backed MMIO mapping. Data pins are bits 0 to 3 and RS is bit 4 of register 0.
+ * Enable is on register 4 and records register 0 each time it goes high.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Hd44780Test {
+
+    /**
+     * RS bit of latched value.
+     */
+    private static final int RS = 0x10;
+
+    /**
+     * Create 4 bit LCD that records latched bus values.
+     *
+     * @param handle MMIO handle.
+     * @param latched Bus values at each enable pulse.
+     * @param cols Columns.
+     * @param rows Rows.
+     * @return LCD.
+     */
+    public Hd44780 createLcd(final long handle, final List<Integer> latched, final int cols, final int rows) {
+        final var bus = new MmioBus(pin(0, 0, 0x01, handle), pin(1, 0, 0x02, handle), pin(2, 0, 0x04, handle),
+                pin(3, 0, 0x08, handle), pin(4, 0, RS, handle));
+        final var value = new int[1];
+        final var enable = new MmioPin(pin(5, 4, 0x01, handle)) {
+            @Override
+            public void high() {
+                super.high();
+                Mmio.mmioRead32(handle, 0, value);
+                latched.add(value[0] & 0x1f);
+            }
+        };
+        return new Hd44780(bus, enable, cols, rows);
+    }
+
+    /**
+     * Test 4 bit initialization sequence.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void init() throws IOException, InterruptedException {
+        withMapping(handle -> {
+            final var latched = new ArrayList<Integer>();
+            final var lcd = createLcd(handle, latched, 16, 2);
+            lcd.init();
+            // Reset nibbles, switch to 4 bit, then function set, display on, entry mode and clear as high and low nibbles
+            assertEquals(List.of(0x3, 0x3, 0x3, 0x2, 0x2, 0x8, 0x0, 0xc, 0x0, 0x6, 0x0, 0x1), latched);
+        });
+    }
+
+    /**
+     * Test flush sends high nibble then low nibble with RS set for data and only moves the cursor for non-contiguous changes.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void flush() throws IOException, InterruptedException {
+        withMapping(handle -> {
+            final var latched = new ArrayList<Integer>();
+            final var lcd = createLcd(handle, latched, 16, 2);
+            lcd.clear();
+            latched.clear();
+            lcd.print(0, 1, "Hi");
+            lcd.setChar(4, 1, 'J');
+            assertEquals(3, lcd.flush());
+            // Cursor 0x40, 'H', 'i', cursor 0x44 and 'J'
+            assertEquals(List.of(0x8 | 0x4, 0x0, RS | 0x4, RS | 0x8, RS | 0x6, RS | 0x9, 0x8 | 0x4, 0x4, RS | 0x4, RS | 0xa),
+                    latched);
+            latched.clear();
+            assertEquals(List.of(), latched);
+        });
+    }
+
+    /**
+     * Test geometry and cursor checks.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void bounds() throws IOException, InterruptedException {
+        withMapping(handle -> {
+            final var latched = new ArrayList<Integer>();
+            assertThrows(RuntimeException.class, () -> createLcd(handle, latched, 16, 5));
+            assertThrows(RuntimeException.class, () -> createLcd(handle, latched, 0, 2));
+            assertThrows(RuntimeException.class, () -> createLcd(handle, latched, 40, 4));
+            final var lcd = createLcd(handle, latched, 20, 4);
+            assertThrows(RuntimeException.class, () -> lcd.setCursor(20, 0));
+            assertThrows(RuntimeException.class, () -> lcd.setCursor(0, 4));
+            assertThrows(RuntimeException.class, () -> lcd.setCursor(-1, 0));
+            assertThrows(RuntimeException.class, () -> lcd.print(-1, 1, "x"));
+            assertThrows(RuntimeException.class, () -> lcd.print(0, 4, "x"));
+            assertThrows(RuntimeException.class, () -> lcd.setChar(0, -1, 'x'));
+            assertThrows(RuntimeException.class, () -> lcd.setChar(20, 0, 'x'));
+            lcd.setCursor(19, 3);
+            // Row 3 starts at 0x40 + 20, so column 19 is 0x67
+            assertEquals(List.of(0x8 | 0x6, 0x7), latched);
+        });
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test IR decoder using edge traces.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IrDecoderTest {
+
+    /**
+     * Trace timestamp.
+     */
+    private long time = 1000000000L;
+    /**
+     * Codes decoded.
+     */
+    private int decoded;
+
+    /**
+     * Feed mark followed by space as falling and rising edges. A small jitter is added like a real receiver.
+     *
+     * @param decoder Decoder.
+     * @param markNs Mark duration.
+     * @param spaceNs Space duration.
+     */
+    private void pulse(final IrDecoder decoder, final long markNs, final long spaceNs) {
+        if (decoder.edge(GPIO_EDGE_FALLING, time)) {
+            decoded++;
+        }
+        time += markNs + 40000;
+        if (decoder.edge(GPIO_EDGE_RISING, time)) {
+            decoded++;
+        }
+        time += spaceNs - 40000;
+    }
+
+    /**
+     * Feed NEC frame.
+     *
+     * @param decoder Decoder.
+     * @param bits 32 bits sent LSB first.
+     */
+    private void necFrame(final IrDecoder decoder, final int bits) {
+        pulse(decoder, 9000000, 4500000);
+        for (var i = 0; i < 32; i++) {
+            if ((bits & (1 << i)) != 0) {
+                pulse(decoder, 562500, 1687500);
+            } else {
+                pulse(decoder, 562500, 562500);
+            }
+        }
+        pulse(decoder, 562500, 40000000);
+    }
+
+    /**
+     * Feed RC5 frame as Manchester encoded half bits. Consecutive half bits of the same level are merged.
+     *
+     * @param decoder Decoder.
+     * @param bits 14 bits sent MSB first.
+     */
+    private void rc5Frame(final IrDecoder decoder, final int bits) {
+        final var half = 889000L;
+        // Leading idle
+        time += 100000000L;
+        var level = false;
+        var start = time;
+        for (var i = 13; i >= 0; i--) {
+            final var one = (bits & (1 << i)) != 0;
+            // A 1 is space then mark, a 0 is mark then space
+            final boolean[] halves = {!one, one};
+            for (final var mark : halves) {
+                if (mark != level) {
+                    if (decoder.edge(mark ? GPIO_EDGE_FALLING : GPIO_EDGE_RISING, start)) {
+                        decoded++;
+                    }
+                    level = mark;
+                }
+                start += half;
+            }
+        }
+        if (level && decoder.edge(GPIO_EDGE_RISING, start)) {
+            decoded++;
+        }
+        time = start;
+    }
+
+    /**
+     * Test NEC frame and repeat.
+     */
+    @Test
+    public void nec() {
+        final var decoder = new IrDecoder();
+        // Address 0x04, command 0x08
+        necFrame(decoder, 0x04 | (0xfb << 8) | (0x08 << 16) | (0xf7 << 24));
+        assertEquals(1, decoded);
+        assertEquals(IrDecoder.PROTOCOL_NEC, decoder.getProtocol());
+        assertEquals(0x04, decoder.getAddress());
+        assertEquals(0x08, decoder.getCommand());
+        assertFalse(decoder.isRepeat());
+        // Repeat 108 ms after frame start
+        time += 40000000L;
+        pulse(decoder, 9000000, 2250000);
+        pulse(decoder, 562500, 96000000);
+        assertEquals(2, decoded);
+        assertTrue(decoder.isRepeat());
+        assertEquals(0x08, decoder.getCommand());
+        assertEquals(0, decoder.getErrors());
+    }
+
+    /**
+     * Test extended NEC address and bad command inverse.
+     */
+    @Test
+    public void necExtended() {
+        final var decoder = new IrDecoder();
+        necFrame(decoder, 0x1234 | (0x45 << 16) | (0xba << 24));
+        assertEquals(1, decoded);
+        assertEquals(0x1234, decoder.getAddress());
+        assertEquals(0x45, decoder.getCommand());
+        // Command inverse wrong
+        necFrame(decoder, 0x1234 | (0x45 << 16) | (0xbb << 24));
+        assertEquals(1, decoded);
+        assertEquals(1, decoder.getErrors());
+        // Repeat after bad frame is ignored
+        pulse(decoder, 9000000, 2250000);
+        pulse(decoder, 562500, 96000000);
+        assertEquals(1, decoded);
+    }
+
+    /**
+     * Test NEC repeat without frame is ignored.
+     */
+    @Test
+    public void necRepeatOnly() {
+        final var decoder = new IrDecoder();
+        pulse(decoder, 9000000, 2250000);
+        pulse(decoder, 562500, 96000000);
+        assertEquals(0, decoded);
+    }
+
+    /**
+     * Test RC5 frames ending in 1 and 0 with toggle.
+     */
+    @Test
+    public void rc5() {
+        final var decoder = new IrDecoder();
+        // S1=1, S2=1, T=0, address 5, command 0x35
+        rc5Frame(decoder, (0b110 << 11) | (5 << 6) | 0x35);
+        assertEquals(1, decoded);
+        assertEquals(IrDecoder.PROTOCOL_RC5, decoder.getProtocol());
+        assertEquals(5, decoder.getAddress());
+        assertEquals(0x35, decoder.getCommand());
+        assertEquals(0, decoder.getToggle());
+        // Toggle set, address 0x1f, command 0x0c
+        rc5Frame(decoder, (0b111 << 11) | (0x1f << 6) | 0x0c);
+        assertEquals(2, decoded);
+        assertEquals(0x1f, decoder.getAddress());
+        assertEquals(0x0c, decoder.getCommand());
+        assertEquals(1, decoder.getToggle());
+        // S2=0 is command bit 6 (RC5X)
+        rc5Frame(decoder, (0b100 << 11) | (0 << 6) | 0x01);
+        assertEquals(3, decoded);
+        assertEquals(0x41, decoder.getCommand());
+    }
+
+    /**
+     * Test NEC and RC5 frames interleaved on the same decoder.
+     */
+    @Test
+    public void mixed() {
+        final var decoder = new IrDecoder();
+        rc5Frame(decoder, (0b110 << 11) | (3 << 6) | 0x10);
+        necFrame(decoder, 0x00 | (0xff << 8) | (0x45 << 16) | (0xba << 24));
+        rc5Frame(decoder, (0b111 << 11) | (3 << 6) | 0x11);
+        assertEquals(3, decoded);
+        assertEquals(IrDecoder.PROTOCOL_RC5, decoder.getProtocol());
+        assertEquals(0x11, decoder.getCommand());
+    }
+}
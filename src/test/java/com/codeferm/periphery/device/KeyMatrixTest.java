@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test key matrix debouncing.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class KeyMatrixTest {
+
+    /**
+     * Events as key, down (1 or 0) and timestamp.
+     */
+    private final List<long[]> events = new ArrayList<>();
+
+    /**
+     * Create 4x4 matrix recording events.
+     *
+     * @param debounce Debounce scans.
+     * @return Matrix.
+     */
+    public KeyMatrix createMatrix(final int debounce) {
+        return new KeyMatrix(4, 4, debounce, (key, down, timestamp) -> events.add(new long[]{key, down ? 1 : 0, timestamp}));
+    }
+
+    /**
+     * Test key down and up after debounce.
+     */
+    @Test
+    public void downUp() {
+        final var matrix = createMatrix(3);
+        // Row 2 column 1 is key 9
+        for (var scan = 0; scan < 3; scan++) {
+            matrix.update(2, 0b0010, scan);
+        }
+        assertEquals(1, events.size());
+        assertEquals(9, events.get(0)[0]);
+        assertEquals(1, events.get(0)[1]);
+        assertEquals(2, events.get(0)[2]);
+        assertTrue(matrix.isPressed(9));
+        assertEquals(1, matrix.getDown());
+        for (var scan = 3; scan < 6; scan++) {
+            matrix.update(2, 0, scan);
+        }
+        assertEquals(2, events.size());
+        assertEquals(9, events.get(1)[0]);
+        assertEquals(0, events.get(1)[1]);
+        assertEquals(5, events.get(1)[2]);
+        assertFalse(matrix.isPressed(9));
+        assertEquals(0, matrix.getDown());
+    }
+
+    /**
+     * Test bouncing contact generates one event.
+     */
+    @Test
+    public void bounce() {
+        final var matrix = createMatrix(3);
+        final int[] raw = {1, 0, 1, 1, 0, 1, 1, 1, 0, 1, 1, 1, 1};
+        for (var scan = 0; scan < raw.length; scan++) {
+            matrix.update(0, raw[scan], scan);
+        }
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0)[0]);
+        // Short glitch while held does not release key
+        matrix.update(0, 0, 20);
+        matrix.update(0, 1, 21);
+        assertEquals(1, events.size());
+        assertTrue(matrix.isPressed(0));
+    }
+
+    /**
+     * Test several keys in one row.
+     */
+    @Test
+    public void multiple() {
+        final var matrix = createMatrix(1);
+        matrix.update(3, 0b1001, 0);
+        assertEquals(2, events.size());
+        assertEquals(12, events.get(0)[0]);
+        assertEquals(15, events.get(1)[0]);
+        assertEquals(2, matrix.getDown());
+        // Other rows are independent
+        matrix.update(0, 0, 1);
+        assertEquals(2, events.size());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Mmio;
+import com.codeferm.periphery.mmio.MmioBus;
+import static com.codeferm.periphery.mmio.MmioFixture.modePin;
+import static com.codeferm.periphery.mmio.MmioFixture.pin;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import com.codeferm.periphery.mmio.MmioPin;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test keypad row drive using a file backed MMIO mapping. Four row pins are bits 0 to 3 of data register 8 with mode register 4
+ * and four column pins are bits 0 to 3 of register 0.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class KeypadTest {
+
+    /**
+     * Rows and columns.
+     */
+    private static final int SIZE = 4;
+    /**
+     * Data register of rows.
+     */
+    private static final int ROW_DATA = 8;
+    /**
+     * Mode register of rows.
+     */
+    private static final int ROW_MODE = 4;
+
+    /**
+     * Test only the scanned row is an output driving low and a key pressed in its column is reported.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void scan() throws IOException {
+        withMapping(handle -> {
+            final var rows = new MmioPin[SIZE];
+            for (var i = 0; i < SIZE; i++) {
+                rows[i] = new MmioPin(modePin(i, ROW_DATA, 1 << i, ROW_MODE, handle));
+            }
+            final var outputs = new ArrayList<Integer>();
+            final var value = new int[1];
+            // Key on row 1 column 2 is held down
+            final var cols = new MmioBus(pin(0, 0x01, handle), pin(1, 0x02, handle), pin(2, 0x04, handle), pin(3, 0x08, handle)) {
+                @Override
+                public int read() {
+                    Mmio.mmioRead32(handle, ROW_MODE, value);
+                    final var mode = value[0];
+                    outputs.add(mode);
+                    Mmio.mmioRead32(handle, ROW_DATA, value);
+                    final var low = mode & ~value[0];
+                    return (low & 0x02) != 0 ? 0x0b : 0x0f;
+                }
+            };
+            final List<long[]> events = new ArrayList<>();
+            final var keypad = new Keypad(rows, cols, 2, (key, down, timestamp) -> events.add(new long[]{key, down ? 1 : 0,
+                timestamp}));
+            for (var i = 0; i < 2; i++) {
+                keypad.scan(i);
+            }
+            assertEquals(2, keypad.getScans());
+            // One row at a time and never a row driven high
+            for (var i = 0; i < outputs.size(); i++) {
+                assertEquals(1 << (i % SIZE), (int) outputs.get(i));
+            }
+            Mmio.mmioRead32(handle, ROW_MODE, value);
+            assertEquals(0, value[0]);
+            Mmio.mmioRead32(handle, ROW_DATA, value);
+            assertEquals(0, value[0]);
+            assertEquals(1, events.size());
+            assertArrayEquals(new long[]{6, 1, 1}, events.get(0));
+            assertTrue(keypad.getMatrix().isPressed(6));
+        });
+    }
+}
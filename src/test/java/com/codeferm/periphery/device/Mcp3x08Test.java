@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.SampleRing;
+import static com.codeferm.periphery.SpiBatch.CS_CHANGE;
+import static com.codeferm.periphery.SpiBatch.FIELDS;
+import static com.codeferm.periphery.device.Mcp3x08.MCP3008;
+import static com.codeferm.periphery.device.Mcp3x08.MCP3208;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test MCP3008 and MCP3208 command encoding and sample decoding.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Mcp3x08Test {
+
+    /**
+     * Test commands from the datasheets.
+     */
+    @Test
+    public void encode() {
+        final var buf = new byte[3];
+        Mcp3x08.encode(MCP3008, 0, buf, 0);
+        assertArrayEquals(new byte[]{0x01, (byte) 0x80, 0x00}, buf);
+        Mcp3x08.encode(MCP3008, 7, buf, 0);
+        assertArrayEquals(new byte[]{0x01, (byte) 0xf0, 0x00}, buf);
+        Mcp3x08.encode(MCP3208, 0, buf, 0);
+        assertArrayEquals(new byte[]{0x06, 0x00, 0x00}, buf);
+        Mcp3x08.encode(MCP3208, 5, buf, 0);
+        assertArrayEquals(new byte[]{0x07, 0x40, 0x00}, buf);
+        assertThrows(RuntimeException.class, () -> Mcp3x08.encode(MCP3008, 8, buf, 0));
+    }
+
+    /**
+     * Test results ignore the undefined leading bits.
+     */
+    @Test
+    public void decode() {
+        assertEquals(1023, Mcp3x08.decode(MCP3008, new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff}, 0));
+        assertEquals(0x155, Mcp3x08.decode(MCP3008, new byte[]{0x00, (byte) 0xf9, 0x55}, 0));
+        assertEquals(4095, Mcp3x08.decode(MCP3208, new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff}, 0));
+        assertEquals(0x9aa, Mcp3x08.decode(MCP3208, new byte[]{0x00, (byte) 0xe9, (byte) 0xaa}, 0));
+    }
+
+    /**
+     * Test scan is one segment per channel with chip select released between them and not after the last.
+     */
+    @Test
+    public void scan() {
+        final var batch = Mcp3x08.scan(MCP3008, new int[]{2, 5});
+        assertEquals(2, batch.size());
+        assertEquals(6, batch.length());
+        assertEquals((byte) 0xa0, batch.getTx()[1]);
+        assertEquals((byte) 0xd0, batch.getTx()[4]);
+        assertEquals(1, batch.getSegments()[CS_CHANGE]);
+        assertEquals(0, batch.getSegments()[FIELDS + CS_CHANGE]);
+        final var rx = batch.getRx();
+        rx[1] = 0x01;
+        rx[2] = 0x02;
+        rx[4] = 0x03;
+        rx[5] = (byte) 0xff;
+        final var frame = new int[2];
+        Mcp3x08.decode(MCP3008, batch, frame);
+        assertArrayEquals(new int[]{0x102, 0x3ff}, frame);
+    }
+
+    /**
+     * Test start rejects a sample rate that is not positive.
+     */
+    @Test
+    public void sampleRate() {
+        final var adc = new Mcp3x08(0, MCP3008);
+        final var ring = new SampleRing(4, 1);
+        assertThrows(RuntimeException.class, () -> adc.start(new int[]{0}, 0, ring));
+        assertThrows(RuntimeException.class, () -> adc.start(new int[]{0}, -1, ring));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.mmio.MmioBus;
+import static com.codeferm.periphery.mmio.MmioFixture.pin;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import com.codeferm.periphery.mmio.Pin;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test refresh scan order and missed slot accounting using a file backed MMIO mapping. Eight segment pins are bits 0 to 7 and four
+ * active low digit pins are bits 8 to 11 of register 0.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MultiplexDisplayTest {
+
+    /**
+     * Segment pins.
+     */
+    private static final int SEGMENTS = 8;
+    /**
+     * Digit pins.
+     */
+    private static final int DIGITS = 4;
+    /**
+     * Blank bus value with active low digits.
+     */
+    private static final int BLANK = 0xf00;
+
+    /**
+     * Bus that records every write and can stall one write.
+     */
+    private static final class RecordingBus extends MmioBus {
+
+        /**
+         * Values written.
+         */
+        private final List<Integer> writes = new ArrayList<>();
+        /**
+         * Time to stall next write.
+         */
+        private volatile long stallNs;
+
+        /**
+         * Create bus.
+         *
+         * @param pins Pins.
+         */
+        private RecordingBus(final Pin... pins) {
+            super(pins);
+        }
+
+        @Override
+        public void write(final int value) {
+            super.write(value);
+            synchronized (writes) {
+                writes.add(value);
+            }
+            final var ns = stallNs;
+            if (ns > 0) {
+                stallNs = 0;
+                LockSupport.parkNanos(ns);
+            }
+        }
+
+        /**
+         * Copy of values written.
+         *
+         * @return Values.
+         */
+        private List<Integer> getWrites() {
+            synchronized (writes) {
+                return new ArrayList<>(writes);
+            }
+        }
+    }
+
+    /**
+     * Create bus of segment and digit pins on register 0.
+     *
+     * @param handle MMIO handle.
+     * @return Bus.
+     */
+    public RecordingBus createBus(final long handle) {
+        final var pins = new Pin[SEGMENTS + DIGITS];
+        for (var i = 0; i < pins.length; i++) {
+            pins[i] = pin(i, 1 << i, handle);
+        }
+        return new RecordingBus(pins);
+    }
+
+    /**
+     * Bus value of lit digit.
+     *
+     * @param digit Digit.
+     * @param pattern Segment pattern.
+     * @return Value.
+     */
+    private static int lit(final int digit, final int pattern) {
+        return (pattern | 1 << (SEGMENTS + digit)) ^ BLANK;
+    }
+
+    /**
+     * Test digits are lit in order with their own pattern and the display is blank before and after.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void scanOrder() throws IOException, InterruptedException {
+        withMapping(handle -> {
+            final var bus = createBus(handle);
+            try (final var display = new MultiplexDisplay(bus, SEGMENTS, true, false, 200, 0)) {
+                assertEquals(DIGITS, display.getDigits());
+                for (var digit = 0; digit < DIGITS; digit++) {
+                    display.setHex(digit, digit + 1, digit == 3);
+                }
+                display.show();
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            final var writes = bus.getWrites();
+            assertEquals(BLANK, (int) writes.get(0));
+            assertEquals(BLANK, (int) writes.get(writes.size() - 1));
+            final var patterns = new int[DIGITS];
+            for (var digit = 0; digit < DIGITS; digit++) {
+                patterns[digit] = MultiplexDisplay.HEX_SEGMENTS[digit + 1] | (digit == 3 ? 0x80 : 0);
+            }
+            // Full brightness is one write per slot, so after the swap every frame is digit 0 to 3
+            final var first = writes.indexOf(lit(0, patterns[0]));
+            assertTrue(first > 0);
+            assertTrue(writes.size() > first + 2 * DIGITS);
+            for (var i = 0; i < 2 * DIGITS; i++) {
+                assertEquals(lit(i % DIGITS, patterns[i % DIGITS]), (int) writes.get(first + i));
+            }
+        });
+    }
+
+    /**
+     * Test a stalled slot is counted as missed and recorded as lateness.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void missed() throws IOException, InterruptedException {
+        withMapping(handle -> {
+            final var bus = createBus(handle);
+            try (final var display = new MultiplexDisplay(bus, SEGMENTS, true, false, 250, 0)) {
+                // 1 ms slots
+                assertEquals(1000000, display.getSlotNs());
+                TimeUnit.MILLISECONDS.sleep(20);
+                final var before = display.getMissed();
+                bus.stallNs = 5000000;
+                TimeUnit.MILLISECONDS.sleep(30);
+                assertTrue(display.getMissed() > before);
+                assertTrue(display.getMaxLateNs() >= 3000000);
+                assertTrue(display.getFrameCount() > 0);
+            }
+        });
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_FALLING;
+import static com.codeferm.periphery.Gpio.GPIO_EDGE_RISING;
+import static com.codeferm.periphery.device.QuadratureDecoder.LINE_A;
+import static com.codeferm.periphery.device.QuadratureDecoder.LINE_B;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test quadrature decoder state table, merge and velocity.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class QuadratureDecoderTest {
+
+    /**
+     * Sample.
+     */
+    private final QuadratureDecoder.Sample sample = new QuadratureDecoder.Sample();
+
+    /**
+     * Queue edges for a number of steps in one direction starting from A=0, B=0. Forward is B leading A.
+     *
+     * @param decoder Decoder.
+     * @param steps Number of edges.
+     * @param forward Direction.
+     * @param start First timestamp.
+     * @param period Time between edges.
+     */
+    private void steps(final QuadratureDecoder decoder, final int steps, final boolean forward, final long start, final long period) {
+        var a = false;
+        var b = false;
+        for (var i = 0; i < steps; i++) {
+            // Forward: B rises, A rises, B falls, A falls
+            final var moveB = forward ? (i % 2 == 0) : (i % 2 == 1);
+            if (moveB) {
+                b = !b;
+                decoder.add(LINE_B, b ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING, start + i * period);
+            } else {
+                a = !a;
+                decoder.add(LINE_A, a ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING, start + i * period);
+            }
+        }
+    }
+
+    /**
+     * Test counting in both directions.
+     */
+    @Test
+    public void direction() {
+        final var forward = new QuadratureDecoder(false, false, 1000000);
+        steps(forward, 8, true, 1000, 1000);
+        // Nothing pending in the kernel, so count held back events too
+        assertEquals(8, forward.flush());
+        forward.sample(sample);
+        assertEquals(8, sample.getPosition());
+        assertEquals(0, sample.getIllegal());
+        final var reverse = new QuadratureDecoder(false, false, 1000000);
+        steps(reverse, 12, false, 1000, 1000);
+        assertEquals(12, reverse.flush());
+        reverse.sample(sample);
+        assertEquals(-12, sample.getPosition());
+        assertEquals(0, sample.getIllegal());
+    }
+
+    /**
+     * Test lost edge is counted as illegal.
+     */
+    @Test
+    public void illegal() {
+        final var decoder = new QuadratureDecoder(false, false, 1000000);
+        decoder.add(LINE_B, GPIO_EDGE_RISING, 1000);
+        // A rising lost, A falling seen
+        decoder.add(LINE_A, GPIO_EDGE_FALLING, 3000);
+        decoder.flush();
+        decoder.sample(sample);
+        assertEquals(1, sample.getPosition());
+        assertEquals(1, sample.getIllegal());
+    }
+
+    /**
+     * Test events are merged by timestamp and newer events are held back until the other line catches up.
+     */
+    @Test
+    public void merge() {
+        final var decoder = new QuadratureDecoder(false, false, 1000000);
+        // Batch 1: B rise at 1000 and fall at 3000, A rise at 2000 only (A fall at 4000 still in kernel buffer)
+        decoder.add(LINE_A, GPIO_EDGE_RISING, 2000);
+        decoder.add(LINE_B, GPIO_EDGE_RISING, 1000);
+        decoder.add(LINE_B, GPIO_EDGE_FALLING, 3000);
+        // B fall at 3000 is newer than last A event, so it is held back
+        assertEquals(2, decoder.process());
+        decoder.sample(sample);
+        assertEquals(2, sample.getPosition());
+        // Batch 2: A fall at 4000, so held back B fall is counted and A fall is held back
+        decoder.add(LINE_A, GPIO_EDGE_FALLING, 4000);
+        assertEquals(1, decoder.process());
+        decoder.sample(sample);
+        assertEquals(3, sample.getPosition());
+        // Poll timeout
+        assertEquals(1, decoder.flush());
+        decoder.sample(sample);
+        assertEquals(4, sample.getPosition());
+        assertEquals(0, sample.getIllegal());
+        assertEquals(4000, sample.getTimestamp());
+    }
+
+    /**
+     * Test events are held back while the other line's queue is empty, since it may still have an older edge in the kernel.
+     */
+    @Test
+    public void emptyQueue() {
+        final var decoder = new QuadratureDecoder(false, false, 1000000);
+        // Batch 1: A rise at 1000 and B rise at 2000
+        decoder.add(LINE_A, GPIO_EDGE_RISING, 1000);
+        decoder.add(LINE_B, GPIO_EDGE_RISING, 2000);
+        assertEquals(1, decoder.process());
+        // Batch 2: A was drained empty before its fall at 3000, B fall at 4000 is drained
+        decoder.add(LINE_B, GPIO_EDGE_FALLING, 4000);
+        assertEquals(0, decoder.process());
+        // Batch 3: A fall at 3000
+        decoder.add(LINE_A, GPIO_EDGE_FALLING, 3000);
+        assertEquals(2, decoder.process());
+        assertEquals(1, decoder.flush());
+        decoder.sample(sample);
+        assertEquals(-4, sample.getPosition());
+        assertEquals(0, sample.getIllegal());
+    }
+
+    /**
+     * Test a full queue is counted even though the other line is not moving.
+     */
+    @Test
+    public void fullQueue() {
+        final var decoder = new QuadratureDecoder(false, false, 1000000);
+        // B bounces while A stays low
+        for (var i = 0; i < QuadratureDecoder.BATCH; i++) {
+            decoder.add(LINE_B, i % 2 == 0 ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING, 1000 + i);
+        }
+        assertEquals(QuadratureDecoder.BATCH, decoder.process());
+        decoder.sample(sample);
+        assertEquals(0, sample.getPosition());
+        assertEquals(0, sample.getIllegal());
+    }
+
+    /**
+     * Test velocity and idle.
+     */
+    @Test
+    public void velocity() {
+        final var decoder = new QuadratureDecoder(false, false, 10000000);
+        // 1000 edges 20 µs apart is 50000 counts per second
+        for (var i = 0; i < 1000; i += 100) {
+            steps(decoder, 100, true, 1000000 + i * 20000L, 20000);
+            decoder.process();
+        }
+        // Last A edge is held back until flush
+        decoder.sample(sample);
+        assertEquals(999, sample.getPosition());
+        assertEquals(1, decoder.flush());
+        decoder.sample(sample);
+        assertEquals(1000, sample.getPosition());
+        assertEquals(50000.0, sample.getVelocity(), 0.001);
+        decoder.idle();
+        decoder.sample(sample);
+        assertEquals(0.0, sample.getVelocity(), 0.0);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test 74HC595 shadow buffer without flushing.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ShiftRegisterOutputsTest {
+
+    /**
+     * Test pins map to bytes in shift order.
+     */
+    @Test
+    public void shiftOrder() {
+        final var outputs = new ShiftRegisterOutputs(0, 0, 3);
+        assertEquals(24, outputs.getPins());
+        outputs.write(0, true);
+        outputs.write(7, true);
+        outputs.write(9, true);
+        outputs.write(23, true);
+        // Last register is shifted first
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x02, (byte) 0x81}, outputs.getShadow());
+        assertTrue(outputs.read(9));
+        assertFalse(outputs.read(10));
+        outputs.toggle(9);
+        assertFalse(outputs.read(9));
+        assertThrows(RuntimeException.class, () -> outputs.write(24, true));
+    }
+
+    /**
+     * Test many pins in one update.
+     */
+    @Test
+    public void mask() {
+        final var outputs = new ShiftRegisterOutputs(0, 0, 8);
+        outputs.write(-1L, 0x0123456789abcdefL);
+        assertArrayEquals(new byte[]{0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xab, (byte) 0xcd, (byte) 0xef},
+                outputs.getShadow());
+        outputs.write(0xffL, 0L);
+        assertEquals(0, outputs.getShadow()[7]);
+        assertEquals(0x01, outputs.getShadow()[0]);
+        outputs.writeChip(7, 0x55);
+        assertEquals(0x55, outputs.getShadow()[0]);
+        assertThrows(RuntimeException.class, () -> outputs.writeChip(8, 0));
+        assertThrows(RuntimeException.class, () -> outputs.writeChip(-1, 0));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test stepper acceleration profiles.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class StepProfileTest {
+
+    /**
+     * Step intervals.
+     */
+    private final long[] intervals = new long[10000];
+
+    /**
+     * Test trapezoidal ramps, cruise and symmetry.
+     */
+    @Test
+    public void trapezoidal() {
+        // 1000 steps/s at 2000 steps/s² reaches cruise after 250 steps
+        assertEquals(2000, StepProfile.trapezoidal(intervals, 2000, 1000.0, 2000.0, 2000.0));
+        // First delay c0 = 0.676 * sqrt(2 / a)
+        assertEquals(Math.round(0.676 * Math.sqrt(2.0 / 2000.0) * 1e9), intervals[0]);
+        for (var i = 1; i < 250; i++) {
+            assertTrue(intervals[i] <= intervals[i - 1]);
+        }
+        for (var i = 250; i < 1750; i++) {
+            assertEquals(1000000, intervals[i]);
+        }
+        for (var i = 0; i < 2000; i++) {
+            assertEquals(intervals[i], intervals[1999 - i]);
+            assertTrue(intervals[i] >= 1000000);
+        }
+        // Ramps take v / a = 0.5 s each plus 1500 steps at cruise. The recurrence is an approximation within a few percent.
+        assertEquals(2.5e9, StepProfile.duration(intervals, 2000), 0.05e9);
+    }
+
+    /**
+     * Test short trapezoidal move never reaches cruise.
+     */
+    @Test
+    public void triangle() {
+        assertEquals(100, StepProfile.trapezoidal(intervals, 100, 1000.0, 2000.0, 2000.0));
+        for (var i = 0; i < 100; i++) {
+            assertTrue(intervals[i] > 1000000);
+        }
+        // Fastest step is in the middle
+        assertTrue(intervals[49] < intervals[10]);
+        assertTrue(intervals[50] < intervals[90]);
+    }
+
+    /**
+     * Test S-curve duration, symmetry and smooth start.
+     */
+    @Test
+    public void sCurve() {
+        // Ramp time T = 1.5 v / a = 0.75 s, ramp distance vT / 2 = 375 steps
+        assertEquals(2000, StepProfile.sCurve(intervals, 2000, 1000.0, 2000.0, 2000.0));
+        assertEquals(0.75e9 + 1.25e9 + 0.75e9, StepProfile.duration(intervals, 2000), 1e6);
+        for (var i = 1; i < 375; i++) {
+            assertTrue(intervals[i] <= intervals[i - 1]);
+        }
+        for (var i = 376; i < 1624; i++) {
+            assertEquals(1000000, intervals[i]);
+        }
+        for (var i = 0; i < 2000; i++) {
+            assertEquals(intervals[i], intervals[1999 - i], 1.0);
+        }
+        // Jerk limited start is slower than linear acceleration
+        final var trapezoidal = new long[2000];
+        StepProfile.trapezoidal(trapezoidal, 2000, 1000.0, 2000.0, 2000.0);
+        assertTrue(intervals[0] > trapezoidal[0]);
+    }
+
+    /**
+     * Test S-curve move too short for cruise.
+     */
+    @Test
+    public void sCurveTriangle() {
+        // v = sqrt(steps / (0.75 * 2 / a)) = sqrt(100 / 0.00075)
+        final var speed = Math.sqrt(100 / 0.00075);
+        assertEquals(100, StepProfile.sCurve(intervals, 100, 1000.0, 2000.0, 2000.0));
+        assertEquals(2 * 1.5 * speed / 2000.0 * 1e9, StepProfile.duration(intervals, 100), 1e6);
+    }
+
+    /**
+     * Test invalid arguments.
+     */
+    @Test
+    public void invalid() {
+        assertEquals(0, StepProfile.trapezoidal(intervals, 0, 1000.0, 2000.0, 2000.0));
+        assertThrows(RuntimeException.class, () -> StepProfile.trapezoidal(intervals, 10001, 1000.0, 2000.0, 2000.0));
+        assertThrows(RuntimeException.class, () -> StepProfile.sCurve(intervals, 10, 0.0, 2000.0, 2000.0));
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test TFT color and window address encoding.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class TftDisplayTest {
+
+    /**
+     * Test RGB565 conversion.
+     */
+    @Test
+    public void rgb565() {
+        assertEquals(0xffff, TftDisplay.rgb565(255, 255, 255));
+        assertEquals(0xf800, TftDisplay.rgb565(255, 0, 0));
+        assertEquals(0x07e0, TftDisplay.rgb565(0, 255, 0));
+        assertEquals(0x001f, TftDisplay.rgb565(0, 0, 255));
+        assertEquals(0x0000, TftDisplay.rgb565(7, 3, 7));
+    }
+
+    /**
+     * Test column and page address parameters.
+     */
+    @Test
+    public void address() {
+        final var buf = new byte[4];
+        TftDisplay.address(10, 319, buf);
+        assertArrayEquals(new byte[]{0x00, 0x0a, 0x01, 0x3f}, buf);
+    }
+}
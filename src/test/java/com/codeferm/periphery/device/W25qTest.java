@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test W25Qxx command encoding and page splitting.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class W25qTest {
+
+    /**
+     * Test command and 24 bit address.
+     */
+    @Test
+    public void header() {
+        final var buf = new byte[5];
+        W25q.header(W25q.FAST_READ, 0x123456, buf, 1);
+        assertArrayEquals(new byte[]{0x00, 0x0b, 0x12, 0x34, 0x56}, buf);
+    }
+
+    /**
+     * Test writes stop at page boundaries.
+     */
+    @Test
+    public void pageLength() {
+        assertEquals(256, W25q.pageLength(0, 1000));
+        assertEquals(16, W25q.pageLength(0x1f0, 1000));
+        assertEquals(10, W25q.pageLength(0x1f0, 10));
+        assertEquals(256, W25q.pageLength(0x200, 256));
+    }
+
+    /**
+     * Test capacity from JEDEC ID of a W25Q128.
+     */
+    @Test
+    public void capacity() {
+        assertEquals(16 * 1024 * 1024, W25q.capacity(0xef4018));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test WS2812 SPI bit encoding and level tables.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Ws2812Test {
+
+    /**
+     * Test lookup tables.
+     */
+    @Test
+    public void encode() {
+        assertEquals(0b100100100100100100100100, Ws2812.encode(3, 0x00));
+        assertEquals(0b110110110110110110110110, Ws2812.encode(3, 0xff));
+        assertEquals(0b110100110100110100110100, Ws2812.encode(3, 0xaa));
+        assertEquals(0x88888888, Ws2812.encode(4, 0x00));
+        assertEquals(0xeeeeeeee, Ws2812.encode(4, 0xff));
+        assertEquals(0xe8e8e8e8, Ws2812.encode(4, 0xaa));
+    }
+
+    /**
+     * Test frame is GRB order after the lead byte and reset bytes stay zero.
+     */
+    @Test
+    public void render() {
+        final var strip = new Ws2812(0, 2, 4);
+        strip.setPixel(0, 0xff0000);
+        strip.setPixel(1, 0x0000ff);
+        assertTrue(strip.render());
+        final var tx = strip.getTx();
+        assertEquals(0, tx.get(0));
+        assertEquals(0x88888888, tx.getInt(1));
+        assertEquals(0xeeeeeeee, tx.getInt(5));
+        assertEquals(0x88888888, tx.getInt(9));
+        assertEquals(0xeeeeeeee, tx.getInt(21));
+        for (var i = 25; i < tx.capacity(); i++) {
+            assertEquals(0, tx.get(i));
+        }
+        // 300 µs at 3.2 MHz is 120 bytes
+        assertEquals(1 + 24 + 121, tx.capacity());
+    }
+
+    /**
+     * Test unchanged frames are not encoded again.
+     */
+    @Test
+    public void unchanged() {
+        final var strip = new Ws2812(0, 4, 3);
+        strip.fill(0x102030);
+        assertTrue(strip.render());
+        assertFalse(strip.render());
+        strip.setPixel(2, 0x102030);
+        assertFalse(strip.render());
+        strip.setPixel(2, 0x102031);
+        assertTrue(strip.render());
+        strip.setBrightness(128);
+        assertTrue(strip.render());
+    }
+
+    /**
+     * Test gamma and brightness levels.
+     */
+    @Test
+    public void level() {
+        assertEquals(255, Ws2812.level(255, 2.8, 255));
+        assertEquals(0, Ws2812.level(0, 2.8, 255));
+        assertEquals(128, Ws2812.level(255, 1.0, 128));
+        assertEquals(37, Ws2812.level(128, 2.8, 255));
+        final var strip = new Ws2812(0, 1, 3);
+        strip.setBrightness(0);
+        strip.setPixel(0, 0xffffff);
+        strip.render();
+        assertEquals((byte) 0b10010010, strip.getTx().get(1));
+    }
+}
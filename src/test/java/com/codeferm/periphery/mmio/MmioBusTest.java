@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import static com.codeferm.periphery.mmio.MmioFixture.pin;
+import static com.codeferm.periphery.mmio.MmioFixture.setClearPin;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import java.io.IOException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test multi-pin writes using a file backed MMIO mapping.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioBusTest {
+
+    /**
+     * Test read-modify-write groups.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void sameReg() throws IOException {
+        withMapping(handle -> {
+            // Three pins on register 0 out of order and one on register 4
+            final var bus = new MmioBus(pin(0, 0, 0x10, handle), pin(1, 0, 0x01, handle), pin(2, 4, 0x80, handle), pin(3, 0,
+                    0x100, handle));
+            assertEquals(2, bus.getGroups());
+            assertEquals(4, bus.size());
+            // Other bits in register must not change
+            Mmio.mmioWrite32(handle, 0, 0xf000_0000);
+            final var value = new int[1];
+            bus.write(0b1011);
+            Mmio.mmioRead32(handle, 0, value);
+            assertEquals(0xf000_0111, value[0]);
+            Mmio.mmioRead32(handle, 4, value);
+            assertEquals(0x00, value[0]);
+            bus.write(0b0100);
+            Mmio.mmioRead32(handle, 0, value);
+            assertEquals(0xf000_0000, value[0]);
+            Mmio.mmioRead32(handle, 4, value);
+            assertEquals(0x80, value[0]);
+        });
+    }
+
+    /**
+     * Test set and clear register group.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void setClear() throws IOException {
+        withMapping(handle -> {
+            final var bus = new MmioBus(setClearPin(4, 1 << 4, handle), setClearPin(17, 1 << 17, handle), setClearPin(27,
+                    1 << 27, handle));
+            assertEquals(1, bus.getGroups());
+            final var value = new int[1];
+            bus.write(0b101);
+            // One write of all set bits and one of all clear bits
+            Mmio.mmioRead32(handle, 0x1c, value);
+            assertEquals((1 << 4) | (1 << 27), value[0]);
+            Mmio.mmioRead32(handle, 0x28, value);
+            assertEquals(1 << 17, value[0]);
+        });
+    }
+
+    /**
+     * Test reading pins with one read per data in register.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void read() throws IOException {
+        withMapping(handle -> {
+            final var bus = new MmioBus(pin(0, 0, 0x10, handle), pin(1, 4, 0x01, handle), pin(2, 0, 0x100, handle));
+            assertEquals(2, bus.getInGroups());
+            Mmio.mmioWrite32(handle, 0, 0x0000_0110);
+            Mmio.mmioWrite32(handle, 4, 0xffff_fffe);
+            assertEquals(0b101, bus.read());
+            Mmio.mmioWrite32(handle, 0, 0x0000_0100);
+            Mmio.mmioWrite32(handle, 4, 0x0000_0001);
+            assertEquals(0b110, bus.read());
+        });
+    }
+}
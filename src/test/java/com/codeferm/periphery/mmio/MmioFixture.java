@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+/**
+ * File backed MMIO mapping and test pins shared by tests that need registers without hardware. Registers are plain memory, so a
+ * pin reads back what was last written to its data register.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class MmioFixture {
+
+    /**
+     * Size of mapping in bytes.
+     */
+    public static final int SIZE = 4096;
+
+    /**
+     * Test body.
+     *
+     * @param <E> Checked exception thrown by body.
+     */
+    @FunctionalInterface
+    public interface Body<E extends Exception> {
+
+        /**
+         * Run test.
+         *
+         * @param handle MMIO handle.
+         * @throws E Possible exception.
+         */
+        void run(long handle) throws E;
+    }
+
+    /**
+     * Utility class.
+     */
+    private MmioFixture() {
+    }
+
+    /**
+     * Run body with a new file backed mapping that is removed afterwards.
+     *
+     * @param <E> Checked exception thrown by body.
+     * @param body Test body.
+     * @throws IOException Possible exception.
+     * @throws E Possible exception.
+     */
+    public static <E extends Exception> void withMapping(final Body<E> body) throws IOException, E {
+        final var path = Files.createTempFile("mmio", ".mem");
+        try (final var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(SIZE);
+        }
+        try (final var mmio = new Mmio(0, SIZE, path.toString())) {
+            body.run(mmio.getHandle());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Create pin using one register for data in and out (Allwinner style).
+     *
+     * @param pin Pin number.
+     * @param offset Register offset.
+     * @param mask Bit mask.
+     * @param handle MMIO handle.
+     * @return Pin.
+     */
+    public static Pin pin(final int pin, final int offset, final int mask, final long handle) {
+        return new Pin(new PinKey(0, pin), "TEST", String.format("PIN%d", pin), new Register("IN_ON", offset, mask), new Register(
+                "IN_OFF", offset, mask), new Register("OUT_ON", offset, mask), new Register("OUT_OFF", offset, ~mask)).
+                setMmioHadle(handle);
+    }
+
+    /**
+     * Create pin on register 0.
+     *
+     * @param pin Pin number.
+     * @param mask Bit mask.
+     * @param handle MMIO handle.
+     * @return Pin.
+     */
+    public static Pin pin(final int pin, final int mask, final long handle) {
+        return pin(pin, 0, mask, handle);
+    }
+
+    /**
+     * Create pin with a mode register. The mask bit is set for output and cleared for input.
+     *
+     * @param pin Pin number.
+     * @param offset Data register offset.
+     * @param mask Bit mask.
+     * @param modeOffset Mode register offset.
+     * @param handle MMIO handle.
+     * @return Pin.
+     */
+    public static Pin modePin(final int pin, final int offset, final int mask, final int modeOffset, final long handle) {
+        return pin(pin, offset, mask, handle).setModeIn(new Register("MODE_IN", modeOffset, 0)).setModeOut(new Register(
+                "MODE_OUT", modeOffset, mask));
+    }
+
+    /**
+     * Create pin using set and clear registers (Raspberry Pi style).
+     *
+     * @param pin Pin number.
+     * @param mask Bit mask.
+     * @param handle MMIO handle.
+     * @return Pin.
+     */
+    public static Pin setClearPin(final int pin, final int mask, final long handle) {
+        return new Pin(new PinKey(0, pin), "TEST", String.format("PIN%d", pin), new Register("IN_ON", 0x34, mask), new Register(
+                "IN_OFF", 0x34, mask), new Register("OUT_ON", 0x1c, mask), new Register("OUT_OFF", 0x28, mask)).setMmioHadle(
+                handle);
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Common;
+import com.codeferm.periphery.I2c;
+import static com.codeferm.periphery.I2c.I2C_ERROR_TRANSFER;
+import static com.codeferm.periphery.I2c.I2C_M_NO_RD_ACK;
+import static com.codeferm.periphery.I2c.I2C_M_RD;
+import static com.codeferm.periphery.I2c.I2C_SUCCESS;
+import static com.codeferm.periphery.mmio.MmioFixture.modePin;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test bit banged I2C using file backed MMIO pins and a simulated slave that follows SCL and SDA edges.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SoftI2cTest {
+
+    /**
+     * Slave address.
+     */
+    private static final int ADDRESS = 0x50;
+
+    /**
+     * Open drain bus with one slave. A line is low if the master or the slave drives it low.
+     */
+    private static class Bus {
+
+        /**
+         * Master drives SCL low.
+         */
+        private boolean sclLow;
+        /**
+         * Master drives SDA low.
+         */
+        private boolean sdaLow;
+        /**
+         * Slave drives SDA low.
+         */
+        private boolean slaveLow;
+        /**
+         * Rising edges in current byte, 8 is the ACK clock.
+         */
+        private int bit;
+        /**
+         * Bits shifted in.
+         */
+        private int shift;
+        /**
+         * 0 idle, 1 address, 2 write, 3 read.
+         */
+        private int phase;
+        /**
+         * Phase after ACK.
+         */
+        private int next;
+        /**
+         * Bytes returned by reads.
+         */
+        private final byte[] readData = {(byte) 0xa5, 0x3c, (byte) 0x81};
+        /**
+         * Read index.
+         */
+        private int readIndex;
+        /**
+         * Current read byte.
+         */
+        private int current;
+        /**
+         * Starts seen.
+         */
+        private int starts;
+        /**
+         * Stops seen.
+         */
+        private int stops;
+        /**
+         * SCL rising edges.
+         */
+        private int clocks;
+        /**
+         * Bytes written to the slave.
+         */
+        private final List<Integer> written = new ArrayList<>();
+        /**
+         * Master ACK (true) or NAK (false) after each read byte.
+         */
+        private final List<Boolean> masterAcks = new ArrayList<>();
+
+        /**
+         * SDA line level.
+         *
+         * @return True if high.
+         */
+        private boolean sda() {
+            return !sdaLow && !slaveLow;
+        }
+
+        /**
+         * Master sets SCL.
+         *
+         * @param low Drive low.
+         */
+        private void scl(final boolean low) {
+            if (low == sclLow) {
+                return;
+            }
+            sclLow = low;
+            if (low) {
+                fall();
+            } else {
+                rise();
+            }
+        }
+
+        /**
+         * Master sets SDA. Changes while SCL is high are start and stop conditions.
+         *
+         * @param low Drive low.
+         */
+        private void sdaMaster(final boolean low) {
+            final var before = sda();
+            sdaLow = low;
+            if (!sclLow && before && !sda()) {
+                starts++;
+                phase = 1;
+                bit = 0;
+                shift = 0;
+                slaveLow = false;
+            } else if (!sclLow && !before && sda()) {
+                stops++;
+                phase = 0;
+                slaveLow = false;
+            }
+        }
+
+        /**
+         * Sample on rising edge.
+         */
+        private void rise() {
+            clocks++;
+            if (phase == 0) {
+                return;
+            }
+            if (bit < 8) {
+                shift = shift << 1 | (sda() ? 1 : 0);
+            } else if (phase == 3) {
+                masterAcks.add(!sda());
+                if (sda()) {
+                    // NAK ends the read
+                    next = 0;
+                }
+            }
+            bit++;
+        }
+
+        /**
+         * Drive SDA after falling edge.
+         */
+        private void fall() {
+            if (phase == 0) {
+                return;
+            }
+            if (bit == 8) {
+                // ACK clock follows
+                if (phase == 1) {
+                    if (shift >> 1 == ADDRESS) {
+                        slaveLow = true;
+                        next = (shift & 1) != 0 ? 3 : 2;
+                    } else {
+                        slaveLow = false;
+                        next = 0;
+                    }
+                } else if (phase == 2) {
+                    written.add(shift & 0xff);
+                    slaveLow = true;
+                    next = 2;
+                } else {
+                    slaveLow = false;
+                    next = 3;
+                }
+            } else if (bit == 9) {
+                bit = 0;
+                shift = 0;
+                slaveLow = false;
+                phase = next;
+                if (phase == 3) {
+                    current = readData[readIndex++ % readData.length] & 0xff;
+                    slaveLow = (current & 0x80) == 0;
+                }
+            } else if (phase == 3) {
+                slaveLow = (current >> (7 - bit) & 1) == 0;
+            }
+        }
+    }
+
+    /**
+     * Create master on file backed MMIO pins that follow the simulated bus.
+     *
+     * @param handle MMIO handle.
+     * @param bus Simulated bus.
+     * @return I2C master.
+     */
+    public SoftI2c createI2c(final long handle, final Bus bus) {
+        final var scl = new MmioPin(modePin(0, 0, 0x01, 4, handle)) {
+            @Override
+            public void input() {
+                super.input();
+                bus.scl(false);
+            }
+
+            @Override
+            public void output() {
+                super.output();
+                bus.scl(true);
+            }
+
+            @Override
+            public boolean read() {
+                return !bus.sclLow;
+            }
+        };
+        final var sda = new MmioPin(modePin(1, 0, 0x02, 4, handle)) {
+            @Override
+            public void input() {
+                super.input();
+                bus.sdaMaster(false);
+            }
+
+            @Override
+            public void output() {
+                super.output();
+                bus.sdaMaster(true);
+            }
+
+            @Override
+            public boolean read() {
+                return bus.sda();
+            }
+        };
+        return new SoftI2c(scl, sda, SoftI2c.I2C_SPEED_FAST, SoftI2c.STRETCH_TIMEOUT_NS);
+    }
+
+    /**
+     * Test body.
+     */
+    @FunctionalInterface
+    private interface Body {
+
+        /**
+         * Run test.
+         *
+         * @param i2c I2C master.
+         * @param bus Simulated bus.
+         */
+        void run(SoftI2c i2c, Bus bus);
+    }
+
+    /**
+     * Run test with a new file backed mapping and bus.
+     *
+     * @param body Test body.
+     * @throws IOException Possible exception.
+     */
+    private void run(final Body body) throws IOException {
+        withMapping(handle -> {
+            final var bus = new Bus();
+            body.run(createI2c(handle, bus), bus);
+        });
+    }
+
+    /**
+     * Test register write is one start, address, two ACKed bytes and a stop.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void writeReg() throws IOException {
+        run((i2c, bus) -> {
+            assertEquals(I2C_SUCCESS, i2c.i2cWriteReg((short) ADDRESS, (short) 0x10, (short) 0x42));
+            assertEquals(List.of(0x10, 0x42), bus.written);
+            assertEquals(1, bus.starts);
+            assertEquals(1, bus.stops);
+            // Address and two bytes, each with an ACK clock, plus the stop
+            assertEquals(28, bus.clocks);
+        });
+    }
+
+    /**
+     * Test missing slave NAKs the address and the bus is released with a stop.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void addressNak() throws IOException {
+        run((i2c, bus) -> {
+            assertEquals(I2C_ERROR_TRANSFER, i2c.i2cWriteReg((short) 0x51, (short) 0x10, (short) 0x42));
+            assertTrue(i2c.getErrMessage().contains("NAK"));
+            assertEquals(1, bus.stops);
+            assertTrue(bus.written.isEmpty());
+            assertTrue(bus.sda());
+            assertTrue(!bus.sclLow);
+        });
+    }
+
+    /**
+     * Test register read uses a repeated start, ACKs every byte but the last and NAKs the last.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void readReg() throws IOException {
+        run((i2c, bus) -> {
+            final var buf = new byte[3];
+            assertEquals(I2C_SUCCESS, i2c.i2cReadReg((short) ADDRESS, (short) 0x20, buf));
+            assertArrayEquals(new byte[]{(byte) 0xa5, 0x3c, (byte) 0x81}, buf);
+            assertEquals(List.of(0x20), bus.written);
+            assertEquals(List.of(true, true, false), bus.masterAcks);
+            assertEquals(2, bus.starts);
+            assertEquals(1, bus.stops);
+        });
+    }
+
+    /**
+     * Test I2C_M_NO_RD_ACK skips the ACK/NAK clock of every read byte.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void noReadAck() throws IOException {
+        run((i2c, bus) -> {
+            final var msg = new I2c.I2cMsg();
+            msg.addr = ADDRESS;
+            msg.flags = (short) (I2C_M_RD | I2C_M_NO_RD_ACK);
+            msg.len = 2;
+            msg.buf = Common.malloc(2);
+            final var buf = new byte[2];
+            try {
+                assertEquals(I2C_SUCCESS, i2c.i2cTransfer(msg, 1));
+                Common.memMove(buf, msg.buf, buf.length);
+            } finally {
+                Common.free(msg.buf);
+            }
+            // Address with ACK clock, two bytes without and the stop
+            assertEquals(9 + 16 + 1, bus.clocks);
+            assertEquals(bus.readData[0] & 0xff, buf[0] & 0xff);
+        });
+    }
+}
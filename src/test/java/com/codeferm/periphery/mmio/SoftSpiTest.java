@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import static com.codeferm.periphery.mmio.MmioFixture.pin;
+import static com.codeferm.periphery.mmio.MmioFixture.withMapping;
+import static com.codeferm.periphery.Spi.LSB_FIRST;
+import static com.codeferm.periphery.Spi.MSB_FIRST;
+import static com.codeferm.periphery.Spi.SPI_SUCCESS;
+import java.io.IOException;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test bit banged SPI using a file backed MMIO mapping. MOSI and MISO share the same register bit, so the file acts as a loopback.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SoftSpiTest {
+
+    /**
+     * Loopback all modes and bit orders.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void loopback() throws IOException {
+        withMapping(handle -> {
+            final var sclk = pin(0, 0x01, handle);
+            final var mosi = pin(1, 0x02, handle);
+            // Same mask as MOSI for loopback
+            final var miso = pin(2, 0x02, handle);
+            final var cs = pin(3, 0x04, handle);
+            final byte[] txBuf = {(byte) 0xa5, (byte) 0x01, (byte) 0x80, (byte) 0xff, (byte) 0x00, (byte) 0x3c};
+            final var value = new int[1];
+            for (var mode = 0; mode < 4; mode++) {
+                for (final var bitOrder : new int[]{MSB_FIRST, LSB_FIRST}) {
+                    final var spi = new SoftSpi(sclk, mosi, miso, cs, mode, 0, bitOrder);
+                    final var rxBuf = new byte[txBuf.length];
+                    assertEquals(SPI_SUCCESS, spi.spiTransfer(txBuf, rxBuf, txBuf.length));
+                    assertArrayEquals(txBuf, rxBuf);
+                    Mmio.mmioRead32(handle, 0, value);
+                    // Clock idles at CPOL and CS is released
+                    assertEquals((mode & 0x02) >> 1, value[0] & 0x01);
+                    assertEquals(0x04, value[0] & 0x04);
+                }
+            }
+        });
+    }
+}